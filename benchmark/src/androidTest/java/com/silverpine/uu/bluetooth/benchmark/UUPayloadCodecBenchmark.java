@@ -0,0 +1,96 @@
+package com.silverpine.uu.bluetooth.benchmark;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.silverpine.uu.bluetooth.UUPayloadCodec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares schema driven decoding with the equivalent hand written code.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UUPayloadCodecBenchmark
+{
+    private static class Reading
+    {
+        int flag;
+        int mode;
+        int count;
+        double temperature;
+        long timestamp;
+        String name;
+    }
+
+    private static final UUPayloadCodec<Reading> CODEC = new UUPayloadCodec.Builder<Reading>(ByteOrder.LITTLE_ENDIAN, Reading::new)
+            .bits(1, r -> r.flag, (r, v) -> r.flag = v)
+            .bits(7, r -> r.mode, (r, v) -> r.mode = v)
+            .uint16(r -> r.count, (r, v) -> r.count = v)
+            .fixedPoint(2, true, 0.01, r -> r.temperature, (r, v) -> r.temperature = v)
+            .uint32(r -> r.timestamp, (r, v) -> r.timestamp = v)
+            .string(6, StandardCharsets.US_ASCII, r -> r.name, (r, v) -> r.name = v)
+            .build();
+
+    private static final byte[] PAYLOAD =
+    {
+        (byte) 0x0B,
+        (byte) 0x34, (byte) 0x12,
+        (byte) 0x0E, (byte) 0xF6,
+        (byte) 0x78, (byte) 0x56, (byte) 0x34, (byte) 0xF2,
+        'P', 'r', 'o', 'b', 'e', 0
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void codecDecode()
+    {
+        Reading reading = new Reading();
+        ByteBuffer buffer = ByteBuffer.wrap(PAYLOAD);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+        {
+            buffer.clear();
+            CODEC.decode(buffer, reading);
+        }
+    }
+
+    @Test
+    public void handWrittenDecode()
+    {
+        Reading reading = new Reading();
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+        {
+            decodeByHand(PAYLOAD, reading);
+        }
+    }
+
+    private static void decodeByHand(final byte[] data, final Reading into)
+    {
+        into.flag = data[0] & 0x01;
+        into.mode = (data[0] >> 1) & 0x7F;
+        into.count = (data[1] & 0xFF) | ((data[2] & 0xFF) << 8);
+        into.temperature = (short) ((data[3] & 0xFF) | ((data[4] & 0xFF) << 8)) * 0.01;
+        into.timestamp = ((data[5] & 0xFFL) | ((data[6] & 0xFFL) << 8) | ((data[7] & 0xFFL) << 16) | ((data[8] & 0xFFL) << 24));
+
+        int end = 9;
+        while (end < 15 && data[end] != 0)
+        {
+            ++end;
+        }
+
+        into.name = new String(data, 9, end - 9, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,175 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * Picks a connection priority based on observed traffic.  Priority is raised to HIGH as soon as
+ * the byte rate, operation rate or outstanding bytes cross the enter thresholds, and is only
+ * dropped back to BALANCED once demand has stayed below the lower exit thresholds for the idle
+ * interval.  A link with no traffic at all for the low power interval drops to LOW_POWER.
+ *
+ * All times are in milliseconds and are supplied by the caller.
+ */
+class UUAdaptiveConnectionPriority
+{
+    static final long RATE_WINDOW = 1000;
+
+    static final long HIGH_ENTER_BYTES_PER_SECOND = 4096;
+    static final long HIGH_EXIT_BYTES_PER_SECOND = 1024;
+    static final long HIGH_ENTER_OPS_PER_SECOND = 20;
+    static final long HIGH_EXIT_OPS_PER_SECOND = 5;
+    static final long BULK_TRANSFER_BYTES = 2048;
+
+    static final long HIGH_IDLE_INTERVAL = 2000;
+    static final long LOW_POWER_IDLE_INTERVAL = 30000;
+
+    private int priority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+
+    private long windowStart;
+    private long windowBytes;
+    private long windowOps;
+    private long lastWindowBytes;
+    private long lastWindowOps;
+
+    private long pendingBytes;
+    private long lastActivityTime;
+    private long lastHighDemandTime;
+
+    UUAdaptiveConnectionPriority(final long now)
+    {
+        windowStart = now;
+        lastActivityTime = now;
+        lastHighDemandTime = now;
+    }
+
+    synchronized int getPriority()
+    {
+        return priority;
+    }
+
+    synchronized long getPendingBytes()
+    {
+        return pendingBytes;
+    }
+
+    /**
+     * Records that an operation moving the given number of bytes has been started.  Bytes stay
+     * outstanding until operationEnded is called.
+     *
+     * @return the priority that should now be in effect
+     */
+    synchronized int operationStarted(final long byteCount, final long now)
+    {
+        pendingBytes += byteCount;
+        return recordTraffic(byteCount, now);
+    }
+
+    synchronized int operationEnded(final long byteCount, final long now)
+    {
+        pendingBytes = Math.max(0, pendingBytes - byteCount);
+        return evaluate(now);
+    }
+
+    /**
+     * Records traffic that has no matching end event, such as a notification or read response.
+     *
+     * @return the priority that should now be in effect
+     */
+    synchronized int recordTraffic(final long byteCount, final long now)
+    {
+        rollWindow(now);
+        windowBytes += byteCount;
+        ++windowOps;
+        lastActivityTime = now;
+        return evaluate(now);
+    }
+
+    /**
+     * Announces an upcoming bulk transfer so that priority is raised before the first byte moves.
+     *
+     * @return the priority that should now be in effect
+     */
+    synchronized int bulkTransferExpected(final long byteCount, final long now)
+    {
+        lastActivityTime = now;
+
+        if (byteCount >= BULK_TRANSFER_BYTES)
+        {
+            priority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+            lastHighDemandTime = now;
+        }
+
+        return evaluate(now);
+    }
+
+    synchronized int evaluate(final long now)
+    {
+        rollWindow(now);
+
+        long bytesPerSecond = Math.max(lastWindowBytes, windowBytes);
+        long opsPerSecond = Math.max(lastWindowOps, windowOps);
+
+        boolean enterHigh = (pendingBytes >= BULK_TRANSFER_BYTES ||
+                bytesPerSecond >= HIGH_ENTER_BYTES_PER_SECOND ||
+                opsPerSecond >= HIGH_ENTER_OPS_PER_SECOND);
+
+        boolean holdHigh = (pendingBytes > 0 ||
+                bytesPerSecond >= HIGH_EXIT_BYTES_PER_SECOND ||
+                opsPerSecond >= HIGH_EXIT_OPS_PER_SECOND);
+
+        if (enterHigh || (priority == BluetoothGatt.CONNECTION_PRIORITY_HIGH && holdHigh))
+        {
+            lastHighDemandTime = now;
+        }
+
+        if (enterHigh)
+        {
+            priority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+        }
+        else if (priority == BluetoothGatt.CONNECTION_PRIORITY_HIGH)
+        {
+            if ((now - lastHighDemandTime) >= HIGH_IDLE_INTERVAL)
+            {
+                priority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+            }
+        }
+        else if (priority == BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER)
+        {
+            if ((now - lastActivityTime) < LOW_POWER_IDLE_INTERVAL)
+            {
+                priority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+            }
+        }
+        else if ((now - lastActivityTime) >= LOW_POWER_IDLE_INTERVAL && pendingBytes == 0)
+        {
+            priority = BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER;
+        }
+
+        return priority;
+    }
+
+    private void rollWindow(final long now)
+    {
+        long elapsed = now - windowStart;
+        if (elapsed < RATE_WINDOW)
+        {
+            return;
+        }
+
+        if (elapsed < (2 * RATE_WINDOW))
+        {
+            lastWindowBytes = windowBytes;
+            lastWindowOps = windowOps;
+            windowStart += RATE_WINDOW;
+        }
+        else
+        {
+            lastWindowBytes = 0;
+            lastWindowOps = 0;
+            windowStart = now;
+        }
+
+        windowBytes = 0;
+        windowOps = 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keys for GATT attributes.  Characteristic keys are primitives built from instance ids rather
+ * than UUIDs, so two characteristics that share a UUID, either in different services or repeated
+ * within one service, get different keys.  Building a characteristic key does not allocate.
+ * Descriptor instance ids are not public, so a descriptor is keyed by its characteristic key
+ * together with its full UUID.
+ */
+final class UUAttributeKey
+{
+    // Set on keys handed out to attributes that have no instance ids.  Real instance ids are
+    // small unsigned 16 bit handles, so these never clash with them.
+    private static final long LOCAL_KEY_FLAG = 0x8000000000000000L;
+
+    private static final Map<BluetoothGattCharacteristic, Long> localKeys = new WeakHashMap<>();
+    private static long nextLocalKey = 1;
+
+    private UUAttributeKey()
+    {
+    }
+
+    /**
+     * Service instance id in the upper 32 bits, characteristic instance id in the lower 32 bits.
+     */
+    static long of(final @NonNull BluetoothGattCharacteristic characteristic)
+    {
+        BluetoothGattService service = characteristic.getService();
+        int instanceId = characteristic.getInstanceId();
+
+        // Attributes built locally, such as a simulated database, have no instance ids
+        if (instanceId == 0 && (service == null || service.getInstanceId() == 0))
+        {
+            return localKey(characteristic);
+        }
+
+        return of(service, instanceId);
+    }
+
+    static long of(final @Nullable BluetoothGattService service, final int characteristicInstanceId)
+    {
+        int serviceInstanceId = (service != null) ? service.getInstanceId() : 0;
+        return (((long) serviceInstanceId) << 32) | (characteristicInstanceId & 0xFFFFFFFFL);
+    }
+
+    static @NonNull Descriptor of(final @NonNull BluetoothGattDescriptor descriptor)
+    {
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        long characteristicKey = (characteristic != null) ? of(characteristic) : 0;
+        return new Descriptor(characteristicKey, descriptor.getUuid());
+    }
+
+    // Locally built characteristics are told apart by identity, each getting its own sequence
+    // number the first time it is seen.
+    private static long localKey(final @NonNull BluetoothGattCharacteristic characteristic)
+    {
+        synchronized (localKeys)
+        {
+            Long key = localKeys.get(characteristic);
+            if (key == null)
+            {
+                key = LOCAL_KEY_FLAG | nextLocalKey++;
+                localKeys.put(characteristic, key);
+            }
+
+            return key;
+        }
+    }
+
+    /**
+     * Key of a descriptor.  Descriptor UUIDs are unique within a characteristic.
+     */
+    static final class Descriptor
+    {
+        private final long characteristicKey;
+        private final @Nullable UUID uuid;
+
+        Descriptor(final long characteristicKey, final @Nullable UUID uuid)
+        {
+            this.characteristicKey = characteristicKey;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean equals(final Object other)
+        {
+            if (this == other)
+            {
+                return true;
+            }
+
+            if (!(other instanceof Descriptor))
+            {
+                return false;
+            }
+
+            Descriptor that = (Descriptor) other;
+            return (characteristicKey == that.characteristicKey &&
+                    (uuid != null ? uuid.equals(that.uuid) : that.uuid == null));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * Long.hashCode(characteristicKey)) + (uuid != null ? uuid.hashCode() : 0);
+        }
+    }
+}
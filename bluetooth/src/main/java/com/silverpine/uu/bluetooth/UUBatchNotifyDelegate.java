@@ -0,0 +1,25 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.silverpine.uu.core.UUError;
+
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Interface for delivering the result of a batch notify state change
+ */
+public interface UUBatchNotifyDelegate
+{
+    /**
+     * Callback invoked once every characteristic in the batch has been updated or has failed.
+     *
+     * @param peripheral the peripheral being interacted with
+     * @param failures characteristics that could not be updated, empty when all succeeded
+     * @param error an error if the batch could not be started
+     */
+    void onComplete(final @NonNull UUPeripheral peripheral, final @NonNull Map<BluetoothGattCharacteristic, UUError> failures, final @Nullable UUError error);
+}
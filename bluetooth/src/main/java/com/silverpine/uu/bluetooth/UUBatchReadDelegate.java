@@ -0,0 +1,21 @@
+package com.silverpine.uu.bluetooth;
+
+import com.silverpine.uu.core.UUError;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Interface for delivering the result of a batch characteristic read
+ */
+public interface UUBatchReadDelegate
+{
+    /**
+     * Callback invoked once every characteristic in the batch has been read or has failed.
+     *
+     * @param peripheral the peripheral being interacted with
+     * @param result per characteristic values and errors
+     * @param error an error if the batch could not be started
+     */
+    void onComplete(final @NonNull UUPeripheral peripheral, final @NonNull UUBatchReadResult result, final @Nullable UUError error);
+}
@@ -0,0 +1,136 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.silverpine.uu.core.UUError;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Values and errors from a batch read, in the order the characteristics were requested.  Each
+ * characteristic has either a value or an error.
+ */
+@SuppressWarnings("unused")
+public class UUBatchReadResult
+{
+    private final List<BluetoothGattCharacteristic> characteristics;
+    private final byte[][] values;
+    private final UUError[] errors;
+
+    UUBatchReadResult(final @NonNull List<BluetoothGattCharacteristic> characteristics)
+    {
+        this.characteristics = characteristics;
+        this.values = new byte[characteristics.size()][];
+        this.errors = new UUError[characteristics.size()];
+    }
+
+    void setValue(final int index, final @Nullable byte[] value)
+    {
+        values[index] = (value != null) ? value.clone() : null;
+    }
+
+    void setError(final int index, final @NonNull UUError error)
+    {
+        errors[index] = error;
+    }
+
+    public int size()
+    {
+        return characteristics.size();
+    }
+
+    public @NonNull BluetoothGattCharacteristic getCharacteristic(final int index)
+    {
+        return characteristics.get(index);
+    }
+
+    public @Nullable byte[] getValue(final int index)
+    {
+        return values[index];
+    }
+
+    public @Nullable UUError getError(final int index)
+    {
+        return errors[index];
+    }
+
+    public @Nullable byte[] getValue(final @NonNull UUID characteristicUuid)
+    {
+        int index = indexOf(characteristicUuid);
+        return (index >= 0) ? values[index] : null;
+    }
+
+    public @Nullable UUError getError(final @NonNull UUID characteristicUuid)
+    {
+        int index = indexOf(characteristicUuid);
+        return (index >= 0) ? errors[index] : null;
+    }
+
+    /**
+     * True if every characteristic was read without error.
+     */
+    public boolean isSuccess()
+    {
+        for (UUError error : errors)
+        {
+            if (error != null)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Values of the characteristics that were read successfully, keyed by UUID.
+     */
+    public @NonNull Map<UUID, byte[]> getValues()
+    {
+        LinkedHashMap<UUID, byte[]> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < values.length; i++)
+        {
+            if (errors[i] == null)
+            {
+                map.put(characteristics.get(i).getUuid(), values[i]);
+            }
+        }
+
+        return map;
+    }
+
+    public @NonNull Map<UUID, UUError> getErrors()
+    {
+        LinkedHashMap<UUID, UUError> map = new LinkedHashMap<>();
+
+        for (int i = 0; i < errors.length; i++)
+        {
+            if (errors[i] != null)
+            {
+                map.put(characteristics.get(i).getUuid(), errors[i]);
+            }
+        }
+
+        return map;
+    }
+
+    private int indexOf(final @NonNull UUID characteristicUuid)
+    {
+        for (int i = 0; i < characteristics.size(); i++)
+        {
+            if (characteristicUuid.equals(characteristics.get(i).getUuid()))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -204,6 +204,108 @@ public class UUBluetooth
         }
     }
 
+    /**
+     * Returns a developer friendly string for a BluetoothDevice.PHY_LE_* value
+     *
+     * @param phy the PHY
+     *
+     * @return a string
+     */
+    public static String phyToString(final int phy)
+    {
+        switch (phy)
+        {
+            case BluetoothDevice.PHY_LE_1M:
+                return "LE1M";
+
+            case BluetoothDevice.PHY_LE_2M:
+                return "LE2M";
+
+            case BluetoothDevice.PHY_LE_CODED:
+                return "LECoded";
+
+            default:
+                return String.format(Locale.US, "Unknown-%d", phy);
+        }
+    }
+
+    /**
+     * Returns a developer friendly string for a combination of BluetoothDevice.PHY_LE_*_MASK bits
+     *
+     * @param phyMask the PHY mask
+     *
+     * @return a comma separated string
+     */
+    public static String phyMaskToString(final int phyMask)
+    {
+        ArrayList<Object> parts = new ArrayList<>();
+
+        if (UUInteger.isBitSet(phyMask, BluetoothDevice.PHY_LE_1M_MASK))
+        {
+            parts.add("LE1M");
+        }
+
+        if (UUInteger.isBitSet(phyMask, BluetoothDevice.PHY_LE_2M_MASK))
+        {
+            parts.add("LE2M");
+        }
+
+        if (UUInteger.isBitSet(phyMask, BluetoothDevice.PHY_LE_CODED_MASK))
+        {
+            parts.add("LECoded");
+        }
+
+        return UUString.componentsJoinedByString(parts, ", ");
+    }
+
+    /**
+     * Converts a BluetoothDevice.PHY_LE_* value reported by the stack to its PHY_LE_*_MASK bit.
+     */
+    static int phyToMask(final int phy)
+    {
+        switch (phy)
+        {
+            case BluetoothDevice.PHY_LE_1M:
+                return BluetoothDevice.PHY_LE_1M_MASK;
+
+            case BluetoothDevice.PHY_LE_2M:
+                return BluetoothDevice.PHY_LE_2M_MASK;
+
+            case BluetoothDevice.PHY_LE_CODED:
+                return BluetoothDevice.PHY_LE_CODED_MASK;
+
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Whether the local adapter supports every PHY in a BluetoothDevice.PHY_LE_*_MASK value.
+     */
+    static boolean isPhySupported(final int phyMask)
+    {
+        try
+        {
+            BluetoothManager bluetoothManager = (BluetoothManager) requireApplicationContext().getSystemService(Context.BLUETOOTH_SERVICE);
+            BluetoothAdapter adapter = (bluetoothManager != null) ? bluetoothManager.getAdapter() : null;
+            if (adapter == null)
+            {
+                return false;
+            }
+
+            if (UUInteger.isBitSet(phyMask, BluetoothDevice.PHY_LE_2M_MASK) && !adapter.isLe2MPhySupported())
+            {
+                return false;
+            }
+
+            return !UUInteger.isBitSet(phyMask, BluetoothDevice.PHY_LE_CODED_MASK) || adapter.isLeCodedPhySupported();
+        }
+        catch (Exception ex)
+        {
+            return false;
+        }
+    }
+
     /**
      * Returns a developer friendly string for a BluetoothDevice.DEVICE_TYPE_* value
      *
@@ -545,6 +647,17 @@ public class UUBluetooth
         return Objects.requireNonNull(applicationContext, "applicationContext is null.  Must call UUBluetooth.init() on app startup");
     }
 
+    /**
+     * Number of peripherals currently tracked by the GATT registry.  Disconnected peripherals
+     * that sit idle are evicted over time.
+     *
+     * @return the registry size
+     */
+    public static int getGattRegistrySize()
+    {
+        return UUBluetoothGatt.getGattRegistrySize();
+    }
+
     public static boolean isBluetoothLeSupported()
     {
         try
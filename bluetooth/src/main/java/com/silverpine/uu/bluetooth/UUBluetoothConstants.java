@@ -608,6 +608,13 @@ public class UUBluetoothConstants
          */
         public static final UUID DATABASE_CHANGE_INCREMENT_UUID = UUBluetooth.shortCodeToUuid("2A99");
 
+        /**
+         * SpecificationName: Database Hash
+         * SpecificationType: org.bluetooth.characteristic.gatt.database_hash
+         * AssignedNumber: 0x2B2A
+         */
+        public static final UUID DATABASE_HASH_UUID = UUBluetooth.shortCodeToUuid("2B2A");
+
         /**
          * SpecificationName: Date of Birth
          * SpecificationType: org.bluetooth.characteristic.date_of_birth
@@ -1754,6 +1761,7 @@ public class UUBluetoothConstants
         BLUETOOTH_SPEC_NAMES.put(Characteristics.CYCLING_POWER_MEASUREMENT_UUID, "Cycling Power Measurement");
         BLUETOOTH_SPEC_NAMES.put(Characteristics.CYCLING_POWER_VECTOR_UUID, "Cycling Power Vector");
         BLUETOOTH_SPEC_NAMES.put(Characteristics.DATABASE_CHANGE_INCREMENT_UUID, "Database Change Increment");
+        BLUETOOTH_SPEC_NAMES.put(Characteristics.DATABASE_HASH_UUID, "Database Hash");
         BLUETOOTH_SPEC_NAMES.put(Characteristics.DATE_OF_BIRTH_UUID, "Date of Birth");
         BLUETOOTH_SPEC_NAMES.put(Characteristics.DATE_OF_THRESHOLD_ASSESSMENT_UUID, "Date of Threshold Assessment");
         BLUETOOTH_SPEC_NAMES.put(Characteristics.DATE_TIME_UUID, "Date Time");
@@ -1,9 +1,12 @@
 package com.silverpine.uu.bluetooth;
 
 import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
 
 import com.silverpine.uu.core.UUError;
 
+import java.util.Map;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -19,6 +22,7 @@ class UUBluetoothError
     public static final String USER_INFO_KEY_METHOD_NAME = "methodName";
     public static final String USER_INFO_KEY_MESSAGE = "message";
     public static final String USER_INFO_KEY_GATT_STATUS = "gattStatus";
+    public static final String USER_INFO_KEY_FAILED_CHARACTERISTICS = "failedCharacteristics";
     public static final String DOMAIN = "UUBluetoothError";
 
     /**
@@ -162,4 +166,32 @@ class UUBluetoothError
             return null;
         }
     }
+
+    /**
+     * Wrapper method to return a single error for a batch operation in which some
+     * characteristics failed.  Every failed characteristic UUID is listed with its error code.
+     *
+     *  @param method the method name
+     *  @param failures the characteristics that failed and why
+     *
+     * @return a UUBluetoothError object
+     */
+    public static @NonNull UUError batchFailedError(@NonNull final String method, @NonNull final Map<BluetoothGattCharacteristic, UUError> failures)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<BluetoothGattCharacteristic, UUError> entry : failures.entrySet())
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(", ");
+            }
+
+            sb.append(entry.getKey().getUuid()).append('=').append(entry.getValue().getCode());
+        }
+
+        UUError err = operationFailedError(method);
+        err.addUserInfo(USER_INFO_KEY_MESSAGE, failures.size() + " characteristics failed");
+        err.addUserInfo(USER_INFO_KEY_FAILED_CHARACTERISTICS, sb.toString());
+        return err;
+    }
 }
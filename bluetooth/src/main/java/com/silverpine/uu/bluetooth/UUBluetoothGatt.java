@@ -2,22 +2,35 @@ package com.silverpine.uu.bluetooth;
 
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
 import android.content.Context;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.LongSparseArray;
 
 import com.silverpine.uu.core.UUError;
 import com.silverpine.uu.core.UUString;
 import com.silverpine.uu.core.UUThread;
-import com.silverpine.uu.core.UUTimer;
 import com.silverpine.uu.logging.UULog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -27,49 +40,86 @@ import androidx.annotation.Nullable;
  */
 class UUBluetoothGatt
 {
-    private static boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
 
     // Internal Constants
-    private static final String CONNECT_WATCHDOG_BUCKET = "UUBluetoothConnectWatchdogBucket";
-    private static final String SERVICE_DISCOVERY_WATCHDOG_BUCKET = "UUBluetoothServiceDiscoveryWatchdogBucket";
-    private static final String CHARACTERISTIC_NOTIFY_STATE_WATCHDOG_BUCKET = "UUBluetoothCharacteristicNotifyStateWatchdogBucket";
-    private static final String READ_CHARACTERISTIC_WATCHDOG_BUCKET = "UUBluetoothReadCharacteristicValueWatchdogBucket";
-    private static final String WRITE_CHARACTERISTIC_WATCHDOG_BUCKET = "UUBluetoothWriteCharacteristicValueWatchdogBucket";
-    private static final String READ_DESCRIPTOR_WATCHDOG_BUCKET = "UUBluetoothReadDescriptorValueWatchdogBucket";
-    private static final String WRITE_DESCRIPTOR_WATCHDOG_BUCKET = "UUBluetoothWriteDescriptorValueWatchdogBucket";
-    private static final String READ_RSSI_WATCHDOG_BUCKET = "UUBluetoothReadRssiWatchdogBucket";
-    private static final String POLL_RSSI_BUCKET = "UUBluetoothPollRssiBucket";
-    private static final String DISCONNECT_WATCHDOG_BUCKET = "UUBluetoothDisconnectWatchdogBucket";
-    private static final String REQUEST_MTU_WATCHDOG_BUCKET = "UUBluetoothRequestWatchdogBucket";
+    private static final long ADAPTIVE_PRIORITY_CHECK_INTERVAL = 1000;
 
     private static final int TIMEOUT_DISABLED = -1;
 
     private final Context context;
     private final UUPeripheral peripheral;
-    private BluetoothGatt bluetoothGatt;
-    private final BluetoothGattCallback bluetoothGattCallback;
+    private UUGattTransport bluetoothGatt;
+    private final UUGattTransport.Callback bluetoothGattCallback;
+    private volatile Handler gattHandler;
 
     private UUConnectionDelegate connectionDelegate;
     private UUPeripheralErrorDelegate serviceDiscoveryDelegate;
     private UUPeripheralErrorDelegate readRssiDelegate;
     private UUPeripheralErrorDelegate requestMtuDelegate;
+    private UUPeripheralErrorDelegate setPhyDelegate;
     private UUPeripheralDelegate pollRssiDelegate;
+    private UUPeripheralErrorDelegate reliableWriteDelegate;
 
     private UUError disconnectError;
 
-    private final HashMap<String, UUCharacteristicDelegate> readCharacteristicDelegates = new HashMap<>();
-    private final HashMap<String, UUCharacteristicDelegate> writeCharacteristicDelegates = new HashMap<>();
-    private final HashMap<String, UUCharacteristicDelegate> characteristicChangedDelegates = new HashMap<>();
-    private final HashMap<String, UUCharacteristicDelegate> setNotifyDelegates = new HashMap<>();
-    private final HashMap<String, UUDescriptorDelegate> readDescriptorDelegates = new HashMap<>();
-    private final HashMap<String, UUDescriptorDelegate> writeDescriptorDelegates = new HashMap<>();
+    private final UUWatchdogScheduler watchdogScheduler = new UUWatchdogScheduler();
+    private final UUWatchdogScheduler.Watchdog connectWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog disconnectWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog serviceDiscoveryWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog readRssiWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog requestMtuWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog setPhyWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog reliableWriteWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog adaptivePriorityTimer = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog pollRssiTimer = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog gattRecoveryTimer = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog batchReadWatchdog = watchdogScheduler.create();
+    private final UUWatchdogScheduler.Watchdog batchNotifyWatchdog = watchdogScheduler.create();
+    private final LongSparseArray<UUWatchdogScheduler.Watchdog> readCharacteristicWatchdogs = new LongSparseArray<>();
+    private final LongSparseArray<UUWatchdogScheduler.Watchdog> writeCharacteristicWatchdogs = new LongSparseArray<>();
+    private final LongSparseArray<UUWatchdogScheduler.Watchdog> setNotifyWatchdogs = new LongSparseArray<>();
+    private final HashMap<UUAttributeKey.Descriptor, UUWatchdogScheduler.Watchdog> readDescriptorWatchdogs = new HashMap<>();
+    private final HashMap<UUAttributeKey.Descriptor, UUWatchdogScheduler.Watchdog> writeDescriptorWatchdogs = new HashMap<>();
+
+    private final LongSparseArray<UUCharacteristicDelegate> readCharacteristicDelegates = new LongSparseArray<>();
+    private final LongSparseArray<UUCharacteristicDelegate> writeCharacteristicDelegates = new LongSparseArray<>();
+    private final LongSparseArray<UUCharacteristicDelegate> setNotifyDelegates = new LongSparseArray<>();
+    private final HashMap<UUAttributeKey.Descriptor, UUDescriptorDelegate> readDescriptorDelegates = new HashMap<>();
+    private final HashMap<UUAttributeKey.Descriptor, UUDescriptorDelegate> writeDescriptorDelegates = new HashMap<>();
+    // Replaced as a whole whenever subscriptions change so that lookups on the notification path
+    // need no locking
+    private volatile LongSparseArray<NotificationSubscribers> notificationSubscribers = new LongSparseArray<>();
+
+    private volatile UUNotificationDispatcher notificationDispatcher;
 
     private long disconnectTimeout = 0;
+    private volatile long lastAccessTime;
+    private volatile long lastActivityTime;
+
+    private boolean connectGattAutoFlag;
+    private final UUPeripheralSettings settings;
+    private final UUGattRecoveryMetrics.Recorder gattRecoveryRecorder;
+    private final UUGattLatencyStats latencyStats;
+    private int gattErrorCount;
+    private long gattErrorStartTime;
+    private volatile BatchRead batchRead;
+    private volatile BatchNotify batchNotify;
+    private final UUGattIndex gattIndex = new UUGattIndex();
+
+    private long droppedNotificationCount = 0;
+
+    // Touched from the caller, GATT and watchdog threads
+    private volatile UUAdaptiveConnectionPriority adaptivePriority;
+    private final AtomicInteger requestedAdaptivePriority = new AtomicInteger(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
 
     UUBluetoothGatt(@NonNull final Context context, @NonNull final UUPeripheral peripheral)
     {
         this.context = context;
         this.peripheral = peripheral;
+        settings = UUPeripheralSettings.forAddress(peripheral.getAddress());
+        gattRecoveryRecorder = settings.getGattRecoveryRecorder();
+        latencyStats = settings.getLatencyStats();
         bluetoothGattCallback = new UUBluetoothGattCallback();
     }
 
@@ -80,55 +130,213 @@ class UUBluetoothGatt
 
     private boolean isConnectWatchdogActive()
     {
-        UUTimer t = UUTimer.findActiveTimer(connectWatchdogTimerId());
-        return (t != null);
+        return connectWatchdog.isActive();
     }
 
     void connect(
         final boolean connectGattAutoFlag,
         final long timeout,
         final long disconnectTimeout,
+        final @Nullable UULinkProfile linkProfile,
         final @NonNull UUConnectionDelegate delegate)
     {
-        final String timerId = connectWatchdogTimerId();
+        final UUWatchdogScheduler.Watchdog watchdog = connectWatchdog;
+        final long startTime = UUGattLatencyStats.now();
 
         connectionDelegate = new UUConnectionDelegate()
         {
             @Override
             public void onConnected(@NonNull UUPeripheral peripheral)
             {
-                debugLog("connect", "Connected to: " + peripheral);
-                UUTimer.cancelActiveTimer(timerId);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("connect", "Connected to: " + peripheral);
+                }
+
+                watchdog.cancel();
+                latencyStats.record(UUGattLatencyStats.Operation.CONNECT, startTime);
                 disconnectError = null;
-                delegate.onConnected(peripheral);
+
+                if (linkProfile != null)
+                {
+                    applyLinkProfile(linkProfile, () -> delegate.onConnected(peripheral));
+                }
+                else
+                {
+                    delegate.onConnected(peripheral);
+                }
             }
 
             @Override
             public void onDisconnected(@NonNull UUPeripheral peripheral, @Nullable UUError error)
             {
-                debugLog("connect", "Disconnected from: " + peripheral + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("connect", "Disconnected from: " + peripheral + ", error: " + error);
+                }
+
                 cleanupAfterDisconnect();
                 delegate.onDisconnected(peripheral, error);
             }
         };
 
-        UUTimer.startTimer(timerId, timeout, peripheral,
-        (timer, userInfo) -> {
-            debugLog("connect", "Connect timeout: " + peripheral);
+        watchdog.start(timeout, () ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("connect", "Connect timeout: " + peripheral);
+            }
 
             disconnect(UUBluetoothError.timeoutError());
         });
 
         this.disconnectTimeout = disconnectTimeout;
-        UUThread.runOnMainThread(() ->
+
+        if (gattHandler == null)
+        {
+            gattHandler = UUGattThread.acquireHandler(peripheral.getAddress());
+        }
+
+        this.connectGattAutoFlag = connectGattAutoFlag;
+        gattErrorCount = 0;
+        gattErrorStartTime = 0;
+
+        runOnGattThread(() ->
         {
-            debugLog("connect", "Connecting to: " + peripheral + ", gattAuto: " + connectGattAutoFlag);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("connect", "Connecting to: " + peripheral + ", gattAuto: " + connectGattAutoFlag + ", handler: " + (gattHandler != null));
+            }
 
             disconnectError = UUBluetoothError.connectionFailedError();
-            bluetoothGatt = peripheral.getBluetoothDevice().connectGatt(context, connectGattAutoFlag, bluetoothGattCallback, BluetoothDevice.TRANSPORT_LE);
+            openGatt();
         });
     }
 
+    private void openGatt()
+    {
+        bluetoothGatt = transportFactory.connect(context, peripheral, connectGattAutoFlag, gattHandler, bluetoothGattCallback);
+    }
+
+    /**
+     * Replaces how connections are opened, for tests.  Pass null to go back to the Bluetooth stack.
+     */
+    static void setTransportFactory(final @Nullable UUGattTransport.Factory factory)
+    {
+        transportFactory = (factory != null) ? factory : UUPlatformGattTransport.FACTORY;
+    }
+
+    @NonNull
+    UUGattLatencyStats getLatencyStats()
+    {
+        return latencyStats;
+    }
+
+    void setValueCache(final @Nullable UUCharacteristicValueCache cache)
+    {
+        settings.setValueCache(cache);
+    }
+
+    @Nullable
+    UUCharacteristicValueCache getValueCache()
+    {
+        return settings.getValueCache();
+    }
+
+    void setGattRecoveryStrategy(final @NonNull UUGattRecoveryStrategy strategy)
+    {
+        settings.setGattRecoveryStrategy(strategy);
+    }
+
+    @NonNull
+    UUGattRecoveryMetrics getGattRecoveryMetrics()
+    {
+        return gattRecoveryRecorder.snapshot();
+    }
+
+    // Called on the GATT thread when a connect attempt fails with an error status.  Returns true
+    // if recovery is under way, false if the strategy gave up and the failure should be reported.
+    private boolean recoverFromGattError(final int status)
+    {
+        long now = SystemClock.elapsedRealtime();
+        if (gattErrorCount == 0)
+        {
+            gattErrorStartTime = now;
+        }
+
+        ++gattErrorCount;
+
+        UUGattRecoveryStrategy.Action action = settings.getGattRecoveryStrategy().nextAction(gattErrorCount, status);
+        gattRecoveryRecorder.recordFailure(status, action.getType());
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("recoverFromGattError", "Failure " + gattErrorCount + ", status: " + statusLog(status) + ", action: " + action);
+        }
+
+        switch (action.getType())
+        {
+            case RECONNECT:
+                gattRecoveryTimer.start(action.getDelay(), () -> runOnGattThread(this::reconnectGatt));
+                return true;
+
+            case RECREATE:
+                gattRecoveryTimer.start(action.getDelay(), () -> runOnGattThread(() -> recreateGatt(action.isRefreshCache())));
+                return true;
+
+            default:
+                gattRecoveryRecorder.recordGaveUp();
+                gattErrorCount = 0;
+                return false;
+        }
+    }
+
+    private void recordGattRecoverySuccess()
+    {
+        if (gattErrorCount > 0)
+        {
+            gattRecoveryRecorder.recordRecovered(SystemClock.elapsedRealtime() - gattErrorStartTime);
+            gattErrorCount = 0;
+        }
+    }
+
+    private void recreateGatt(final boolean refreshCache)
+    {
+        if (!isConnectWatchdogActive())
+        {
+            debugLog("recreateGatt", "Connect no longer in progress, not recreating");
+            return;
+        }
+
+        if (refreshCache)
+        {
+            refreshGattCache();
+        }
+
+        closeGatt();
+        openGatt();
+    }
+
+    private void refreshGattCache()
+    {
+        try
+        {
+            if (bluetoothGatt != null)
+            {
+                boolean result = bluetoothGatt.refresh();
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("refreshGattCache", "refresh returned " + result);
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            logException("refreshGattCache", ex);
+        }
+    }
+
     void disconnect(@Nullable final UUError error)
     {
         disconnectError = error;
@@ -137,25 +345,29 @@ class UUBluetoothGatt
             disconnectError = UUBluetoothError.success();
         }
 
-        String timerId = disconnectWatchdogTimerId();
+        UUWatchdogScheduler.Watchdog watchdog = disconnectWatchdog;
 
         final long timeout = disconnectTimeout;
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("disconnect", "Disconnect timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("disconnect", "Disconnect timeout: " + peripheral);
+                }
+
                 notifyDisconnected(error);
 
                 // Just in case the timeout fires and a real disconnect is needed, this is the last
                 // ditch effort to close the connection
-                disconnectGattOnMainThread();
+                disconnectGattOnGattThread();
             }
         });
 
-        disconnectGattOnMainThread();
+        disconnectGattOnGattThread();
     }
 
     private void clearDelegates()
@@ -164,31 +376,48 @@ class UUBluetoothGatt
         serviceDiscoveryDelegate = null;
         readRssiDelegate = null;
         requestMtuDelegate = null;
+        setPhyDelegate = null;
         pollRssiDelegate = null;
+        reliableWriteDelegate = null;
         readCharacteristicDelegates.clear();
         writeCharacteristicDelegates.clear();
-        characteristicChangedDelegates.clear();
         setNotifyDelegates.clear();
         readDescriptorDelegates.clear();
         writeDescriptorDelegates.clear();
+        notificationSubscribers = new LongSparseArray<>();
+        batchRead = null;
+        batchNotify = null;
     }
 
-    private boolean requestHighPriority()
+    private boolean requestConnectionPriority(final int connectionPriority)
     {
         try
         {
             if (bluetoothGatt != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
             {
-                int connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
-                debugLog("requestHighPriority", "Requesting connection priority " + connectionPriority);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("requestConnectionPriority", "Requesting connection priority " + connectionPriority);
+                }
+
                 boolean result = bluetoothGatt.requestConnectionPriority(connectionPriority);
-                debugLog("requestHighPriority", "requestConnectionPriority returned " + result);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("requestConnectionPriority", "requestConnectionPriority returned " + result);
+                }
+
+                if (result)
+                {
+                    peripheral.setConnectionPriority(connectionPriority);
+                }
+
                 return result;
             }
         }
         catch (Exception ex)
         {
-            logException("requestHighPriority", ex);
+            logException("requestConnectionPriority", ex);
         }
 
         return false;
@@ -196,35 +425,191 @@ class UUBluetoothGatt
 
     void requestHighPriority(@NonNull final UUPeripheralBoolDelegate delegate)
     {
-        UUThread.runOnMainThread(new Runnable()
+        requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH, delegate);
+    }
+
+    void requestConnectionPriority(final int connectionPriority, @NonNull final UUPeripheralBoolDelegate delegate)
+    {
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
             {
-                boolean result = requestHighPriority();
+                boolean result = requestConnectionPriority(connectionPriority);
                 notifyBoolResult(delegate, result);
             }
         });
     }
 
+    void setPreferredPhy(
+            final long timeout,
+            final int txPhy,
+            final int rxPhy,
+            final int phyOptions,
+            @NonNull final UUPeripheralErrorDelegate delegate)
+    {
+        final UUWatchdogScheduler.Watchdog watchdog = setPhyWatchdog;
+
+        setPhyDelegate = (peripheral, error) ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("setPreferredPhy", "Set preferred PHY complete: " + peripheral + ", error: " + error);
+            }
+
+            watchdog.cancel();
+            delegate.onComplete(peripheral, error);
+        };
+
+        watchdog.start(timeout, () ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("setPreferredPhy", "Set preferred PHY timeout: " + peripheral);
+            }
+
+            notifySetPhyComplete(UUBluetoothError.timeoutError());
+        });
+
+        runOnGattThread(() ->
+        {
+            if (bluetoothGatt == null)
+            {
+                debugLog("setPreferredPhy", "bluetoothGatt is null!");
+                notifySetPhyComplete(UUBluetoothError.notConnectedError());
+                return;
+            }
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("setPreferredPhy", "Requesting tx: " + UUBluetooth.phyMaskToString(txPhy) + ", rx: " + UUBluetooth.phyMaskToString(rxPhy) + " for: " + peripheral);
+            }
+
+            bluetoothGatt.setPreferredPhy(txPhy, rxPhy, phyOptions);
+
+            // wait for delegate or timeout
+        });
+    }
+
+    /**
+     * Negotiates connection priority, MTU and PHY in sequence.  Each step is best effort, failures
+     * are logged and the next step is attempted.
+     */
+    private void applyLinkProfile(@NonNull final UULinkProfile profile, @NonNull final Runnable completion)
+    {
+        final long timeout = profile.getStepTimeout();
+
+        Runnable negotiatePhy = () ->
+        {
+            final int preferredPhy = profile.getPreferredPhy();
+            final int fallbackPhy = profile.getFallbackPhy();
+
+            if (preferredPhy == UULinkProfile.DISABLED)
+            {
+                completion.run();
+                return;
+            }
+
+            Runnable fallback = () ->
+            {
+                if (fallbackPhy == UULinkProfile.DISABLED || fallbackPhy == preferredPhy || isOnPhy(fallbackPhy) || !UUBluetooth.isPhySupported(fallbackPhy))
+                {
+                    completion.run();
+                    return;
+                }
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("applyLinkProfile", "Preferred PHY not in use, falling back to " + UUBluetooth.phyMaskToString(fallbackPhy));
+                }
+
+                setPreferredPhy(timeout, fallbackPhy, fallbackPhy, BluetoothDevice.PHY_OPTION_NO_PREFERRED, (peripheral1, error1) -> completion.run());
+            };
+
+            if (!UUBluetooth.isPhySupported(preferredPhy))
+            {
+                fallback.run();
+                return;
+            }
+
+            // The stack usually reports success with whatever PHY it settled on, so the PHY from
+            // onPhyUpdate is checked rather than just the status
+            setPreferredPhy(timeout, preferredPhy, preferredPhy, BluetoothDevice.PHY_OPTION_NO_PREFERRED, (peripheral, error) ->
+            {
+                if (error == null && isOnPhy(preferredPhy))
+                {
+                    completion.run();
+                    return;
+                }
+
+                fallback.run();
+            });
+        };
+
+        Runnable negotiateMtu = () ->
+        {
+            if (profile.getMtuSize() == UULinkProfile.DISABLED)
+            {
+                negotiatePhy.run();
+                return;
+            }
+
+            requestMtuSize(timeout, profile.getMtuSize(), (peripheral, error) -> negotiatePhy.run());
+        };
+
+        if (profile.getConnectionPriority() == UULinkProfile.DISABLED)
+        {
+            negotiateMtu.run();
+            return;
+        }
+
+        requestConnectionPriority(profile.getConnectionPriority(), (peripheral, result) -> negotiateMtu.run());
+    }
+
+    // Whether both directions of the link use a PHY in the mask
+    private boolean isOnPhy(final int phyMask)
+    {
+        Integer txPhy = peripheral.getTxPhy();
+        Integer rxPhy = peripheral.getRxPhy();
+
+        return (txPhy != null && rxPhy != null &&
+                (UUBluetooth.phyToMask(txPhy) & phyMask) != 0 &&
+                (UUBluetooth.phyToMask(rxPhy) & phyMask) != 0);
+    }
+
     void requestMtuSize(final long timeout, final int mtuSize, @NonNull final UUPeripheralErrorDelegate delegate)
     {
-        final String timerId = requestMtuWatchdogTimerId();
+        final UUWatchdogScheduler.Watchdog watchdog = requestMtuWatchdog;
+        final long startTime = UUGattLatencyStats.now();
 
         requestMtuDelegate = (peripheral, error) ->
         {
-            debugLog("requestMtuSize", "Request MTU Size complete: " + peripheral + ", error: " + error);
-            UUTimer.cancelActiveTimer(timerId);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("requestMtuSize", "Request MTU Size complete: " + peripheral + ", error: " + error);
+            }
+
+            watchdog.cancel();
+
+            if (error == null)
+            {
+                latencyStats.record(UUGattLatencyStats.Operation.REQUEST_MTU, startTime);
+            }
+
             delegate.onComplete(peripheral, error);
         };
 
-        UUTimer.startTimer(timerId, timeout, peripheral, (timer, userInfo) ->
+        watchdog.start(timeout, () ->
         {
-            debugLog("requestMtuSize", "Request MTU Size timeout: " + peripheral);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("requestMtuSize", "Request MTU Size timeout: " + peripheral);
+            }
+
             notifyReqeustMtuComplete(UUBluetoothError.timeoutError());
         });
 
-        UUThread.runOnMainThread(() ->
+        runOnGattThread(() ->
         {
             if (bluetoothGatt == null)
             {
@@ -233,9 +618,17 @@ class UUBluetoothGatt
                 return;
             }
 
-            debugLog("requestMtuSize", "Reading RSSI for: " + peripheral);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("requestMtuSize", "Reading RSSI for: " + peripheral);
+            }
+
             boolean ok = bluetoothGatt.requestMtu(mtuSize);
-            debugLog("requestMtuSize", "returnCode: " + ok);
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("requestMtuSize", "returnCode: " + ok);
+            }
 
             if (!ok)
             {
@@ -247,35 +640,61 @@ class UUBluetoothGatt
         });
     }
 
+    /**
+     * Clears the platform's cached GATT database and discovers services again, for when the
+     * peripheral's database has changed since it was cached.
+     */
+    void refreshServices(
+            final long timeout,
+            final @NonNull UUPeripheralErrorDelegate delegate)
+    {
+        runOnGattThread(this::refreshGattCache);
+        discoverServices(timeout, delegate);
+    }
+
     void discoverServices(
             final long timeout,
             final @NonNull UUPeripheralErrorDelegate delegate)
     {
-        final String timerId = serviceDiscoveryWatchdogTimerId();
+        final UUWatchdogScheduler.Watchdog watchdog = serviceDiscoveryWatchdog;
+        final long startTime = UUGattLatencyStats.now();
 
         serviceDiscoveryDelegate = new UUPeripheralErrorDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @Nullable UUError error)
             {
-                debugLog("discoverServices", "Service Discovery complete: " + peripheral + ", error: " + error);
-                UUTimer.cancelActiveTimer(timerId);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "Service Discovery complete: " + peripheral + ", error: " + error);
+                }
+
+                watchdog.cancel();
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.DISCOVER_SERVICES, startTime);
+                }
+
                 delegate.onComplete(peripheral, error);
             }
         };
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("discoverServices", "Service Discovery timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "Service Discovery timeout: " + peripheral);
+                }
 
                 disconnect(UUBluetoothError.timeoutError());
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -287,9 +706,17 @@ class UUBluetoothGatt
                     return;
                 }
 
-                debugLog("discoverServices", "Discovering services for: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "Discovering services for: " + peripheral);
+                }
+
                 boolean ok = bluetoothGatt.discoverServices();
-                debugLog("discoverServices", "returnCode: " + ok);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "returnCode: " + ok);
+                }
 
                 if (!ok)
                 {
@@ -307,34 +734,72 @@ class UUBluetoothGatt
             final long timeout,
             final @NonNull UUCharacteristicDelegate delegate)
     {
-        final String timerId = readCharacteristicWatchdogTimerId(characteristic);
+        if (readCachedValue(characteristic))
+        {
+            notifyCharacteristicDelegate(delegate, characteristic, null);
+            return;
+        }
+
+        final UUWatchdogScheduler.Watchdog watchdog = watchdogFor(readCharacteristicWatchdogs, characteristic);
+        final long startTime = UUGattLatencyStats.now();
 
         UUCharacteristicDelegate readCharacteristicDelegate = new UUCharacteristicDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattCharacteristic characteristic, @Nullable UUError error)
             {
-                debugLog("readCharacteristic", "Read characteristic complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
-                UUTimer.cancelActiveTimer(timerId);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readCharacteristic", "Read characteristic complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
+                }
+
+                watchdog.cancel();
                 removeReadCharacteristicDelegate(characteristic);
+                recordAdaptiveTraffic(characteristic.getValue());
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.READ_CHARACTERISTIC, startTime);
+                    cacheValue(characteristic);
+                }
+
                 delegate.onComplete(peripheral, characteristic, error);
             }
         };
 
         registerReadCharacteristicDelegate(characteristic, readCharacteristicDelegate);
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
+            private int retries = 0;
+
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("readCharacteristic", "Read characteristic timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readCharacteristic", "Read characteristic timeout: " + peripheral);
+                }
 
-                disconnect(UUBluetoothError.timeoutError());
+                switch (resolveTimeoutAction(UUTimeoutPolicy.Operation.READ_CHARACTERISTIC, retries++))
+                {
+                    case RETRY:
+                        watchdog.start(timeout, this);
+                        retryOnGattThread("readCharacteristic", () -> bluetoothGatt.readCharacteristic(characteristic));
+                        break;
+
+                    case FAIL_OPERATION:
+                        notifyCharacteristicRead(characteristic, UUBluetoothError.timeoutError());
+                        break;
+
+                    default:
+                        disconnect(UUBluetoothError.timeoutError());
+                        break;
+                }
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -346,11 +811,17 @@ class UUBluetoothGatt
                     return;
                 }
 
-                debugLog("readCharacteristic", "characteristic: " + characteristic.getUuid());
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readCharacteristic", "characteristic: " + characteristic.getUuid());
+                }
 
                 boolean success = bluetoothGatt.readCharacteristic(characteristic);
 
-                debugLog("readCharacteristic", "readCharacteristic returned " + success);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readCharacteristic", "readCharacteristic returned " + success);
+                }
 
                 if (!success)
                 {
@@ -360,39 +831,384 @@ class UUBluetoothGatt
         });
     }
 
-    void readDescriptor(
-            final @NonNull BluetoothGattDescriptor descriptor,
+    /**
+     * Reads characteristics back to back.  Each read is issued from the GATT thread as soon as
+     * the previous one completes, with a single watchdog re-armed per read, and the delegate is
+     * invoked once with every value and error.  A read that times out is likely still outstanding
+     * in the stack, so the batch ends there and it and every remaining item get a timeout error.
+     */
+    void readCharacteristics(
+            final @NonNull List<BluetoothGattCharacteristic> characteristics,
             final long timeout,
-            final @NonNull UUDescriptorDelegate delegate)
+            final @NonNull UUBatchReadDelegate delegate)
     {
-        final String timerId = readDescritporWatchdogTimerId(descriptor);
+        final BatchRead batch = new BatchRead(new ArrayList<>(characteristics), timeout, delegate);
 
-        UUDescriptorDelegate readDescriptorDelegate = new UUDescriptorDelegate()
+        runOnGattThread(() ->
         {
-            @Override
-            public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattDescriptor descriptor, @Nullable UUError error)
+            if (batchRead != null)
             {
-                debugLog("readDescriptor", "Read descriptor complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(descriptor.getValue()));
-                removeReadDescriptorDelegate(descriptor);
-                UUTimer.cancelActiveTimer(timerId);
-                delegate.onComplete(peripheral, descriptor, error);
+                debugLog("readCharacteristics", "Batch read already in progress");
+                deliverCallback("readCharacteristics", () -> delegate.onComplete(peripheral, batch.result, UUBluetoothError.preconditionFailedError("Batch read already in progress")));
+                return;
             }
-        };
-
-        registerReadDescriptorDelegate(descriptor, readDescriptorDelegate);
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+            if (bluetoothGatt == null)
+            {
+                debugLog("readCharacteristics", "bluetoothGatt is null!");
+                deliverCallback("readCharacteristics", () -> delegate.onComplete(peripheral, batch.result, UUBluetoothError.notConnectedError()));
+                return;
+            }
+
+            batchRead = batch;
+            issueNextBatchRead(batch);
+        });
+    }
+
+    // Must be called on the GATT thread
+    private void issueNextBatchRead(final @NonNull BatchRead batch)
+    {
+        while (batch.index < batch.characteristics.size())
+        {
+            final int index = batch.index;
+            BluetoothGattCharacteristic characteristic = batch.characteristics.get(index);
+
+            if (readCachedValue(characteristic))
+            {
+                batch.result.setValue(index, characteristic.getValue());
+                ++batch.index;
+                continue;
+            }
+
+            if (bluetoothGatt == null)
+            {
+                batch.result.setError(index, UUBluetoothError.notConnectedError());
+                ++batch.index;
+                continue;
+            }
+
+            batch.startTime = UUGattLatencyStats.now();
+            batchReadWatchdog.start(batch.timeout, () -> runOnGattThread(() -> handleBatchReadTimeout(batch, index)));
+
+            if (bluetoothGatt.readCharacteristic(characteristic))
+            {
+                return;
+            }
+
+            batchReadWatchdog.cancel();
+            batch.result.setError(index, UUBluetoothError.operationFailedError("readCharacteristic"));
+            ++batch.index;
+        }
+
+        finishBatchRead(batch);
+    }
+
+    // Returns true if the read belonged to the active batch
+    private boolean handleBatchReadResponse(final @NonNull BluetoothGattCharacteristic characteristic, final int status)
+    {
+        BatchRead batch = batchRead;
+        if (batch == null || batch.index >= batch.characteristics.size() || batch.characteristics.get(batch.index) != characteristic)
+        {
+            return false;
+        }
+
+        batchReadWatchdog.cancel();
+
+        UUError error = UUBluetoothError.gattStatusError("onCharacteristicRead", status);
+        if (error != null)
+        {
+            batch.result.setError(batch.index, error);
+        }
+        else
+        {
+            batch.result.setValue(batch.index, characteristic.getValue());
+            latencyStats.record(UUGattLatencyStats.Operation.READ_CHARACTERISTIC, batch.startTime);
+            cacheValue(characteristic);
+            recordAdaptiveTraffic(characteristic.getValue());
+        }
+
+        ++batch.index;
+        runOnGattThread(() -> issueNextBatchRead(batch));
+        return true;
+    }
+
+    private void handleBatchReadTimeout(final @NonNull BatchRead batch, final int index)
+    {
+        if (batchRead != batch || batch.index != index)
+        {
+            return;
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("readCharacteristics", "Read timeout for item " + index + ", ending batch: " + peripheral);
+        }
+
+        UUError error = UUBluetoothError.timeoutError();
+        for (int i = index; i < batch.characteristics.size(); i++)
+        {
+            batch.result.setError(i, error);
+        }
+
+        batch.index = batch.characteristics.size();
+        finishBatchRead(batch);
+    }
+
+    private void finishBatchRead(final @NonNull BatchRead batch)
+    {
+        if (batchRead == batch)
+        {
+            batchRead = null;
+        }
+
+        deliverCallback("readCharacteristics", () -> batch.delegate.onComplete(peripheral, batch.result, null));
+    }
+
+    /**
+     * Enables or disables notifications for several characteristics.  Subscribers are updated up
+     * front, characteristics whose CCCD is already in the desired state are skipped, and the
+     * remaining CCCD writes are issued back to back from the GATT thread.  The delegate is invoked
+     * once with any per characteristic failures.  A write timeout ends the batch, and the timed
+     * out characteristic and all remaining ones are reported with a timeout error.
+     */
+    void setNotifyStates(
+            final @NonNull List<BluetoothGattCharacteristic> characteristics,
+            final boolean enabled,
+            final long timeout,
+            final @Nullable UUCharacteristicDelegate notifyDelegate,
+            final @NonNull UUBatchNotifyDelegate delegate)
+    {
+        runOnGattThread(() ->
+        {
+            if (batchNotify != null)
+            {
+                debugLog("setNotifyStates", "Batch notify already in progress");
+                deliverCallback("setNotifyStates", () -> delegate.onComplete(peripheral, Collections.emptyMap(), UUBluetoothError.preconditionFailedError("Batch notify already in progress")));
+                return;
+            }
+
+            if (bluetoothGatt == null)
+            {
+                debugLog("setNotifyStates", "bluetoothGatt is null!");
+                deliverCallback("setNotifyStates", () -> delegate.onComplete(peripheral, Collections.emptyMap(), UUBluetoothError.notConnectedError()));
+                return;
+            }
+
+            BatchNotify batch = new BatchNotify(enabled, timeout, notifyDelegate, delegate);
+
+            for (BluetoothGattCharacteristic characteristic : characteristics)
+            {
+                boolean needsWrite;
+                if (enabled)
+                {
+                    needsWrite = addNotificationSubscriber(characteristic, notifyDelegate, null);
+                }
+                else if (notifyDelegate != null)
+                {
+                    needsWrite = removeNotificationSubscriber(characteristic, notifyDelegate, null);
+                }
+                else
+                {
+                    removeAllNotificationSubscribers(characteristic);
+                    needsWrite = true;
+                }
+
+                if (!needsWrite)
+                {
+                    continue;
+                }
+
+                BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUBluetoothConstants.Descriptors.CLIENT_CHARACTERISTIC_CONFIGURATION_UUID);
+                if (descriptor == null)
+                {
+                    failBatchNotifyItem(batch, characteristic, UUBluetoothError.operationFailedError("getDescriptor"));
+                }
+                else if (!bluetoothGatt.setCharacteristicNotification(characteristic, enabled))
+                {
+                    failBatchNotifyItem(batch, characteristic, UUBluetoothError.operationFailedError("setCharacteristicNotification"));
+                }
+                else
+                {
+                    batch.descriptors.add(descriptor);
+                }
+            }
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("setNotifyStates", "Writing " + batch.descriptors.size() + " of " + characteristics.size() + " CCCDs, enabled: " + enabled);
+            }
+
+            batchNotify = batch;
+            issueNextBatchNotify(batch);
+        });
+    }
+
+    // Must be called on the GATT thread
+    private void issueNextBatchNotify(final @NonNull BatchNotify batch)
+    {
+        byte[] data = batch.enabled ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE : BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE;
+
+        while (batch.index < batch.descriptors.size())
+        {
+            final int index = batch.index;
+            BluetoothGattDescriptor descriptor = batch.descriptors.get(index);
+
+            if (bluetoothGatt == null)
+            {
+                failBatchNotifyItem(batch, descriptor.getCharacteristic(), UUBluetoothError.notConnectedError());
+                ++batch.index;
+                continue;
+            }
+
+            batch.startTime = UUGattLatencyStats.now();
+            batchNotifyWatchdog.start(batch.timeout, () -> runOnGattThread(() -> handleBatchNotifyTimeout(batch, index)));
+
+            descriptor.setValue(data);
+            if (bluetoothGatt.writeDescriptor(descriptor))
+            {
+                return;
+            }
+
+            batchNotifyWatchdog.cancel();
+            failBatchNotifyItem(batch, descriptor.getCharacteristic(), UUBluetoothError.operationFailedError("writeDescriptor"));
+            ++batch.index;
+        }
+
+        finishBatchNotify(batch);
+    }
+
+    // Returns true if the write belonged to the active batch
+    private boolean handleBatchNotifyResponse(final @NonNull BluetoothGattDescriptor descriptor, final int status)
+    {
+        BatchNotify batch = batchNotify;
+        if (batch == null || batch.index >= batch.descriptors.size() || batch.descriptors.get(batch.index) != descriptor)
+        {
+            return false;
+        }
+
+        batchNotifyWatchdog.cancel();
+
+        UUError error = UUBluetoothError.gattStatusError("onDescriptorWrite", status);
+        if (error != null)
+        {
+            failBatchNotifyItem(batch, descriptor.getCharacteristic(), error);
+        }
+        else
+        {
+            latencyStats.record(UUGattLatencyStats.Operation.WRITE_DESCRIPTOR, batch.startTime);
+        }
+
+        ++batch.index;
+        runOnGattThread(() -> issueNextBatchNotify(batch));
+        return true;
+    }
+
+    private void handleBatchNotifyTimeout(final @NonNull BatchNotify batch, final int index)
+    {
+        if (batchNotify != batch || batch.index != index)
+        {
+            return;
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("setNotifyStates", "CCCD write timeout for item " + index + ", ending batch: " + peripheral);
+        }
+
+        UUError error = UUBluetoothError.timeoutError();
+        for (int i = index; i < batch.descriptors.size(); i++)
+        {
+            failBatchNotifyItem(batch, batch.descriptors.get(i).getCharacteristic(), error);
+        }
+
+        batch.index = batch.descriptors.size();
+        finishBatchNotify(batch);
+    }
+
+    private void finishBatchNotify(final @NonNull BatchNotify batch)
+    {
+        if (batchNotify == batch)
+        {
+            batchNotify = null;
+        }
+
+        deliverCallback("setNotifyStates", () -> batch.delegate.onComplete(peripheral, batch.failures, null));
+    }
+
+    // A characteristic that failed to enable does not keep the subscriber added for it
+    private void failBatchNotifyItem(final @NonNull BatchNotify batch, final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull UUError error)
+    {
+        batch.failures.put(characteristic, error);
+
+        if (batch.enabled)
+        {
+            removeNotificationSubscriber(characteristic, batch.notifyDelegate, null);
+        }
+    }
+
+    void readDescriptor(
+            final @NonNull BluetoothGattDescriptor descriptor,
+            final long timeout,
+            final @NonNull UUDescriptorDelegate delegate)
+    {
+        final UUWatchdogScheduler.Watchdog watchdog = watchdogFor(readDescriptorWatchdogs, descriptor);
+        final long startTime = UUGattLatencyStats.now();
+
+        UUDescriptorDelegate readDescriptorDelegate = new UUDescriptorDelegate()
         {
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattDescriptor descriptor, @Nullable UUError error)
             {
-                debugLog("readDescriptor", "Read descriptor timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readDescriptor", "Read descriptor complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(descriptor.getValue()));
+                }
 
-                disconnect(UUBluetoothError.timeoutError());
+                removeReadDescriptorDelegate(descriptor);
+                watchdog.cancel();
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.READ_DESCRIPTOR, startTime);
+                }
+
+                delegate.onComplete(peripheral, descriptor, error);
+            }
+        };
+
+        registerReadDescriptorDelegate(descriptor, readDescriptorDelegate);
+
+        watchdog.start(timeout, new Runnable()
+        {
+            private int retries = 0;
+
+            @Override
+            public void run()
+            {
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readDescriptor", "Read descriptor timeout: " + peripheral);
+                }
+
+                switch (resolveTimeoutAction(UUTimeoutPolicy.Operation.READ_DESCRIPTOR, retries++))
+                {
+                    case RETRY:
+                        watchdog.start(timeout, this);
+                        retryOnGattThread("readDescriptor", () -> bluetoothGatt.readDescriptor(descriptor));
+                        break;
+
+                    case FAIL_OPERATION:
+                        notifyDescriptorRead(descriptor, UUBluetoothError.timeoutError());
+                        break;
+
+                    default:
+                        disconnect(UUBluetoothError.timeoutError());
+                        break;
+                }
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -404,11 +1220,17 @@ class UUBluetoothGatt
                     return;
                 }
 
-                debugLog("readDescriptor", "descriptor: " + descriptor.getUuid());
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readDescriptor", "descriptor: " + descriptor.getUuid());
+                }
 
                 boolean success = bluetoothGatt.readDescriptor(descriptor);
 
-                debugLog("readDescriptor", "readDescriptor returned " + success);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readDescriptor", "readDescriptor returned " + success);
+                }
 
                 if (!success)
                 {
@@ -424,34 +1246,68 @@ class UUBluetoothGatt
             final long timeout,
             final @NonNull UUDescriptorDelegate delegate)
     {
-        final String timerId = writeDescriptorWatchdogTimerId(descriptor);
+        final UUWatchdogScheduler.Watchdog watchdog = watchdogFor(writeDescriptorWatchdogs, descriptor);
+        final long startTime = UUGattLatencyStats.now();
 
         UUDescriptorDelegate writeDescriptorDelegate = new UUDescriptorDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattDescriptor descriptor, @Nullable UUError error)
             {
-                debugLog("readDescriptor", "Write descriptor complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(descriptor.getValue()));
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readDescriptor", "Write descriptor complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(descriptor.getValue()));
+                }
+
                 removeWriteDescriptorDelegate(descriptor);
-                UUTimer.cancelActiveTimer(timerId);
+                watchdog.cancel();
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.WRITE_DESCRIPTOR, startTime);
+                }
+
                 delegate.onComplete(peripheral, descriptor, error);
             }
         };
 
         registerWriteDescriptorDelegate(descriptor, writeDescriptorDelegate);
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
+            private int retries = 0;
+
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("writeDescriptor", "Write descriptor timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeDescriptor", "Write descriptor timeout: " + peripheral);
+                }
 
-                disconnect(UUBluetoothError.timeoutError());
+                switch (resolveTimeoutAction(UUTimeoutPolicy.Operation.WRITE_DESCRIPTOR, retries++))
+                {
+                    case RETRY:
+                        watchdog.start(timeout, this);
+                        retryOnGattThread("writeDescriptor", () ->
+                        {
+                            descriptor.setValue(data);
+                            return bluetoothGatt.writeDescriptor(descriptor);
+                        });
+                        break;
+
+                    case FAIL_OPERATION:
+                        notifyDescriptorWritten(descriptor, UUBluetoothError.timeoutError());
+                        break;
+
+                    default:
+                        disconnect(UUBluetoothError.timeoutError());
+                        break;
+                }
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -466,7 +1322,11 @@ class UUBluetoothGatt
                 descriptor.setValue(data);
 
                 boolean success = bluetoothGatt.writeDescriptor(descriptor);
-                debugLog("writeDescriptor", "writeDescriptor returned " + success);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeDescriptor", "writeDescriptor returned " + success);
+                }
 
                 if (!success)
                 {
@@ -487,36 +1347,113 @@ class UUBluetoothGatt
             final @Nullable UUCharacteristicDelegate notifyDelegate,
             final @NonNull UUCharacteristicDelegate delegate)
     {
-        final String timerId = setNotifyStateWatchdogTimerId(characteristic);
+        setNotifyState(characteristic, enabled, timeout, () ->
+        {
+            if (enabled)
+            {
+                return addNotificationSubscriber(characteristic, notifyDelegate, null);
+            }
+            else if (notifyDelegate != null)
+            {
+                return removeNotificationSubscriber(characteristic, notifyDelegate, null);
+            }
+            else
+            {
+                removeAllNotificationSubscribers(characteristic);
+                return true;
+            }
+        }, delegate);
+    }
+
+    void startNotificationStream(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final long timeout,
+            final @NonNull UUCharacteristicNotificationDelegate notificationDelegate,
+            final @NonNull UUCharacteristicDelegate delegate)
+    {
+        setNotifyState(characteristic, true, timeout, () -> addNotificationSubscriber(characteristic, null, notificationDelegate), delegate);
+    }
+
+    void stopNotificationStream(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final long timeout,
+            final @NonNull UUCharacteristicNotificationDelegate notificationDelegate,
+            final @NonNull UUCharacteristicDelegate delegate)
+    {
+        setNotifyState(characteristic, false, timeout, () -> removeNotificationSubscriber(characteristic, null, notificationDelegate), delegate);
+    }
+
+    // updateSubscribers adjusts the subscriber list and returns true when the CCCD needs to be
+    // written, which is only on the first subscribe and the last unsubscribe.
+    private void setNotifyState(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final boolean enabled,
+            final long timeout,
+            final @NonNull BooleanSupplier updateSubscribers,
+            final @NonNull UUCharacteristicDelegate delegate)
+    {
+        if (!updateSubscribers.getAsBoolean())
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("setNotifyState", "Notify state for " + characteristic.getUuid() + " is shared with other subscribers, skipping descriptor write");
+            }
+
+            runOnGattThread(() -> notifyCharacteristicDelegate(delegate, characteristic, null));
+            return;
+        }
+
+        final UUWatchdogScheduler.Watchdog watchdog = watchdogFor(setNotifyWatchdogs, characteristic);
 
         UUCharacteristicDelegate setNotifyDelegate = new UUCharacteristicDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattCharacteristic characteristic, @Nullable UUError error)
             {
-                debugLog("setNotifyState", "Set characteristic notify complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("setNotifyState", "Set characteristic notify complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
+                }
+
                 removeSetNotifyDelegate(characteristic);
-                UUTimer.cancelActiveTimer(timerId);
+                watchdog.cancel();
                 delegate.onComplete(peripheral, characteristic, error);
             }
         };
 
         registerSetNotifyDelegate(characteristic, setNotifyDelegate);
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
+            private int retries = 0;
+
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("setNotifyState", "Set notify state timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("setNotifyState", "Set notify state timeout: " + peripheral);
+                }
 
-                disconnect(UUBluetoothError.timeoutError());
+                switch (resolveTimeoutAction(UUTimeoutPolicy.Operation.SET_NOTIFY_STATE, retries++))
+                {
+                    case RETRY:
+                        watchdog.start(timeout, this);
+                        retryOnGattThread("setNotifyState", () -> writeNotifyDescriptor(characteristic, enabled));
+                        break;
+
+                    case FAIL_OPERATION:
+                        notifyCharacteristicNotifyStateChanged(characteristic, UUBluetoothError.timeoutError());
+                        break;
+
+                    default:
+                        disconnect(UUBluetoothError.timeoutError());
+                        break;
+                }
             }
         });
 
-        final long start = System.currentTimeMillis();
-
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -528,18 +1465,17 @@ class UUBluetoothGatt
                     return;
                 }
 
-                if (enabled && notifyDelegate != null)
-                {
-                    registerCharacteristicChangedDelegate(characteristic, notifyDelegate);
-                }
-                else
+                if (LOGGING_ENABLED)
                 {
-                    removeCharacteristicChangedDelegate(characteristic);
+                    debugLog("toggleNotifyState", "Setting characteristic notify for " + characteristic.getUuid().toString());
                 }
 
-                debugLog("toggleNotifyState", "Setting characteristic notify for " + characteristic.getUuid().toString());
                 boolean success = bluetoothGatt.setCharacteristicNotification(characteristic, enabled);
-                debugLog("toggleNotifyState", "setCharacteristicNotification returned " + success);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("toggleNotifyState", "setCharacteristicNotification returned " + success);
+                }
 
                 if (!success)
                 {
@@ -555,9 +1491,10 @@ class UUBluetoothGatt
                 }
 
                 byte[] data = enabled ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE : BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE;
-                long timeoutLeft = timeout - (System.currentTimeMillis() - start);
 
-                writeDescriptor(descriptor, data, timeoutLeft, new UUDescriptorDelegate()
+                // The set notify watchdog and its timeout policy govern the whole operation, so
+                // the descriptor write does not get a watchdog of its own
+                writeDescriptor(descriptor, data, TIMEOUT_DISABLED, new UUDescriptorDelegate()
                 {
                     @Override
                     public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattDescriptor descriptor, @Nullable UUError error)
@@ -569,6 +1506,18 @@ class UUBluetoothGatt
         });
     }
 
+    private boolean writeNotifyDescriptor(final @NonNull BluetoothGattCharacteristic characteristic, final boolean enabled)
+    {
+        BluetoothGattDescriptor descriptor = characteristic.getDescriptor(UUBluetoothConstants.Descriptors.CLIENT_CHARACTERISTIC_CONFIGURATION_UUID);
+        if (descriptor == null || bluetoothGatt == null)
+        {
+            return false;
+        }
+
+        descriptor.setValue(enabled ? BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE : BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
+        return bluetoothGatt.writeDescriptor(descriptor);
+    }
+
     void writeCharacteristic(
             final @NonNull BluetoothGattCharacteristic characteristic,
             final @NonNull byte[] data,
@@ -594,34 +1543,73 @@ class UUBluetoothGatt
             final int writeType,
             final @NonNull UUCharacteristicDelegate delegate)
     {
-        final String timerId = writeCharacteristicWatchdogTimerId(characteristic);
+        final UUWatchdogScheduler.Watchdog watchdog = watchdogFor(writeCharacteristicWatchdogs, characteristic);
+        final long startTime = UUGattLatencyStats.now();
+
+        invalidateCachedValue(characteristic);
+        adaptiveOperationStarted(data.length);
 
         UUCharacteristicDelegate writeCharacteristicDelegate = new UUCharacteristicDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @NonNull BluetoothGattCharacteristic characteristic, @Nullable UUError error)
             {
-                debugLog("writeCharacteristic", "Write characteristic complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "Write characteristic complete: " + peripheral + ", error: " + error + ", data: " + UUString.byteToHex(characteristic.getValue()));
+                }
+
                 removeWriteCharacteristicDelegate(characteristic);
-                UUTimer.cancelActiveTimer(timerId);
+                watchdog.cancel();
+                adaptiveOperationEnded(data.length);
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.WRITE_CHARACTERISTIC, startTime);
+                }
+
                 delegate.onComplete(peripheral, characteristic, error);
             }
         };
 
         registerWriteCharacteristicDelegate(characteristic, writeCharacteristicDelegate);
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
+            private int retries = 0;
+
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("writeCharacteristic", "Write characteristic timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "Write characteristic timeout: " + peripheral);
+                }
 
-                disconnect(UUBluetoothError.timeoutError());
+                switch (resolveTimeoutAction(UUTimeoutPolicy.Operation.WRITE_CHARACTERISTIC, retries++))
+                {
+                    case RETRY:
+                        watchdog.start(timeout, this);
+                        retryOnGattThread("writeCharacteristic", () ->
+                        {
+                            characteristic.setValue(data);
+                            characteristic.setWriteType(writeType);
+                            return bluetoothGatt.writeCharacteristic(characteristic);
+                        });
+                        break;
+
+                    case FAIL_OPERATION:
+                        notifyCharacteristicWritten(characteristic, UUBluetoothError.timeoutError());
+                        break;
+
+                    default:
+                        disconnect(UUBluetoothError.timeoutError());
+                        break;
+                }
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -633,52 +1621,248 @@ class UUBluetoothGatt
                     return;
                 }
 
-                debugLog("writeCharacteristic", "characteristic: " + characteristic.getUuid() + ", data: " + UUString.byteToHex(data));
-                debugLog("writeCharacteristic", "props: " + UUBluetooth.characteristicPropertiesToString(characteristic.getProperties()) + ", (" + characteristic.getProperties() + ")");
-                debugLog("writeCharacteristic", "permissions: " + UUBluetooth.characteristicPermissionsToString(characteristic.getPermissions()) + ", (" + characteristic.getPermissions() + ")");
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "characteristic: " + characteristic.getUuid() + ", data: " + UUString.byteToHex(data));
+                }
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "props: " + UUBluetooth.characteristicPropertiesToString(characteristic.getProperties()) + ", (" + characteristic.getProperties() + ")");
+                }
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "permissions: " + UUBluetooth.characteristicPermissionsToString(characteristic.getPermissions()) + ", (" + characteristic.getPermissions() + ")");
+                }
 
                 characteristic.setValue(data);
                 characteristic.setWriteType(writeType);
                 boolean success = bluetoothGatt.writeCharacteristic(characteristic);
 
-                debugLog("writeCharacteristic", "writeCharacteristic returned " + success);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeCharacteristic", "writeCharacteristic returned " + success);
+                }
+
+                if (!success)
+                {
+                    notifyCharacteristicWritten(characteristic, UUBluetoothError.operationFailedError("writeCharacteristic"));
+                }
+            }
+        });
+    }
+
+    void reliableWrite(
+            final @NonNull UUReliableWriteTransaction transaction,
+            final long timeout,
+            final @NonNull UUPeripheralErrorDelegate delegate)
+    {
+        final UUWatchdogScheduler.Watchdog watchdog = reliableWriteWatchdog;
+
+        reliableWriteDelegate = (peripheral, error) ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("reliableWrite", "Reliable write complete: " + peripheral + ", error: " + error);
+            }
+
+            watchdog.cancel();
+            delegate.onComplete(peripheral, error);
+        };
+
+        watchdog.start(timeout, () ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("reliableWrite", "Reliable write timeout: " + peripheral);
+            }
+
+            abortReliableWriteOnGattThread();
+            disconnect(UUBluetoothError.timeoutError());
+        });
+
+        final long start = SystemClock.elapsedRealtime();
+
+        runOnGattThread(() ->
+        {
+            if (bluetoothGatt == null)
+            {
+                debugLog("reliableWrite", "bluetoothGatt is null!");
+                notifyReliableWriteComplete(UUBluetoothError.notConnectedError());
+                return;
+            }
+
+            if (transaction.isEmpty())
+            {
+                notifyReliableWriteComplete(UUBluetoothError.preconditionFailedError("Reliable write transaction is empty"));
+                return;
+            }
+
+            long totalBytes = 0;
+            for (UUReliableWriteTransaction.Entry entry : transaction.getEntries())
+            {
+                totalBytes += entry.data.length;
+            }
+
+            expectBulkTransfer(totalBytes);
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("reliableWrite", "Beginning reliable write of " + transaction.size() + " characteristics");
+            }
+
+            boolean ok = bluetoothGatt.beginReliableWrite();
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("reliableWrite", "beginReliableWrite returned " + ok);
+            }
+
+            if (!ok)
+            {
+                notifyReliableWriteComplete(UUBluetoothError.operationFailedError("beginReliableWrite"));
+                return;
+            }
+
+            prepareNextReliableWrite(transaction.getEntries(), 0, timeout, start);
+        });
+    }
+
+    private void prepareNextReliableWrite(
+            final @NonNull List<UUReliableWriteTransaction.Entry> entries,
+            final int index,
+            final long timeout,
+            final long start)
+    {
+        if (index >= entries.size())
+        {
+            executeReliableWriteOnGattThread();
+            return;
+        }
+
+        final UUReliableWriteTransaction.Entry entry = entries.get(index);
+        long timeoutLeft = timeout - (SystemClock.elapsedRealtime() - start);
+
+        // A zero timeout would disarm the per write watchdog, so a spent budget fails here
+        if (timeoutLeft <= 0)
+        {
+            abortReliableWriteOnGattThread();
+            notifyReliableWriteComplete(UUBluetoothError.timeoutError());
+            return;
+        }
+
+        writeCharacteristic(entry.characteristic, entry.data, timeoutLeft, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT, (peripheral, characteristic, error) ->
+        {
+            if (error != null)
+            {
+                abortReliableWriteOnGattThread();
+                notifyReliableWriteComplete(error);
+                return;
+            }
+
+            // The platform does not report the value the remote echoes for a prepared write, so
+            // the echo is not checked here.  Atomicity comes from execute or abort.
+            prepareNextReliableWrite(entries, index + 1, timeout, start);
+        });
+    }
+
+    private void executeReliableWriteOnGattThread()
+    {
+        runOnGattThread(() ->
+        {
+            if (bluetoothGatt == null)
+            {
+                debugLog("executeReliableWrite", "bluetoothGatt is null!");
+                notifyReliableWriteComplete(UUBluetoothError.notConnectedError());
+                return;
+            }
+
+            boolean ok = bluetoothGatt.executeReliableWrite();
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("executeReliableWrite", "executeReliableWrite returned " + ok);
+            }
+
+            if (!ok)
+            {
+                abortReliableWrite();
+                notifyReliableWriteComplete(UUBluetoothError.operationFailedError("executeReliableWrite"));
+            }
+            // else
+            //
+            // wait for delegate or timeout
+        });
+    }
+
+    private void abortReliableWriteOnGattThread()
+    {
+        runOnGattThread(this::abortReliableWrite);
+    }
 
-                if (!success)
+    private void abortReliableWrite()
+    {
+        try
+        {
+            if (bluetoothGatt != null)
+            {
+                if (LOGGING_ENABLED)
                 {
-                    notifyCharacteristicWritten(characteristic, UUBluetoothError.operationFailedError("writeCharacteristic"));
+                    debugLog("abortReliableWrite", "Aborting reliable write for: " + peripheral);
                 }
+
+                bluetoothGatt.abortReliableWrite();
             }
-        });
+        }
+        catch (Exception ex)
+        {
+            logException("abortReliableWrite", ex);
+        }
     }
 
     void readRssi(
         final long timeout,
         final @NonNull UUPeripheralErrorDelegate delegate)
     {
-        final String timerId = readRssiWatchdogTimerId();
+        final UUWatchdogScheduler.Watchdog watchdog = readRssiWatchdog;
+        final long startTime = UUGattLatencyStats.now();
 
         readRssiDelegate = new UUPeripheralErrorDelegate()
         {
             @Override
             public void onComplete(@NonNull UUPeripheral peripheral, @Nullable UUError error)
             {
-                debugLog("readRssi", "Read RSSI complete: " + peripheral + ", error: " + error);
-                UUTimer.cancelActiveTimer(timerId);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readRssi", "Read RSSI complete: " + peripheral + ", error: " + error);
+                }
+
+                watchdog.cancel();
+
+                if (error == null)
+                {
+                    latencyStats.record(UUGattLatencyStats.Operation.READ_RSSI, startTime);
+                }
+
                 delegate.onComplete(peripheral, error);
             }
         };
 
-        UUTimer.startTimer(timerId, timeout, peripheral, new UUTimer.TimerDelegate()
+        watchdog.start(timeout, new Runnable()
         {
             @Override
-            public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+            public void run()
             {
-                debugLog("readRssi", "Read RSSI timeout: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readRssi", "Read RSSI timeout: " + peripheral);
+                }
+
                 notifyReadRssiComplete(UUBluetoothError.timeoutError());
             }
         });
 
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -690,9 +1874,17 @@ class UUBluetoothGatt
                     return;
                 }
 
-                debugLog("readRssi", "Reading RSSI for: " + peripheral);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readRssi", "Reading RSSI for: " + peripheral);
+                }
+
                 boolean ok = bluetoothGatt.readRemoteRssi();
-                debugLog("readRssi", "returnCode: " + ok);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("readRssi", "returnCode: " + ok);
+                }
 
                 if (!ok)
                 {
@@ -706,6 +1898,110 @@ class UUBluetoothGatt
     }
 
 
+    void setAdaptiveConnectionPriorityEnabled(final boolean enabled)
+    {
+        if (enabled == isAdaptiveConnectionPriorityEnabled())
+        {
+            return;
+        }
+
+        settings.setAdaptiveConnectionPriorityEnabled(enabled);
+
+        if (enabled)
+        {
+            // Otherwise it starts when the link comes up
+            if (bluetoothGatt != null)
+            {
+                adaptivePriority = new UUAdaptiveConnectionPriority(SystemClock.elapsedRealtime());
+                requestedAdaptivePriority.set(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+                startAdaptivePriorityTimer();
+            }
+        }
+        else
+        {
+            adaptivePriority = null;
+            adaptivePriorityTimer.cancel();
+        }
+    }
+
+    boolean isAdaptiveConnectionPriorityEnabled()
+    {
+        return settings.isAdaptiveConnectionPriorityEnabled();
+    }
+
+    void expectBulkTransfer(final long byteCount)
+    {
+        UUAdaptiveConnectionPriority adaptive = adaptivePriority;
+        if (adaptive != null)
+        {
+            applyAdaptivePriority(adaptive.bulkTransferExpected(byteCount, SystemClock.elapsedRealtime()));
+        }
+    }
+
+    private void adaptiveOperationStarted(final long byteCount)
+    {
+        UUAdaptiveConnectionPriority adaptive = adaptivePriority;
+        if (adaptive != null)
+        {
+            applyAdaptivePriority(adaptive.operationStarted(byteCount, SystemClock.elapsedRealtime()));
+        }
+    }
+
+    private void adaptiveOperationEnded(final long byteCount)
+    {
+        UUAdaptiveConnectionPriority adaptive = adaptivePriority;
+        if (adaptive != null)
+        {
+            applyAdaptivePriority(adaptive.operationEnded(byteCount, SystemClock.elapsedRealtime()));
+        }
+    }
+
+    private void recordAdaptiveTraffic(final @Nullable byte[] data)
+    {
+        UUAdaptiveConnectionPriority adaptive = adaptivePriority;
+        if (adaptive != null)
+        {
+            int byteCount = (data != null ? data.length : 0);
+            applyAdaptivePriority(adaptive.recordTraffic(byteCount, SystemClock.elapsedRealtime()));
+        }
+    }
+
+    // The priority only counts as requested once the stack accepts it, so a rejected request is
+    // tried again on the next evaluation
+    private void applyAdaptivePriority(final int priority)
+    {
+        if (requestedAdaptivePriority.get() == priority)
+        {
+            return;
+        }
+
+        runOnGattThread(() ->
+        {
+            // Checked again, an earlier post may have already applied it
+            if (bluetoothGatt != null && requestedAdaptivePriority.get() != priority && requestConnectionPriority(priority))
+            {
+                requestedAdaptivePriority.set(priority);
+            }
+        });
+    }
+
+    private void startAdaptivePriorityTimer()
+    {
+        adaptivePriorityTimer.start(ADAPTIVE_PRIORITY_CHECK_INTERVAL, () ->
+        {
+            UUAdaptiveConnectionPriority adaptive = adaptivePriority;
+
+            // Stops with the link so a disconnected peripheral is left idle
+            if (adaptive == null || bluetoothGatt == null)
+            {
+                return;
+            }
+
+            applyAdaptivePriority(adaptive.evaluate(SystemClock.elapsedRealtime()));
+            startAdaptivePriorityTimer();
+        });
+    }
+
     // Begins polling RSSI for a peripheral.  When the RSSI is successfully
     // retrieved, the peripheralFoundBlock is called.  This method is useful to
     // perform a crude 'ranging' logic when already connected to a peripheral
@@ -713,17 +2009,19 @@ class UUBluetoothGatt
     {
         pollRssiDelegate = delegate;
 
-        final String timerId = pollRssiTimerId();
-        UUTimer.cancelActiveTimer(timerId);
+        pollRssiTimer.cancel();
 
         readRssi(TIMEOUT_DISABLED, new UUPeripheralErrorDelegate()
         {
             @Override
             public void onComplete(@NonNull final UUPeripheral peripheral, @Nullable UUError error)
             {
-                debugLog("rssiPoll",
-                    String.format(Locale.US, "RSSI (%d) Updated for %s-%s, error: %s",
-                            peripheral.getRssi(), peripheral.getAddress(), peripheral.getName(), error));
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("rssiPoll",
+                        String.format(Locale.US, "RSSI (%d) Updated for %s-%s, error: %s",
+                                peripheral.getRssi(), peripheral.getAddress(), peripheral.getName(), error));
+                }
 
                 UUPeripheralDelegate pollDelegate = pollRssiDelegate;
 
@@ -733,22 +2031,31 @@ class UUBluetoothGatt
                 }
                 else
                 {
-                    debugLog("startRssiPolling.onComplete", "Error while reading RSSI: " + error);
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("startRssiPolling.onComplete", "Error while reading RSSI: " + error);
+                    }
                 }
 
                 if (pollDelegate != null)
                 {
-                    UUTimer.startTimer(timerId, interval, peripheral, new UUTimer.TimerDelegate()
+                    pollRssiTimer.start(interval, new Runnable()
                     {
                         @Override
-                        public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
+                        public void run()
                         {
-                            debugLog("rssiPolling.timer", String.format(Locale.US, "RSSI Polling timer %s - %s", peripheral.getAddress(), peripheral.getName()));
+                            if (LOGGING_ENABLED)
+                            {
+                                debugLog("rssiPolling.timer", String.format(Locale.US, "RSSI Polling timer %s - %s", peripheral.getAddress(), peripheral.getName()));
+                            }
 
                             UUPeripheralDelegate pollingDelegate = pollRssiDelegate;
                             if (pollingDelegate == null)
                             {
-                                debugLog("rssiPolling.timer", String.format(Locale.US, "Peripheral %s-%s not polling anymore", peripheral.getAddress(), peripheral.getAddress()));
+                                if (LOGGING_ENABLED)
+                                {
+                                    debugLog("rssiPolling.timer", String.format(Locale.US, "Peripheral %s-%s not polling anymore", peripheral.getAddress(), peripheral.getAddress()));
+                                }
                             }
                             else if (peripheral.getConnectionState(context) == UUPeripheral.ConnectionState.Connected)
                             {
@@ -756,7 +2063,10 @@ class UUBluetoothGatt
                             }
                             else
                             {
-                                debugLog("rssiPolling.timer", String.format(Locale.US, "Peripheral %s-%s is not connected anymore, cannot poll for RSSI", peripheral.getAddress(), peripheral.getName()));
+                                if (LOGGING_ENABLED)
+                                {
+                                    debugLog("rssiPolling.timer", String.format(Locale.US, "Peripheral %s-%s is not connected anymore, cannot poll for RSSI", peripheral.getAddress(), peripheral.getName()));
+                                }
                             }
                         }
                     });
@@ -768,7 +2078,7 @@ class UUBluetoothGatt
     void stopRssiPolling()
     {
         pollRssiDelegate = null;
-        UUTimer.cancelActiveTimer(pollRssiTimerId());
+        pollRssiTimer.cancel();
     }
 
     boolean isPollingForRssi()
@@ -778,100 +2088,129 @@ class UUBluetoothGatt
 
     private void notifyConnectDelegate(final @Nullable UUConnectionDelegate delegate)
     {
-        try
+        deliverCallback("notifyConnectDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onConnected(peripheral);
+                if (delegate != null)
+                {
+                    delegate.onConnected(peripheral);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyConnectDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyConnectDelegate", ex);
+            }
+        });
     }
 
     private void notifyDisconnectDelegate(final @Nullable UUConnectionDelegate delegate, final @Nullable UUError error)
     {
-        try
+        deliverCallback("notifyDisconnectDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onDisconnected(peripheral, error);
+                if (delegate != null)
+                {
+                    delegate.onDisconnected(peripheral, error);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyDisconnectDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyDisconnectDelegate", ex);
+            }
+        });
     }
 
     private void notifyPeripheralErrorDelegate(final @Nullable UUPeripheralErrorDelegate delegate, final @Nullable UUError error)
     {
-        try
+        deliverCallback("notifyPeripheralErrorDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onComplete(peripheral, error);
+                if (delegate != null)
+                {
+                    delegate.onComplete(peripheral, error);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyPeripheralErrorDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyPeripheralErrorDelegate", ex);
+            }
+        });
     }
 
     private void notifyPeripheralDelegate(final @Nullable UUPeripheralDelegate delegate)
     {
-        try
+        deliverCallback("notifyPeripheralDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onComplete(peripheral);
+                if (delegate != null)
+                {
+                    delegate.onComplete(peripheral);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyPeripheralDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyPeripheralDelegate", ex);
+            }
+        });
     }
 
     private void notifyCharacteristicDelegate(final @Nullable UUCharacteristicDelegate delegate, final @NonNull BluetoothGattCharacteristic characteristic, final @Nullable UUError error)
     {
-        try
+        deliverCallback("notifyCharacteristicDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onComplete(peripheral, characteristic, error);
+                if (delegate != null)
+                {
+                    delegate.onComplete(peripheral, characteristic, error);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyCharacteristicDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyCharacteristicDelegate", ex);
+            }
+        });
     }
 
     private void notifyDescriptorDelegate(final @Nullable UUDescriptorDelegate delegate, final @NonNull BluetoothGattDescriptor descriptor, final @Nullable UUError error)
     {
-        try
+        deliverCallback("notifyDescriptorDelegate", () ->
         {
-            if (delegate != null)
+            try
             {
-                delegate.onComplete(peripheral, descriptor, error);
+                if (delegate != null)
+                {
+                    delegate.onComplete(peripheral, descriptor, error);
+                }
             }
-        }
-        catch (Exception ex)
-        {
-            logException("notifyDescriptorDelegate", ex);
-        }
+            catch (Exception ex)
+            {
+                logException("notifyDescriptorDelegate", ex);
+            }
+        });
     }
 
     private void notifyConnected(@NonNull final String fromWhere)
     {
         try
         {
-            debugLog("notifyConnected", "Notifying connected from: " + fromWhere);
-            peripheral.setBluetoothGatt(bluetoothGatt);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("notifyConnected", "Notifying connected from: " + fromWhere);
+            }
+
+            peripheral.setBluetoothGatt(getBluetoothGatt());
+
+            if (settings.isAdaptiveConnectionPriorityEnabled())
+            {
+                adaptivePriority = new UUAdaptiveConnectionPriority(SystemClock.elapsedRealtime());
+                requestedAdaptivePriority.set(BluetoothGatt.CONNECTION_PRIORITY_BALANCED);
+                startAdaptivePriorityTimer();
+            }
 
             UUConnectionDelegate delegate = connectionDelegate;
             notifyConnectDelegate(delegate);
@@ -882,15 +2221,38 @@ class UUBluetoothGatt
         }
     }
 
+    @Nullable
     BluetoothGatt getBluetoothGatt()
     {
-        return bluetoothGatt;
+        UUGattTransport transport = bluetoothGatt;
+        return (transport != null) ? transport.getBluetoothGatt() : null;
+    }
+
+    boolean isGattOpen()
+    {
+        return (bluetoothGatt != null);
+    }
+
+    @NonNull
+    List<BluetoothGattService> getServices()
+    {
+        UUGattTransport transport = bluetoothGatt;
+        return (transport != null) ? transport.getServices() : Collections.emptyList();
+    }
+
+    // Index over the current service list, refreshed on demand after each discovery
+    @NonNull
+    UUGattIndex getIndex()
+    {
+        gattIndex.update(getServices());
+        return gattIndex;
     }
 
     private void notifyDisconnected(final @Nullable UUError error)
     {
         closeGatt();
         peripheral.setBluetoothGatt(null);
+        peripheral.clearLinkParameters();
 
         UUConnectionDelegate delegate = connectionDelegate;
         connectionDelegate = null;
@@ -934,8 +2296,14 @@ class UUBluetoothGatt
 
     private void notifyCharacteristicChanged(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        UUCharacteristicDelegate delegate = getCharacteristicChangedDelegate(characteristic);
-        notifyCharacteristicDelegate(delegate, characteristic, null);
+        NotificationSubscribers subscribers = notificationSubscribers.get(UUAttributeKey.of(characteristic));
+        if (subscribers != null)
+        {
+            for (UUCharacteristicDelegate delegate : subscribers.delegates)
+            {
+                notifyCharacteristicDelegate(delegate, characteristic, null);
+            }
+        }
     }
 
     private void notifyDescriptorRead(final @NonNull BluetoothGattDescriptor descriptor, final @Nullable UUError error)
@@ -959,109 +2327,322 @@ class UUBluetoothGatt
         notifyPeripheralErrorDelegate(delegate, error);
     }
 
+    private void notifySetPhyComplete(final @Nullable UUError error)
+    {
+        UUPeripheralErrorDelegate delegate = setPhyDelegate;
+        setPhyDelegate = null;
+        notifyPeripheralErrorDelegate(delegate, error);
+    }
+
+    private void notifyReliableWriteComplete(final @Nullable UUError error)
+    {
+        UUPeripheralErrorDelegate delegate = reliableWriteDelegate;
+        reliableWriteDelegate = null;
+        notifyPeripheralErrorDelegate(delegate, error);
+    }
+
     private void notifyBoolResult(@Nullable final UUPeripheralBoolDelegate delegate, final boolean result)
     {
-        try
+        deliverCallback("notifyBoolResult", () ->
         {
-            if (delegate != null)
+            try
+            {
+                if (delegate != null)
+                {
+                    delegate.onComplete(peripheral, result);
+                }
+            }
+            catch (Exception ex)
             {
-                delegate.onComplete(peripheral, result);
+                logException("notifyBoolResult", ex);
             }
+        });
+    }
+
+    // Returns true if there were no subscribers before this call, meaning the CCCD must be enabled
+    private synchronized boolean addNotificationSubscriber(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final @Nullable UUCharacteristicDelegate delegate,
+            final @Nullable UUCharacteristicNotificationDelegate streamDelegate)
+    {
+        long key = UUAttributeKey.of(characteristic);
+        NotificationSubscribers subscribers = notificationSubscribers.get(key);
+        if (subscribers == null)
+        {
+            subscribers = new NotificationSubscribers();
+
+            LongSparseArray<NotificationSubscribers> updated = notificationSubscribers.clone();
+            updated.put(key, subscribers);
+            notificationSubscribers = updated;
         }
-        catch (Exception ex)
+
+        boolean first = subscribers.isEmpty();
+
+        if (delegate != null)
+        {
+            subscribers.delegates.addIfAbsent(delegate);
+        }
+
+        if (streamDelegate != null)
+        {
+            subscribers.streamDelegates.addIfAbsent(streamDelegate);
+            startNotificationDispatcher();
+        }
+
+        return first;
+    }
+
+    // Returns true if no subscribers remain after this call, meaning the CCCD must be disabled
+    private synchronized boolean removeNotificationSubscriber(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final @Nullable UUCharacteristicDelegate delegate,
+            final @Nullable UUCharacteristicNotificationDelegate streamDelegate)
+    {
+        long key = UUAttributeKey.of(characteristic);
+        NotificationSubscribers subscribers = notificationSubscribers.get(key);
+        if (subscribers == null)
+        {
+            return true;
+        }
+
+        if (delegate != null)
+        {
+            subscribers.delegates.remove(delegate);
+        }
+
+        if (streamDelegate != null)
+        {
+            subscribers.streamDelegates.remove(streamDelegate);
+        }
+
+        if (subscribers.isEmpty())
+        {
+            removeNotificationSubscribers(key);
+            return true;
+        }
+
+        return false;
+    }
+
+    private synchronized void removeAllNotificationSubscribers(final @NonNull BluetoothGattCharacteristic characteristic)
+    {
+        removeNotificationSubscribers(UUAttributeKey.of(characteristic));
+    }
+
+    // Must be called while synchronized
+    private void removeNotificationSubscribers(final long key)
+    {
+        LongSparseArray<NotificationSubscribers> updated = notificationSubscribers.clone();
+        updated.remove(key);
+        notificationSubscribers = updated;
+    }
+
+    private boolean hasNotificationStreamSubscribers(final @NonNull BluetoothGattCharacteristic characteristic)
+    {
+        NotificationSubscribers subscribers = notificationSubscribers.get(UUAttributeKey.of(characteristic));
+        return (subscribers != null && !subscribers.streamDelegates.isEmpty());
+    }
+
+    private synchronized void startNotificationDispatcher()
+    {
+        if (notificationDispatcher == null)
+        {
+            String name = "UUBluetoothGattNotify-" + peripheral.getAddress();
+            notificationDispatcher = new UUNotificationDispatcher(name, settings.getNotificationBufferCapacity(), peripheral.getMaxWritePayloadSize(), this::dispatchNotifications);
+            notificationDispatcher.start();
+        }
+    }
+
+    private synchronized void stopNotificationDispatcher()
+    {
+        if (notificationDispatcher != null)
+        {
+            droppedNotificationCount += notificationDispatcher.getDroppedCount();
+            notificationDispatcher.stop();
+            notificationDispatcher = null;
+        }
+    }
+
+    // Takes effect the next time the dispatcher starts
+    void setNotificationBufferCapacity(final int capacity)
+    {
+        settings.setNotificationBufferCapacity(capacity);
+    }
+
+    int getNotificationBufferCapacity()
+    {
+        return settings.getNotificationBufferCapacity();
+    }
+
+    synchronized long getDroppedNotificationCount()
+    {
+        long count = droppedNotificationCount;
+
+        if (notificationDispatcher != null)
         {
-            logException("notifyBoolResult", ex);
+            count += notificationDispatcher.getDroppedCount();
         }
-    }
 
-    private void registerCharacteristicChangedDelegate(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull UUCharacteristicDelegate delegate)
-    {
-        characteristicChangedDelegates.put(safeUuidString(characteristic), delegate);
+        return count;
     }
 
-    private void removeCharacteristicChangedDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
+    // Called on the notification dispatch thread.  Consecutive notifications for the same
+    // characteristic are handed to its delegate as a single batch.
+    private void dispatchNotifications(final @NonNull List<UUCharacteristicNotification> batch)
     {
-        characteristicChangedDelegates.remove(safeUuidString(characteristic));
-    }
+        int start = 0;
+        int count = batch.size();
 
-    private @Nullable UUCharacteristicDelegate getCharacteristicChangedDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
-    {
-        return characteristicChangedDelegates.get(safeUuidString(characteristic));
+        while (start < count)
+        {
+            BluetoothGattCharacteristic characteristic = batch.get(start).getCharacteristic();
+
+            int end = start + 1;
+            while (end < count && batch.get(end).getCharacteristic() == characteristic)
+            {
+                ++end;
+            }
+
+            NotificationSubscribers subscribers = notificationSubscribers.get(UUAttributeKey.of(characteristic));
+            if (subscribers != null)
+            {
+                List<UUCharacteristicNotification> run = batch.subList(start, end);
+
+                for (UUCharacteristicNotificationDelegate delegate : subscribers.streamDelegates)
+                {
+                    try
+                    {
+                        delegate.onNotifications(peripheral, characteristic, run);
+                    }
+                    catch (Exception ex)
+                    {
+                        logException("dispatchNotifications", ex);
+                    }
+                }
+            }
+
+            start = end;
+        }
     }
 
     private void registerSetNotifyDelegate(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull UUCharacteristicDelegate delegate)
     {
-        setNotifyDelegates.put(safeUuidString(characteristic), delegate);
+        synchronized (setNotifyDelegates)
+        {
+            setNotifyDelegates.put(UUAttributeKey.of(characteristic), delegate);
+        }
     }
 
     private void removeSetNotifyDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        setNotifyDelegates.remove(safeUuidString(characteristic));
+        synchronized (setNotifyDelegates)
+        {
+            setNotifyDelegates.remove(UUAttributeKey.of(characteristic));
+        }
     }
 
     private @Nullable UUCharacteristicDelegate getSetNotifyDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return setNotifyDelegates.get(safeUuidString(characteristic));
+        synchronized (setNotifyDelegates)
+        {
+            return setNotifyDelegates.get(UUAttributeKey.of(characteristic));
+        }
     }
 
     private void registerReadCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull UUCharacteristicDelegate delegate)
     {
-        readCharacteristicDelegates.put(safeUuidString(characteristic), delegate);
+        synchronized (readCharacteristicDelegates)
+        {
+            readCharacteristicDelegates.put(UUAttributeKey.of(characteristic), delegate);
+        }
     }
 
     private void removeReadCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        readCharacteristicDelegates.remove(safeUuidString(characteristic));
+        synchronized (readCharacteristicDelegates)
+        {
+            readCharacteristicDelegates.remove(UUAttributeKey.of(characteristic));
+        }
     }
 
     private @Nullable UUCharacteristicDelegate getReadCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return readCharacteristicDelegates.get(safeUuidString(characteristic));
+        synchronized (readCharacteristicDelegates)
+        {
+            return readCharacteristicDelegates.get(UUAttributeKey.of(characteristic));
+        }
     }
 
     private void registerWriteCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull UUCharacteristicDelegate delegate)
     {
-        writeCharacteristicDelegates.put(safeUuidString(characteristic), delegate);
+        synchronized (writeCharacteristicDelegates)
+        {
+            writeCharacteristicDelegates.put(UUAttributeKey.of(characteristic), delegate);
+        }
     }
 
     private void removeWriteCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        writeCharacteristicDelegates.remove(safeUuidString(characteristic));
+        synchronized (writeCharacteristicDelegates)
+        {
+            writeCharacteristicDelegates.remove(UUAttributeKey.of(characteristic));
+        }
     }
 
     private @Nullable UUCharacteristicDelegate getWriteCharacteristicDelegate(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return writeCharacteristicDelegates.get(safeUuidString(characteristic));
+        synchronized (writeCharacteristicDelegates)
+        {
+            return writeCharacteristicDelegates.get(UUAttributeKey.of(characteristic));
+        }
     }
 
     private void registerReadDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor, final @NonNull UUDescriptorDelegate delegate)
     {
-        readDescriptorDelegates.put(safeUuidString(descriptor), delegate);
+        synchronized (readDescriptorDelegates)
+        {
+            readDescriptorDelegates.put(UUAttributeKey.of(descriptor), delegate);
+        }
     }
 
     private void removeReadDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor)
     {
-        readDescriptorDelegates.remove(safeUuidString(descriptor));
+        synchronized (readDescriptorDelegates)
+        {
+            readDescriptorDelegates.remove(UUAttributeKey.of(descriptor));
+        }
     }
 
     private @Nullable UUDescriptorDelegate getReadDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor)
     {
-        return readDescriptorDelegates.get(safeUuidString(descriptor));
+        synchronized (readDescriptorDelegates)
+        {
+            return readDescriptorDelegates.get(UUAttributeKey.of(descriptor));
+        }
     }
 
     private void registerWriteDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor, final @NonNull UUDescriptorDelegate delegate)
     {
-        writeDescriptorDelegates.put(safeUuidString(descriptor), delegate);
+        synchronized (writeDescriptorDelegates)
+        {
+            writeDescriptorDelegates.put(UUAttributeKey.of(descriptor), delegate);
+        }
     }
 
     private void removeWriteDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor)
     {
-        writeDescriptorDelegates.remove(safeUuidString(descriptor));
+        synchronized (writeDescriptorDelegates)
+        {
+            writeDescriptorDelegates.remove(UUAttributeKey.of(descriptor));
+        }
     }
 
     private @Nullable UUDescriptorDelegate getWriteDescriptorDelegate(final @NonNull BluetoothGattDescriptor descriptor)
     {
-        return writeDescriptorDelegates.get(safeUuidString(descriptor));
+        synchronized (writeDescriptorDelegates)
+        {
+            return writeDescriptorDelegates.get(UUAttributeKey.of(descriptor));
+        }
     }
 
     private @NonNull String safeUuidString(final @Nullable BluetoothGattCharacteristic characteristic)
@@ -1106,9 +2687,9 @@ class UUBluetoothGatt
         return result;
     }
 
-    private void disconnectGattOnMainThread()
+    private void disconnectGattOnGattThread()
     {
-        UUThread.runOnMainThread(new Runnable()
+        runOnGattThread(new Runnable()
         {
             @Override
             public void run()
@@ -1122,7 +2703,10 @@ class UUBluetoothGatt
     {
         try
         {
-            debugLog("disconnectGatt", "Disconnecting from: " + peripheral);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("disconnectGatt", "Disconnecting from: " + peripheral);
+            }
 
             if (bluetoothGatt != null)
             {
@@ -1162,8 +2746,18 @@ class UUBluetoothGatt
     {
         try
         {
+            if (bluetoothGatt == null || !isConnectWatchdogActive())
+            {
+                debugLog("reconnectGatt", "Connect no longer in progress, not reconnecting");
+                return;
+            }
+
             boolean success = bluetoothGatt.connect();
-            debugLog("reconnectGatt", "connect() returned " + success);
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("reconnectGatt", "connect() returned " + success);
+            }
         }
         catch (Exception ex)
         {
@@ -1192,102 +2786,211 @@ class UUBluetoothGatt
         return String.format(Locale.US, "%s (%d)", UUBluetooth.gattStatusToString(status), status);
     }
 
-    private @NonNull String formatPeripheralTimerId(final @NonNull String bucket)
+    private @NonNull UUWatchdogScheduler.Watchdog watchdogFor(final @NonNull LongSparseArray<UUWatchdogScheduler.Watchdog> watchdogs, final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return String.format(Locale.US, "%s__%s", peripheral.getAddress(), bucket);
+        return watchdogFor(watchdogs, UUAttributeKey.of(characteristic));
     }
 
-    private @NonNull String formatCharacteristicTimerId(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull String bucket)
+    private @NonNull UUWatchdogScheduler.Watchdog watchdogFor(final @NonNull HashMap<UUAttributeKey.Descriptor, UUWatchdogScheduler.Watchdog> watchdogs, final @NonNull BluetoothGattDescriptor descriptor)
     {
-        return String.format(Locale.US, "%s__ch_%s__%s", peripheral.getAddress(), safeUuidString(characteristic), bucket);
+        UUAttributeKey.Descriptor key = UUAttributeKey.of(descriptor);
+
+        synchronized (watchdogs)
+        {
+            UUWatchdogScheduler.Watchdog watchdog = watchdogs.get(key);
+            if (watchdog == null)
+            {
+                watchdog = watchdogScheduler.create();
+                watchdogs.put(key, watchdog);
+            }
+
+            return watchdog;
+        }
     }
 
-    private @NonNull String formatDescriptorTimerId(final @NonNull BluetoothGattDescriptor descriptor, final @NonNull String bucket)
+    private @NonNull UUWatchdogScheduler.Watchdog watchdogFor(final @NonNull LongSparseArray<UUWatchdogScheduler.Watchdog> watchdogs, final long key)
     {
-        return String.format(Locale.US, "%s__de_%s__%s", peripheral.getAddress(), safeUuidString(descriptor), bucket);
+        synchronized (watchdogs)
+        {
+            UUWatchdogScheduler.Watchdog watchdog = watchdogs.get(key);
+            if (watchdog == null)
+            {
+                watchdog = watchdogScheduler.create();
+                watchdogs.put(key, watchdog);
+            }
+
+            return watchdog;
+        }
     }
 
-    private @NonNull String connectWatchdogTimerId()
+    @NonNull
+    UUTimeoutPolicy getTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation)
     {
-        return formatPeripheralTimerId(CONNECT_WATCHDOG_BUCKET);
+        return settings.getTimeoutPolicy(operation);
     }
 
-    private @NonNull String disconnectWatchdogTimerId()
+    void setTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation, final @NonNull UUTimeoutPolicy policy)
     {
-        return formatPeripheralTimerId(DISCONNECT_WATCHDOG_BUCKET);
+        settings.setTimeoutPolicy(operation, policy);
     }
 
-    private @NonNull String serviceDiscoveryWatchdogTimerId()
+    private @NonNull UUTimeoutPolicy.Action resolveTimeoutAction(final @NonNull UUTimeoutPolicy.Operation operation, final int retries)
     {
-        return formatPeripheralTimerId(SERVICE_DISCOVERY_WATCHDOG_BUCKET);
+        UUTimeoutPolicy policy = getTimeoutPolicy(operation);
+        UUTimeoutPolicy.Action action = policy.resolve(retries);
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("resolveTimeoutAction", operation + " timed out, policy: " + policy + ", retries: " + retries + ", action: " + action);
+        }
+
+        return action;
     }
 
-    private @NonNull String setNotifyStateWatchdogTimerId(final @NonNull BluetoothGattCharacteristic characteristic)
+    // Re-issues a timed out request.  A false return usually means the stack is still busy with
+    // the original request, in which case the re-armed watchdog keeps waiting for its response.
+    private void retryOnGattThread(final @NonNull String method, final @NonNull BooleanSupplier operation)
     {
-        return formatCharacteristicTimerId(characteristic, CHARACTERISTIC_NOTIFY_STATE_WATCHDOG_BUCKET);
+        runOnGattThread(() ->
+        {
+            if (bluetoothGatt == null)
+            {
+                debugLog(method, "bluetoothGatt is null, cannot retry");
+                return;
+            }
+
+            boolean success = operation.getAsBoolean();
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog(method, "Retry returned " + success);
+            }
+        });
     }
 
-    private @NonNull String readCharacteristicWatchdogTimerId(final @NonNull BluetoothGattCharacteristic characteristic)
+    private void cleanupAfterDisconnect()
     {
-        return formatCharacteristicTimerId(characteristic, READ_CHARACTERISTIC_WATCHDOG_BUCKET);
+        UUCharacteristicValueCache cache = settings.getValueCache();
+        if (cache != null)
+        {
+            cache.connectionEnded(peripheral.getAddress());
+        }
+
+        stopNotificationDispatcher();
+        adaptivePriorityTimer.cancel();
+        cancelAllTimers();
+        clearDelegates();
+        releaseGattHandler();
     }
 
-    private @NonNull String readDescritporWatchdogTimerId(final @NonNull BluetoothGattDescriptor descriptor)
+    // Sets the characteristic's value from the cache, returns false on a miss
+    private boolean readCachedValue(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return formatDescriptorTimerId(descriptor, READ_DESCRIPTOR_WATCHDOG_BUCKET);
+        UUCharacteristicValueCache cache = settings.getValueCache();
+        BluetoothGattService service = characteristic.getService();
+        if (cache == null || service == null || !cache.isCacheable(characteristic.getUuid()))
+        {
+            return false;
+        }
+
+        byte[] value = cache.get(peripheral.getAddress(), service.getUuid(), characteristic.getUuid());
+        if (value == null)
+        {
+            return false;
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("readCachedValue", "Serving " + characteristic.getUuid() + " from cache: " + UUString.byteToHex(value));
+        }
+
+        characteristic.setValue(value);
+        return true;
     }
 
-    private @NonNull String writeCharacteristicWatchdogTimerId(final @NonNull BluetoothGattCharacteristic characteristic)
+    private void cacheValue(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return formatCharacteristicTimerId(characteristic, WRITE_CHARACTERISTIC_WATCHDOG_BUCKET);
+        UUCharacteristicValueCache cache = settings.getValueCache();
+        BluetoothGattService service = characteristic.getService();
+        if (cache != null && service != null)
+        {
+            cache.put(peripheral.getAddress(), service.getUuid(), characteristic.getUuid(), characteristic.getValue());
+        }
     }
 
-    private @NonNull String writeDescriptorWatchdogTimerId(final @NonNull BluetoothGattDescriptor descriptor)
+    private void invalidateCachedValue(final @NonNull BluetoothGattCharacteristic characteristic)
     {
-        return formatDescriptorTimerId(descriptor, WRITE_DESCRIPTOR_WATCHDOG_BUCKET);
+        UUCharacteristicValueCache cache = settings.getValueCache();
+        BluetoothGattService service = characteristic.getService();
+        if (cache != null && service != null)
+        {
+            cache.invalidate(peripheral.getAddress(), service.getUuid(), characteristic.getUuid());
+        }
     }
 
-    private @NonNull String readRssiWatchdogTimerId()
+    // Runs a platform call on the GATT handler thread for this connection, falling back to the
+    // main thread when there is no handler or its looper has already quit.
+    private void runOnGattThread(final @NonNull Runnable runnable)
     {
-        return formatPeripheralTimerId(READ_RSSI_WATCHDOG_BUCKET);
+        lastActivityTime = SystemClock.elapsedRealtime();
+
+        Handler handler = gattHandler;
+        if (handler == null)
+        {
+            UUThread.runOnMainThread(runnable);
+        }
+        else if (handler.getLooper() == Looper.myLooper())
+        {
+            runnable.run();
+        }
+        else if (!handler.post(runnable))
+        {
+            UUThread.runOnMainThread(runnable);
+        }
     }
 
-    private @NonNull String requestMtuWatchdogTimerId()
+    // Time of the most recent platform call, on the SystemClock.elapsedRealtime clock
+    long getLastActivityTime()
     {
-        return formatPeripheralTimerId(REQUEST_MTU_WATCHDOG_BUCKET);
+        return lastActivityTime;
     }
 
-    private @NonNull String pollRssiTimerId()
+    private void releaseGattHandler()
     {
-        return formatPeripheralTimerId(POLL_RSSI_BUCKET);
+        Handler handler = gattHandler;
+        gattHandler = null;
+        UUGattThread.releaseHandler(handler);
     }
 
-    private void cleanupAfterDisconnect()
+    // Hands a completion delegate invocation to the caller's executor, if one is configured
+    private void deliverCallback(final @NonNull String fromWhere, final @NonNull Runnable runnable)
     {
-        cancelAllTimers();
-        clearDelegates();
+        Executor executor = UUGattThread.getCallbackExecutor();
+        if (executor == null)
+        {
+            runnable.run();
+            return;
+        }
+
+        try
+        {
+            executor.execute(runnable);
+        }
+        catch (Exception ex)
+        {
+            logException(fromWhere, ex);
+        }
     }
 
     private void cancelAllTimers()
     {
         try
         {
-            if (peripheral != null)
-            {
-                ArrayList<UUTimer> list = UUTimer.listActiveTimers();
+            int count = watchdogScheduler.cancelAll();
 
-                String prefix = peripheral.getAddress();
-                if (prefix != null)
-                {
-                    for (UUTimer t : list)
-                    {
-                        if (t.getTimerId().startsWith(prefix))
-                        {
-                            debugLog("cancelAllTimers", "Cancelling peripheral timer: " + t.getTimerId());
-                            t.cancel();
-                        }
-                    }
-                }
+            if (LOGGING_ENABLED)
+            {
+                debugLog("cancelAllTimers", "Cancelled " + count + " peripheral timers");
             }
         }
         catch (Exception ex)
@@ -1296,19 +2999,84 @@ class UUBluetoothGatt
         }
     }
 
-    private class UUBluetoothGattCallback extends BluetoothGattCallback
+    // Everyone listening to one characteristic.  Lists are copy on write so notifications can be
+    // fanned out without locking while subscribers come and go.
+    private static class NotificationSubscribers
+    {
+        final CopyOnWriteArrayList<UUCharacteristicDelegate> delegates = new CopyOnWriteArrayList<>();
+        final CopyOnWriteArrayList<UUCharacteristicNotificationDelegate> streamDelegates = new CopyOnWriteArrayList<>();
+
+        boolean isEmpty()
+        {
+            return delegates.isEmpty() && streamDelegates.isEmpty();
+        }
+    }
+
+    private static class BatchRead
+    {
+        final List<BluetoothGattCharacteristic> characteristics;
+        final long timeout;
+        final UUBatchReadDelegate delegate;
+        final UUBatchReadResult result;
+        int index;
+        long startTime;
+
+        BatchRead(final @NonNull List<BluetoothGattCharacteristic> characteristics, final long timeout, final @NonNull UUBatchReadDelegate delegate)
+        {
+            this.characteristics = characteristics;
+            this.timeout = timeout;
+            this.delegate = delegate;
+            this.result = new UUBatchReadResult(characteristics);
+        }
+    }
+
+    private static class BatchNotify
+    {
+        final boolean enabled;
+        final long timeout;
+        final UUCharacteristicDelegate notifyDelegate;
+        final UUBatchNotifyDelegate delegate;
+        final ArrayList<BluetoothGattDescriptor> descriptors = new ArrayList<>();
+        final LinkedHashMap<BluetoothGattCharacteristic, UUError> failures = new LinkedHashMap<>();
+        int index;
+        long startTime;
+
+        BatchNotify(final boolean enabled, final long timeout, final @Nullable UUCharacteristicDelegate notifyDelegate, final @NonNull UUBatchNotifyDelegate delegate)
+        {
+            this.enabled = enabled;
+            this.timeout = timeout;
+            this.notifyDelegate = notifyDelegate;
+            this.delegate = delegate;
+        }
+    }
+
+    private class UUBluetoothGattCallback implements UUGattTransport.Callback
     {
         @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState)
+        public void onConnectionStateChange(int status, int newState)
         {
-            debugLog("onConnectionStateChanged",
-                    String.format(Locale.US, "status: %s, newState: %s (%d)",
-                            statusLog(status), UUBluetooth.connectionStateToString(newState), newState));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onConnectionStateChanged",
+                        String.format(Locale.US, "status: %s, newState: %s (%d)",
+                                statusLog(status), UUBluetooth.connectionStateToString(newState), newState));
+            }
 
             if (status == BluetoothGatt.GATT_SUCCESS && newState == BluetoothGatt.STATE_CONNECTED)
             {
+                recordGattRecoverySuccess();
                 notifyConnected("onConnectionStateChange");
             }
+            else if (status == UUBluetoothConstants.GATT_ERROR && newState != BluetoothGatt.STATE_CONNECTED && isConnectWatchdogActive() && recoverFromGattError(status))
+            {
+                // Sometimes when attempting a connection, the operation fails with status 133.
+                // Through trial and error, reconnecting or reopening the gatt after a short delay
+                // will make the connection happen.  The recovery strategy decides which and when.
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("onConnectionStateChanged", "Recovering from " + statusLog(status));
+                }
+            }
             else if (newState == BluetoothGatt.STATE_DISCONNECTED)
             {
                 UUError err = disconnectError;
@@ -1332,88 +3100,132 @@ class UUBluetoothGatt
 
                 notifyDisconnected(err);
             }
-            else if (status == UUBluetoothConstants.GATT_ERROR)
-            {
-                // Sometimes when attempting a connection, the operation fails with status 133 and state
-                // other than connected.  Through trial and error, calling BluetoothGatt.connect() after
-                // this happens will make the connection happen.
-                reconnectGatt();
-            }
         }
 
         @Override
-        public void onServicesDiscovered(BluetoothGatt gatt, int status)
+        public void onServicesDiscovered(int status)
         {
-            debugLog("onServicesDiscovered",
-                    String.format(Locale.US, "status: %s", statusLog(status)));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onServicesDiscovered",
+                        String.format(Locale.US, "status: %s", statusLog(status)));
+            }
 
             notifyServicesDiscovered(UUBluetoothError.gattStatusError("onServicesDiscovered", status));
         }
 
         @Override
-        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status)
+        public void onCharacteristicRead(BluetoothGattCharacteristic characteristic, int status)
         {
-            debugLog("onCharacteristicRead",
-                    "characteristic: " + safeUuidString(characteristic) +
-                            ", status: " + statusLog(status) +
-                            ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onCharacteristicRead",
+                        "characteristic: " + safeUuidString(characteristic) +
+                                ", status: " + statusLog(status) +
+                                ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            }
+
+            if (handleBatchReadResponse(characteristic, status))
+            {
+                return;
+            }
 
             notifyCharacteristicRead(characteristic, UUBluetoothError.gattStatusError("onCharacteristicRead", status));
         }
 
         @Override
-        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status)
+        public void onCharacteristicWrite(BluetoothGattCharacteristic characteristic, int status)
         {
-            debugLog("onCharacteristicWrite",
-                    "characteristic: " + safeUuidString(characteristic) +
-                            ", status: " + statusLog(status) +
-                            ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onCharacteristicWrite",
+                        "characteristic: " + safeUuidString(characteristic) +
+                                ", status: " + statusLog(status) +
+                                ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            }
 
             notifyCharacteristicWritten(characteristic, UUBluetoothError.gattStatusError("onCharacteristicWrite", status));
         }
 
         @Override
-        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic)
+        public void onCharacteristicChanged(BluetoothGattCharacteristic characteristic)
         {
-            debugLog("onCharacteristicChanged",
-                    "characteristic: " + safeUuidString(characteristic) +
-                            ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            // Copy the value out before anything else, the next notification reuses the
+            // characteristic's value buffer.
+            UUNotificationDispatcher dispatcher = notificationDispatcher;
+            if (dispatcher != null && hasNotificationStreamSubscribers(characteristic))
+            {
+                byte[] value = characteristic.getValue();
+                if (value != null)
+                {
+                    dispatcher.offer(characteristic, value, SystemClock.elapsedRealtimeNanos());
+                }
+            }
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onCharacteristicChanged",
+                        "characteristic: " + safeUuidString(characteristic) +
+                                ", char.data: " + UUString.byteToHex(characteristic.getValue()));
+            }
+
+            recordAdaptiveTraffic(characteristic.getValue());
+            invalidateCachedValue(characteristic);
 
             notifyCharacteristicChanged(characteristic);
         }
 
         @Override
-        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status)
+        public void onDescriptorRead(BluetoothGattDescriptor descriptor, int status)
         {
-            debugLog("onDescriptorRead",
-                    "descriptor: " + safeUuidString(descriptor) +
-                            ", status: " + statusLog(status) +
-                            ", char.data: " + UUString.byteToHex(descriptor.getValue()));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onDescriptorRead",
+                        "descriptor: " + safeUuidString(descriptor) +
+                                ", status: " + statusLog(status) +
+                                ", char.data: " + UUString.byteToHex(descriptor.getValue()));
+            }
 
             notifyDescriptorRead(descriptor, UUBluetoothError.gattStatusError("onDescriptorRead", status));
         }
 
         @Override
-        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status)
+        public void onDescriptorWrite(BluetoothGattDescriptor descriptor, int status)
         {
-            debugLog("onDescriptorWrite",
-                    "descriptor: " + safeUuidString(descriptor) +
-                            ", status: " + statusLog(status) +
-                            ", char.data: " + UUString.byteToHex(descriptor.getValue()));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onDescriptorWrite",
+                        "descriptor: " + safeUuidString(descriptor) +
+                                ", status: " + statusLog(status) +
+                                ", char.data: " + UUString.byteToHex(descriptor.getValue()));
+            }
+
+            if (handleBatchNotifyResponse(descriptor, status))
+            {
+                return;
+            }
 
             notifyDescriptorWritten(descriptor, UUBluetoothError.gattStatusError("onDescriptorWrite", status));
         }
 
         @Override
-        public void onReliableWriteCompleted(BluetoothGatt gatt, int status)
+        public void onReliableWriteCompleted(int status)
         {
-            debugLog("onReliableWriteCompleted", ", status: " + status);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onReliableWriteCompleted", "status: " + statusLog(status));
+            }
+
+            notifyReliableWriteComplete(UUBluetoothError.gattStatusError("onReliableWriteCompleted", status));
         }
 
         @Override
-        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status)
+        public void onReadRemoteRssi(int rssi, int status)
         {
-            debugLog("onReadRemoteRssi", "device: " + peripheral.getAddress() + ", rssi: " + rssi + ", status: " + status);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onReadRemoteRssi", "device: " + peripheral.getAddress() + ", rssi: " + rssi + ", status: " + status);
+            }
 
             if (status == BluetoothGatt.GATT_SUCCESS)
             {
@@ -1424,9 +3236,12 @@ class UUBluetoothGatt
         }
 
         @Override
-        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status)
+        public void onMtuChanged(int mtu, int status)
         {
-            debugLog("onMtuChanged", "device: " + peripheral.getAddress() + ", mtu: " + mtu + ", status: " + status);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onMtuChanged", "device: " + peripheral.getAddress() + ", mtu: " + mtu + ", status: " + status);
+            }
 
             peripheral.setNegotiatedMtuSize(null);
 
@@ -1437,36 +3252,150 @@ class UUBluetoothGatt
 
             notifyReqeustMtuComplete(UUBluetoothError.gattStatusError("onMtuChanged", status));
         }
+
+        @Override
+        public void onPhyUpdate(int txPhy, int rxPhy, int status)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onPhyUpdate", "device: " + peripheral.getAddress() + ", txPhy: " + UUBluetooth.phyToString(txPhy) + ", rxPhy: " + UUBluetooth.phyToString(rxPhy) + ", status: " + status);
+            }
+
+            if (status == BluetoothGatt.GATT_SUCCESS)
+            {
+                peripheral.setPhy(txPhy, rxPhy);
+            }
+
+            notifySetPhyComplete(UUBluetoothError.gattStatusError("onPhyUpdate", status));
+        }
+
+        @Override
+        public void onPhyRead(int txPhy, int rxPhy, int status)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("onPhyRead", "device: " + peripheral.getAddress() + ", txPhy: " + UUBluetooth.phyToString(txPhy) + ", rxPhy: " + UUBluetooth.phyToString(rxPhy) + ", status: " + status);
+            }
+
+            if (status == BluetoothGatt.GATT_SUCCESS)
+            {
+                peripheral.setPhy(txPhy, rxPhy);
+            }
+        }
     }
 
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // Static Gatt management
     ////////////////////////////////////////////////////////////////////////////////////////////////
-    private static final HashMap<String, UUBluetoothGatt> gattHashMap = new HashMap<>();
+    // Disconnected entries that have not been looked up for this long are evicted
+    private static final long GATT_REGISTRY_IDLE_TTL = 5 * 60 * 1000;
+
+    // Most idle entries kept, beyond which the least recently used are evicted first
+    private static final int GATT_REGISTRY_MAX_IDLE_ENTRIES = 32;
+
+    private static final long GATT_REGISTRY_SWEEP_INTERVAL = 30 * 1000;
+
+    private static final ConcurrentHashMap<String, UUBluetoothGatt> gattRegistry = new ConcurrentHashMap<>();
+    private static volatile UUGattTransport.Factory transportFactory = UUPlatformGattTransport.FACTORY;
+    private static final AtomicLong lastGattRegistrySweep = new AtomicLong();
 
     @Nullable
     static UUBluetoothGatt gattForPeripheral(final @NonNull UUPeripheral peripheral)
     {
         Context ctx = UUBluetooth.requireApplicationContext();
 
-        UUBluetoothGatt gatt = null;
-
         String address = peripheral.getAddress();
-        if (UUString.isNotEmpty(address))
+        if (!UUString.isNotEmpty(address))
+        {
+            return null;
+        }
+
+        UUBluetoothGatt gatt = gattRegistry.get(address);
+        if (gatt == null)
+        {
+            // Held so a sweep cannot drop the settings between construction and registration
+            synchronized (gattRegistry)
+            {
+                UUBluetoothGatt created = new UUBluetoothGatt(ctx, peripheral);
+                gatt = gattRegistry.putIfAbsent(address, created);
+                if (gatt == null)
+                {
+                    gatt = created;
+                }
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        gatt.lastAccessTime = now;
+        sweepGattRegistry(now, false);
+        return gatt;
+    }
+
+    static int getGattRegistrySize()
+    {
+        return gattRegistry.size();
+    }
+
+    // Evicts idle entries at most once per sweep interval unless forced.  An entry is idle when it
+    // has no GATT connection, no connect in progress and no armed watchdogs.  Settings of evicted
+    // entries go with them unless they hold user configuration.
+    static void sweepGattRegistry(final long now, final boolean force)
+    {
+        long lastSweep = lastGattRegistrySweep.get();
+        if (!force && ((now - lastSweep) < GATT_REGISTRY_SWEEP_INTERVAL || !lastGattRegistrySweep.compareAndSet(lastSweep, now)))
+        {
+            return;
+        }
+
+        ArrayList<Map.Entry<String, UUBluetoothGatt>> idle = new ArrayList<>();
+
+        for (Map.Entry<String, UUBluetoothGatt> entry : gattRegistry.entrySet())
         {
-            if (gattHashMap.containsKey(address))
+            UUBluetoothGatt gatt = entry.getValue();
+            if (!gatt.isIdle())
+            {
+                continue;
+            }
+
+            if ((now - gatt.lastAccessTime) >= GATT_REGISTRY_IDLE_TTL)
             {
-                gatt = gattHashMap.get(address);
+                gattRegistry.remove(entry.getKey(), gatt);
             }
+            else
+            {
+                idle.add(entry);
+            }
+        }
 
-            if (gatt == null)
+        int excess = idle.size() - GATT_REGISTRY_MAX_IDLE_ENTRIES;
+        if (excess > 0)
+        {
+            Collections.sort(idle, (lhs, rhs) -> Long.compare(lhs.getValue().lastAccessTime, rhs.getValue().lastAccessTime));
+
+            for (int i = 0; i < excess; i++)
             {
-                gatt = new UUBluetoothGatt(ctx, peripheral);
-                gattHashMap.put(address, gatt);
+                Map.Entry<String, UUBluetoothGatt> entry = idle.get(i);
+                gattRegistry.remove(entry.getKey(), entry.getValue());
             }
         }
 
-        return gatt;
+        synchronized (gattRegistry)
+        {
+            UUPeripheralSettings.sweep(gattRegistry::containsKey);
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            UULog.debug(UUBluetoothGatt.class, "sweepGattRegistry", "Registry size after sweep: " + gattRegistry.size() + ", settings: " + UUPeripheralSettings.getRegistrySize());
+        }
+    }
+
+    private boolean isIdle()
+    {
+        return (bluetoothGatt == null &&
+                connectionDelegate == null &&
+                notificationDispatcher == null &&
+                watchdogScheduler.getActiveCount() == 0);
     }
 }
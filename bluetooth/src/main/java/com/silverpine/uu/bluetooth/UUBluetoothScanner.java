@@ -29,7 +29,7 @@ import androidx.annotation.Nullable;
 //@SuppressWarnings("unused")
 public class UUBluetoothScanner<T extends UUPeripheral>
 {
-    private static boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
 
     private BluetoothAdapter bluetoothAdapter;
     private BluetoothLeScanner bluetoothLeScanner;
@@ -149,7 +149,10 @@ public class UUBluetoothScanner<T extends UUPeripheral>
                      */
                     public void onBatchScanResults(List<ScanResult> results)
                     {
-                        debugLog("startScan.onBatchScanResults", "There are " + results.size() + " batched results");
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("startScan.onBatchScanResults", "There are " + results.size() + " batched results");
+                        }
 
                         for (ScanResult sr : results)
                         {
@@ -165,7 +168,10 @@ public class UUBluetoothScanner<T extends UUPeripheral>
                      */
                     public void onScanFailed(int errorCode)
                     {
-                        debugLog("startScan.onScanFailed", "errorCode: " + errorCode);
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("startScan.onScanFailed", "errorCode: " + errorCode);
+                        }
                     }
                 };
             }
@@ -242,7 +248,11 @@ public class UUBluetoothScanner<T extends UUPeripheral>
     {
         if (!isScanning)
         {
-            debugLog("handlePeripheralFound", "Not scanning anymore, throwing away scan result from: " + peripheral);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("handlePeripheralFound", "Not scanning anymore, throwing away scan result from: " + peripheral);
+            }
+
             safeEndAllScanning();
             return;
         }
@@ -254,7 +264,10 @@ public class UUBluetoothScanner<T extends UUPeripheral>
             return;
         }
 
-        debugLog("handlePeripheralFound", "Peripheral Found: " + peripheral);
+        if (LOGGING_ENABLED)
+        {
+            debugLog("handlePeripheralFound", "Peripheral Found: " + peripheral);
+        }
 
         synchronized (nearbyPeripherals)
         {
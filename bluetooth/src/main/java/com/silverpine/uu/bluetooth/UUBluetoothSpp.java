@@ -29,7 +29,7 @@ import com.silverpine.uu.logging.UULog;
 
 public class UUBluetoothSpp
 {
-    private static boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
 
     private static final String PAIR_WATCHDOG_BUCKET = "UUBluetoothSession_PairWatchdogBucket";
     private static final String UNPAIR_WATCHDOG_BUCKET = "UUBluetoothSession_UnPairWatchdogBucket";
@@ -135,7 +135,11 @@ public class UUBluetoothSpp
         int previousBondState = intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE, -1);
         int bondState = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, -1);
         BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-        debugLog("handleBondStateChanged", "Bond State for device " + device.getAddress() + " changed from " + UUBluetooth.bondStateToString(previousBondState) + " to " + UUBluetooth.bondStateToString(bondState));
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("handleBondStateChanged", "Bond State for device " + device.getAddress() + " changed from " + UUBluetooth.bondStateToString(previousBondState) + " to " + UUBluetooth.bondStateToString(bondState));
+        }
 
         if ((previousBondState == BluetoothDevice.BOND_BONDING) &&
             (bondState == BluetoothDevice.BOND_BONDED || bondState == BluetoothDevice.BOND_NONE) &&
@@ -170,12 +174,20 @@ public class UUBluetoothSpp
             {
                 ParcelUuid parcelUuid = (ParcelUuid)p;
                 UUID uuid = parcelUuid.getUuid();
-                debugLog("handleActionUuid", "uuid: " + uuid.toString());
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("handleActionUuid", "uuid: " + uuid.toString());
+                }
 
                 if (uuid.compareTo(UUBluetoothConstants.Services.SERIAL_PORT_PROFILE_UUID) == 0)
                 {
                     foundSpp = true;
-                    debugLog("handleActionUuid", "Found SPP profile on device: " + deviceAddress);
+
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("handleActionUuid", "Found SPP profile on device: " + deviceAddress);
+                    }
                 }
             }
 
@@ -241,7 +253,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("pair", "Pairing complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("pair", "Pairing complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -254,7 +270,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("pair", "Pair timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("pair", "Pair timeout: " + device);
+                }
+
                 notifyPairingComplete(UUBluetoothError.timeoutError());
             }
         });
@@ -279,9 +299,17 @@ public class UUBluetoothSpp
                     return;
                 }
 
-                debugLog("pair", "Attempting to pair with device " + deviceAddress);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("pair", "Attempting to pair with device " + deviceAddress);
+                }
+
                 boolean success = device.createBond();
-                debugLog("pair", "createBond returned: " + success);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("pair", "createBond returned: " + success);
+                }
 
                 if (!success)
                 {
@@ -300,7 +328,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("unpair", "Unpairing complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("unpair", "Unpairing complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -313,7 +345,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("unpair", "Unpair timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("unpair", "Unpair timeout: " + device);
+                }
+
                 notifyUnpairingComplete(UUBluetoothError.timeoutError());
             }
         });
@@ -338,9 +374,17 @@ public class UUBluetoothSpp
                     return;
                 }
 
-                debugLog("unpair", "Attempting to unpair with device " + deviceAddress);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("unpair", "Attempting to unpair with device " + deviceAddress);
+                }
+
                 boolean success = callRemoveBond(device);
-                debugLog("unpair", "removeBond returned: " + success);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("unpair", "removeBond returned: " + success);
+                }
 
                 if (!success)
                 {
@@ -392,7 +436,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("discoverServices", "Service Discovery complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "Service Discovery complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -405,7 +453,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("discoverServices", "Service Discovery timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "Service Discovery timeout: " + device);
+                }
+
                 // TODO: Is this really how to handle timeout on service discovery?
                 notifyServiceDiscoveryComplete(UUBluetoothError.timeoutError());
             }
@@ -425,7 +477,11 @@ public class UUBluetoothSpp
 
                 debugLog("discoverServices", "Calling fetchUuidsWithSdp");
                 boolean success = device.fetchUuidsWithSdp();
-                debugLog("discoverServices", "device.fetchUuidsWithSdp returned " + success);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("discoverServices", "device.fetchUuidsWithSdp returned " + success);
+                }
 
                 if (!success)
                 {
@@ -469,7 +525,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("connectSpp", "Connect SPP complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("connectSpp", "Connect SPP complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -482,7 +542,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("connectSpp", "Connect SPP timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("connectSpp", "Connect SPP timeout: " + device);
+                }
+
                 // TODO: Do we need to disconnect/cleanup on timeout?
                 notifyConnectSppComplete(UUBluetoothError.timeoutError());
             }
@@ -506,13 +570,21 @@ public class UUBluetoothSpp
                     {
                         debugLog("connectSpp", "Creating socket with createRfcommSocketToServiceRecord");
                         bluetoothSocket = device.createRfcommSocketToServiceRecord(UUBluetoothConstants.Services.SERIAL_PORT_PROFILE_UUID);
-                        debugLog("connectSpp", "createRfcommSocketToServiceRecord returned: " + UUString.safeToString (bluetoothSocket));
+
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("connectSpp", "createRfcommSocketToServiceRecord returned: " + UUString.safeToString (bluetoothSocket));
+                        }
                     }
                     else
                     {
                         debugLog("connectSpp", "Creating socket with createInsecureRfcommSocketToServiceRecord");
                         bluetoothSocket = device.createInsecureRfcommSocketToServiceRecord(UUBluetoothConstants.Services.SERIAL_PORT_PROFILE_UUID);
-                        debugLog("connectSpp", "createInsecureRfcommSocketToServiceRecord returned: " + UUString.safeToString (bluetoothSocket));
+
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("connectSpp", "createInsecureRfcommSocketToServiceRecord returned: " + UUString.safeToString (bluetoothSocket));
+                        }
                     }
 
                     if (bluetoothSocket == null)
@@ -546,7 +618,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("disconnectSpp", "Disconnect SPP complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("disconnectSpp", "Disconnect SPP complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -559,7 +635,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("disconnectSpp", "Connect SPP timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("disconnectSpp", "Connect SPP timeout: " + device);
+                }
+
                 // TODO: Do we need to disconnect/cleanup on timeout?
                 notifyDisconnectSppComplete(UUBluetoothError.timeoutError());
             }
@@ -592,7 +672,11 @@ public class UUBluetoothSpp
             @Override
             public void onComplete(@NonNull UUBluetoothSpp session, @Nullable UUError error)
             {
-                debugLog("writeSppData", "Write SPP Data complete: " + device + ", error: " + error);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeSppData", "Write SPP Data complete: " + device + ", error: " + error);
+                }
+
                 UUTimer.cancelActiveTimer(timerId);
                 delegate.onComplete(session, error);
             }
@@ -605,7 +689,11 @@ public class UUBluetoothSpp
             @Override
             public void onTimer(@NonNull UUTimer timer, @Nullable Object userInfo)
             {
-                debugLog("writeSppData", "Write SPP timeout: " + device);
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("writeSppData", "Write SPP timeout: " + device);
+                }
+
                 // TODO: Do we need to disconnect/cleanup on timeout?
                 notifyWriteSppDataComplete(UUBluetoothError.timeoutError());
             }
@@ -639,10 +727,18 @@ public class UUBluetoothSpp
 
                 try
                 {
-                    debugLog("writeSppData", "TX: " + UUString.byteToHex(data));
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("writeSppData", "TX: " + UUString.byteToHex(data));
+                    }
+
                     OutputStream os = bluetoothSocket.getOutputStream();
 
-                    debugLog("writeSppData", "Attempting to write " + data.length + " bytes.");
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("writeSppData", "Attempting to write " + data.length + " bytes.");
+                    }
+
                     os.write(data, 0, data.length);
 
                     debugLog("writeSppData", "Flushing bytes");
@@ -671,14 +767,22 @@ public class UUBluetoothSpp
 
         readSppDataDelegate = (session, data, error) ->
         {
-            debugLog("readSppData", "Read SPP Data complete: " + device + ", error: " + error);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("readSppData", "Read SPP Data complete: " + device + ", error: " + error);
+            }
+
             UUTimer.cancelActiveTimer(timerId);
             delegate.onComplete(session, data, error);
         };
 
         UUTimer.startTimer(timerId, timeout, null, (timer, userInfo) ->
         {
-            debugLog("readSppData", "Read SPP timeout: " + device);
+            if (LOGGING_ENABLED)
+            {
+                debugLog("readSppData", "Read SPP timeout: " + device);
+            }
+
             // TODO: Do we need to disconnect/cleanup on timeout?
             notifyReadSppDataComplete(UUBluetoothError.timeoutError(), null);
         });
@@ -718,7 +822,12 @@ public class UUBluetoothSpp
                 while (bytesRead < count)
                 {
                     int bytesAvailable = is.available();
-                    debugLog("readSppData", "There are " + bytesAvailable + " bytes available to read");
+
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("readSppData", "There are " + bytesAvailable + " bytes available to read");
+                    }
+
                     if (bytesAvailable <= 0 && bytesRead > 0 && count == Integer.MAX_VALUE)
                     {
                         debugLog("readSppData", "There are no bytes available to read, bailing out of read loop.");
@@ -726,13 +835,26 @@ public class UUBluetoothSpp
                     }
 
                     byte[] rxChunk = new byte[1024];
-                    debugLog("readSppData", "Attempting to read " + rxChunk.length + " bytes.");
+
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("readSppData", "Attempting to read " + rxChunk.length + " bytes.");
+                    }
+
                     int read = is.read(rxChunk, 0, rxChunk.length);
-                    debugLog("readSppData", "Read " + read + " bytes.");
+
+                    if (LOGGING_ENABLED)
+                    {
+                        debugLog("readSppData", "Read " + read + " bytes.");
+                    }
 
                     if (read > 0)
                     {
-                        debugLog("readSppData", "RXChunk: " + UUString.byteToHex(rxChunk, 0, read));
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("readSppData", "RXChunk: " + UUString.byteToHex(rxChunk, 0, read));
+                        }
+
                         bos.write(rxChunk, 0, read);
 
                         bytesRead += read;
@@ -747,7 +869,10 @@ public class UUBluetoothSpp
                     }
                     else
                     {
-                        debugLog("readSppData", "inputStream.read returned " + read + ", totalRead: " + bytesRead + ", expectedToRead: " + count);
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("readSppData", "inputStream.read returned " + read + ", totalRead: " + bytesRead + ", expectedToRead: " + count);
+                        }
                     }
                 }
 
@@ -764,7 +889,10 @@ public class UUBluetoothSpp
                 closeObject(bos);
             }
 
-            debugLog("readSppData", "RX: " + UUString.byteToHex(response));
+            if (LOGGING_ENABLED)
+            {
+                debugLog("readSppData", "RX: " + UUString.byteToHex(response));
+            }
 
             notifyReadSppDataComplete(null, response);
         });
@@ -991,7 +1119,11 @@ public class UUBluetoothSpp
                 {
                     if (t.getTimerId().startsWith(prefix))
                     {
-                        debugLog("cancelAllTimers", "Cancelling device timer: " + t.getTimerId());
+                        if (LOGGING_ENABLED)
+                        {
+                            debugLog("cancelAllTimers", "Cancelling device timer: " + t.getTimerId());
+                        }
+
                         t.cancel();
                     }
                 }
@@ -0,0 +1,72 @@
+package com.silverpine.uu.bluetooth;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Default GATT error recovery.  Failed attempts are retried with exponential backoff up to a
+ * maximum count.  From the recreate threshold onwards the BluetoothGatt is closed and reopened
+ * instead of reusing the handle, optionally refreshing the attribute cache first.
+ */
+@SuppressWarnings("unused")
+public class UUBoundedGattRecoveryStrategy implements UUGattRecoveryStrategy
+{
+    public static class Defaults
+    {
+        public static final int MaxRetries = 4;
+        public static final int RecreateAfter = 2;
+        public static final long InitialDelay = 250;
+        public static final long MaxDelay = 4000;
+    }
+
+    private final int maxRetries;
+    private final int recreateAfter;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final boolean refreshCache;
+
+    public UUBoundedGattRecoveryStrategy()
+    {
+        this(Defaults.MaxRetries, Defaults.RecreateAfter, Defaults.InitialDelay, Defaults.MaxDelay, false);
+    }
+
+    /**
+     * @param maxRetries attempts after which recovery gives up
+     * @param recreateAfter failures after which the gatt is recreated rather than reconnected
+     * @param initialDelay delay before the first retry
+     * @param maxDelay cap on the retry delay
+     * @param refreshCache whether to refresh the attribute cache when recreating
+     */
+    public UUBoundedGattRecoveryStrategy(
+            final int maxRetries,
+            final int recreateAfter,
+            final long initialDelay,
+            final long maxDelay,
+            final boolean refreshCache)
+    {
+        this.maxRetries = maxRetries;
+        this.recreateAfter = recreateAfter;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.refreshCache = refreshCache;
+    }
+
+    @NonNull
+    @Override
+    public Action nextAction(final int failureCount, final int gattStatus)
+    {
+        if (failureCount > maxRetries)
+        {
+            return Action.giveUp();
+        }
+
+        int shift = Math.min(Math.max(0, failureCount - 1), 20);
+        long delay = Math.min(maxDelay, initialDelay << shift);
+
+        if (failureCount >= recreateAfter)
+        {
+            return Action.recreate(delay, refreshCache);
+        }
+
+        return Action.reconnect(delay);
+    }
+}
@@ -0,0 +1,80 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A single characteristic notification captured at the moment it arrived.  Instances are owned by
+ * the notification ring buffer and are reused, so they are only valid for the duration of the
+ * delegate callback.  Use copyData to keep the value afterwards.
+ */
+@SuppressWarnings("unused")
+public class UUCharacteristicNotification
+{
+    private BluetoothGattCharacteristic characteristic;
+    private byte[] buffer;
+    private int length;
+    private long timestamp;
+    private long sequence;
+
+    UUCharacteristicNotification(final int bufferSize)
+    {
+        buffer = new byte[bufferSize];
+    }
+
+    void set(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull byte[] value, final long timestamp, final long sequence)
+    {
+        if (value.length > buffer.length)
+        {
+            buffer = new byte[value.length];
+        }
+
+        System.arraycopy(value, 0, buffer, 0, value.length);
+        this.characteristic = characteristic;
+        this.length = value.length;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+    }
+
+    public @NonNull BluetoothGattCharacteristic getCharacteristic()
+    {
+        return characteristic;
+    }
+
+    /**
+     * The backing buffer.  Only the first getLength() bytes are valid.
+     */
+    public @NonNull byte[] getBuffer()
+    {
+        return buffer;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Time the notification was received, in elapsed realtime nanoseconds.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Monotonically increasing sequence number, used to detect dropped notifications.
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    public @NonNull byte[] copyData()
+    {
+        return Arrays.copyOf(buffer, length);
+    }
+}
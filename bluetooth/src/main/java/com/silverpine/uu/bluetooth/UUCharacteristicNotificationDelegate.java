@@ -0,0 +1,24 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Interface for delivering batches of characteristic notifications to callers.  Callbacks are made
+ * on a dedicated notification thread, never on the binder or main thread.
+ */
+public interface UUCharacteristicNotificationDelegate
+{
+    /**
+     * Callback invoked with one or more notifications, in the order they were received.
+     *
+     * @param peripheral the peripheral being interacted with
+     * @param characteristic the characteristic that changed
+     * @param notifications the notifications.  The list and its elements are reused once this
+     *                      method returns.
+     */
+    void onNotifications(final @NonNull UUPeripheral peripheral, final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull List<UUCharacteristicNotification> notifications);
+}
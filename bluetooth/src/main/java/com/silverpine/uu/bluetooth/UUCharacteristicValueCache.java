@@ -0,0 +1,226 @@
+package com.silverpine.uu.bluetooth;
+
+import android.os.SystemClock;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Read-through cache of characteristic values keyed by peripheral address, service and
+ * characteristic.  Only characteristics given a TTL are cached.  A value is dropped when its TTL
+ * expires, when the characteristic is written or notifies, and when the connection ends, unless
+ * the characteristic is declared immutable, in which case it is kept across connections.
+ *
+ * One cache can be shared by many peripherals.
+ */
+@SuppressWarnings("unused")
+public class UUCharacteristicValueCache
+{
+    /**
+     * TTL for values that never change, such as the Device Information strings
+     */
+    public static final long TTL_IMMUTABLE = Long.MAX_VALUE;
+
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<UUID, Long> ttls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public UUCharacteristicValueCache()
+    {
+        this(SystemClock::elapsedRealtime);
+    }
+
+    UUCharacteristicValueCache(final @NonNull LongSupplier clock)
+    {
+        this.clock = clock;
+    }
+
+    /**
+     * Caches values of the characteristic for the given number of milliseconds.  A TTL of zero or
+     * less stops caching it.
+     */
+    public void setTtl(final @NonNull UUID characteristic, final long ttl)
+    {
+        if (ttl > 0)
+        {
+            ttls.put(characteristic, ttl);
+        }
+        else
+        {
+            ttls.remove(characteristic);
+            invalidate(characteristic);
+        }
+    }
+
+    public void setImmutable(final @NonNull UUID characteristic)
+    {
+        setTtl(characteristic, TTL_IMMUTABLE);
+    }
+
+    /**
+     * Declares the standard Device Information strings immutable.
+     */
+    public void setDeviceInformationImmutable()
+    {
+        setImmutable(UUBluetoothConstants.Characteristics.MANUFACTURER_NAME_STRING_UUID);
+        setImmutable(UUBluetoothConstants.Characteristics.MODEL_NUMBER_STRING_UUID);
+        setImmutable(UUBluetoothConstants.Characteristics.SERIAL_NUMBER_STRING_UUID);
+        setImmutable(UUBluetoothConstants.Characteristics.HARDWARE_REVISION_STRING_UUID);
+        setImmutable(UUBluetoothConstants.Characteristics.FIRMWARE_REVISION_STRING_UUID);
+        setImmutable(UUBluetoothConstants.Characteristics.SOFTWARE_REVISION_STRING_UUID);
+    }
+
+    public long getTtl(final @NonNull UUID characteristic)
+    {
+        Long ttl = ttls.get(characteristic);
+        return (ttl != null) ? ttl : 0;
+    }
+
+    public boolean isCacheable(final @NonNull UUID characteristic)
+    {
+        return ttls.containsKey(characteristic);
+    }
+
+    /**
+     * Returns a copy of the cached value, or null if there is none or it has expired.
+     */
+    public @Nullable byte[] get(final @NonNull String address, final @NonNull UUID service, final @NonNull UUID characteristic)
+    {
+        Key key = new Key(address, service, characteristic);
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.expiresAt <= clock.getAsLong())
+        {
+            entries.remove(key, entry);
+            entry = null;
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.value.clone();
+    }
+
+    /**
+     * Stores a copy of the value if the characteristic has a TTL.
+     */
+    public void put(final @NonNull String address, final @NonNull UUID service, final @NonNull UUID characteristic, final @Nullable byte[] value)
+    {
+        Long ttl = ttls.get(characteristic);
+        if (ttl == null || value == null)
+        {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        long expiresAt = (ttl == TTL_IMMUTABLE || now > Long.MAX_VALUE - ttl) ? Long.MAX_VALUE : now + ttl;
+        entries.put(new Key(address, service, characteristic), new Entry(value.clone(), expiresAt, ttl == TTL_IMMUTABLE));
+    }
+
+    public void invalidate(final @NonNull String address, final @NonNull UUID service, final @NonNull UUID characteristic)
+    {
+        entries.remove(new Key(address, service, characteristic));
+    }
+
+    /**
+     * Drops every cached value for a peripheral, including immutable ones.
+     */
+    public void invalidate(final @NonNull String address)
+    {
+        entries.keySet().removeIf(key -> key.address.equals(address));
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    // Drops the values that do not outlive the connection
+    void connectionEnded(final @NonNull String address)
+    {
+        entries.entrySet().removeIf(entry -> entry.getKey().address.equals(address) && !entry.getValue().immutable);
+    }
+
+    private void invalidate(final @NonNull UUID characteristic)
+    {
+        entries.keySet().removeIf(key -> key.characteristic.equals(characteristic));
+    }
+
+    private static final class Key
+    {
+        final String address;
+        final UUID service;
+        final UUID characteristic;
+
+        Key(final @NonNull String address, final @NonNull UUID service, final @NonNull UUID characteristic)
+        {
+            this.address = address;
+            this.service = service;
+            this.characteristic = characteristic;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key other = (Key) o;
+            return address.equals(other.address) && service.equals(other.service) && characteristic.equals(other.characteristic);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(address, service, characteristic);
+        }
+    }
+
+    private static final class Entry
+    {
+        final byte[] value;
+        final long expiresAt;
+        final boolean immutable;
+
+        Entry(final @NonNull byte[] value, final long expiresAt, final boolean immutable)
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.immutable = immutable;
+        }
+    }
+}
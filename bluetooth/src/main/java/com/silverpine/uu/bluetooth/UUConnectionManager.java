@@ -0,0 +1,466 @@
+package com.silverpine.uu.bluetooth;
+
+import android.os.SystemClock;
+
+import com.silverpine.uu.core.UUError;
+import com.silverpine.uu.core.UUObjectDelegate;
+import com.silverpine.uu.logging.UULog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Coordinates connections across peripherals.  Connect requests are queued by priority and only
+ * a limited number of connection attempts are in flight at once.  The number of open links is
+ * capped, and when the cap is reached the least recently used idle link is disconnected to make
+ * room for the next queued request.  If no link is idle yet, the queue is looked at again when the
+ * oldest one becomes eligible.
+ */
+@SuppressWarnings("unused")
+public class UUConnectionManager
+{
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH = 10;
+
+    public static class Defaults
+    {
+        public static final int MaxConcurrentConnects = 1;
+        public static final int MaxConnected = 7;
+        public static final long LinkIdleTime = 10000;
+    }
+
+    private static UUConnectionManager sharedInstance;
+
+    private final int maxConcurrentConnects;
+    private final int maxConnected;
+    private long linkIdleTime = Defaults.LinkIdleTime;
+
+    private final PriorityQueue<Request> pending = new PriorityQueue<>(11, (lhs, rhs) ->
+    {
+        int result = Integer.compare(rhs.priority, lhs.priority);
+        return (result != 0) ? result : Long.compare(lhs.sequence, rhs.sequence);
+    });
+
+    private final LinkedHashMap<String, Request> connectingLinks = new LinkedHashMap<>();
+
+    // Access ordered, so iteration starts at the least recently used link
+    private final LinkedHashMap<String, Request> connectedLinks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final UUWatchdogScheduler scheduler = new UUWatchdogScheduler();
+    private final UUWatchdogScheduler.Watchdog repumpTimer = scheduler.create();
+
+    private long nextSequence;
+
+    public static synchronized @NonNull UUConnectionManager sharedInstance()
+    {
+        if (sharedInstance == null)
+        {
+            sharedInstance = new UUConnectionManager(Defaults.MaxConcurrentConnects, Defaults.MaxConnected);
+        }
+
+        return sharedInstance;
+    }
+
+    public UUConnectionManager(final int maxConcurrentConnects, final int maxConnected)
+    {
+        this.maxConcurrentConnects = Math.max(1, maxConcurrentConnects);
+        this.maxConnected = Math.max(1, maxConnected);
+    }
+
+    /**
+     * How long a link must go without GATT activity before it can be evicted to make room for a
+     * queued connect.
+     */
+    public synchronized long getLinkIdleTime()
+    {
+        return linkIdleTime;
+    }
+
+    public synchronized void setLinkIdleTime(final long linkIdleTime)
+    {
+        this.linkIdleTime = linkIdleTime;
+    }
+
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    public synchronized int getConnectingCount()
+    {
+        return connectingLinks.size();
+    }
+
+    public synchronized int getConnectedCount()
+    {
+        return connectedLinks.size();
+    }
+
+    /**
+     * Queues a connect request.  The connected callback is invoked once the link is up, and the
+     * disconnected callback when the connect fails, the link drops, or the request is cancelled.
+     * If the peripheral is already connected through this manager, connected is invoked right away
+     * and disconnected is added to the callbacks notified when that link goes down.  If a connect
+     * for the peripheral is already queued or in progress, the call fails with a precondition
+     * error, as it does while the link is being evicted.
+     *
+     * @param peripheral the peripheral to connect to
+     * @param priority higher priority requests are started first, equal priorities in order
+     * @param connectTimeout connect timeout
+     * @param disconnectTimeout disconnect timeout
+     * @param linkProfile optional link parameters to negotiate
+     * @param connected invoked when connected
+     * @param disconnected invoked on disconnect or failure
+     */
+    public void connect(
+            final @NonNull UUPeripheral peripheral,
+            final int priority,
+            final long connectTimeout,
+            final long disconnectTimeout,
+            final @Nullable UULinkProfile linkProfile,
+            final @NonNull Runnable connected,
+            final @NonNull UUObjectDelegate<UUError> disconnected)
+    {
+        String address = peripheral.getAddress();
+        if (address == null)
+        {
+            UUObjectDelegate.safeInvoke(disconnected, UUBluetoothError.preconditionFailedError("Peripheral has no address"));
+            return;
+        }
+
+        boolean alreadyConnected = false;
+        String rejectReason = null;
+
+        synchronized (this)
+        {
+            Request existing = connectedLinks.get(address);
+            if (existing != null && !existing.evicting)
+            {
+                existing.disconnectedListeners.add(disconnected);
+                alreadyConnected = true;
+            }
+            else if (existing != null)
+            {
+                rejectReason = "Link is being evicted";
+            }
+            else if (connectingLinks.containsKey(address) || findPending(address) != null)
+            {
+                rejectReason = "Connect already queued";
+            }
+            else
+            {
+                Request request = new Request(peripheral, address, priority, nextSequence++, connectTimeout, disconnectTimeout, linkProfile, connected, disconnected);
+                pending.add(request);
+
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("connect", "Queued connect for " + address + ", priority: " + priority + ", pending: " + pending.size());
+                }
+            }
+        }
+
+        if (alreadyConnected)
+        {
+            connected.run();
+            return;
+        }
+
+        if (rejectReason != null)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("connect", rejectReason + ": " + address);
+            }
+
+            UUObjectDelegate.safeInvoke(disconnected, UUBluetoothError.preconditionFailedError(rejectReason));
+            return;
+        }
+
+        pump();
+    }
+
+    public void connect(
+            final @NonNull UUPeripheral peripheral,
+            final int priority,
+            final @NonNull Runnable connected,
+            final @NonNull UUObjectDelegate<UUError> disconnected)
+    {
+        connect(peripheral, priority, UUPeripheral.Defaults.ConnectTimeout, UUPeripheral.Defaults.DisconnectTimeout, null, connected, disconnected);
+    }
+
+    /**
+     * Removes a queued request, or disconnects the peripheral if it is connecting or connected.
+     */
+    public void disconnect(final @NonNull UUPeripheral peripheral, final @Nullable UUError error)
+    {
+        Request removed;
+
+        synchronized (this)
+        {
+            removed = findPending(peripheral.getAddress());
+            if (removed != null)
+            {
+                pending.remove(removed);
+            }
+        }
+
+        if (removed != null)
+        {
+            notifyDisconnected(removed.disconnectedListeners, error);
+        }
+        else
+        {
+            peripheral.disconnect(error);
+        }
+    }
+
+    /**
+     * Marks a link as recently used so that it is the last to be evicted.
+     */
+    public synchronized void touch(final @NonNull UUPeripheral peripheral)
+    {
+        connectedLinks.get(peripheral.getAddress());
+    }
+
+    private void pump()
+    {
+        ArrayList<Request> toStart = new ArrayList<>();
+        UUPeripheral toEvict = null;
+        long repumpDelay = -1;
+
+        // Activity times come from the GATT registry, so they are read before taking the lock
+        HashMap<Request, Long> activity = readActivityTimes();
+
+        synchronized (this)
+        {
+            while (connectingLinks.size() < maxConcurrentConnects && !pending.isEmpty())
+            {
+                if ((connectedLinks.size() + connectingLinks.size()) >= maxConnected)
+                {
+                    if (!isEvictionInProgress())
+                    {
+                        long now = SystemClock.elapsedRealtime();
+                        Request lru = findIdleLink(activity, now);
+                        if (lru != null)
+                        {
+                            lru.evicting = true;
+                            toEvict = lru.peripheral;
+                        }
+                        else
+                        {
+                            repumpDelay = timeUntilIdle(activity, now);
+                        }
+                    }
+
+                    break;
+                }
+
+                Request request = pending.poll();
+                connectingLinks.put(request.address, request);
+                toStart.add(request);
+            }
+        }
+
+        if (repumpDelay >= 0)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("pump", "No idle link, checking again in " + repumpDelay + " ms");
+            }
+
+            repumpTimer.start(repumpDelay, this::pump);
+        }
+
+        if (toEvict != null)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("pump", "Evicting idle link " + toEvict.getAddress());
+            }
+
+            toEvict.disconnect(UUBluetoothError.preconditionFailedError("Evicted for queued connect"));
+        }
+
+        for (Request request : toStart)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("pump", "Starting connect for " + request.address);
+            }
+
+            request.peripheral.connect(request.connectTimeout, request.disconnectTimeout, request.linkProfile,
+                () -> handleConnected(request),
+                (error) -> handleDisconnected(request, error));
+        }
+    }
+
+    private void handleConnected(final @NonNull Request request)
+    {
+        synchronized (this)
+        {
+            connectingLinks.remove(request.address);
+            connectedLinks.put(request.address, request);
+        }
+
+        pump();
+        request.connected.run();
+    }
+
+    private void handleDisconnected(final @NonNull Request request, final @Nullable UUError error)
+    {
+        ArrayList<UUObjectDelegate<UUError>> listeners;
+
+        synchronized (this)
+        {
+            connectingLinks.remove(request.address, request);
+            connectedLinks.remove(request.address, request);
+            listeners = new ArrayList<>(request.disconnectedListeners);
+        }
+
+        pump();
+        notifyDisconnected(listeners, error);
+    }
+
+    private static void notifyDisconnected(final @NonNull ArrayList<UUObjectDelegate<UUError>> listeners, final @Nullable UUError error)
+    {
+        for (UUObjectDelegate<UUError> listener : listeners)
+        {
+            UUObjectDelegate.safeInvoke(listener, error);
+        }
+    }
+
+    // Must be called while synchronized
+    private boolean isEvictionInProgress()
+    {
+        for (Request request : connectedLinks.values())
+        {
+            if (request.evicting)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private @NonNull HashMap<Request, Long> readActivityTimes()
+    {
+        ArrayList<Request> links;
+
+        synchronized (this)
+        {
+            links = new ArrayList<>(connectedLinks.values());
+        }
+
+        HashMap<Request, Long> activity = new HashMap<>();
+
+        for (Request request : links)
+        {
+            UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(request.peripheral);
+            activity.put(request, (gatt != null) ? gatt.getLastActivityTime() : 0L);
+        }
+
+        return activity;
+    }
+
+    // Must be called while synchronized.  Links connected after the activity times were read are
+    // skipped, they are not idle.
+    private @Nullable Request findIdleLink(final @NonNull HashMap<Request, Long> activity, final long now)
+    {
+        for (Request request : connectedLinks.values())
+        {
+            Long lastActivity = activity.get(request);
+            if (lastActivity != null && (now - lastActivity) >= linkIdleTime)
+            {
+                return request;
+            }
+        }
+
+        return null;
+    }
+
+    // Must be called while synchronized.  Time until the first link passes the idle time.
+    private long timeUntilIdle(final @NonNull HashMap<Request, Long> activity, final long now)
+    {
+        long delay = linkIdleTime;
+
+        for (Request request : connectedLinks.values())
+        {
+            Long lastActivity = activity.get(request);
+            if (lastActivity != null)
+            {
+                delay = Math.min(delay, lastActivity + linkIdleTime - now);
+            }
+        }
+
+        return Math.max(0, delay);
+    }
+
+    // Must be called while synchronized
+    private @Nullable Request findPending(final @Nullable String address)
+    {
+        for (Request request : pending)
+        {
+            if (request.address.equals(address))
+            {
+                return request;
+            }
+        }
+
+        return null;
+    }
+
+    private static void debugLog(final String method, final String message)
+    {
+        if (LOGGING_ENABLED)
+        {
+            UULog.debug(UUConnectionManager.class, method, message);
+        }
+    }
+
+    private static class Request
+    {
+        final @NonNull UUPeripheral peripheral;
+        final @NonNull String address;
+        final int priority;
+        final long sequence;
+        final long connectTimeout;
+        final long disconnectTimeout;
+        final @Nullable UULinkProfile linkProfile;
+        final @NonNull Runnable connected;
+
+        // Every caller attached to this link, guarded by the manager
+        final @NonNull ArrayList<UUObjectDelegate<UUError>> disconnectedListeners = new ArrayList<>();
+        boolean evicting;
+
+        Request(
+                final @NonNull UUPeripheral peripheral,
+                final @NonNull String address,
+                final int priority,
+                final long sequence,
+                final long connectTimeout,
+                final long disconnectTimeout,
+                final @Nullable UULinkProfile linkProfile,
+                final @NonNull Runnable connected,
+                final @NonNull UUObjectDelegate<UUError> disconnected)
+        {
+            this.peripheral = peripheral;
+            this.address = address;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.connectTimeout = connectTimeout;
+            this.disconnectTimeout = disconnectTimeout;
+            this.linkProfile = linkProfile;
+            this.connected = connected;
+            disconnectedListeners.add(disconnected);
+        }
+    }
+}
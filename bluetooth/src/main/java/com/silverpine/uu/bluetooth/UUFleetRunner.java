@@ -0,0 +1,541 @@
+package com.silverpine.uu.bluetooth;
+
+import android.os.SystemClock;
+
+import com.silverpine.uu.core.UUError;
+import com.silverpine.uu.logging.UULog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Runs one kind of UUPeripheralOperation against many peripherals.  At most maxConcurrent
+ * operations run at once, and connects go through a UUConnectionManager so only one connect is in
+ * flight and the number of open links never exceeds the concurrency limit.  Devices are started
+ * in priority order, strongest RSSI first by default, using the RSSI each device had when the run
+ * started.
+ *
+ * A failed operation is retried after a delay until it succeeds, runs out of attempts, or passes
+ * its device deadline.  The deadline covers every attempt for a device; when it passes, the
+ * running operation is ended with a timeout error and the device is not retried.
+ */
+@SuppressWarnings("unused")
+public class UUFleetRunner<T extends UUPeripheral>
+{
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+
+    public static class Defaults
+    {
+        public static final int MaxConcurrent = UUConnectionManager.Defaults.MaxConnected;
+        public static final int MaxAttempts = 3;
+        public static final long RetryDelay = 2000;
+        public static final long DeviceDeadline = 120000;
+    }
+
+    public interface OperationFactory<T extends UUPeripheral>
+    {
+        @NonNull
+        UUPeripheralOperation<T> create(final @NonNull T peripheral);
+    }
+
+    public interface Listener<T extends UUPeripheral>
+    {
+        /**
+         * Invoked once per device with its final result.
+         */
+        void onDeviceFinished(final @NonNull T peripheral, final @Nullable UUError error, final int attempts, final @NonNull UUFleetStats stats);
+
+        /**
+         * Invoked once every device has finished, or after cancel.
+         */
+        void onFinished(final @NonNull UUFleetStats stats);
+    }
+
+    private final UUWatchdogScheduler scheduler = new UUWatchdogScheduler();
+    private final PriorityQueue<Device<T>> queue;
+    private final ArrayList<Device<T>> active = new ArrayList<>();
+
+    private int maxConcurrent = Defaults.MaxConcurrent;
+    private int maxAttempts = Defaults.MaxAttempts;
+    private long retryDelay = Defaults.RetryDelay;
+    private long deviceDeadline = Defaults.DeviceDeadline;
+
+    private @Nullable OperationFactory<T> factory;
+    private @Nullable Listener<T> listener;
+    private @Nullable UUConnectionManager connectionManager;
+    private boolean running;
+    private long sequence;
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private long attempts;
+    private long retries;
+    private long deadlinesExceeded;
+    private long startTime;
+    private long endTime;
+    private long totalDeviceTime;
+    private final HashMap<Integer, Integer> failuresByCode = new HashMap<>();
+
+    public UUFleetRunner()
+    {
+        // Sorted on the RSSI recorded at run, since the live value changes while devices are queued
+        queue = new PriorityQueue<>(11, (lhs, rhs) ->
+        {
+            int result = Integer.compare(rhs.rssi, lhs.rssi);
+            return (result != 0) ? result : Long.compare(lhs.sequence, rhs.sequence);
+        });
+    }
+
+    /**
+     * @param priority orders devices, those that compare lowest start first.  Devices are compared
+     *                 while they wait in the queue, so the order should not depend on values that
+     *                 change during the run.
+     */
+    public UUFleetRunner(final @NonNull Comparator<T> priority)
+    {
+        queue = new PriorityQueue<>(11, (lhs, rhs) ->
+        {
+            int result = priority.compare(lhs.peripheral, rhs.peripheral);
+            return (result != 0) ? result : Long.compare(lhs.sequence, rhs.sequence);
+        });
+    }
+
+    public synchronized void setMaxConcurrent(final int maxConcurrent)
+    {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    public synchronized void setMaxAttempts(final int maxAttempts)
+    {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public synchronized void setRetryDelay(final long retryDelay)
+    {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Time allowed for each device across all of its attempts.
+     */
+    public synchronized void setDeviceDeadline(final long deviceDeadline)
+    {
+        this.deviceDeadline = deviceDeadline;
+    }
+
+    public synchronized boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Starts a run.  Does nothing if a run is already in progress.
+     *
+     * @param peripherals devices to run against
+     * @param factory creates the operation for each attempt
+     * @param listener receives per device results and the final stats
+     */
+    public void run(
+            final @NonNull Collection<T> peripherals,
+            final @NonNull OperationFactory<T> factory,
+            final @NonNull Listener<T> listener)
+    {
+        synchronized (this)
+        {
+            if (running)
+            {
+                return;
+            }
+
+            running = true;
+            this.factory = factory;
+            this.listener = listener;
+            connectionManager = new UUConnectionManager(1, maxConcurrent);
+            queue.clear();
+            active.clear();
+            failuresByCode.clear();
+            total = peripherals.size();
+            succeeded = 0;
+            failed = 0;
+            attempts = 0;
+            retries = 0;
+            deadlinesExceeded = 0;
+            totalDeviceTime = 0;
+            startTime = SystemClock.elapsedRealtime();
+
+            for (T peripheral : peripherals)
+            {
+                queue.add(new Device<>(peripheral, sequence++, scheduler));
+            }
+        }
+
+        startNext();
+    }
+
+    /**
+     * Stops starting new devices and ends the running operations with an error.  Devices that
+     * had not started yet are reported to the listener as failed with the same error.
+     */
+    public void cancel()
+    {
+        ArrayList<Device<T>> toDrop;
+        ArrayList<Device<T>> toEnd;
+
+        synchronized (this)
+        {
+            if (!running)
+            {
+                return;
+            }
+
+            toDrop = new ArrayList<>(queue);
+            queue.clear();
+            toEnd = new ArrayList<>(active);
+        }
+
+        scheduler.cancelAll();
+
+        for (Device<T> device : toDrop)
+        {
+            Listener<T> callback;
+            UUFleetStats stats;
+            UUError error = UUBluetoothError.preconditionFailedError("Fleet run cancelled");
+
+            synchronized (this)
+            {
+                recordFailure(error);
+                callback = listener;
+                stats = getStats();
+            }
+
+            notifyDeviceFinished(callback, device, error, stats);
+        }
+
+        for (Device<T> device : toEnd)
+        {
+            device.cancelled = true;
+            UUError error = UUBluetoothError.preconditionFailedError("Fleet run cancelled");
+
+            // A device waiting to retry has no operation to end
+            if (device.operation != null)
+            {
+                stopAttempt(device, error);
+            }
+            else
+            {
+                handleAttemptFinished(device, error);
+            }
+        }
+
+        finishIfDone();
+    }
+
+    public synchronized @NonNull UUFleetStats getStats()
+    {
+        return new UUFleetStats(
+                total,
+                succeeded,
+                failed,
+                active.size(),
+                attempts,
+                retries,
+                deadlinesExceeded,
+                (running ? SystemClock.elapsedRealtime() : endTime) - startTime,
+                totalDeviceTime,
+                failuresByCode);
+    }
+
+    private void startNext()
+    {
+        ArrayList<Device<T>> toStart = new ArrayList<>();
+
+        synchronized (this)
+        {
+            while (running && active.size() < maxConcurrent && !queue.isEmpty())
+            {
+                Device<T> device = queue.poll();
+                active.add(device);
+                toStart.add(device);
+            }
+        }
+
+        for (Device<T> device : toStart)
+        {
+            startAttempt(device);
+        }
+
+        finishIfDone();
+    }
+
+    private void startAttempt(final @NonNull Device<T> device)
+    {
+        OperationFactory<T> operationFactory;
+        UUConnectionManager manager;
+        long deadline;
+
+        synchronized (this)
+        {
+            if (device.deadlinePassed)
+            {
+                return;
+            }
+
+            if (device.startTime == 0)
+            {
+                device.startTime = SystemClock.elapsedRealtime();
+            }
+
+            operationFactory = factory;
+            manager = connectionManager;
+            deadline = device.startTime + deviceDeadline - SystemClock.elapsedRealtime();
+
+            if (deadline > 0)
+            {
+                ++attempts;
+                ++device.attempts;
+            }
+        }
+
+        if (operationFactory == null || device.cancelled)
+        {
+            return;
+        }
+
+        if (deadline <= 0)
+        {
+            handleDeadlinePassed(device);
+            return;
+        }
+
+        UUPeripheralOperation<T> operation = operationFactory.create(device.peripheral);
+        operation.setConnectionManager(manager);
+
+        synchronized (this)
+        {
+            // The deadline fired while this attempt was waiting to start and has already
+            // finished the device
+            if (device.deadlinePassed)
+            {
+                return;
+            }
+
+            device.operation = operation;
+        }
+
+        device.deadlineTimer.start(deadline, () -> handleDeadlinePassed(device));
+
+        if (LOGGING_ENABLED)
+        {
+            UULog.debug(getClass(), "startAttempt", "Starting attempt " + device.attempts + " on " + device.peripheral.getAddress());
+        }
+
+        operation.start(error -> handleAttemptFinished(device, error));
+    }
+
+    private void handleDeadlinePassed(final @NonNull Device<T> device)
+    {
+        boolean waitingToRetry;
+
+        synchronized (this)
+        {
+            if (device.deadlinePassed)
+            {
+                return;
+            }
+
+            device.deadlinePassed = true;
+            ++deadlinesExceeded;
+            waitingToRetry = (device.operation == null);
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            UULog.debug(getClass(), "deadline", "Deadline passed for " + device.peripheral.getAddress() + ", waiting to retry: " + waitingToRetry);
+        }
+
+        UUError error = UUBluetoothError.timeoutError();
+
+        // A device waiting to retry has no operation to end
+        if (waitingToRetry)
+        {
+            device.retryTimer.cancel();
+            handleAttemptFinished(device, error);
+        }
+        else
+        {
+            stopAttempt(device, error);
+        }
+    }
+
+    // Goes through the connection manager so an attempt still waiting to connect is dequeued
+    private void stopAttempt(final @NonNull Device<T> device, final @NonNull UUError error)
+    {
+        UUConnectionManager manager;
+
+        synchronized (this)
+        {
+            manager = connectionManager;
+        }
+
+        if (manager != null)
+        {
+            manager.disconnect(device.peripheral, error);
+        }
+        else
+        {
+            device.peripheral.disconnect(error);
+        }
+    }
+
+    private void handleAttemptFinished(final @NonNull Device<T> device, final @Nullable UUError error)
+    {
+        boolean retry;
+        long delay;
+
+        synchronized (this)
+        {
+            device.operation = null;
+            retry = (error != null && running && !device.cancelled && !device.deadlinePassed && device.attempts < maxAttempts);
+            delay = retryDelay;
+
+            if (retry)
+            {
+                ++retries;
+            }
+        }
+
+        if (retry)
+        {
+            if (LOGGING_ENABLED)
+            {
+                UULog.debug(getClass(), "handleAttemptFinished", "Retrying " + device.peripheral.getAddress() + " in " + delay + " ms, error: " + error);
+            }
+
+            device.retryTimer.start(delay, () -> startAttempt(device));
+            return;
+        }
+
+        device.deadlineTimer.cancel();
+
+        Listener<T> callback;
+        UUFleetStats stats;
+
+        synchronized (this)
+        {
+            // Already finished, for example by the deadline while waiting to retry
+            if (!active.remove(device))
+            {
+                return;
+            }
+
+            totalDeviceTime += SystemClock.elapsedRealtime() - device.startTime;
+
+            if (error == null)
+            {
+                ++succeeded;
+            }
+            else
+            {
+                recordFailure(error);
+            }
+
+            callback = listener;
+            stats = getStats();
+        }
+
+        notifyDeviceFinished(callback, device, error, stats);
+        startNext();
+    }
+
+    // Must be called while synchronized
+    private void recordFailure(final @NonNull UUError error)
+    {
+        ++failed;
+
+        Integer count = failuresByCode.get(error.getCode());
+        failuresByCode.put(error.getCode(), (count != null) ? count + 1 : 1);
+    }
+
+    private void notifyDeviceFinished(
+            final @Nullable Listener<T> callback,
+            final @NonNull Device<T> device,
+            final @Nullable UUError error,
+            final @NonNull UUFleetStats stats)
+    {
+        if (callback != null)
+        {
+            try
+            {
+                callback.onDeviceFinished(device.peripheral, error, device.attempts, stats);
+            }
+            catch (Exception ex)
+            {
+                UULog.debug(getClass(), "notifyDeviceFinished", ex);
+            }
+        }
+    }
+
+    private void finishIfDone()
+    {
+        Listener<T> callback;
+        UUFleetStats stats;
+
+        synchronized (this)
+        {
+            if (!running || !active.isEmpty() || !queue.isEmpty())
+            {
+                return;
+            }
+
+            endTime = SystemClock.elapsedRealtime();
+            stats = getStats();
+            running = false;
+            callback = listener;
+            listener = null;
+            factory = null;
+            connectionManager = null;
+        }
+
+        if (callback != null)
+        {
+            try
+            {
+                callback.onFinished(stats);
+            }
+            catch (Exception ex)
+            {
+                UULog.debug(getClass(), "finishIfDone", ex);
+            }
+        }
+    }
+
+    private static class Device<T extends UUPeripheral>
+    {
+        final T peripheral;
+        final long sequence;
+        final int rssi;
+        final UUWatchdogScheduler.Watchdog deadlineTimer;
+        final UUWatchdogScheduler.Watchdog retryTimer;
+        volatile UUPeripheralOperation<T> operation;
+        volatile boolean cancelled;
+        volatile boolean deadlinePassed;
+        int attempts;
+        long startTime;
+
+        Device(final @NonNull T peripheral, final long sequence, final @NonNull UUWatchdogScheduler scheduler)
+        {
+            this.peripheral = peripheral;
+            this.sequence = sequence;
+            this.rssi = peripheral.getRssi();
+            this.deadlineTimer = scheduler.create();
+            this.retryTimer = scheduler.create();
+        }
+    }
+}
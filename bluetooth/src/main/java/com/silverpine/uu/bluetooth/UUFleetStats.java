@@ -0,0 +1,136 @@
+package com.silverpine.uu.bluetooth;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of a fleet run's progress.  Times are in milliseconds.
+ */
+@SuppressWarnings("unused")
+public class UUFleetStats
+{
+    private final int total;
+    private final int succeeded;
+    private final int failed;
+    private final int running;
+    private final long attempts;
+    private final long retries;
+    private final long deadlinesExceeded;
+    private final long elapsed;
+    private final long totalDeviceTime;
+    private final Map<Integer, Integer> failuresByCode;
+
+    UUFleetStats(
+            final int total,
+            final int succeeded,
+            final int failed,
+            final int running,
+            final long attempts,
+            final long retries,
+            final long deadlinesExceeded,
+            final long elapsed,
+            final long totalDeviceTime,
+            final @NonNull Map<Integer, Integer> failuresByCode)
+    {
+        this.total = total;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.running = running;
+        this.attempts = attempts;
+        this.retries = retries;
+        this.deadlinesExceeded = deadlinesExceeded;
+        this.elapsed = elapsed;
+        this.totalDeviceTime = totalDeviceTime;
+        this.failuresByCode = Collections.unmodifiableMap(new HashMap<>(failuresByCode));
+    }
+
+    public int getTotal()
+    {
+        return total;
+    }
+
+    public int getSucceeded()
+    {
+        return succeeded;
+    }
+
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public int getCompleted()
+    {
+        return succeeded + failed;
+    }
+
+    public int getRunning()
+    {
+        return running;
+    }
+
+    public int getPending()
+    {
+        return total - getCompleted() - running;
+    }
+
+    /**
+     * Number of operations started, including retries.
+     */
+    public long getAttempts()
+    {
+        return attempts;
+    }
+
+    public long getRetries()
+    {
+        return retries;
+    }
+
+    public long getDeadlinesExceeded()
+    {
+        return deadlinesExceeded;
+    }
+
+    public long getElapsed()
+    {
+        return elapsed;
+    }
+
+    /**
+     * Completed devices per minute since the run started.
+     */
+    public double getThroughput()
+    {
+        return (elapsed > 0) ? (getCompleted() * 60000.0 / elapsed) : 0;
+    }
+
+    /**
+     * Average time from a device's first attempt to its final result.
+     */
+    public long getAverageDeviceTime()
+    {
+        int completed = getCompleted();
+        return (completed > 0) ? (totalDeviceTime / completed) : 0;
+    }
+
+    /**
+     * Final failures counted by UUError code.
+     */
+    public @NonNull Map<Integer, Integer> getFailuresByCode()
+    {
+        return failuresByCode;
+    }
+
+    @NonNull
+    @Override
+    public String toString()
+    {
+        return "total: " + total + ", succeeded: " + succeeded + ", failed: " + failed + ", running: " + running +
+                ", retries: " + retries + ", elapsed: " + elapsed + ", throughput: " + String.format(Locale.US, "%.1f", getThroughput()) + "/min";
+    }
+}
@@ -0,0 +1,134 @@
+package com.silverpine.uu.bluetooth;
+
+import android.content.Context;
+
+import com.silverpine.uu.logging.UULog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Stores a UUGattDatabaseSnapshot per peripheral address, in memory and as one small file per
+ * peripheral so snapshots survive process restarts.  Files are written to a temporary file and
+ * renamed, so a crash mid-write never leaves a partial snapshot behind.
+ */
+@SuppressWarnings("unused")
+public class UUGattDatabaseCache
+{
+    private static final String FILE_EXTENSION = ".gattdb";
+
+    private final File directory;
+    private final ConcurrentHashMap<String, UUGattDatabaseSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    public UUGattDatabaseCache(final @NonNull Context context)
+    {
+        this(new File(context.getFilesDir(), "uu_gatt_db"));
+    }
+
+    public UUGattDatabaseCache(final @NonNull File directory)
+    {
+        this.directory = directory;
+    }
+
+    public @Nullable UUGattDatabaseSnapshot get(final @NonNull String address)
+    {
+        UUGattDatabaseSnapshot snapshot = snapshots.get(address);
+        if (snapshot != null)
+        {
+            return snapshot;
+        }
+
+        File file = fileFor(address);
+        if (!file.exists())
+        {
+            return null;
+        }
+
+        try
+        {
+            snapshot = UUGattDatabaseSnapshot.fromBytes(Files.readAllBytes(file.toPath()));
+        }
+        catch (IOException ex)
+        {
+            UULog.debug(getClass(), "get", ex);
+        }
+
+        if (snapshot == null)
+        {
+            file.delete();
+            return null;
+        }
+
+        snapshots.putIfAbsent(address, snapshot);
+        return snapshot;
+    }
+
+    public void put(final @NonNull String address, final @NonNull UUGattDatabaseSnapshot snapshot)
+    {
+        UUGattDatabaseSnapshot existing = snapshots.put(address, snapshot);
+        if (snapshot.equals(existing))
+        {
+            return;
+        }
+
+        File file = fileFor(address);
+        File temp = new File(directory, file.getName() + ".tmp");
+
+        try
+        {
+            if (!directory.exists() && !directory.mkdirs())
+            {
+                throw new IOException("Unable to create " + directory);
+            }
+
+            try (FileOutputStream out = new FileOutputStream(temp))
+            {
+                out.write(snapshot.toBytes());
+                out.getFD().sync();
+            }
+
+            if (!temp.renameTo(file))
+            {
+                throw new IOException("Unable to rename " + temp);
+            }
+        }
+        catch (IOException ex)
+        {
+            UULog.debug(getClass(), "put", ex);
+            temp.delete();
+        }
+    }
+
+    public void remove(final @NonNull String address)
+    {
+        snapshots.remove(address);
+        fileFor(address).delete();
+    }
+
+    public void clear()
+    {
+        snapshots.clear();
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+    }
+
+    private @NonNull File fileFor(final @NonNull String address)
+    {
+        String name = address.replace(":", "").toLowerCase(Locale.US);
+        return new File(directory, name + FILE_EXTENSION);
+    }
+}
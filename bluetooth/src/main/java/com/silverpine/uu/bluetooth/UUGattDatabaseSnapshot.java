@@ -0,0 +1,372 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Immutable copy of a peripheral's discovered GATT layout: services, characteristics with their
+ * properties, and descriptor UUIDs, plus the Database Hash value when the peripheral exposes one.
+ *
+ * Snapshots serialize to a compact binary form.  UUIDs built on the Bluetooth base UUID are
+ * stored as their 16 bit short code.
+ */
+@SuppressWarnings("unused")
+public final class UUGattDatabaseSnapshot
+{
+    private static final int FORMAT_VERSION = 1;
+    private static final int UUID_SHORT = 0;
+    private static final int UUID_FULL = 1;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+    private static final long BASE_UUID_MSB_MASK = 0x0000FFFF00000000L;
+    private static final long BASE_UUID_MSB = 0x0000000000001000L;
+
+    private final List<Service> services;
+    private final @Nullable byte[] databaseHash;
+
+    UUGattDatabaseSnapshot(final @NonNull List<Service> services, final @Nullable byte[] databaseHash)
+    {
+        this.services = Collections.unmodifiableList(new ArrayList<>(services));
+        this.databaseHash = (databaseHash != null) ? databaseHash.clone() : null;
+    }
+
+    public static @NonNull UUGattDatabaseSnapshot fromServices(final @NonNull List<BluetoothGattService> services, final @Nullable byte[] databaseHash)
+    {
+        ArrayList<Service> list = new ArrayList<>();
+
+        for (BluetoothGattService service : services)
+        {
+            ArrayList<Characteristic> characteristics = new ArrayList<>();
+
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics())
+            {
+                ArrayList<UUID> descriptors = new ArrayList<>();
+                for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors())
+                {
+                    descriptors.add(descriptor.getUuid());
+                }
+
+                characteristics.add(new Characteristic(characteristic.getUuid(), characteristic.getProperties(), descriptors));
+            }
+
+            list.add(new Service(service.getUuid(), service.getType(), characteristics));
+        }
+
+        return new UUGattDatabaseSnapshot(list, databaseHash);
+    }
+
+    public @NonNull List<Service> getServices()
+    {
+        return services;
+    }
+
+    public @Nullable byte[] getDatabaseHash()
+    {
+        return (databaseHash != null) ? databaseHash.clone() : null;
+    }
+
+    public @NonNull UUGattDatabaseSnapshot withDatabaseHash(final @Nullable byte[] hash)
+    {
+        return new UUGattDatabaseSnapshot(services, hash);
+    }
+
+    public @Nullable Characteristic findCharacteristic(final @NonNull UUID uuid)
+    {
+        for (Service service : services)
+        {
+            for (Characteristic characteristic : service.characteristics)
+            {
+                if (characteristic.uuid.equals(uuid))
+                {
+                    return characteristic;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns true if both snapshots have the same services, characteristics, properties and
+     * descriptors in the same order.  The database hash is not compared.
+     */
+    public boolean hasSameLayout(final @NonNull UUGattDatabaseSnapshot other)
+    {
+        return services.equals(other.services);
+    }
+
+    public @NonNull byte[] toBytes()
+    {
+        try
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+
+            out.writeByte(FORMAT_VERSION);
+
+            if (databaseHash != null)
+            {
+                out.writeByte(databaseHash.length);
+                out.write(databaseHash);
+            }
+            else
+            {
+                out.writeByte(0);
+            }
+
+            out.writeShort(services.size());
+            for (Service service : services)
+            {
+                writeUuid(out, service.uuid);
+                out.writeByte(service.type);
+                out.writeShort(service.characteristics.size());
+
+                for (Characteristic characteristic : service.characteristics)
+                {
+                    writeUuid(out, characteristic.uuid);
+                    out.writeByte(characteristic.properties);
+                    out.writeByte(characteristic.descriptors.size());
+
+                    for (UUID descriptor : characteristic.descriptors)
+                    {
+                        writeUuid(out, descriptor);
+                    }
+                }
+            }
+
+            out.flush();
+            return bos.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            // Not reachable, ByteArrayOutputStream does not throw
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Parses a snapshot, returning null if the data is truncated or from an unknown format.
+     */
+    public static @Nullable UUGattDatabaseSnapshot fromBytes(final @NonNull byte[] data)
+    {
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+            if (in.readUnsignedByte() != FORMAT_VERSION)
+            {
+                return null;
+            }
+
+            byte[] hash = null;
+            int hashLength = in.readUnsignedByte();
+            if (hashLength > 0)
+            {
+                hash = new byte[hashLength];
+                in.readFully(hash);
+            }
+
+            int serviceCount = in.readUnsignedShort();
+            ArrayList<Service> services = new ArrayList<>(serviceCount);
+
+            for (int i = 0; i < serviceCount; i++)
+            {
+                UUID serviceUuid = readUuid(in);
+                int type = in.readUnsignedByte();
+                int characteristicCount = in.readUnsignedShort();
+                ArrayList<Characteristic> characteristics = new ArrayList<>(characteristicCount);
+
+                for (int j = 0; j < characteristicCount; j++)
+                {
+                    UUID characteristicUuid = readUuid(in);
+                    int properties = in.readUnsignedByte();
+                    int descriptorCount = in.readUnsignedByte();
+                    ArrayList<UUID> descriptors = new ArrayList<>(descriptorCount);
+
+                    for (int k = 0; k < descriptorCount; k++)
+                    {
+                        descriptors.add(readUuid(in));
+                    }
+
+                    characteristics.add(new Characteristic(characteristicUuid, properties, descriptors));
+                }
+
+                services.add(new Service(serviceUuid, type, characteristics));
+            }
+
+            if (in.available() != 0)
+            {
+                return null;
+            }
+
+            return new UUGattDatabaseSnapshot(services, hash);
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+    }
+
+    private static void writeUuid(final @NonNull DataOutputStream out, final @NonNull UUID uuid) throws IOException
+    {
+        long msb = uuid.getMostSignificantBits();
+        if (uuid.getLeastSignificantBits() == BASE_UUID_LSB && (msb & ~BASE_UUID_MSB_MASK) == BASE_UUID_MSB)
+        {
+            out.writeByte(UUID_SHORT);
+            out.writeShort((int) (msb >>> 32));
+        }
+        else
+        {
+            out.writeByte(UUID_FULL);
+            out.writeLong(msb);
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    private static @NonNull UUID readUuid(final @NonNull DataInputStream in) throws IOException
+    {
+        int form = in.readUnsignedByte();
+        if (form == UUID_SHORT)
+        {
+            long shortCode = in.readUnsignedShort();
+            return new UUID((shortCode << 32) | BASE_UUID_MSB, BASE_UUID_LSB);
+        }
+        else if (form == UUID_FULL)
+        {
+            return new UUID(in.readLong(), in.readLong());
+        }
+
+        throw new IOException("Unknown UUID form " + form);
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+
+        if (!(o instanceof UUGattDatabaseSnapshot))
+        {
+            return false;
+        }
+
+        UUGattDatabaseSnapshot other = (UUGattDatabaseSnapshot) o;
+        return services.equals(other.services) && Arrays.equals(databaseHash, other.databaseHash);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return (31 * services.hashCode()) + Arrays.hashCode(databaseHash);
+    }
+
+    public static final class Service
+    {
+        private final UUID uuid;
+        private final int type;
+        private final List<Characteristic> characteristics;
+
+        Service(final @NonNull UUID uuid, final int type, final @NonNull List<Characteristic> characteristics)
+        {
+            this.uuid = uuid;
+            this.type = type;
+            this.characteristics = Collections.unmodifiableList(new ArrayList<>(characteristics));
+        }
+
+        public @NonNull UUID getUuid()
+        {
+            return uuid;
+        }
+
+        public int getType()
+        {
+            return type;
+        }
+
+        public @NonNull List<Characteristic> getCharacteristics()
+        {
+            return characteristics;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Service))
+            {
+                return false;
+            }
+
+            Service other = (Service) o;
+            return uuid.equals(other.uuid) && type == other.type && characteristics.equals(other.characteristics);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * uuid.hashCode()) + characteristics.hashCode();
+        }
+    }
+
+    public static final class Characteristic
+    {
+        private final UUID uuid;
+        private final int properties;
+        private final List<UUID> descriptors;
+
+        Characteristic(final @NonNull UUID uuid, final int properties, final @NonNull List<UUID> descriptors)
+        {
+            this.uuid = uuid;
+            this.properties = properties;
+            this.descriptors = Collections.unmodifiableList(new ArrayList<>(descriptors));
+        }
+
+        public @NonNull UUID getUuid()
+        {
+            return uuid;
+        }
+
+        public int getProperties()
+        {
+            return properties;
+        }
+
+        public @NonNull List<UUID> getDescriptors()
+        {
+            return descriptors;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Characteristic))
+            {
+                return false;
+            }
+
+            Characteristic other = (Characteristic) o;
+            return uuid.equals(other.uuid) && properties == other.properties && descriptors.equals(other.descriptors);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * uuid.hashCode()) + properties;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Hash index over a discovered GATT database.  Lookups by UUID are constant time; when a UUID
+ * appears more than once the first occurrence in discovery order wins, matching the linear scans
+ * this replaces.
+ *
+ * update is cheap to call before every lookup.  It only compares service identities while the
+ * services are unchanged, and when discovery produces new services only those not seen before
+ * are indexed.  Readers never lock; each update publishes a new immutable index.
+ */
+final class UUGattIndex
+{
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), new IdentityHashMap<>());
+
+    void update(final @NonNull List<BluetoothGattService> services)
+    {
+        Snapshot current = snapshot;
+        if (current.isIndexOf(services))
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            current = snapshot;
+            if (!current.isIndexOf(services))
+            {
+                snapshot = new Snapshot(services, current.entries);
+            }
+        }
+    }
+
+    @Nullable
+    BluetoothGattService findService(final @NonNull UUID uuid)
+    {
+        ServiceEntry entry = snapshot.servicesByUuid.get(uuid);
+        return (entry != null) ? entry.service : null;
+    }
+
+    @Nullable
+    BluetoothGattCharacteristic findCharacteristic(final @NonNull UUID uuid)
+    {
+        return snapshot.characteristicsByUuid.get(uuid);
+    }
+
+    @Nullable
+    BluetoothGattCharacteristic findCharacteristic(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        ServiceEntry entry = snapshot.servicesByUuid.get(serviceUuid);
+        return (entry != null) ? entry.characteristics.get(characteristicUuid) : null;
+    }
+
+    @Nullable
+    BluetoothGattDescriptor findDescriptor(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @NonNull UUID descriptorUuid)
+    {
+        ServiceEntry entry = snapshot.servicesByUuid.get(serviceUuid);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        HashMap<UUID, BluetoothGattDescriptor> descriptors = entry.descriptors.get(characteristicUuid);
+        return (descriptors != null) ? descriptors.get(descriptorUuid) : null;
+    }
+
+    private static final class Snapshot
+    {
+        final BluetoothGattService[] source;
+        final IdentityHashMap<BluetoothGattService, ServiceEntry> entries = new IdentityHashMap<>();
+        final HashMap<UUID, ServiceEntry> servicesByUuid = new HashMap<>();
+        final HashMap<UUID, BluetoothGattCharacteristic> characteristicsByUuid = new HashMap<>();
+
+        Snapshot(final @NonNull List<BluetoothGattService> source, final @NonNull IdentityHashMap<BluetoothGattService, ServiceEntry> previous)
+        {
+            this.source = source.toArray(new BluetoothGattService[0]);
+
+            for (BluetoothGattService service : this.source)
+            {
+                ServiceEntry entry = previous.get(service);
+                if (entry == null)
+                {
+                    entry = new ServiceEntry(service);
+                }
+
+                entries.put(service, entry);
+                servicesByUuid.putIfAbsent(service.getUuid(), entry);
+
+                for (BluetoothGattCharacteristic characteristic : service.getCharacteristics())
+                {
+                    characteristicsByUuid.putIfAbsent(characteristic.getUuid(), characteristic);
+                }
+            }
+        }
+
+        // The platform returns a new list on every call, so services are compared by identity
+        boolean isIndexOf(final @NonNull List<BluetoothGattService> services)
+        {
+            if (services.size() != source.length)
+            {
+                return false;
+            }
+
+            for (int i = 0; i < source.length; i++)
+            {
+                if (services.get(i) != source[i])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private static final class ServiceEntry
+    {
+        final BluetoothGattService service;
+        final HashMap<UUID, BluetoothGattCharacteristic> characteristics = new HashMap<>();
+        final HashMap<UUID, HashMap<UUID, BluetoothGattDescriptor>> descriptors = new HashMap<>();
+
+        ServiceEntry(final @NonNull BluetoothGattService service)
+        {
+            this.service = service;
+
+            for (BluetoothGattCharacteristic characteristic : service.getCharacteristics())
+            {
+                if (characteristics.putIfAbsent(characteristic.getUuid(), characteristic) != null)
+                {
+                    continue;
+                }
+
+                HashMap<UUID, BluetoothGattDescriptor> byUuid = new HashMap<>();
+                for (BluetoothGattDescriptor descriptor : characteristic.getDescriptors())
+                {
+                    byUuid.putIfAbsent(descriptor.getUuid(), descriptor);
+                }
+
+                descriptors.put(characteristic.getUuid(), byUuid);
+            }
+        }
+    }
+}
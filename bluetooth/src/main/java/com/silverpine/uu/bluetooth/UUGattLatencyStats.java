@@ -0,0 +1,77 @@
+package com.silverpine.uu.bluetooth;
+
+import android.os.SystemClock;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Latency histograms for the GATT operations of one connection.  Each operation is timed from the
+ * moment it is issued until its completion callback, and only successful completions are
+ * recorded, so timeouts do not skew the percentiles.
+ */
+@SuppressWarnings("unused")
+public class UUGattLatencyStats
+{
+    public enum Operation
+    {
+        CONNECT,
+        DISCOVER_SERVICES,
+        REQUEST_MTU,
+        READ_CHARACTERISTIC,
+        WRITE_CHARACTERISTIC,
+        READ_DESCRIPTOR,
+        WRITE_DESCRIPTOR,
+        READ_RSSI,
+    }
+
+    private final UULatencyHistogram[] histograms = new UULatencyHistogram[Operation.values().length];
+
+    UUGattLatencyStats()
+    {
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = new UULatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns a timestamp to later pass to record.
+     */
+    static long now()
+    {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    void record(final @NonNull Operation operation, final long startTime)
+    {
+        histograms[operation.ordinal()].record((now() - startTime) / 1000);
+    }
+
+    public @NonNull UULatencyHistogram.Snapshot snapshot(final @NonNull Operation operation)
+    {
+        return histograms[operation.ordinal()].snapshot();
+    }
+
+    public @NonNull Map<Operation, UULatencyHistogram.Snapshot> snapshot()
+    {
+        EnumMap<Operation, UULatencyHistogram.Snapshot> map = new EnumMap<>(Operation.class);
+
+        for (Operation operation : Operation.values())
+        {
+            map.put(operation, snapshot(operation));
+        }
+
+        return map;
+    }
+
+    public void reset()
+    {
+        for (UULatencyHistogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.silverpine.uu.bluetooth;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of GATT error recovery statistics for a peripheral.  Times are in milliseconds,
+ * measured from the first failure of a connect to it either succeeding or giving up.
+ */
+@SuppressWarnings("unused")
+public class UUGattRecoveryMetrics
+{
+    private final HashMap<Integer, Long> failuresByStatus;
+    private final HashMap<UUGattRecoveryStrategy.Type, Long> actionsByType;
+    private final long recoveredCount;
+    private final long gaveUpCount;
+    private final long totalRecoveryTime;
+    private final long maxRecoveryTime;
+
+    private UUGattRecoveryMetrics(final @NonNull Recorder recorder)
+    {
+        failuresByStatus = new HashMap<>(recorder.failuresByStatus);
+        actionsByType = new HashMap<>(recorder.actionsByType);
+        recoveredCount = recorder.recoveredCount;
+        gaveUpCount = recorder.gaveUpCount;
+        totalRecoveryTime = recorder.totalRecoveryTime;
+        maxRecoveryTime = recorder.maxRecoveryTime;
+    }
+
+    /**
+     * Number of failed connect attempts, keyed by GATT status.
+     */
+    public @NonNull Map<Integer, Long> getFailuresByStatus()
+    {
+        return failuresByStatus;
+    }
+
+    /**
+     * Number of recovery actions taken, keyed by action type.
+     */
+    public @NonNull Map<UUGattRecoveryStrategy.Type, Long> getActionsByType()
+    {
+        return actionsByType;
+    }
+
+    public long getRecoveredCount()
+    {
+        return recoveredCount;
+    }
+
+    public long getGaveUpCount()
+    {
+        return gaveUpCount;
+    }
+
+    public double getSuccessRate()
+    {
+        long total = recoveredCount + gaveUpCount;
+        return (total > 0) ? ((double) recoveredCount / total) : 0;
+    }
+
+    public long getAverageRecoveryTime()
+    {
+        return (recoveredCount > 0) ? (totalRecoveryTime / recoveredCount) : 0;
+    }
+
+    public long getMaxRecoveryTime()
+    {
+        return maxRecoveryTime;
+    }
+
+    @NonNull
+    @Override
+    public String toString()
+    {
+        return "failures: " + failuresByStatus +
+                ", actions: " + actionsByType +
+                ", recovered: " + recoveredCount +
+                ", gaveUp: " + gaveUpCount +
+                ", avgTime: " + getAverageRecoveryTime() +
+                ", maxTime: " + maxRecoveryTime;
+    }
+
+    static class Recorder
+    {
+        private final HashMap<Integer, Long> failuresByStatus = new HashMap<>();
+        private final HashMap<UUGattRecoveryStrategy.Type, Long> actionsByType = new HashMap<>();
+        private long recoveredCount;
+        private long gaveUpCount;
+        private long totalRecoveryTime;
+        private long maxRecoveryTime;
+
+        synchronized void recordFailure(final int gattStatus, final @NonNull UUGattRecoveryStrategy.Type action)
+        {
+            Long count = failuresByStatus.get(gattStatus);
+            failuresByStatus.put(gattStatus, (count != null) ? (count + 1) : 1);
+
+            Long actionCount = actionsByType.get(action);
+            actionsByType.put(action, (actionCount != null) ? (actionCount + 1) : 1);
+        }
+
+        synchronized void recordRecovered(final long recoveryTime)
+        {
+            ++recoveredCount;
+            totalRecoveryTime += recoveryTime;
+            maxRecoveryTime = Math.max(maxRecoveryTime, recoveryTime);
+        }
+
+        synchronized void recordGaveUp()
+        {
+            ++gaveUpCount;
+        }
+
+        synchronized @NonNull UUGattRecoveryMetrics snapshot()
+        {
+            return new UUGattRecoveryMetrics(this);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.silverpine.uu.bluetooth;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides how to recover when a connect attempt fails with a GATT error such as status 133.
+ */
+public interface UUGattRecoveryStrategy
+{
+    enum Type
+    {
+        /**
+         * Call BluetoothGatt.connect on the existing handle.
+         */
+        RECONNECT,
+
+        /**
+         * Close the BluetoothGatt and open a new one with connectGatt.
+         */
+        RECREATE,
+
+        /**
+         * Stop recovering and report the connect as failed.
+         */
+        GIVE_UP,
+    }
+
+    class Action
+    {
+        private static final Action GIVE_UP = new Action(Type.GIVE_UP, 0, false);
+
+        private final Type type;
+        private final long delay;
+        private final boolean refreshCache;
+
+        private Action(final @NonNull Type type, final long delay, final boolean refreshCache)
+        {
+            this.type = type;
+            this.delay = delay;
+            this.refreshCache = refreshCache;
+        }
+
+        public static @NonNull Action reconnect(final long delay)
+        {
+            return new Action(Type.RECONNECT, delay, false);
+        }
+
+        public static @NonNull Action recreate(final long delay, final boolean refreshCache)
+        {
+            return new Action(Type.RECREATE, delay, refreshCache);
+        }
+
+        public static @NonNull Action giveUp()
+        {
+            return GIVE_UP;
+        }
+
+        public @NonNull Type getType()
+        {
+            return type;
+        }
+
+        public long getDelay()
+        {
+            return delay;
+        }
+
+        /**
+         * When true, the GATT attribute cache is refreshed before the handle is closed.
+         */
+        public boolean isRefreshCache()
+        {
+            return refreshCache;
+        }
+
+        @NonNull
+        @Override
+        public String toString()
+        {
+            return type + ", delay: " + delay + ", refreshCache: " + refreshCache;
+        }
+    }
+
+    /**
+     * Returns the recovery action for a failed connect attempt.
+     *
+     * @param failureCount consecutive failures for this connect, starting at 1
+     * @param gattStatus the GATT status the attempt failed with
+     * @return the action to take
+     */
+    @NonNull
+    Action nextAction(final int failureCount, final int gattStatus);
+}
@@ -0,0 +1,118 @@
+package com.silverpine.uu.bluetooth;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Controls which thread GATT calls and GATT callbacks run on, and where completion delegates are
+ * delivered.
+ *
+ * By default all connections share a single background HandlerThread that is passed to
+ * BluetoothDevice.connectGatt, so GATT traffic is not held up by UI work and vice versa.  Settings
+ * take effect on the next connect.
+ */
+@SuppressWarnings("unused")
+public class UUGattThread
+{
+    public enum Mode
+    {
+        /**
+         * Platform calls are made on the main thread and callbacks arrive on a binder thread.
+         */
+        MAIN_THREAD,
+
+        /**
+         * All connections share one GATT HandlerThread.
+         */
+        SHARED,
+
+        /**
+         * Each connection gets its own GATT HandlerThread, which quits after disconnect.
+         */
+        PER_CONNECTION,
+    }
+
+    private static final String SHARED_THREAD_NAME = "UUBluetoothGatt";
+
+    private static Mode mode = Mode.SHARED;
+    private static Executor callbackExecutor;
+    private static HandlerThread sharedThread;
+
+    public static synchronized @NonNull Mode getMode()
+    {
+        return mode;
+    }
+
+    public static synchronized void setMode(final @NonNull Mode mode)
+    {
+        UUGattThread.mode = mode;
+    }
+
+    /**
+     * The executor that completion delegates are delivered on.  When null, delegates are invoked
+     * directly on the GATT thread.
+     */
+    public static synchronized @Nullable Executor getCallbackExecutor()
+    {
+        return callbackExecutor;
+    }
+
+    public static synchronized void setCallbackExecutor(final @Nullable Executor executor)
+    {
+        callbackExecutor = executor;
+    }
+
+    /**
+     * Returns a handler for a new connection, or null when GATT work should stay on the main thread.
+     */
+    static synchronized @Nullable Handler acquireHandler(final @NonNull String address)
+    {
+        switch (mode)
+        {
+            case SHARED:
+                if (sharedThread == null)
+                {
+                    sharedThread = startThread(SHARED_THREAD_NAME);
+                }
+                return new Handler(sharedThread.getLooper());
+
+            case PER_CONNECTION:
+                return new Handler(startThread(SHARED_THREAD_NAME + "-" + address).getLooper());
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Releases a handler returned from acquireHandler.  Per connection threads are quit once any
+     * work already posted to them has run.
+     */
+    static synchronized void releaseHandler(final @Nullable Handler handler)
+    {
+        if (handler == null)
+        {
+            return;
+        }
+
+        if (sharedThread != null && handler.getLooper() == sharedThread.getLooper())
+        {
+            return;
+        }
+
+        handler.getLooper().quitSafely();
+    }
+
+    private static @NonNull HandlerThread startThread(final @NonNull String name)
+    {
+        HandlerThread thread = new HandlerThread(name, Process.THREAD_PRIORITY_FOREGROUND);
+        thread.start();
+        return thread;
+    }
+}
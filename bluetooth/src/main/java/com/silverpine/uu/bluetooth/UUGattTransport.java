@@ -0,0 +1,113 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.content.Context;
+import android.os.Handler;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The GATT calls UUBluetoothGatt makes, and the callbacks it receives.  Method names and
+ * semantics match BluetoothGatt and BluetoothGattCallback: request methods return false when the
+ * request could not be issued, and otherwise exactly one callback follows.
+ *
+ * UUPlatformGattTransport talks to the Android Bluetooth stack.  Tests can install a Factory on
+ * UUBluetoothGatt to connect to something else.
+ */
+interface UUGattTransport
+{
+    interface Factory
+    {
+        /**
+         * Opens a connection.  When a handler is given, callbacks are delivered on its thread.
+         *
+         * @return the transport, or null if the connection could not be started
+         */
+        @Nullable
+        UUGattTransport connect(
+                @NonNull Context context,
+                @NonNull UUPeripheral peripheral,
+                boolean autoConnect,
+                @Nullable Handler handler,
+                @NonNull Callback callback);
+    }
+
+    interface Callback
+    {
+        void onConnectionStateChange(int status, int newState);
+
+        void onServicesDiscovered(int status);
+
+        void onCharacteristicRead(@NonNull BluetoothGattCharacteristic characteristic, int status);
+
+        void onCharacteristicWrite(@NonNull BluetoothGattCharacteristic characteristic, int status);
+
+        void onCharacteristicChanged(@NonNull BluetoothGattCharacteristic characteristic);
+
+        void onDescriptorRead(@NonNull BluetoothGattDescriptor descriptor, int status);
+
+        void onDescriptorWrite(@NonNull BluetoothGattDescriptor descriptor, int status);
+
+        void onReliableWriteCompleted(int status);
+
+        void onReadRemoteRssi(int rssi, int status);
+
+        void onMtuChanged(int mtu, int status);
+
+        void onPhyUpdate(int txPhy, int rxPhy, int status);
+
+        void onPhyRead(int txPhy, int rxPhy, int status);
+    }
+
+    boolean connect();
+
+    void disconnect();
+
+    void close();
+
+    boolean discoverServices();
+
+    @NonNull
+    List<BluetoothGattService> getServices();
+
+    boolean readCharacteristic(@NonNull BluetoothGattCharacteristic characteristic);
+
+    boolean writeCharacteristic(@NonNull BluetoothGattCharacteristic characteristic);
+
+    boolean readDescriptor(@NonNull BluetoothGattDescriptor descriptor);
+
+    boolean writeDescriptor(@NonNull BluetoothGattDescriptor descriptor);
+
+    boolean setCharacteristicNotification(@NonNull BluetoothGattCharacteristic characteristic, boolean enable);
+
+    boolean readRemoteRssi();
+
+    boolean requestMtu(int mtu);
+
+    boolean requestConnectionPriority(int connectionPriority);
+
+    void setPreferredPhy(int txPhy, int rxPhy, int phyOptions);
+
+    boolean beginReliableWrite();
+
+    boolean executeReliableWrite();
+
+    void abortReliableWrite();
+
+    /**
+     * Clears the cached GATT database so the next discovery reads it from the device.
+     */
+    boolean refresh();
+
+    /**
+     * The platform object behind this transport, or null for a simulated transport.
+     */
+    @Nullable
+    BluetoothGatt getBluetoothGatt();
+}
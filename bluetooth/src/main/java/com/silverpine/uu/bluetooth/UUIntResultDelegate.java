@@ -0,0 +1,19 @@
+package com.silverpine.uu.bluetooth;
+
+import com.silverpine.uu.core.UUError;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Interface for delivering an int result without boxing it
+ */
+public interface UUIntResultDelegate
+{
+    /**
+     * Callback invoked when a typed read is completed.
+     *
+     * @param value the value read, zero when error is set
+     * @param error an error if one occurs
+     */
+    void onComplete(final int value, final @Nullable UUError error);
+}
@@ -0,0 +1,241 @@
+package com.silverpine.uu.bluetooth;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Fixed memory latency histogram with log-linear buckets.  Values below 8 microseconds get a
+ * bucket each, and every power of two above that is split into 8 linear sub-buckets, so any
+ * recorded value is within 12.5% of its bucket bounds.  Values above ~67 seconds land in the last
+ * bucket.
+ *
+ * Recording is lock free and never allocates.  Snapshots copy the counters without stopping
+ * writers, so a snapshot taken while values are being recorded may be off by the few values that
+ * were in flight.
+ */
+@SuppressWarnings("unused")
+public final class UULatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 26;
+
+    static final int BUCKET_COUNT = ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Records a latency in microseconds.  Negative values are ignored.
+     */
+    public void record(final long micros)
+    {
+        if (micros < 0)
+        {
+            return;
+        }
+
+        buckets.incrementAndGet(bucketIndex(micros));
+        sum.addAndGet(micros);
+
+        long current = min.get();
+        while (micros < current && !min.compareAndSet(current, micros))
+        {
+            current = min.get();
+        }
+
+        current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros))
+        {
+            current = max.get();
+        }
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            buckets.set(i, 0);
+        }
+
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    public @NonNull Snapshot snapshot()
+    {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+        {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        return new Snapshot(counts, total, sum.get(), min.get(), max.get());
+    }
+
+    static int bucketIndex(final long value)
+    {
+        if (value < SUB_BUCKET_COUNT)
+        {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+        {
+            return BUCKET_COUNT - 1;
+        }
+
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT) + sub;
+    }
+
+    static long bucketLowerBound(final int index)
+    {
+        if (index < SUB_BUCKET_COUNT)
+        {
+            return index;
+        }
+
+        int exponent = (index / SUB_BUCKET_COUNT) + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + sub)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long bucketUpperBound(final int index)
+    {
+        if (index >= BUCKET_COUNT - 1)
+        {
+            return Long.MAX_VALUE;
+        }
+
+        return bucketLowerBound(index + 1) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram.  Snapshots from different connections can be merged, for
+     * example to aggregate latencies by device model.
+     */
+    public static final class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(final @NonNull long[] counts, final long count, final long sum, final long min, final long max)
+        {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = (count > 0) ? min : 0;
+            this.max = (count > 0) ? max : 0;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public long getMin()
+        {
+            return min;
+        }
+
+        public long getMax()
+        {
+            return max;
+        }
+
+        public double getMean()
+        {
+            return (count > 0) ? ((double) sum / count) : 0;
+        }
+
+        /**
+         * Returns the value at the given percentile, 0 to 100.  The result is the upper bound of
+         * the bucket that holds the percentile, clamped to the recorded min and max.
+         */
+        public long getPercentile(final double percentile)
+        {
+            if (count <= 0)
+            {
+                return 0;
+            }
+
+            double clamped = Math.max(0, Math.min(100, percentile));
+            long rank = Math.max(1, (long) Math.ceil((clamped / 100.0) * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank)
+                {
+                    return Math.max(min, Math.min(max, bucketUpperBound(i)));
+                }
+            }
+
+            return max;
+        }
+
+        public long getP50()
+        {
+            return getPercentile(50);
+        }
+
+        public long getP99()
+        {
+            return getPercentile(99);
+        }
+
+        public int getBucketCount()
+        {
+            return counts.length;
+        }
+
+        public long getBucketLowerBound(final int index)
+        {
+            return bucketLowerBound(index);
+        }
+
+        public long getBucketUpperBound(final int index)
+        {
+            return bucketUpperBound(index);
+        }
+
+        public long getBucketValue(final int index)
+        {
+            return counts[index];
+        }
+
+        public @NonNull Snapshot merge(final @NonNull Snapshot other)
+        {
+            long[] merged = new long[counts.length];
+            for (int i = 0; i < merged.length; i++)
+            {
+                merged[i] = counts[i] + other.counts[i];
+            }
+
+            long mergedMin = (count == 0) ? other.min : ((other.count == 0) ? min : Math.min(min, other.min));
+            long mergedMax = Math.max(max, other.max);
+            return new Snapshot(merged, count + other.count, sum + other.sum, mergedMin, mergedMax);
+        }
+
+        @NonNull
+        @Override
+        public String toString()
+        {
+            return "count: " + count + ", min: " + min + ", p50: " + getP50() + ", p99: " + getP99() + ", max: " + max + " (us)";
+        }
+    }
+}
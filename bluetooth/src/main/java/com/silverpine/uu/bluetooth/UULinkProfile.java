@@ -0,0 +1,102 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Describes the link parameters that are negotiated as part of establishing a connection.  When a
+ * link profile is passed to UUPeripheral.connect, the connection priority, MTU and PHY are
+ * requested after the link comes up and before the connected callback is invoked.
+ */
+@SuppressWarnings("unused")
+public class UULinkProfile
+{
+    /**
+     * Largest ATT MTU that can be requested from Android
+     */
+    public static final int MAX_MTU_SIZE = 517;
+
+    /**
+     * Pass as the MTU size or connection priority to skip that step
+     */
+    public static final int DISABLED = -1;
+
+    private int mtuSize = MAX_MTU_SIZE;
+    private int connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_HIGH;
+    private int preferredPhy = BluetoothDevice.PHY_LE_2M_MASK;
+    private int fallbackPhy = BluetoothDevice.PHY_LE_1M_MASK;
+    private long stepTimeout = UUPeripheral.Defaults.LinkNegotiationTimeout;
+
+    /**
+     * Creates a profile that negotiates max MTU, LE 2M PHY and high connection priority.
+     *
+     * @return a link profile
+     */
+    public static @NonNull UULinkProfile highThroughput()
+    {
+        return new UULinkProfile();
+    }
+
+    public int getMtuSize()
+    {
+        return mtuSize;
+    }
+
+    public void setMtuSize(int mtuSize)
+    {
+        this.mtuSize = mtuSize;
+    }
+
+    public int getConnectionPriority()
+    {
+        return connectionPriority;
+    }
+
+    public void setConnectionPriority(int connectionPriority)
+    {
+        this.connectionPriority = connectionPriority;
+    }
+
+    /**
+     * The PHY mask requested first, one of the BluetoothDevice.PHY_LE_*_MASK values, or DISABLED.
+     */
+    public int getPreferredPhy()
+    {
+        return preferredPhy;
+    }
+
+    public void setPreferredPhy(int preferredPhy)
+    {
+        this.preferredPhy = preferredPhy;
+    }
+
+    /**
+     * The PHY mask requested if the preferred PHY is not supported by the adapter, is rejected,
+     * or is not the PHY the link ends up on.  DISABLED keeps whatever the link ends up on.
+     */
+    public int getFallbackPhy()
+    {
+        return fallbackPhy;
+    }
+
+    public void setFallbackPhy(int fallbackPhy)
+    {
+        this.fallbackPhy = fallbackPhy;
+    }
+
+    /**
+     * Timeout applied to each individual negotiation step.  A step that times out is skipped and
+     * does not fail the connection.
+     */
+    public long getStepTimeout()
+    {
+        return stepTimeout;
+    }
+
+    public void setStepTimeout(long stepTimeout)
+    {
+        this.stepTimeout = stepTimeout;
+    }
+}
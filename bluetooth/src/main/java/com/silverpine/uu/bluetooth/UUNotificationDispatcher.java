@@ -0,0 +1,100 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.silverpine.uu.logging.UULog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Moves characteristic notifications off the binder thread.  Values are copied into a ring buffer
+ * as soon as they arrive and a dedicated consumer thread hands them to the sink in batches.
+ */
+class UUNotificationDispatcher
+{
+    static final int DEFAULT_CAPACITY = 256;
+    private static final int MAX_BATCH_SIZE = 64;
+
+    interface Sink
+    {
+        /**
+         * Invoked on the dispatch thread with a batch of notifications in arrival order.
+         */
+        void dispatch(final @NonNull List<UUCharacteristicNotification> batch);
+    }
+
+    private final UUNotificationRingBuffer ringBuffer;
+    private final Thread thread;
+
+    /**
+     * @param capacity most notifications held before new ones are dropped
+     * @param slotSize initial size of each slot, normally the largest value the MTU allows
+     */
+    UUNotificationDispatcher(final @NonNull String name, final int capacity, final int slotSize, final @NonNull Sink sink)
+    {
+        ringBuffer = new UUNotificationRingBuffer(capacity, slotSize);
+        thread = new Thread(() -> run(sink), name);
+        thread.setDaemon(true);
+    }
+
+    void start()
+    {
+        thread.start();
+    }
+
+    void stop()
+    {
+        ringBuffer.close();
+    }
+
+    boolean offer(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull byte[] value, final long timestamp)
+    {
+        return ringBuffer.offer(characteristic, value, timestamp);
+    }
+
+    long getDroppedCount()
+    {
+        return ringBuffer.getDroppedCount();
+    }
+
+    private void run(final @NonNull Sink sink)
+    {
+        ArrayList<UUCharacteristicNotification> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (true)
+        {
+            int count;
+
+            try
+            {
+                count = ringBuffer.take(batch, MAX_BATCH_SIZE);
+            }
+            catch (InterruptedException ex)
+            {
+                break;
+            }
+
+            if (count < 0)
+            {
+                break;
+            }
+
+            try
+            {
+                sink.dispatch(batch);
+            }
+            catch (Exception ex)
+            {
+                UULog.error(UUNotificationDispatcher.class, "run", ex);
+            }
+            finally
+            {
+                batch.clear();
+                ringBuffer.release(count);
+            }
+        }
+    }
+}
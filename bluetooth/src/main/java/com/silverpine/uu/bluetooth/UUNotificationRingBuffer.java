@@ -0,0 +1,127 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Fixed capacity single producer, single consumer queue of reusable notification slots.  The
+ * producer copies each value into the next free slot, allocating it the first time it is used.
+ * The consumer takes a batch of filled slots, processes them in place and then releases them back
+ * to the producer.
+ */
+class UUNotificationRingBuffer
+{
+    private final UUCharacteristicNotification[] slots;
+    private final int mask;
+    private final int slotSize;
+
+    private long head;
+    private long tail;
+    private long droppedCount;
+    private boolean consumerWaiting;
+    private boolean closed;
+
+    UUNotificationRingBuffer(final int capacity, final int slotSize)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        slots = new UUCharacteristicNotification[size];
+        mask = size - 1;
+        this.slotSize = slotSize;
+    }
+
+    int getCapacity()
+    {
+        return slots.length;
+    }
+
+    synchronized long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    synchronized int size()
+    {
+        return (int)(head - tail);
+    }
+
+    /**
+     * Copies a value into the ring.  If the ring is full the value is dropped and counted.
+     *
+     * @return true if the value was queued
+     */
+    synchronized boolean offer(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull byte[] value, final long timestamp)
+    {
+        if (closed)
+        {
+            return false;
+        }
+
+        if ((head - tail) >= slots.length)
+        {
+            ++droppedCount;
+            return false;
+        }
+
+        int index = (int)(head & mask);
+        UUCharacteristicNotification slot = slots[index];
+        if (slot == null)
+        {
+            slot = new UUCharacteristicNotification(slotSize);
+            slots[index] = slot;
+        }
+
+        // Sequence counts every offered value, so gaps show where notifications were dropped
+        slot.set(characteristic, value, timestamp, head + droppedCount);
+        ++head;
+
+        if (consumerWaiting)
+        {
+            notifyAll();
+        }
+
+        return true;
+    }
+
+    /**
+     * Blocks until at least one notification is available or the ring is closed, then adds up to
+     * maxCount filled slots to the batch.  The slots must be handed back with release.
+     *
+     * @return the number of slots added, or -1 if the ring has been closed
+     */
+    synchronized int take(final @NonNull List<UUCharacteristicNotification> batch, final int maxCount) throws InterruptedException
+    {
+        while (head == tail && !closed)
+        {
+            consumerWaiting = true;
+            wait();
+            consumerWaiting = false;
+        }
+
+        if (closed)
+        {
+            return -1;
+        }
+
+        int count = (int)Math.min(head - tail, maxCount);
+        for (int i = 0; i < count; i++)
+        {
+            batch.add(slots[(int)((tail + i) & mask)]);
+        }
+
+        return count;
+    }
+
+    synchronized void release(final int count)
+    {
+        tail += count;
+    }
+
+    synchronized void close()
+    {
+        closed = true;
+        notifyAll();
+    }
+}
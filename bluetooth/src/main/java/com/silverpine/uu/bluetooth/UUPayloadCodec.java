@@ -0,0 +1,663 @@
+package com.silverpine.uu.bluetooth;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Encodes and decodes a characteristic payload with a fixed layout.  The layout is declared once
+ * with a Builder, in wire order, using getters and setters of the value type.  build compiles
+ * it into a flat list of fields, so decoding is a straight pass over a ByteBuffer with no
+ * reflection or per field lookups.
+ *
+ * Consecutive bits fields are packed least significant bit first into the fewest whole bytes,
+ * which are read as one integer in the codec's byte order.  A layout may end with one field that
+ * takes the rest of the payload, which makes the codec variable length; every other field has a
+ * fixed size.
+ *
+ * Example, for a value with a 1 bit flag, a 7 bit mode, a uint16 count and a temperature in
+ * hundredths of a degree:
+ *
+ * new UUPayloadCodec.Builder&lt;Reading&gt;(ByteOrder.LITTLE_ENDIAN, Reading::new)
+ *     .bits(1, r -&gt; r.flag, (r, v) -&gt; r.flag = v)
+ *     .bits(7, r -&gt; r.mode, (r, v) -&gt; r.mode = v)
+ *     .uint16(r -&gt; r.count, (r, v) -&gt; r.count = v)
+ *     .fixedPoint(2, true, 0.01, r -&gt; r.temperature, (r, v) -&gt; r.temperature = v)
+ *     .build();
+ */
+@SuppressWarnings("unused")
+public final class UUPayloadCodec<T>
+{
+    private final ByteOrder byteOrder;
+    private final Supplier<T> factory;
+    private final Field<T>[] fields;
+    private final int size;
+    private final @Nullable Function<T, byte[]> tailGetter;
+    private final @Nullable BiConsumer<T, byte[]> tailSetter;
+
+    private UUPayloadCodec(final @NonNull Builder<T> builder)
+    {
+        byteOrder = builder.byteOrder;
+        factory = builder.factory;
+        fields = builder.compiledFields();
+        size = builder.size;
+        tailGetter = builder.tailGetter;
+        tailSetter = builder.tailSetter;
+    }
+
+    public @NonNull ByteOrder getByteOrder()
+    {
+        return byteOrder;
+    }
+
+    /**
+     * Encoded length of the fixed fields, which is the whole payload unless the codec is variable
+     * length.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    public boolean isFixedSize()
+    {
+        return tailGetter == null;
+    }
+
+    /**
+     * Decodes a new value, or returns null if data is shorter than getSize.  Bytes past the
+     * fixed fields are ignored unless the layout ends with a remaining field.
+     */
+    @Nullable
+    public T decode(final @NonNull byte[] data)
+    {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes a new value from the buffer's position, or returns null if too few bytes remain.
+     */
+    @Nullable
+    public T decode(final @NonNull ByteBuffer buffer)
+    {
+        T value = factory.get();
+        return decode(buffer, value) ? value : null;
+    }
+
+    /**
+     * Decodes into an existing value so steady state decoding allocates nothing beyond what the
+     * setters do.  Returns false and leaves the value and buffer untouched if too few bytes
+     * remain.  On success the buffer is positioned after the fixed fields, or at its limit if the
+     * layout ends with a remaining field.
+     */
+    public boolean decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+    {
+        if (buffer.remaining() < size)
+        {
+            return false;
+        }
+
+        ByteOrder original = buffer.order();
+        if (original != byteOrder)
+        {
+            buffer.order(byteOrder);
+        }
+
+        try
+        {
+            for (Field<T> field : fields)
+            {
+                field.decode(buffer, into);
+            }
+
+            if (tailSetter != null)
+            {
+                byte[] tail = new byte[buffer.remaining()];
+                buffer.get(tail);
+                tailSetter.accept(into, tail);
+            }
+        }
+        finally
+        {
+            if (original != byteOrder)
+            {
+                buffer.order(original);
+            }
+        }
+
+        return true;
+    }
+
+    @NonNull
+    public byte[] encode(final @NonNull T value)
+    {
+        byte[] tail = (tailGetter != null) ? tailGetter.apply(value) : null;
+        byte[] data = new byte[size + ((tail != null) ? tail.length : 0)];
+        encode(value, tail, ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Encodes at the buffer's position.  Throws BufferOverflowException if the buffer is too
+     * small.
+     */
+    public void encode(final @NonNull T value, final @NonNull ByteBuffer buffer)
+    {
+        encode(value, (tailGetter != null) ? tailGetter.apply(value) : null, buffer);
+    }
+
+    private void encode(final @NonNull T value, final @Nullable byte[] tail, final @NonNull ByteBuffer buffer)
+    {
+        ByteOrder original = buffer.order();
+        if (original != byteOrder)
+        {
+            buffer.order(byteOrder);
+        }
+
+        try
+        {
+            for (Field<T> field : fields)
+            {
+                field.encode(buffer, value);
+            }
+
+            if (tail != null)
+            {
+                buffer.put(tail);
+            }
+        }
+        finally
+        {
+            if (original != byteOrder)
+            {
+                buffer.order(original);
+            }
+        }
+    }
+
+    private interface Field<T>
+    {
+        void decode(final @NonNull ByteBuffer buffer, final @NonNull T into);
+
+        void encode(final @NonNull ByteBuffer buffer, final @NonNull T from);
+    }
+
+    public static final class Builder<T>
+    {
+        private final ByteOrder byteOrder;
+        private final Supplier<T> factory;
+        private final ArrayList<Field<T>> fields = new ArrayList<>();
+        private final ArrayList<BitField<T>> pendingBits = new ArrayList<>();
+        private int pendingBitCount;
+        private int size;
+        private @Nullable Function<T, byte[]> tailGetter;
+        private @Nullable BiConsumer<T, byte[]> tailSetter;
+
+        /**
+         * @param byteOrder byte order of every multi byte field
+         * @param factory creates the value that decode fills in
+         */
+        public Builder(final @NonNull ByteOrder byteOrder, final @NonNull Supplier<T> factory)
+        {
+            this.byteOrder = byteOrder;
+            this.factory = factory;
+        }
+
+        public @NonNull Builder<T> uint8(final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addInt(Byte.BYTES, false, getter, setter);
+        }
+
+        public @NonNull Builder<T> int8(final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addInt(Byte.BYTES, true, getter, setter);
+        }
+
+        public @NonNull Builder<T> uint16(final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addInt(Short.BYTES, false, getter, setter);
+        }
+
+        public @NonNull Builder<T> int16(final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addInt(Short.BYTES, true, getter, setter);
+        }
+
+        public @NonNull Builder<T> int32(final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addInt(Integer.BYTES, true, getter, setter);
+        }
+
+        public @NonNull Builder<T> uint32(final @NonNull ToLongFunction<T> getter, final @NonNull ObjLongConsumer<T> setter)
+        {
+            return addLong(Integer.BYTES, false, getter, setter);
+        }
+
+        public @NonNull Builder<T> int64(final @NonNull ToLongFunction<T> getter, final @NonNull ObjLongConsumer<T> setter)
+        {
+            return addLong(Long.BYTES, true, getter, setter);
+        }
+
+        /**
+         * An integer of 1, 2 or 4 bytes scaled by resolution, e.g. 0.01 for hundredths.  Values
+         * are rounded to the nearest step when encoded and clamped to the range of the integer.
+         */
+        public @NonNull Builder<T> fixedPoint(
+                final int bytes,
+                final boolean signed,
+                final double resolution,
+                final @NonNull ToDoubleFunction<T> getter,
+                final @NonNull ObjDoubleConsumer<T> setter)
+        {
+            if (bytes != Byte.BYTES && bytes != Short.BYTES && bytes != Integer.BYTES)
+            {
+                throw new IllegalArgumentException("Fixed point fields are 1, 2 or 4 bytes, not " + bytes);
+            }
+
+            if (resolution == 0)
+            {
+                throw new IllegalArgumentException("Fixed point resolution must be non-zero");
+            }
+
+            long min = signed ? -(1L << (bytes * 8 - 1)) : 0;
+            long max = signed ? (1L << (bytes * 8 - 1)) - 1 : (1L << (bytes * 8)) - 1;
+
+            return addField(bytes, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    setter.accept(into, readInteger(buffer, bytes, signed) * resolution);
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    long raw = Math.round(getter.applyAsDouble(from) / resolution);
+                    writeInteger(buffer, bytes, Math.max(min, Math.min(max, raw)));
+                }
+            });
+        }
+
+        /**
+         * An unsigned field of 1 to 32 bits, packed with the bits fields next to it.
+         */
+        public @NonNull Builder<T> bits(final int count, final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            if (count < 1 || count > Integer.SIZE)
+            {
+                throw new IllegalArgumentException("Bit fields are 1 to 32 bits, not " + count);
+            }
+
+            if (pendingBitCount + count > Long.SIZE)
+            {
+                throw new IllegalArgumentException("Adjacent bit fields span more than 64 bits");
+            }
+
+            pendingBits.add(new BitField<>(pendingBitCount, count, getter, setter));
+            pendingBitCount += count;
+            return this;
+        }
+
+        /**
+         * A string in a fixed number of bytes.  Shorter strings are padded with zeros, longer
+         * ones are truncated, and decoding stops at the first zero byte.
+         */
+        public @NonNull Builder<T> string(
+                final int length,
+                final @NonNull Charset charset,
+                final @NonNull Function<T, String> getter,
+                final @NonNull BiConsumer<T, String> setter)
+        {
+            return addField(length, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    byte[] bytes;
+                    int start;
+
+                    // Heap buffers are decoded in place, without copying the field first
+                    if (buffer.hasArray())
+                    {
+                        bytes = buffer.array();
+                        start = buffer.arrayOffset() + buffer.position();
+                        buffer.position(buffer.position() + length);
+                    }
+                    else
+                    {
+                        bytes = new byte[length];
+                        start = 0;
+                        buffer.get(bytes);
+                    }
+
+                    int end = start;
+                    while (end < start + length && bytes[end] != 0)
+                    {
+                        ++end;
+                    }
+
+                    setter.accept(into, new String(bytes, start, end - start, charset));
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    String value = getter.apply(from);
+                    putPadded(buffer, (value != null) ? value.getBytes(charset) : null, length);
+                }
+            });
+        }
+
+        /**
+         * Raw bytes of a fixed length, padded with zeros or truncated when encoded.
+         */
+        public @NonNull Builder<T> bytes(final int length, final @NonNull Function<T, byte[]> getter, final @NonNull BiConsumer<T, byte[]> setter)
+        {
+            return addField(length, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    setter.accept(into, bytes);
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    putPadded(buffer, getter.apply(from), length);
+                }
+            });
+        }
+
+        /**
+         * Bytes that are skipped when decoding and written as zeros.
+         */
+        public @NonNull Builder<T> reserved(final int length)
+        {
+            return addField(length, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    buffer.position(buffer.position() + length);
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    putPadded(buffer, null, length);
+                }
+            });
+        }
+
+        /**
+         * Every byte after the fixed fields.  Must be the last field.
+         */
+        public @NonNull Builder<T> remainingBytes(final @NonNull Function<T, byte[]> getter, final @NonNull BiConsumer<T, byte[]> setter)
+        {
+            flushBits();
+            requireNoTail();
+            tailGetter = getter;
+            tailSetter = setter;
+            return this;
+        }
+
+        /**
+         * Every byte after the fixed fields, as a string.  Must be the last field.
+         */
+        public @NonNull Builder<T> remainingString(
+                final @NonNull Charset charset,
+                final @NonNull Function<T, String> getter,
+                final @NonNull BiConsumer<T, String> setter)
+        {
+            return remainingBytes(
+                    from ->
+                    {
+                        String value = getter.apply(from);
+                        return (value != null) ? value.getBytes(charset) : new byte[0];
+                    },
+                    (into, bytes) -> setter.accept(into, new String(bytes, charset)));
+        }
+
+        public @NonNull UUPayloadCodec<T> build()
+        {
+            flushBits();
+            return new UUPayloadCodec<>(this);
+        }
+
+        private @NonNull Builder<T> addInt(final int bytes, final boolean signed, final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            return addField(bytes, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    setter.accept(into, (int) readInteger(buffer, bytes, signed));
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    writeInteger(buffer, bytes, getter.applyAsInt(from));
+                }
+            });
+        }
+
+        private @NonNull Builder<T> addLong(final int bytes, final boolean signed, final @NonNull ToLongFunction<T> getter, final @NonNull ObjLongConsumer<T> setter)
+        {
+            return addField(bytes, new Field<T>()
+            {
+                @Override
+                public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+                {
+                    setter.accept(into, readInteger(buffer, bytes, signed));
+                }
+
+                @Override
+                public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+                {
+                    writeInteger(buffer, bytes, getter.applyAsLong(from));
+                }
+            });
+        }
+
+        private @NonNull Builder<T> addField(final int length, final @NonNull Field<T> field)
+        {
+            if (length < 0)
+            {
+                throw new IllegalArgumentException("Field length must not be negative");
+            }
+
+            flushBits();
+            requireNoTail();
+            fields.add(field);
+            size += length;
+            return this;
+        }
+
+        private void requireNoTail()
+        {
+            if (tailGetter != null)
+            {
+                throw new IllegalArgumentException("No field can follow a remaining field");
+            }
+        }
+
+        private void flushBits()
+        {
+            if (pendingBits.isEmpty())
+            {
+                return;
+            }
+
+            requireNoTail();
+
+            @SuppressWarnings("unchecked")
+            BitField<T>[] group = pendingBits.toArray(new BitField[0]);
+            int bytes = (pendingBitCount + 7) / 8;
+            pendingBits.clear();
+            pendingBitCount = 0;
+
+            fields.add(new BitGroup<>(bytes, group));
+            size += bytes;
+        }
+
+        @SuppressWarnings("unchecked")
+        private @NonNull Field<T>[] compiledFields()
+        {
+            return fields.toArray(new Field[0]);
+        }
+    }
+
+    private static final class BitField<T>
+    {
+        final int shift;
+        final long mask;
+        final ToIntFunction<T> getter;
+        final ObjIntConsumer<T> setter;
+
+        BitField(final int shift, final int count, final @NonNull ToIntFunction<T> getter, final @NonNull ObjIntConsumer<T> setter)
+        {
+            this.shift = shift;
+            this.mask = (1L << count) - 1;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    private static final class BitGroup<T> implements Field<T>
+    {
+        private final int bytes;
+        private final BitField<T>[] bits;
+
+        BitGroup(final int bytes, final @NonNull BitField<T>[] bits)
+        {
+            this.bytes = bytes;
+            this.bits = bits;
+        }
+
+        @Override
+        public void decode(final @NonNull ByteBuffer buffer, final @NonNull T into)
+        {
+            long packed = readPacked(buffer, bytes);
+
+            for (BitField<T> field : bits)
+            {
+                field.setter.accept(into, (int) ((packed >>> field.shift) & field.mask));
+            }
+        }
+
+        @Override
+        public void encode(final @NonNull ByteBuffer buffer, final @NonNull T from)
+        {
+            long packed = 0;
+
+            for (BitField<T> field : bits)
+            {
+                packed |= (field.getter.applyAsInt(from) & field.mask) << field.shift;
+            }
+
+            writePacked(buffer, bytes, packed);
+        }
+    }
+
+    private static long readInteger(final @NonNull ByteBuffer buffer, final int bytes, final boolean signed)
+    {
+        switch (bytes)
+        {
+            case Byte.BYTES:
+                byte b = buffer.get();
+                return signed ? b : (b & 0xFFL);
+
+            case Short.BYTES:
+                short s = buffer.getShort();
+                return signed ? s : (s & 0xFFFFL);
+
+            case Integer.BYTES:
+                int i = buffer.getInt();
+                return signed ? i : (i & 0xFFFFFFFFL);
+
+            default:
+                return buffer.getLong();
+        }
+    }
+
+    private static void writeInteger(final @NonNull ByteBuffer buffer, final int bytes, final long value)
+    {
+        switch (bytes)
+        {
+            case Byte.BYTES:
+                buffer.put((byte) value);
+                break;
+
+            case Short.BYTES:
+                buffer.putShort((short) value);
+                break;
+
+            case Integer.BYTES:
+                buffer.putInt((int) value);
+                break;
+
+            default:
+                buffer.putLong(value);
+                break;
+        }
+    }
+
+    // Bit groups can be any whole number of bytes, so they are assembled a byte at a time
+    private static long readPacked(final @NonNull ByteBuffer buffer, final int bytes)
+    {
+        long packed = 0;
+        boolean littleEndian = (buffer.order() == ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < bytes; i++)
+        {
+            long b = buffer.get() & 0xFFL;
+            packed |= littleEndian ? (b << (8 * i)) : (b << (8 * (bytes - 1 - i)));
+        }
+
+        return packed;
+    }
+
+    private static void writePacked(final @NonNull ByteBuffer buffer, final int bytes, final long packed)
+    {
+        boolean littleEndian = (buffer.order() == ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < bytes; i++)
+        {
+            int shift = littleEndian ? (8 * i) : (8 * (bytes - 1 - i));
+            buffer.put((byte) (packed >>> shift));
+        }
+    }
+
+    private static void putPadded(final @NonNull ByteBuffer buffer, final @Nullable byte[] bytes, final int length)
+    {
+        int count = (bytes != null) ? Math.min(bytes.length, length) : 0;
+
+        if (count > 0)
+        {
+            buffer.put(bytes, 0, count);
+        }
+
+        for (int i = count; i < length; i++)
+        {
+            buffer.put((byte) 0);
+        }
+    }
+}
@@ -20,8 +20,10 @@ import com.silverpine.uu.logging.UULog;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.UUID;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -39,9 +41,10 @@ public class UUPeripheral implements Parcelable
         public static final int DisconnectTimeout = 10000;
         public static final int ServiceDiscoveryTimeout = 60000;
         public static final int OperationTimeout = 60000;
+        public static final int LinkNegotiationTimeout = 5000;
     }
 
-    private static boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
 
     private static final byte DATA_TYPE_FLAGS                                           = 0x01;
     private static final byte DATA_TYPE_INCOMPLETE_LIST_OF_16_BIT_SERVICE_CLASS_UUIDS   = 0x02;
@@ -113,6 +116,9 @@ public class UUPeripheral implements Parcelable
     private BluetoothGatt bluetoothGatt;
 
     private Integer negotiatedMtuSize = null;
+    private Integer txPhy = null;
+    private Integer rxPhy = null;
+    private Integer connectionPriority = null;
 
 
     @Nullable
@@ -126,6 +132,64 @@ public class UUPeripheral implements Parcelable
         this.negotiatedMtuSize = negotiatedMtuSize;
     }
 
+    /**
+     * Largest value a single write can carry on the current MTU.
+     */
+    public int getMaxWritePayloadSize()
+    {
+        int mtu = (negotiatedMtuSize != null) ? negotiatedMtuSize : BLE_PACKET_SIZE_MIN;
+        return Math.min(Math.max(mtu, BLE_PACKET_SIZE_MIN) - BLE_PACKET_OVERHEAD, BLE_PACKET_SIZE_MAX);
+    }
+
+    /**
+     * The transmit PHY of the current connection, one of the BluetoothDevice.PHY_LE_* values, or
+     * null if it has not been reported.
+     */
+    @Nullable
+    public Integer getTxPhy()
+    {
+        return txPhy;
+    }
+
+    /**
+     * The receive PHY of the current connection, one of the BluetoothDevice.PHY_LE_* values, or
+     * null if it has not been reported.
+     */
+    @Nullable
+    public Integer getRxPhy()
+    {
+        return rxPhy;
+    }
+
+    /**
+     * The last connection priority successfully requested for the current connection, or null if
+     * none has been requested.
+     */
+    @Nullable
+    public Integer getConnectionPriority()
+    {
+        return connectionPriority;
+    }
+
+    void setPhy(final int txPhy, final int rxPhy)
+    {
+        this.txPhy = txPhy;
+        this.rxPhy = rxPhy;
+    }
+
+    void setConnectionPriority(final int connectionPriority)
+    {
+        this.connectionPriority = connectionPriority;
+    }
+
+    void clearLinkParameters()
+    {
+        negotiatedMtuSize = null;
+        txPhy = null;
+        rxPhy = null;
+        connectionPriority = null;
+    }
+
     @VisibleForTesting
     public UUPeripheral()
     {
@@ -221,7 +285,10 @@ public class UUPeripheral implements Parcelable
             firstAdvertisementTime = System.currentTimeMillis();
         }
 
-        debugLog("updateAdvertisement", totalBeaconCount + ", timeSinceLastAdvertisement: " + getTimeSinceLastUpdate() + ", scanRecord: " + UUString.byteToHex(scanRecord));
+        if (LOGGING_ENABLED)
+        {
+            debugLog("updateAdvertisement", totalBeaconCount + ", timeSinceLastAdvertisement: " + getTimeSinceLastUpdate() + ", scanRecord: " + UUString.byteToHex(scanRecord));
+        }
 
         lastAdvertisementTime = System.currentTimeMillis();
         ++totalBeaconCount;
@@ -259,7 +326,11 @@ public class UUPeripheral implements Parcelable
     {
         BluetoothManager bluetoothManager = (BluetoothManager) context.getSystemService(Context.BLUETOOTH_SERVICE);
         int state = bluetoothManager.getConnectionState(device, BluetoothProfile.GATT);
-        debugLog("getConnectionState", "Actual connection state is: " + state + " (" + ConnectionState.fromProfileConnectionState(state) + ")");
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("getConnectionState", "Actual connection state is: " + state + " (" + ConnectionState.fromProfileConnectionState(state) + ")");
+        }
 
         UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
 
@@ -270,7 +341,7 @@ public class UUPeripheral implements Parcelable
                 debugLog("getConnectionState", "Forcing state to connecting");
                 state = BluetoothProfile.STATE_CONNECTING;
             }
-            else if (state != BluetoothProfile.STATE_DISCONNECTED && gatt.getBluetoothGatt() == null)
+            else if (state != BluetoothProfile.STATE_DISCONNECTED && !gatt.isGattOpen())
             {
                 debugLog("getConnectionState", "Forcing state to disconnected");
                 state = BluetoothProfile.STATE_DISCONNECTED;
@@ -294,6 +365,132 @@ public class UUPeripheral implements Parcelable
         }
     }
 
+    public void requestConnectionPriority(final int connectionPriority, @NonNull final UUPeripheralBoolDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.requestConnectionPriority(connectionPriority, delegate);
+        }
+    }
+
+    /**
+     * Enables or disables adaptive connection priority.  When enabled, the connection priority is
+     * switched between HIGH, BALANCED and LOW_POWER based on outstanding bytes and operation rate.
+     *
+     * @param enabled true to enable adaptive priority
+     */
+    public void setAdaptiveConnectionPriorityEnabled(final boolean enabled)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setAdaptiveConnectionPriorityEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets a cache that serves reads of cacheable characteristics without touching the radio.
+     * Pass null to read every value over the air, which is the default.
+     */
+    public void setValueCache(final @Nullable UUCharacteristicValueCache cache)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setValueCache(cache);
+        }
+    }
+
+    public @Nullable UUCharacteristicValueCache getValueCache()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getValueCache() : null;
+    }
+
+    /**
+     * Sets the strategy used to recover when a connect attempt fails with a GATT error such as
+     * status 133.  The default is a UUBoundedGattRecoveryStrategy.
+     *
+     * @param strategy the recovery strategy
+     */
+    public void setGattRecoveryStrategy(final @NonNull UUGattRecoveryStrategy strategy)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setGattRecoveryStrategy(strategy);
+        }
+    }
+
+    public @Nullable UUGattRecoveryMetrics getGattRecoveryMetrics()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getGattRecoveryMetrics() : null;
+    }
+
+    /**
+     * Returns latency histograms for the GATT operations made on this peripheral.  Snapshots can
+     * be taken at any time without blocking GATT traffic.
+     */
+    public @Nullable UUGattLatencyStats getLatencyStats()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getLatencyStats() : null;
+    }
+
+    public boolean isAdaptiveConnectionPriorityEnabled()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null && gatt.isAdaptiveConnectionPriorityEnabled());
+    }
+
+    /**
+     * Sets what happens when an operation of the given type times out.  The default policy
+     * disconnects the peripheral.
+     *
+     * @param operation the operation type
+     * @param policy the timeout policy
+     */
+    public void setTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation, final @NonNull UUTimeoutPolicy policy)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setTimeoutPolicy(operation, policy);
+        }
+    }
+
+    public @NonNull UUTimeoutPolicy getTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getTimeoutPolicy(operation) : UUTimeoutPolicy.disconnect();
+    }
+
+    /**
+     * Hints that a bulk transfer of roughly the given size is about to start.  When adaptive
+     * connection priority is enabled, priority is raised before the transfer begins.
+     *
+     * @param byteCount expected number of bytes
+     */
+    public void expectBulkTransfer(final long byteCount)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.expectBulkTransfer(byteCount);
+        }
+    }
+
+    public void setPreferredPhy(final long timeout, final int txPhy, final int rxPhy, final int phyOptions, @NonNull final UUPeripheralErrorDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setPreferredPhy(timeout, txPhy, rxPhy, phyOptions, delegate);
+        }
+    }
+
     public void requestMtuSize(final long timeout, final int mtuSize, @NonNull final UUPeripheralErrorDelegate delegate)
     {
         UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
@@ -321,11 +518,43 @@ public class UUPeripheral implements Parcelable
         final long disconnectTimeout,
         @NonNull final Runnable connected,
         @NonNull final UUObjectDelegate<UUError> disconnected)
+    {
+        connect(connectTimeout, disconnectTimeout, null, connected, disconnected);
+    }
+
+    /**
+     * Connects to the peripheral.  If a link profile is given, the connection priority, MTU and PHY
+     * it describes are negotiated before the connected callback is invoked.  The achieved values
+     * are available from getNegotiatedMtuSize, getTxPhy, getRxPhy and getConnectionPriority.
+     *
+     * @param connectTimeout connection timeout
+     * @param disconnectTimeout disconnect timeout
+     * @param linkProfile optional link parameters to negotiate on connect
+     * @param connected invoked once connected and the link profile has been applied
+     * @param disconnected invoked on disconnect
+     */
+    public void connect(
+        final long connectTimeout,
+        final long disconnectTimeout,
+        @Nullable final UULinkProfile linkProfile,
+        @NonNull final Runnable connected,
+        @NonNull final UUObjectDelegate<UUError> disconnected)
+    {
+        connect(false, connectTimeout, disconnectTimeout, linkProfile, connected, disconnected);
+    }
+
+    void connect(
+        final boolean autoConnect,
+        final long connectTimeout,
+        final long disconnectTimeout,
+        @Nullable final UULinkProfile linkProfile,
+        @NonNull final Runnable connected,
+        @NonNull final UUObjectDelegate<UUError> disconnected)
     {
         UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
         if (gatt != null)
         {
-            gatt.connect(false, connectTimeout, disconnectTimeout, new UUConnectionDelegate()
+            gatt.connect(autoConnect, connectTimeout, disconnectTimeout, linkProfile, new UUConnectionDelegate()
             {
                 @Override
                 public void onConnected(@NonNull UUPeripheral peripheral)
@@ -365,15 +594,35 @@ public class UUPeripheral implements Parcelable
         }
     }
 
-    public @NonNull ArrayList<BluetoothGattService> discoveredServices()
+    /**
+     * Clears the platform's cached GATT database before discovering services.  Use this when the
+     * peripheral's database is known to have changed.
+     *
+     * @param timeout the discovery timeout
+     * @param delegate invoked with the discovered services
+     */
+    public void refreshServices(
+            final long timeout,
+            final @NonNull UUDiscoverServicesDelegate delegate)
     {
-        acquireExistingGatt();
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.refreshServices(timeout, (peripheral, error) ->
+            {
+                delegate.onCompleted(discoveredServices(), error);
+            });
+        }
+    }
 
+    public @NonNull ArrayList<BluetoothGattService> discoveredServices()
+    {
         ArrayList<BluetoothGattService> list = new ArrayList<>();
 
-        if (bluetoothGatt != null)
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
         {
-            list.addAll(bluetoothGatt.getServices());
+            list.addAll(gatt.getServices());
         }
 
         return list;
@@ -382,18 +631,60 @@ public class UUPeripheral implements Parcelable
     @Nullable
     public BluetoothGattService getDiscoveredService(@NonNull final String uuid)
     {
-        ArrayList<BluetoothGattService> list = discoveredServices();
-        for (BluetoothGattService svc: list)
+        try
         {
-            if (svc.getUuid().toString().equalsIgnoreCase(uuid))
-            {
-                return svc;
-            }
+            return getDiscoveredService(UUID.fromString(uuid));
         }
+        catch (IllegalArgumentException ex)
+        {
+            return null;
+        }
+    }
 
-        return null;
+    @Nullable
+    public BluetoothGattService getDiscoveredService(@NonNull final UUID uuid)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getIndex().findService(uuid) : null;
     }
 
+    /**
+     * Finds a discovered characteristic by UUID.  If several services contain it, the first one
+     * discovered wins.
+     */
+    @Nullable
+    public BluetoothGattCharacteristic getDiscoveredCharacteristic(@NonNull final UUID uuid)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getIndex().findCharacteristic(uuid) : null;
+    }
+
+    @Nullable
+    public BluetoothGattCharacteristic getDiscoveredCharacteristic(@NonNull final UUID serviceUuid, @NonNull final UUID characteristicUuid)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getIndex().findCharacteristic(serviceUuid, characteristicUuid) : null;
+    }
+
+    @Nullable
+    public BluetoothGattDescriptor getDiscoveredDescriptor(@NonNull final UUID serviceUuid, @NonNull final UUID characteristicUuid, @NonNull final UUID descriptorUuid)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null) ? gatt.getIndex().findDescriptor(serviceUuid, characteristicUuid, descriptorUuid) : null;
+    }
+
+    /**
+     * Enables or disables notifications for a characteristic.  Several listeners may subscribe to
+     * the same characteristic; the CCCD is only written for the first subscriber and when the last
+     * one unsubscribes.  Disabling with a notifyDelegate removes just that listener, disabling with
+     * a null notifyDelegate removes every listener.
+     *
+     * @param characteristic the characteristic
+     * @param notifyState true to subscribe, false to unsubscribe
+     * @param timeout timeout for the descriptor write
+     * @param notifyDelegate the listener to add or remove
+     * @param delegate invoked when the state change is complete
+     */
     public void setNotifyState(
             final @NonNull BluetoothGattCharacteristic characteristic,
             final boolean notifyState,
@@ -408,6 +699,99 @@ public class UUPeripheral implements Parcelable
         }
     }
 
+    /**
+     * Enables or disables notifications for several characteristics at once.  The CCCD writes are
+     * issued back to back, skipping characteristics that are already in the desired state, and
+     * the delegate is invoked once for the whole batch.  A write timeout ends the batch, and the
+     * timed out characteristic and all remaining ones are reported with a timeout error.
+     *
+     * @param characteristics the characteristics
+     * @param notifyState true to subscribe, false to unsubscribe
+     * @param timeout timeout for each descriptor write
+     * @param notifyDelegate the listener to add or remove for every characteristic
+     * @param delegate invoked when the batch is complete
+     */
+    public void setNotifyStates(
+            final @NonNull List<BluetoothGattCharacteristic> characteristics,
+            final boolean notifyState,
+            final long timeout,
+            final @Nullable UUCharacteristicDelegate notifyDelegate,
+            final @NonNull UUBatchNotifyDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setNotifyStates(characteristics, notifyState, timeout, notifyDelegate, delegate);
+        }
+    }
+
+    /**
+     * Enables notifications for a characteristic and delivers them through a ring buffer on a
+     * dedicated thread.  Each value is copied and timestamped on arrival, so values are never
+     * overwritten or reordered before the delegate sees them.  Use stopNotificationStream to
+     * unsubscribe.
+     *
+     * @param characteristic the characteristic to listen to
+     * @param timeout timeout for enabling notifications
+     * @param notificationDelegate receives batches of notifications
+     * @param delegate invoked once notifications are enabled
+     */
+    public void startNotificationStream(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final long timeout,
+            final @NonNull UUCharacteristicNotificationDelegate notificationDelegate,
+            final @NonNull UUCharacteristicDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.startNotificationStream(characteristic, timeout, notificationDelegate, delegate);
+        }
+    }
+
+    public void stopNotificationStream(
+            final @NonNull BluetoothGattCharacteristic characteristic,
+            final long timeout,
+            final @NonNull UUCharacteristicNotificationDelegate notificationDelegate,
+            final @NonNull UUCharacteristicDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.stopNotificationStream(characteristic, timeout, notificationDelegate, delegate);
+        }
+    }
+
+    /**
+     * Sets how many streamed notifications are buffered before new ones are dropped.  Applies from
+     * the next time a notification stream starts on this peripheral.  The default is 256.
+     *
+     * @param capacity buffer capacity, rounded up to a power of two
+     */
+    public void setNotificationBufferCapacity(final int capacity)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.setNotificationBufferCapacity(capacity);
+        }
+    }
+
+    public int getNotificationBufferCapacity()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null ? gatt.getNotificationBufferCapacity() : UUNotificationDispatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Number of streamed notifications dropped because the ring buffer was full.
+     */
+    public long getDroppedNotificationCount()
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        return (gatt != null ? gatt.getDroppedNotificationCount() : 0);
+    }
+
     public void readCharacteristic(
             final @NonNull BluetoothGattCharacteristic characteristic,
             final long timeout,
@@ -420,6 +804,27 @@ public class UUPeripheral implements Parcelable
         }
     }
 
+    /**
+     * Reads several characteristics back to back and reports all values and errors in one
+     * callback.  A read that fails with a GATT error does not stop the batch, but a timeout ends
+     * it, and the timed out item and all remaining items get a timeout error.
+     *
+     * @param characteristics the characteristics to read, in order
+     * @param timeout timeout for each read
+     * @param delegate invoked once the batch is complete
+     */
+    public void readCharacteristics(
+            final @NonNull List<BluetoothGattCharacteristic> characteristics,
+            final long timeout,
+            final @NonNull UUBatchReadDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.readCharacteristics(characteristics, timeout, delegate);
+        }
+    }
+
     public void readDescriptor(
             final @NonNull BluetoothGattDescriptor descriptor,
             final long timeout,
@@ -471,6 +876,28 @@ public class UUPeripheral implements Parcelable
         }
     }
 
+    /**
+     * Writes a set of characteristics as a single reliable write transaction.  Each value is
+     * prepared on the remote device in order, then the whole set is committed with one execute.
+     * If any write fails or the timeout runs out, the transaction is aborted and nothing is
+     * committed.  The platform does not report prepared write echoes, so they are not checked.
+     *
+     * @param transaction the writes to perform
+     * @param timeout the overall timeout for the transaction
+     * @param delegate completion callback
+     */
+    public void reliableWrite(
+            final @NonNull UUReliableWriteTransaction transaction,
+            final long timeout,
+            final @NonNull UUPeripheralErrorDelegate delegate)
+    {
+        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
+        if (gatt != null)
+        {
+            gatt.reliableWrite(transaction, timeout, delegate);
+        }
+    }
+
     public void readRssi(
             final long timeout,
             final @NonNull UUPeripheralErrorDelegate delegate)
@@ -583,7 +1010,11 @@ public class UUPeripheral implements Parcelable
     private void parseFlags(final byte[] data)
     {
         flags = data;
-        debugLog("parseFlags", "Flags are: " + UUString.byteToHex(flags));
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("parseFlags", "Flags are: " + UUString.byteToHex(flags));
+        }
     }
 
     private void parseServiceUuid(final byte[] data, final int length)
@@ -778,15 +1209,6 @@ public class UUPeripheral implements Parcelable
         parseScanRecord();
     }
 
-    private void acquireExistingGatt()
-    {
-        UUBluetoothGatt gatt = UUBluetoothGatt.gattForPeripheral(this);
-        if (gatt != null)
-        {
-            setBluetoothGatt(gatt.getBluetoothGatt());
-        }
-    }
-
     private static void debugLog(final String method, final String message)
     {
         if (LOGGING_ENABLED)
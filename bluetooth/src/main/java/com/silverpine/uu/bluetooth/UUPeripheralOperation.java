@@ -2,6 +2,7 @@ package com.silverpine.uu.bluetooth;
 
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattService;
+import android.util.LongSparseArray;
 
 import com.silverpine.uu.core.UUData;
 import com.silverpine.uu.core.UUError;
@@ -11,10 +12,14 @@ import com.silverpine.uu.core.UURunnable;
 import com.silverpine.uu.core.UUString;
 import com.silverpine.uu.logging.UULog;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import androidx.annotation.NonNull;
@@ -28,11 +33,26 @@ public class UUPeripheralOperation<T extends UUPeripheral>
     private final @NonNull ArrayList<BluetoothGattService> discoveredServices = new ArrayList<>();
     private final @NonNull ArrayList<BluetoothGattCharacteristic> discoveredCharacteristics = new ArrayList<>();
     private final @NonNull ArrayList<BluetoothGattService> servicesNeedingCharacteristicDiscovery = new ArrayList<>();
+    private final @NonNull UUGattIndex discoveredIndex = new UUGattIndex();
     private long connectTimeout = UUPeripheral.Defaults.ConnectTimeout;
     private long disconnectTimeout = UUPeripheral.Defaults.DisconnectTimeout;
     private long serviceDiscoveryTimeout = UUPeripheral.Defaults.ServiceDiscoveryTimeout;
     private long readTimeout = UUPeripheral.Defaults.OperationTimeout;
     private long writeTimeout = UUPeripheral.Defaults.OperationTimeout;
+    private @Nullable UULinkProfile linkProfile = null;
+    private @Nullable UUConnectionManager connectionManager = null;
+    private int connectPriority = UUConnectionManager.PRIORITY_NORMAL;
+    private @Nullable UUGattDatabaseCache databaseCache = null;
+    private @Nullable UUGattDatabaseSnapshot cachedDatabase = null;
+    private @Nullable UUPeripheralSession session = null;
+    private @Nullable UUPeripheralSession.Lease sessionLease = null;
+    private final @NonNull UUWriteBufferPool writeBuffers = new UUWriteBufferPool(0);
+
+    // Discovery finishes once characteristics are discovered and the Database Hash read, if any,
+    // has come back.  Guarded by this.
+    private long discoveryGeneration;
+    private boolean characteristicsDiscovered;
+    private boolean databaseHashPending;
 
 
     public UUPeripheralOperation(@NonNull final T peripheral)
@@ -71,31 +91,98 @@ public class UUPeripheralOperation<T extends UUPeripheral>
     }
 
     @Nullable
-    public BluetoothGattService findDiscoveredService(@NonNull final UUID uuid)
+    public UULinkProfile getLinkProfile()
     {
-        for (BluetoothGattService service: discoveredServices)
-        {
-            if (service.getUuid().equals(uuid))
-            {
-                return service;
-            }
-        }
+        return linkProfile;
+    }
+
+    public void setLinkProfile(@Nullable UULinkProfile linkProfile)
+    {
+        this.linkProfile = linkProfile;
+    }
+
+    @Nullable
+    public UUConnectionManager getConnectionManager()
+    {
+        return connectionManager;
+    }
+
+    /**
+     * When set, the connect is queued through the connection manager instead of being started
+     * directly.
+     */
+    public void setConnectionManager(@Nullable UUConnectionManager connectionManager)
+    {
+        this.connectionManager = connectionManager;
+    }
+
+    public int getConnectPriority()
+    {
+        return connectPriority;
+    }
+
+    public void setConnectPriority(int connectPriority)
+    {
+        this.connectPriority = connectPriority;
+    }
 
-        return null;
+    @Nullable
+    public UUPeripheralSession getSession()
+    {
+        return session;
+    }
+
+    /**
+     * When set, the operation runs on the session's connection.  It only connects and discovers
+     * services if the session's link is not already open, and a successful end keeps the link
+     * open for the session's idle timeout instead of disconnecting.  The connection manager is
+     * not used for session connects.
+     */
+    public void setSession(@Nullable UUPeripheralSession session)
+    {
+        this.session = session;
+    }
+
+    @Nullable
+    public UUGattDatabaseCache getDatabaseCache()
+    {
+        return databaseCache;
+    }
+
+    /**
+     * When set, each discovered GATT layout is saved, and on later connects the peripheral's
+     * Database Hash is checked against it so a stale platform cache is refreshed.
+     */
+    public void setDatabaseCache(@Nullable UUGattDatabaseCache databaseCache)
+    {
+        this.databaseCache = databaseCache;
+    }
+
+    /**
+     * The layout saved from a previous connection, available as soon as start is called.
+     */
+    @Nullable
+    public UUGattDatabaseSnapshot getCachedDatabase()
+    {
+        return cachedDatabase;
+    }
+
+    @Nullable
+    public BluetoothGattService findDiscoveredService(@NonNull final UUID uuid)
+    {
+        return discoveredIndex.findService(uuid);
     }
 
     @Nullable
     public BluetoothGattCharacteristic findDiscoveredCharacteristic(@NonNull final UUID uuid)
     {
-        for (BluetoothGattCharacteristic characteristic: discoveredCharacteristics)
-        {
-            if (characteristic.getUuid().equals(uuid))
-            {
-                return characteristic;
-            }
-        }
+        return discoveredIndex.findCharacteristic(uuid);
+    }
 
-        return null;
+    @Nullable
+    public BluetoothGattCharacteristic findDiscoveredCharacteristic(@NonNull final UUID serviceUuid, @NonNull final UUID characteristicUuid)
+    {
+        return discoveredIndex.findCharacteristic(serviceUuid, characteristicUuid);
     }
 
     public void requireDiscoveredService(@NonNull final UUID uuid, @NonNull UUNonNullObjectDelegate<BluetoothGattService> completion)
@@ -139,6 +226,46 @@ public class UUPeripheralOperation<T extends UUPeripheral>
             }));
     }
 
+    // Pool is resized to the current MTU so it never holds more than one write can carry
+    @NonNull
+    private byte[] acquireWriteBuffer(final int length)
+    {
+        writeBuffers.resize(peripheral.getMaxWritePayloadSize());
+        return writeBuffers.acquire(length);
+    }
+
+    // The write sets the pooled buffer as the characteristic's value, so that value is cleared
+    // before the buffer goes back to the pool and gets reused by the next write
+    private void writePooled(@NonNull final byte[] buffer, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
+    {
+        BluetoothGattCharacteristic characteristic = findDiscoveredCharacteristic(toCharacteristic);
+        if (characteristic == null)
+        {
+            writeBuffers.release(buffer);
+            UUError err = UUBluetoothError.operationFailedError("requireDiscoveredCharacteristic");
+            end(err);
+            return;
+        }
+
+        peripheral.writeCharacteristic(characteristic, buffer, writeTimeout, (peripheral1, characteristic1, error) ->
+        {
+            if (characteristic1.getValue() == buffer)
+            {
+                characteristic1.setValue((byte[]) null);
+            }
+
+            writeBuffers.release(buffer);
+
+            if (error != null)
+            {
+                end(error);
+                return;
+            }
+
+            UURunnable.safeInvoke(completion);
+        });
+    }
+
     public void wwor(@NonNull final byte[] data, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
         requireDiscoveredCharacteristic(toCharacteristic,
@@ -154,6 +281,38 @@ public class UUPeripheralOperation<T extends UUPeripheral>
             }));
     }
 
+    /**
+     * Writes are prepared in the map's iteration order, which is why a LinkedHashMap is required.
+     */
+    public void reliableWrite(@NonNull final LinkedHashMap<UUID, byte[]> writes, @NonNull final Runnable completion)
+    {
+        UUReliableWriteTransaction transaction = new UUReliableWriteTransaction();
+
+        for (Map.Entry<UUID, byte[]> write : writes.entrySet())
+        {
+            BluetoothGattCharacteristic characteristic = findDiscoveredCharacteristic(write.getKey());
+            if (characteristic == null)
+            {
+                UUError err = UUBluetoothError.operationFailedError("requireDiscoveredCharacteristic");
+                end(err);
+                return;
+            }
+
+            transaction.addWrite(characteristic, write.getValue());
+        }
+
+        peripheral.reliableWrite(transaction, writeTimeout, (peripheral1, error) ->
+        {
+            if (error != null)
+            {
+                end(error);
+                return;
+            }
+
+            UURunnable.safeInvoke(completion);
+        });
+    }
+
     public void read(@NonNull final UUID fromCharacteristic, @NonNull final UUObjectDelegate<byte[]> completion)
     {
         requireDiscoveredCharacteristic(fromCharacteristic, characteristic ->
@@ -169,6 +328,54 @@ public class UUPeripheralOperation<T extends UUPeripheral>
             }));
     }
 
+    /**
+     * Reads and decodes a characteristic.  The result is null if the value is too short for the
+     * codec.
+     */
+    public <V> void read(@NonNull final UUID fromCharacteristic, @NonNull final UUPayloadCodec<V> codec, @NonNull final UUObjectDelegate<V> completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            V result = null;
+
+            if (data != null)
+            {
+                result = codec.decode(data);
+            }
+
+            UUObjectDelegate.safeInvoke(completion, result);
+        });
+    }
+
+    public void readBatch(@NonNull final List<UUID> fromCharacteristics, @NonNull final UUObjectDelegate<UUBatchReadResult> completion)
+    {
+        ArrayList<BluetoothGattCharacteristic> characteristics = new ArrayList<>();
+
+        for (UUID uuid : fromCharacteristics)
+        {
+            BluetoothGattCharacteristic characteristic = findDiscoveredCharacteristic(uuid);
+            if (characteristic == null)
+            {
+                UUError err = UUBluetoothError.operationFailedError("requireDiscoveredCharacteristic");
+                end(err);
+                return;
+            }
+
+            characteristics.add(characteristic);
+        }
+
+        peripheral.readCharacteristics(characteristics, readTimeout, (peripheral1, result, error) ->
+        {
+            if (error != null)
+            {
+                end(error);
+                return;
+            }
+
+            UUObjectDelegate.safeInvoke(completion, result);
+        });
+    }
+
     public void readString(@NonNull final UUID fromCharacteristic, @NonNull final Charset charset, @NonNull final UUObjectDelegate<String> completion)
     {
         read(fromCharacteristic, data ->
@@ -309,6 +516,118 @@ public class UUPeripheralOperation<T extends UUPeripheral>
         });
     }
 
+    public void readUInt8(@NonNull final UUID fromCharacteristic, @NonNull final UUIntResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Byte.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readUInt8"));
+                return;
+            }
+
+            completion.onComplete(UUData.readUInt8(data, 0), null);
+        });
+    }
+
+    public void readUInt16(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UUIntResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Short.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readUInt16"));
+                return;
+            }
+
+            completion.onComplete(UUData.readUInt16(byteOrder, data, 0), null);
+        });
+    }
+
+    public void readUInt32(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UULongResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Integer.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readUInt32"));
+                return;
+            }
+
+            completion.onComplete(UUData.readUInt32(byteOrder, data, 0), null);
+        });
+    }
+
+    public void readUInt64(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UULongResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Long.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readUInt64"));
+                return;
+            }
+
+            completion.onComplete(UUData.readUInt64(byteOrder, data, 0), null);
+        });
+    }
+
+    public void readInt8(@NonNull final UUID fromCharacteristic, @NonNull final UUIntResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Byte.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readInt8"));
+                return;
+            }
+
+            completion.onComplete(UUData.readInt8(data, 0), null);
+        });
+    }
+
+    public void readInt16(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UUIntResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Short.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readInt16"));
+                return;
+            }
+
+            completion.onComplete(UUData.readInt16(byteOrder, data, 0), null);
+        });
+    }
+
+    public void readInt32(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UUIntResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Integer.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readInt32"));
+                return;
+            }
+
+            completion.onComplete(UUData.readInt32(byteOrder, data, 0), null);
+        });
+    }
+
+    public void readInt64(@NonNull final UUID fromCharacteristic, @NonNull final ByteOrder byteOrder, @NonNull final UULongResultDelegate completion)
+    {
+        read(fromCharacteristic, data ->
+        {
+            if (data == null || data.length < Long.BYTES)
+            {
+                completion.onComplete(0, UUBluetoothError.operationFailedError("readInt64"));
+                return;
+            }
+
+            completion.onComplete(UUData.readInt64(byteOrder, data, 0), null);
+        });
+    }
+
     public void write(@NonNull final String value, @NonNull final Charset charset, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
         byte[] buffer = value.getBytes(charset);
@@ -320,72 +639,122 @@ public class UUPeripheralOperation<T extends UUPeripheral>
         write(value, Charsets.UTF_8, toCharacteristic, completion);
     }
 
+    /**
+     * Encodes and writes a value.  Fixed size payloads are encoded into a pooled write buffer.
+     */
+    public <V> void write(@NonNull final V value, @NonNull final UUPayloadCodec<V> codec, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
+    {
+        if (!codec.isFixedSize())
+        {
+            write(codec.encode(value), toCharacteristic, completion);
+            return;
+        }
+
+        byte[] buffer = acquireWriteBuffer(codec.getSize());
+        codec.encode(value, ByteBuffer.wrap(buffer));
+        writePooled(buffer, toCharacteristic, completion);
+    }
+
     public void writeUInt8(int value, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Byte.BYTES];
+        byte[] buffer = acquireWriteBuffer(Byte.BYTES);
         UUData.writeUInt8(buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeUInt16(int value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Short.BYTES];
+        byte[] buffer = acquireWriteBuffer(Short.BYTES);
         UUData.writeUInt16(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeUInt32(long value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Integer.BYTES];
+        byte[] buffer = acquireWriteBuffer(Integer.BYTES);
         UUData.writeUInt32(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeUInt64(long value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Long.BYTES];
+        byte[] buffer = acquireWriteBuffer(Long.BYTES);
         UUData.writeUInt64(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeInt8(byte value, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Byte.BYTES];
+        byte[] buffer = acquireWriteBuffer(Byte.BYTES);
         UUData.writeInt8(buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeInt16(short value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Short.BYTES];
+        byte[] buffer = acquireWriteBuffer(Short.BYTES);
         UUData.writeInt16(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeInt32(int value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Integer.BYTES];
+        byte[] buffer = acquireWriteBuffer(Integer.BYTES);
         UUData.writeInt32(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public void writeInt64(long value, @NonNull final ByteOrder byteOrder, @NonNull final UUID toCharacteristic, @NonNull final Runnable completion)
     {
-        byte[] buffer = new byte[Long.BYTES];
+        byte[] buffer = acquireWriteBuffer(Long.BYTES);
         UUData.writeInt64(byteOrder, buffer, 0, value);
-        write(buffer, toCharacteristic, completion);
+        writePooled(buffer, toCharacteristic, completion);
     }
 
     public final void start(UUObjectDelegate<UUError> completion)
     {
         operationCallback = completion;
 
-        peripheral.connect(connectTimeout, disconnectTimeout, this::handleConnected, this::handleDisconnection);
+        UUGattDatabaseCache cache = databaseCache;
+        cachedDatabase = (cache != null) ? cache.get(peripheral.getAddress()) : null;
+
+        UUPeripheralSession activeSession = session;
+        UUConnectionManager manager = connectionManager;
+        if (activeSession != null)
+        {
+            sessionLease = activeSession.acquire(connectTimeout, disconnectTimeout, linkProfile, this::handleConnected, this::handleDisconnection);
+        }
+        else if (manager != null)
+        {
+            manager.connect(peripheral, connectPriority, connectTimeout, disconnectTimeout, linkProfile, this::handleConnected, this::handleDisconnection);
+        }
+        else
+        {
+            peripheral.connect(connectTimeout, disconnectTimeout, linkProfile, this::handleConnected, this::handleDisconnection);
+        }
     }
 
     public void end(@Nullable final UUError error)
     {
         UULog.debug(getClass(), "end", "**** Ending Operation with error: " + UUString.safeToString(error));
+
+        UUPeripheralSession activeSession = session;
+        UUPeripheralSession.Lease lease = sessionLease;
+        if (activeSession != null)
+        {
+            UUObjectDelegate<UUError> callback = operationCallback;
+            operationCallback = null;
+            sessionLease = null;
+
+            if (lease != null)
+            {
+                activeSession.release(lease, error);
+            }
+
+            UUObjectDelegate.safeInvoke(callback, error);
+            return;
+        }
+
         peripheral.disconnect(error);
     }
 
@@ -396,7 +765,30 @@ public class UUPeripheralOperation<T extends UUPeripheral>
 
     private void handleConnected()
     {
-        peripheral.discoverServices(serviceDiscoveryTimeout, (peripheral1, error) ->
+        UUPeripheralSession activeSession = session;
+        if (activeSession != null && activeSession.isDiscovered())
+        {
+            List<BluetoothGattService> services = peripheral.discoveredServices();
+            if (!services.isEmpty())
+            {
+                discoveredServices.clear();
+                discoveredCharacteristics.clear();
+                servicesNeedingCharacteristicDiscovery.clear();
+                discoveredServices.addAll(services);
+                discoveredIndex.update(services);
+                servicesNeedingCharacteristicDiscovery.addAll(services);
+                beginDiscoveryPass();
+                discoverNextCharacteristics();
+                return;
+            }
+        }
+
+        discoverServices(false);
+    }
+
+    private void discoverServices(final boolean refresh)
+    {
+        UUDiscoverServicesDelegate delegate = (services1, error) ->
         {
             if (error != null)
             {
@@ -418,9 +810,125 @@ public class UUPeripheralOperation<T extends UUPeripheral>
             }
 
             discoveredServices.addAll(services);
+            discoveredIndex.update(services);
             servicesNeedingCharacteristicDiscovery.addAll(services);
+            verifyDatabase(beginDiscoveryPass(), refresh);
+        };
+
+        if (refresh)
+        {
+            peripheral.refreshServices(serviceDiscoveryTimeout, delegate);
+        }
+        else
+        {
+            peripheral.discoverServices(serviceDiscoveryTimeout, delegate);
+        }
+    }
+
+    // Android serves discovery from its own cache for bonded peripherals, which goes stale if the
+    // firmware changes the database.  The Database Hash is read while characteristic discovery
+    // carries on, and when the layout matches the saved one but the hash differs, the platform
+    // cache is refreshed and discovery rerun before the operation executes.
+    private void verifyDatabase(final long generation, final boolean refreshed)
+    {
+        UUGattDatabaseCache cache = databaseCache;
+        if (cache == null)
+        {
+            discoverNextCharacteristics();
+            return;
+        }
+
+        UUGattDatabaseSnapshot discovered = UUGattDatabaseSnapshot.fromServices(discoveredServices, null);
+        BluetoothGattCharacteristic hashCharacteristic = null;
+
+        for (BluetoothGattService service : discoveredServices)
+        {
+            hashCharacteristic = service.getCharacteristic(UUBluetoothConstants.Characteristics.DATABASE_HASH_UUID);
+            if (hashCharacteristic != null)
+            {
+                break;
+            }
+        }
+
+        if (hashCharacteristic == null)
+        {
+            cache.put(peripheral.getAddress(), discovered);
             discoverNextCharacteristics();
+            return;
+        }
+
+        synchronized (this)
+        {
+            databaseHashPending = true;
+        }
+
+        peripheral.readCharacteristic(hashCharacteristic, readTimeout, (peripheral1, characteristic, error) ->
+        {
+            byte[] hash = (error == null) ? characteristic.getValue() : null;
+            UUGattDatabaseSnapshot saved = cachedDatabase;
+            boolean changed = (!refreshed && hash != null && saved != null && saved.getDatabaseHash() != null &&
+                saved.hasSameLayout(discovered) && !Arrays.equals(saved.getDatabaseHash(), hash));
+
+            synchronized (this)
+            {
+                if (generation != discoveryGeneration)
+                {
+                    return;
+                }
+
+                // Left pending on a change, so this pass cannot finish before the refresh replaces it
+                databaseHashPending = changed;
+            }
+
+            if (changed)
+            {
+                UULog.debug(getClass(), "verifyDatabase", "Database hash changed, refreshing services");
+                discoverServices(true);
+                return;
+            }
+
+            // A failed read says nothing about the database, so the saved hash stays
+            if (hash == null && saved != null && saved.hasSameLayout(discovered))
+            {
+                hash = saved.getDatabaseHash();
+            }
+
+            UUGattDatabaseSnapshot verified = discovered.withDatabaseHash(hash);
+            cachedDatabase = verified;
+            cache.put(peripheral.getAddress(), verified);
+            finishDiscovery(generation);
         });
+
+        discoverNextCharacteristics();
+    }
+
+    private synchronized long beginDiscoveryPass()
+    {
+        characteristicsDiscovered = false;
+        databaseHashPending = false;
+        return ++discoveryGeneration;
+    }
+
+    private void finishDiscovery(final long generation)
+    {
+        synchronized (this)
+        {
+            if (generation != discoveryGeneration || !characteristicsDiscovered || databaseHashPending)
+            {
+                return;
+            }
+
+            // Only one caller gets to finish a pass
+            ++discoveryGeneration;
+        }
+
+        UUPeripheralSession activeSession = session;
+        if (activeSession != null)
+        {
+            activeSession.markDiscovered();
+        }
+
+        handleCharacteristicDiscoveryFinished();
     }
 
     private void handleDisconnection(@Nullable final UUError disconnectError)
@@ -434,7 +942,15 @@ public class UUPeripheralOperation<T extends UUPeripheral>
     {
         if (servicesNeedingCharacteristicDiscovery.isEmpty())
         {
-            handleCharacteristicDiscoveryFinished();
+            long generation;
+
+            synchronized (this)
+            {
+                characteristicsDiscovered = true;
+                generation = discoveryGeneration;
+            }
+
+            finishDiscovery(generation);
             return;
         }
 
@@ -482,6 +998,61 @@ public class UUPeripheralOperation<T extends UUPeripheral>
             }));
     }
 
+    public void startListeningForDataChanges(@NonNull final Map<UUID, UUObjectDelegate<byte[]>> dataChanged, @NonNull final Runnable completion)
+    {
+        ArrayList<BluetoothGattCharacteristic> characteristics = new ArrayList<>();
+
+        // Routed by characteristic instance, so repeated UUIDs reach the right callback
+        final LongSparseArray<UUObjectDelegate<byte[]>> routes = new LongSparseArray<>();
+
+        for (Map.Entry<UUID, UUObjectDelegate<byte[]>> entry : dataChanged.entrySet())
+        {
+            BluetoothGattCharacteristic characteristic = findDiscoveredCharacteristic(entry.getKey());
+            if (characteristic == null)
+            {
+                UUError err = UUBluetoothError.operationFailedError("requireDiscoveredCharacteristic");
+                end(err);
+                return;
+            }
+
+            characteristics.add(characteristic);
+            routes.put(UUAttributeKey.of(characteristic), entry.getValue());
+        }
+
+        peripheral.setNotifyStates(characteristics, true, readTimeout,
+        (peripheral, characteristic, error) ->
+        {
+            // A bad notification is dropped rather than ending the whole operation
+            if (error != null)
+            {
+                return;
+            }
+
+            UUObjectDelegate<byte[]> delegate = routes.get(UUAttributeKey.of(characteristic));
+            if (delegate != null)
+            {
+                delegate.onCompleted(characteristic.getValue());
+            }
+
+        }, (peripheral, failures, error) ->
+        {
+            UUError err = error;
+            if (err == null && !failures.isEmpty())
+            {
+                err = UUBluetoothError.batchFailedError("startListeningForDataChanges", failures);
+            }
+
+            if (err != null)
+            {
+                end(err);
+                return;
+            }
+
+            completion.run();
+
+        });
+    }
+
     public void stopListeningForDataChanges(@NonNull final UUID characteristicUuid, @NonNull final Runnable completion)
     {
         requireDiscoveredCharacteristic(characteristicUuid, characteristic ->
@@ -0,0 +1,277 @@
+package com.silverpine.uu.bluetooth;
+
+import com.silverpine.uu.core.UUError;
+import com.silverpine.uu.core.UUObjectDelegate;
+import com.silverpine.uu.logging.UULog;
+
+import java.util.ArrayDeque;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Shares one connection between successive UUPeripheralOperations.  The first operation connects
+ * and discovers services; later operations run on the open link without either step.  When an
+ * operation ends successfully the link is held for the idle timeout and then disconnected, unless
+ * another operation starts first.  An operation that ends with an error still disconnects, so the
+ * next one starts from a fresh link.
+ *
+ * Operations in a session run one at a time.  An operation started while another holds the
+ * session waits for it to end.
+ */
+@SuppressWarnings("unused")
+public class UUPeripheralSession
+{
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+
+    public static class Defaults
+    {
+        public static final long IdleTimeout = 10000;
+    }
+
+    private final UUPeripheral peripheral;
+    private final UUWatchdogScheduler scheduler = new UUWatchdogScheduler();
+    private final UUWatchdogScheduler.Watchdog idleTimer = scheduler.create();
+    private final ArrayDeque<Lease> waiting = new ArrayDeque<>();
+
+    private long idleTimeout = Defaults.IdleTimeout;
+
+    // The operation holding the session, or null when the session is free
+    private @Nullable Lease holder;
+    private boolean connecting;
+    private boolean connected;
+    private boolean discovered;
+    private boolean closing;
+    private @Nullable Runnable connectedListener;
+    private @Nullable UUObjectDelegate<UUError> disconnectedListener;
+
+    public UUPeripheralSession(final @NonNull UUPeripheral peripheral)
+    {
+        this.peripheral = peripheral;
+    }
+
+    public @NonNull UUPeripheral getPeripheral()
+    {
+        return peripheral;
+    }
+
+    public synchronized long getIdleTimeout()
+    {
+        return idleTimeout;
+    }
+
+    /**
+     * How long the link is held open after the last operation ends.  Zero disconnects right away.
+     */
+    public synchronized void setIdleTimeout(final long idleTimeout)
+    {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public synchronized boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Disconnects now instead of waiting for the idle timeout.
+     */
+    public void close()
+    {
+        idleTimer.cancel();
+        peripheral.disconnect(null);
+    }
+
+    synchronized boolean isDiscovered()
+    {
+        return discovered;
+    }
+
+    synchronized void markDiscovered()
+    {
+        discovered = true;
+    }
+
+    /**
+     * Called by an operation when it starts.  Once the session is free, connected runs right away
+     * if the link is open, or after connecting.  disconnected is invoked if the link drops while
+     * the operation holds the session.
+     *
+     * @return the lease to hand back to release
+     */
+    @NonNull
+    Lease acquire(
+            final long connectTimeout,
+            final long disconnectTimeout,
+            final @Nullable UULinkProfile linkProfile,
+            final @NonNull Runnable connected,
+            final @NonNull UUObjectDelegate<UUError> disconnected)
+    {
+        Lease lease = new Lease(connectTimeout, disconnectTimeout, linkProfile, connected, disconnected);
+
+        synchronized (this)
+        {
+            if (holder != null)
+            {
+                waiting.add(lease);
+                return lease;
+            }
+
+            holder = lease;
+        }
+
+        begin(lease);
+        return lease;
+    }
+
+    /**
+     * Called by an operation when it ends.  A null error keeps the link open for the idle
+     * timeout, anything else disconnects.  Does nothing if the lease no longer holds the session,
+     * which happens when the link dropped and the session moved on to the next operation.
+     */
+    void release(final @NonNull Lease lease, final @Nullable UUError error)
+    {
+        Lease next = null;
+        long timeout;
+        boolean linkOpen;
+
+        synchronized (this)
+        {
+            if (holder != lease || closing)
+            {
+                return;
+            }
+
+            connectedListener = null;
+            disconnectedListener = null;
+            timeout = idleTimeout;
+            linkOpen = connected || connecting;
+
+            // After an error the next operation waits for the disconnect to finish
+            closing = (error != null && linkOpen);
+            next = closing ? null : waiting.poll();
+            holder = closing ? lease : next;
+        }
+
+        if (error != null)
+        {
+            peripheral.disconnect(error);
+        }
+        else if (next == null && linkOpen)
+        {
+            if (LOGGING_ENABLED)
+            {
+                UULog.debug(getClass(), "release", "Holding link to " + peripheral.getAddress() + " for " + timeout + " ms");
+            }
+
+            idleTimer.start(timeout, () -> peripheral.disconnect(null));
+        }
+
+        if (next != null)
+        {
+            begin(next);
+        }
+    }
+
+    private void begin(final @NonNull Lease lease)
+    {
+        idleTimer.cancel();
+
+        boolean ready;
+        boolean connect;
+
+        synchronized (this)
+        {
+            connectedListener = lease.connected;
+            disconnectedListener = lease.disconnected;
+            ready = this.connected;
+            connect = !this.connected && !connecting;
+            connecting |= connect;
+        }
+
+        if (ready)
+        {
+            lease.connected.run();
+        }
+        else if (connect)
+        {
+            peripheral.connect(lease.connectTimeout, lease.disconnectTimeout, lease.linkProfile, this::handleConnected, this::handleDisconnected);
+        }
+    }
+
+    private void handleConnected()
+    {
+        Runnable listener;
+
+        synchronized (this)
+        {
+            connecting = false;
+            connected = true;
+            discovered = false;
+            listener = connectedListener;
+        }
+
+        if (listener != null)
+        {
+            listener.run();
+        }
+    }
+
+    private void handleDisconnected(final @Nullable UUError error)
+    {
+        UUObjectDelegate<UUError> listener;
+        Lease next = null;
+
+        synchronized (this)
+        {
+            connecting = false;
+            connected = false;
+            discovered = false;
+            listener = disconnectedListener;
+            connectedListener = null;
+            disconnectedListener = null;
+
+            // The operation holding the session is over, either way
+            if (listener != null || closing)
+            {
+                closing = false;
+                next = waiting.poll();
+                holder = next;
+            }
+        }
+
+        idleTimer.cancel();
+        UUObjectDelegate.safeInvoke(listener, error);
+
+        if (next != null)
+        {
+            begin(next);
+        }
+    }
+
+    /**
+     * One operation's claim on the session.
+     */
+    static final class Lease
+    {
+        private final long connectTimeout;
+        private final long disconnectTimeout;
+        private final @Nullable UULinkProfile linkProfile;
+        private final @NonNull Runnable connected;
+        private final @NonNull UUObjectDelegate<UUError> disconnected;
+
+        private Lease(
+                final long connectTimeout,
+                final long disconnectTimeout,
+                final @Nullable UULinkProfile linkProfile,
+                final @NonNull Runnable connected,
+                final @NonNull UUObjectDelegate<UUError> disconnected)
+        {
+            this.connectTimeout = connectTimeout;
+            this.disconnectTimeout = disconnectTimeout;
+            this.linkProfile = linkProfile;
+            this.connected = connected;
+            this.disconnected = disconnected;
+        }
+    }
+}
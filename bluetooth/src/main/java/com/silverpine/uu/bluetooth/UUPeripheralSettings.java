@@ -0,0 +1,164 @@
+package com.silverpine.uu.bluetooth;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Everything set on or measured for a peripheral that must outlive a single UUBluetoothGatt.
+ * Entries live in a registry keyed by address, so when an idle GATT wrapper is evicted the next
+ * one picks up the same timeout policies, value cache, recovery strategy, adaptive priority flag,
+ * notification buffer capacity and statistics.  The registry is swept along with the GATT
+ * registry: an entry whose GATT wrapper is gone is dropped unless it holds configuration that
+ * differs from the defaults.
+ */
+final class UUPeripheralSettings
+{
+    private static final ConcurrentHashMap<String, UUPeripheralSettings> registry = new ConcurrentHashMap<>();
+
+    private final EnumMap<UUTimeoutPolicy.Operation, UUTimeoutPolicy> timeoutPolicies = new EnumMap<>(UUTimeoutPolicy.Operation.class);
+    private final UUGattLatencyStats latencyStats = new UUGattLatencyStats();
+    private final UUGattRecoveryMetrics.Recorder gattRecoveryRecorder = new UUGattRecoveryMetrics.Recorder();
+    private volatile UUGattRecoveryStrategy gattRecoveryStrategy = new UUBoundedGattRecoveryStrategy();
+    private volatile boolean gattRecoveryStrategySet;
+    private volatile UUCharacteristicValueCache valueCache;
+    private volatile boolean adaptiveConnectionPriorityEnabled;
+    private volatile int notificationBufferCapacity = UUNotificationDispatcher.DEFAULT_CAPACITY;
+
+    @NonNull
+    static UUPeripheralSettings forAddress(final @NonNull String address)
+    {
+        UUPeripheralSettings settings = registry.get(address);
+        if (settings == null)
+        {
+            UUPeripheralSettings created = new UUPeripheralSettings();
+            settings = registry.putIfAbsent(address, created);
+            if (settings == null)
+            {
+                settings = created;
+            }
+        }
+
+        return settings;
+    }
+
+    /**
+     * Drops every entry that is not in use and holds only default configuration.
+     *
+     * @param inUse true for addresses whose settings are still referenced
+     */
+    static void sweep(final @NonNull Predicate<String> inUse)
+    {
+        Iterator<Map.Entry<String, UUPeripheralSettings>> it = registry.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<String, UUPeripheralSettings> entry = it.next();
+            if (!inUse.test(entry.getKey()) && !entry.getValue().isConfigured())
+            {
+                it.remove();
+            }
+        }
+    }
+
+    static int getRegistrySize()
+    {
+        return registry.size();
+    }
+
+    /**
+     * True when anything has been set that differs from the defaults.  Statistics do not count.
+     */
+    boolean isConfigured()
+    {
+        synchronized (timeoutPolicies)
+        {
+            if (!timeoutPolicies.isEmpty())
+            {
+                return true;
+            }
+        }
+
+        return (valueCache != null ||
+                gattRecoveryStrategySet ||
+                adaptiveConnectionPriorityEnabled ||
+                notificationBufferCapacity != UUNotificationDispatcher.DEFAULT_CAPACITY);
+    }
+
+    @NonNull
+    UUTimeoutPolicy getTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation)
+    {
+        synchronized (timeoutPolicies)
+        {
+            UUTimeoutPolicy policy = timeoutPolicies.get(operation);
+            return (policy != null) ? policy : UUTimeoutPolicy.disconnect();
+        }
+    }
+
+    void setTimeoutPolicy(final @NonNull UUTimeoutPolicy.Operation operation, final @NonNull UUTimeoutPolicy policy)
+    {
+        synchronized (timeoutPolicies)
+        {
+            timeoutPolicies.put(operation, policy);
+        }
+    }
+
+    @NonNull
+    UUGattLatencyStats getLatencyStats()
+    {
+        return latencyStats;
+    }
+
+    @NonNull
+    UUGattRecoveryMetrics.Recorder getGattRecoveryRecorder()
+    {
+        return gattRecoveryRecorder;
+    }
+
+    @NonNull
+    UUGattRecoveryStrategy getGattRecoveryStrategy()
+    {
+        return gattRecoveryStrategy;
+    }
+
+    void setGattRecoveryStrategy(final @NonNull UUGattRecoveryStrategy strategy)
+    {
+        gattRecoveryStrategy = strategy;
+        gattRecoveryStrategySet = true;
+    }
+
+    @Nullable
+    UUCharacteristicValueCache getValueCache()
+    {
+        return valueCache;
+    }
+
+    void setValueCache(final @Nullable UUCharacteristicValueCache cache)
+    {
+        valueCache = cache;
+    }
+
+    boolean isAdaptiveConnectionPriorityEnabled()
+    {
+        return adaptiveConnectionPriorityEnabled;
+    }
+
+    void setAdaptiveConnectionPriorityEnabled(final boolean enabled)
+    {
+        adaptiveConnectionPriorityEnabled = enabled;
+    }
+
+    int getNotificationBufferCapacity()
+    {
+        return notificationBufferCapacity;
+    }
+
+    void setNotificationBufferCapacity(final int capacity)
+    {
+        notificationBufferCapacity = capacity;
+    }
+}
@@ -0,0 +1,456 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+import android.os.SystemClock;
+
+import com.silverpine.uu.core.UUError;
+import com.silverpine.uu.logging.UULog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Keeps a peripheral connected.  After an unexpected disconnect or a failed connect, a reconnect
+ * is scheduled with jittered exponential backoff.  Once an outage has lasted longer than the
+ * auto connect threshold, reconnects switch to autoConnect=true background connects, which let
+ * the controller wait for the device instead of burning direct connect attempts.
+ *
+ * Notification subscriptions added through this class are restored after every reconnect, once
+ * services have been rediscovered, and before the connected callback is invoked.
+ */
+@SuppressWarnings("unused")
+public class UUPersistentConnection
+{
+    private static final boolean LOGGING_ENABLED = UULog.LOGGING_ENABLED;
+
+    public static class Defaults
+    {
+        public static final long InitialBackoff = 1000;
+        public static final long MaxBackoff = 60000;
+        public static final double BackoffJitter = 0.2;
+        public static final long AutoConnectThreshold = 30000;
+        public static final long AutoConnectTimeout = 10 * 60000;
+    }
+
+    private final UUPeripheral peripheral;
+    private final Random random = new Random();
+    private final UUWatchdogScheduler scheduler = new UUWatchdogScheduler();
+    private final UUWatchdogScheduler.Watchdog reconnectTimer = scheduler.create();
+    private final ArrayList<Subscription> subscriptions = new ArrayList<>();
+
+    private long connectTimeout = UUPeripheral.Defaults.ConnectTimeout;
+    private long disconnectTimeout = UUPeripheral.Defaults.DisconnectTimeout;
+    private long serviceDiscoveryTimeout = UUPeripheral.Defaults.ServiceDiscoveryTimeout;
+    private long operationTimeout = UUPeripheral.Defaults.OperationTimeout;
+    private long initialBackoff = Defaults.InitialBackoff;
+    private long maxBackoff = Defaults.MaxBackoff;
+    private long autoConnectThreshold = Defaults.AutoConnectThreshold;
+    private @Nullable UULinkProfile linkProfile;
+
+    private @Nullable UUConnectionDelegate delegate;
+    private boolean running;
+    private boolean connected;
+    private boolean hasConnected;
+    private long outageStartTime;
+
+    private long connectAttempts;
+    private long reconnectCount;
+    private long autoConnectAttempts;
+    private int consecutiveFailures;
+    private long lastReconnectLatency;
+    private long maxReconnectLatency;
+    private long totalReconnectLatency;
+
+    public UUPersistentConnection(final @NonNull UUPeripheral peripheral)
+    {
+        this.peripheral = peripheral;
+    }
+
+    public @NonNull UUPeripheral getPeripheral()
+    {
+        return peripheral;
+    }
+
+    public synchronized void setConnectTimeout(final long connectTimeout)
+    {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public synchronized void setDisconnectTimeout(final long disconnectTimeout)
+    {
+        this.disconnectTimeout = disconnectTimeout;
+    }
+
+    public synchronized void setServiceDiscoveryTimeout(final long serviceDiscoveryTimeout)
+    {
+        this.serviceDiscoveryTimeout = serviceDiscoveryTimeout;
+    }
+
+    public synchronized void setOperationTimeout(final long operationTimeout)
+    {
+        this.operationTimeout = operationTimeout;
+    }
+
+    public synchronized void setBackoff(final long initialBackoff, final long maxBackoff)
+    {
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * How long an outage must last before reconnects switch to autoConnect=true.
+     */
+    public synchronized void setAutoConnectThreshold(final long autoConnectThreshold)
+    {
+        this.autoConnectThreshold = autoConnectThreshold;
+    }
+
+    public synchronized void setLinkProfile(final @Nullable UULinkProfile linkProfile)
+    {
+        this.linkProfile = linkProfile;
+    }
+
+    public synchronized boolean isRunning()
+    {
+        return running;
+    }
+
+    public synchronized boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Starts connecting.  The delegate's onConnected is invoked after every successful connect,
+     * and onDisconnected once per outage.  Reconnects continue until stop is called.
+     *
+     * @param delegate connection delegate
+     */
+    public void start(final @NonNull UUConnectionDelegate delegate)
+    {
+        synchronized (this)
+        {
+            if (running)
+            {
+                return;
+            }
+
+            this.delegate = delegate;
+            running = true;
+            hasConnected = false;
+            outageStartTime = 0;
+            consecutiveFailures = 0;
+        }
+
+        attemptConnect(false);
+    }
+
+    /**
+     * Stops reconnecting and disconnects the peripheral.
+     */
+    public void stop()
+    {
+        synchronized (this)
+        {
+            running = false;
+        }
+
+        reconnectTimer.cancel();
+        peripheral.disconnect(null);
+    }
+
+    /**
+     * Adds a notification subscription that is restored after every reconnect.  If the
+     * peripheral is connected and services have been discovered, it is also applied right away.
+     *
+     * @param serviceUuid the service containing the characteristic
+     * @param characteristicUuid the characteristic to subscribe to
+     * @param notifyDelegate invoked for each notification
+     */
+    public void addSubscription(
+            final @NonNull UUID serviceUuid,
+            final @NonNull UUID characteristicUuid,
+            final @NonNull UUCharacteristicDelegate notifyDelegate)
+    {
+        Subscription subscription = new Subscription(serviceUuid, characteristicUuid, notifyDelegate);
+        boolean applyNow;
+
+        synchronized (this)
+        {
+            subscriptions.add(subscription);
+            applyNow = connected;
+        }
+
+        if (applyNow)
+        {
+            ArrayList<Subscription> list = new ArrayList<>();
+            list.add(subscription);
+            restoreSubscriptions(peripheral.discoveredServices(), list, 0, () -> { });
+        }
+    }
+
+    public synchronized @NonNull UUReconnectMetrics getMetrics()
+    {
+        return new UUReconnectMetrics(
+                connectAttempts,
+                reconnectCount,
+                autoConnectAttempts,
+                consecutiveFailures,
+                lastReconnectLatency,
+                maxReconnectLatency,
+                totalReconnectLatency);
+    }
+
+    /**
+     * Exponential backoff with +/- jitter, capped at maxBackoff.
+     */
+    static long computeBackoff(final int failures, final long initial, final long max, final double jitter, final double random)
+    {
+        int shift = Math.min(Math.max(0, failures - 1), 30);
+        long base = Math.min(max, initial << shift);
+        double factor = 1.0 + (jitter * ((random * 2.0) - 1.0));
+        return Math.max(0, Math.min(max, (long) (base * factor)));
+    }
+
+    private void attemptConnect(final boolean autoConnect)
+    {
+        long timeout;
+        long disconnectTimeout;
+        UULinkProfile profile;
+
+        synchronized (this)
+        {
+            if (!running)
+            {
+                return;
+            }
+
+            ++connectAttempts;
+            if (autoConnect)
+            {
+                ++autoConnectAttempts;
+            }
+
+            timeout = autoConnect ? Math.max(connectTimeout, Defaults.AutoConnectTimeout) : connectTimeout;
+            disconnectTimeout = this.disconnectTimeout;
+            profile = linkProfile;
+        }
+
+        if (LOGGING_ENABLED)
+        {
+            debugLog("attemptConnect", "Connecting to " + peripheral.getAddress() + ", autoConnect: " + autoConnect);
+        }
+
+        peripheral.connect(autoConnect, timeout, disconnectTimeout, profile, this::handleConnected, this::handleDisconnected);
+    }
+
+    private void handleConnected()
+    {
+        ArrayList<Subscription> toRestore;
+        long discoveryTimeout;
+
+        synchronized (this)
+        {
+            // Failed attempts before the first connect are not an outage
+            if (outageStartTime != 0 && hasConnected)
+            {
+                long latency = SystemClock.elapsedRealtime() - outageStartTime;
+                lastReconnectLatency = latency;
+                maxReconnectLatency = Math.max(maxReconnectLatency, latency);
+                totalReconnectLatency += latency;
+                ++reconnectCount;
+            }
+
+            hasConnected = true;
+            outageStartTime = 0;
+
+            consecutiveFailures = 0;
+            toRestore = new ArrayList<>(subscriptions);
+            discoveryTimeout = serviceDiscoveryTimeout;
+        }
+
+        if (toRestore.isEmpty())
+        {
+            notifyConnected();
+            return;
+        }
+
+        peripheral.discoverServices(discoveryTimeout, (services, error) ->
+        {
+            if (error != null || services == null)
+            {
+                if (LOGGING_ENABLED)
+                {
+                    debugLog("handleConnected", "Service discovery failed, error: " + error);
+                }
+
+                peripheral.disconnect(error);
+                return;
+            }
+
+            restoreSubscriptions(services, toRestore, 0, this::notifyConnected);
+        });
+    }
+
+    private void restoreSubscriptions(
+            final @NonNull List<BluetoothGattService> services,
+            final @NonNull List<Subscription> list,
+            final int index,
+            final @NonNull Runnable completion)
+    {
+        if (index >= list.size())
+        {
+            completion.run();
+            return;
+        }
+
+        Subscription subscription = list.get(index);
+        BluetoothGattCharacteristic characteristic = subscription.find(services);
+        if (characteristic == null)
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("restoreSubscriptions", "Characteristic " + subscription.characteristicUuid + " not found");
+            }
+
+            restoreSubscriptions(services, list, index + 1, completion);
+            return;
+        }
+
+        long timeout;
+        synchronized (this)
+        {
+            timeout = operationTimeout;
+        }
+
+        peripheral.setNotifyState(characteristic, true, timeout, subscription.notifyDelegate, (peripheral, characteristic1, error) ->
+        {
+            if (LOGGING_ENABLED)
+            {
+                debugLog("restoreSubscriptions", "Restored " + subscription.characteristicUuid + ", error: " + error);
+            }
+
+            restoreSubscriptions(services, list, index + 1, completion);
+        });
+    }
+
+    private void notifyConnected()
+    {
+        UUConnectionDelegate callback;
+
+        synchronized (this)
+        {
+            connected = true;
+            callback = delegate;
+        }
+
+        if (callback != null)
+        {
+            callback.onConnected(peripheral);
+        }
+    }
+
+    private void handleDisconnected(final @Nullable UUError error)
+    {
+        UUConnectionDelegate callback = null;
+        long delay = 0;
+        boolean autoConnect = false;
+        boolean reconnect;
+
+        synchronized (this)
+        {
+            long now = SystemClock.elapsedRealtime();
+
+            if (connected)
+            {
+                connected = false;
+                callback = delegate;
+            }
+            else
+            {
+                ++consecutiveFailures;
+            }
+
+            if (outageStartTime == 0)
+            {
+                outageStartTime = now;
+            }
+
+            reconnect = running;
+
+            if (reconnect)
+            {
+                autoConnect = (now - outageStartTime) >= autoConnectThreshold;
+                delay = computeBackoff(consecutiveFailures, initialBackoff, maxBackoff, Defaults.BackoffJitter, random.nextDouble());
+            }
+            else
+            {
+                callback = delegate;
+                delegate = null;
+            }
+        }
+
+        if (callback != null)
+        {
+            callback.onDisconnected(peripheral, error);
+        }
+
+        if (reconnect)
+        {
+            final boolean useAutoConnect = autoConnect;
+
+            if (LOGGING_ENABLED)
+            {
+                debugLog("handleDisconnected", "Reconnecting in " + delay + " ms, autoConnect: " + useAutoConnect + ", error: " + error);
+            }
+
+            reconnectTimer.start(delay, () -> attemptConnect(useAutoConnect));
+        }
+    }
+
+    private void debugLog(final String method, final String message)
+    {
+        if (LOGGING_ENABLED)
+        {
+            UULog.debug(getClass(), method, message);
+        }
+    }
+
+    private static class Subscription
+    {
+        final @NonNull UUID serviceUuid;
+        final @NonNull UUID characteristicUuid;
+        final @NonNull UUCharacteristicDelegate notifyDelegate;
+
+        Subscription(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @NonNull UUCharacteristicDelegate notifyDelegate)
+        {
+            this.serviceUuid = serviceUuid;
+            this.characteristicUuid = characteristicUuid;
+            this.notifyDelegate = notifyDelegate;
+        }
+
+        @Nullable
+        BluetoothGattCharacteristic find(final @NonNull List<BluetoothGattService> services)
+        {
+            for (BluetoothGattService service : services)
+            {
+                if (serviceUuid.equals(service.getUuid()))
+                {
+                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(characteristicUuid);
+                    if (characteristic != null)
+                    {
+                        return characteristic;
+                    }
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.content.Context;
+import android.os.Handler;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * GATT transport backed by the Android Bluetooth stack.
+ */
+class UUPlatformGattTransport implements UUGattTransport
+{
+    private final BluetoothGatt gatt;
+
+    private UUPlatformGattTransport(final @NonNull BluetoothGatt gatt)
+    {
+        this.gatt = gatt;
+    }
+
+    /**
+     * Calls BluetoothDevice.connectGatt.  When a handler is given, platform callbacks are
+     * delivered on its thread.
+     *
+     * @return the transport, or null if connectGatt failed
+     */
+    static final Factory FACTORY = (context, peripheral, autoConnect, handler, callback) ->
+            connect(context, peripheral.getBluetoothDevice(), autoConnect, handler, callback);
+
+    @Nullable
+    static UUPlatformGattTransport connect(
+            final @NonNull Context context,
+            final @NonNull BluetoothDevice device,
+            final boolean autoConnect,
+            final @Nullable Handler handler,
+            final @NonNull Callback callback)
+    {
+        BluetoothGattCallback platformCallback = new PlatformCallback(callback);
+        BluetoothGatt gatt;
+
+        if (handler != null)
+        {
+            gatt = device.connectGatt(context, autoConnect, platformCallback, BluetoothDevice.TRANSPORT_LE, BluetoothDevice.PHY_LE_1M_MASK, handler);
+        }
+        else
+        {
+            gatt = device.connectGatt(context, autoConnect, platformCallback, BluetoothDevice.TRANSPORT_LE);
+        }
+
+        return (gatt != null) ? new UUPlatformGattTransport(gatt) : null;
+    }
+
+    @Override
+    public boolean connect()
+    {
+        return gatt.connect();
+    }
+
+    @Override
+    public void disconnect()
+    {
+        gatt.disconnect();
+    }
+
+    @Override
+    public void close()
+    {
+        gatt.close();
+    }
+
+    @Override
+    public boolean discoverServices()
+    {
+        return gatt.discoverServices();
+    }
+
+    @NonNull
+    @Override
+    public List<BluetoothGattService> getServices()
+    {
+        return gatt.getServices();
+    }
+
+    @Override
+    public boolean readCharacteristic(@NonNull BluetoothGattCharacteristic characteristic)
+    {
+        return gatt.readCharacteristic(characteristic);
+    }
+
+    @Override
+    public boolean writeCharacteristic(@NonNull BluetoothGattCharacteristic characteristic)
+    {
+        return gatt.writeCharacteristic(characteristic);
+    }
+
+    @Override
+    public boolean readDescriptor(@NonNull BluetoothGattDescriptor descriptor)
+    {
+        return gatt.readDescriptor(descriptor);
+    }
+
+    @Override
+    public boolean writeDescriptor(@NonNull BluetoothGattDescriptor descriptor)
+    {
+        return gatt.writeDescriptor(descriptor);
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(@NonNull BluetoothGattCharacteristic characteristic, boolean enable)
+    {
+        return gatt.setCharacteristicNotification(characteristic, enable);
+    }
+
+    @Override
+    public boolean readRemoteRssi()
+    {
+        return gatt.readRemoteRssi();
+    }
+
+    @Override
+    public boolean requestMtu(int mtu)
+    {
+        return gatt.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean requestConnectionPriority(int connectionPriority)
+    {
+        return gatt.requestConnectionPriority(connectionPriority);
+    }
+
+    @Override
+    public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions)
+    {
+        gatt.setPreferredPhy(txPhy, rxPhy, phyOptions);
+    }
+
+    @Override
+    public boolean beginReliableWrite()
+    {
+        return gatt.beginReliableWrite();
+    }
+
+    @Override
+    public boolean executeReliableWrite()
+    {
+        return gatt.executeReliableWrite();
+    }
+
+    @Override
+    public void abortReliableWrite()
+    {
+        gatt.abortReliableWrite();
+    }
+
+    // BluetoothGatt.refresh is hidden, so it is invoked by reflection
+    @Override
+    public boolean refresh()
+    {
+        try
+        {
+            Method m = gatt.getClass().getMethod("refresh", (Class[]) null);
+            Object result = m.invoke(gatt, (Object[]) null);
+            return Boolean.TRUE.equals(result);
+        }
+        catch (Exception ex)
+        {
+            return false;
+        }
+    }
+
+    @Nullable
+    @Override
+    public BluetoothGatt getBluetoothGatt()
+    {
+        return gatt;
+    }
+
+    private static class PlatformCallback extends BluetoothGattCallback
+    {
+        private final Callback callback;
+
+        PlatformCallback(final @NonNull Callback callback)
+        {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState)
+        {
+            callback.onConnectionStateChange(status, newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status)
+        {
+            callback.onServicesDiscovered(status);
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status)
+        {
+            callback.onCharacteristicRead(characteristic, status);
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status)
+        {
+            callback.onCharacteristicWrite(characteristic, status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic)
+        {
+            callback.onCharacteristicChanged(characteristic);
+        }
+
+        @Override
+        public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status)
+        {
+            callback.onDescriptorRead(descriptor, status);
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status)
+        {
+            callback.onDescriptorWrite(descriptor, status);
+        }
+
+        @Override
+        public void onReliableWriteCompleted(BluetoothGatt gatt, int status)
+        {
+            callback.onReliableWriteCompleted(status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status)
+        {
+            callback.onReadRemoteRssi(rssi, status);
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status)
+        {
+            callback.onMtuChanged(mtu, status);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status)
+        {
+            callback.onPhyUpdate(txPhy, rxPhy, status);
+        }
+
+        @Override
+        public void onPhyRead(BluetoothGatt gatt, int txPhy, int rxPhy, int status)
+        {
+            callback.onPhyRead(txPhy, rxPhy, status);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.silverpine.uu.bluetooth;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of reconnect statistics for a persistent connection.  Latencies are in milliseconds,
+ * measured from the unexpected disconnect to the link being usable again.
+ */
+@SuppressWarnings("unused")
+public class UUReconnectMetrics
+{
+    private final long connectAttempts;
+    private final long reconnectCount;
+    private final long autoConnectAttempts;
+    private final int consecutiveFailures;
+    private final long lastReconnectLatency;
+    private final long maxReconnectLatency;
+    private final long totalReconnectLatency;
+
+    UUReconnectMetrics(
+            final long connectAttempts,
+            final long reconnectCount,
+            final long autoConnectAttempts,
+            final int consecutiveFailures,
+            final long lastReconnectLatency,
+            final long maxReconnectLatency,
+            final long totalReconnectLatency)
+    {
+        this.connectAttempts = connectAttempts;
+        this.reconnectCount = reconnectCount;
+        this.autoConnectAttempts = autoConnectAttempts;
+        this.consecutiveFailures = consecutiveFailures;
+        this.lastReconnectLatency = lastReconnectLatency;
+        this.maxReconnectLatency = maxReconnectLatency;
+        this.totalReconnectLatency = totalReconnectLatency;
+    }
+
+    /**
+     * Total number of connect attempts, including the first.
+     */
+    public long getConnectAttempts()
+    {
+        return connectAttempts;
+    }
+
+    /**
+     * Number of outages that ended in a successful reconnect.
+     */
+    public long getReconnectCount()
+    {
+        return reconnectCount;
+    }
+
+    public long getAutoConnectAttempts()
+    {
+        return autoConnectAttempts;
+    }
+
+    public int getConsecutiveFailures()
+    {
+        return consecutiveFailures;
+    }
+
+    public long getLastReconnectLatency()
+    {
+        return lastReconnectLatency;
+    }
+
+    public long getMaxReconnectLatency()
+    {
+        return maxReconnectLatency;
+    }
+
+    public long getAverageReconnectLatency()
+    {
+        return (reconnectCount > 0) ? (totalReconnectLatency / reconnectCount) : 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString()
+    {
+        return "attempts: " + connectAttempts +
+                ", reconnects: " + reconnectCount +
+                ", autoConnectAttempts: " + autoConnectAttempts +
+                ", consecutiveFailures: " + consecutiveFailures +
+                ", lastLatency: " + lastReconnectLatency +
+                ", avgLatency: " + getAverageReconnectLatency() +
+                ", maxLatency: " + maxReconnectLatency;
+    }
+}
@@ -0,0 +1,59 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An ordered set of characteristic writes that are committed atomically using a BTLE reliable
+ * (prepared) write transaction.
+ */
+@SuppressWarnings("unused")
+public class UUReliableWriteTransaction
+{
+    static class Entry
+    {
+        final @NonNull BluetoothGattCharacteristic characteristic;
+        final @NonNull byte[] data;
+
+        Entry(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull byte[] data)
+        {
+            this.characteristic = characteristic;
+            this.data = data;
+        }
+    }
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    /**
+     * Queues a prepared write.  Writes are sent to the remote device in the order they are added.
+     *
+     * @param characteristic the characteristic to write
+     * @param data the value to write
+     * @return this transaction, to allow chaining
+     */
+    public @NonNull UUReliableWriteTransaction addWrite(final @NonNull BluetoothGattCharacteristic characteristic, final @NonNull byte[] data)
+    {
+        entries.add(new Entry(characteristic, data));
+        return this;
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    @NonNull
+    List<Entry> getEntries()
+    {
+        return entries;
+    }
+}
@@ -0,0 +1,105 @@
+package com.silverpine.uu.bluetooth;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides what happens when a GATT operation times out.  By default a timeout disconnects the
+ * peripheral.  A policy can instead fail just the timed out operation, or re-issue it a number of
+ * times before failing it, leaving the connection up.
+ */
+@SuppressWarnings("unused")
+public class UUTimeoutPolicy
+{
+    public enum Operation
+    {
+        READ_CHARACTERISTIC,
+        WRITE_CHARACTERISTIC,
+        READ_DESCRIPTOR,
+        WRITE_DESCRIPTOR,
+        SET_NOTIFY_STATE,
+    }
+
+    public enum Action
+    {
+        /**
+         * Complete the operation with a timeout error and keep the connection.
+         */
+        FAIL_OPERATION,
+
+        /**
+         * Re-issue the operation up to retryCount times, then fail it.
+         */
+        RETRY,
+
+        /**
+         * Disconnect the peripheral with a timeout error.
+         */
+        DISCONNECT,
+    }
+
+    private static final UUTimeoutPolicy FAIL_OPERATION = new UUTimeoutPolicy(Action.FAIL_OPERATION, 0);
+    private static final UUTimeoutPolicy DISCONNECT = new UUTimeoutPolicy(Action.DISCONNECT, 0);
+
+    private final Action action;
+    private final int retryCount;
+
+    private UUTimeoutPolicy(final @NonNull Action action, final int retryCount)
+    {
+        this.action = action;
+        this.retryCount = retryCount;
+    }
+
+    public static @NonNull UUTimeoutPolicy failOperation()
+    {
+        return FAIL_OPERATION;
+    }
+
+    public static @NonNull UUTimeoutPolicy disconnect()
+    {
+        return DISCONNECT;
+    }
+
+    /**
+     * Creates a policy that re-issues a timed out operation.  On Android a stalled request keeps
+     * the GATT stack busy, so a retry that cannot be issued simply waits another timeout period
+     * for the original response.
+     *
+     * @param retryCount number of times to retry before failing the operation
+     * @return a timeout policy
+     */
+    public static @NonNull UUTimeoutPolicy retry(final int retryCount)
+    {
+        return new UUTimeoutPolicy(Action.RETRY, Math.max(0, retryCount));
+    }
+
+    public @NonNull Action getAction()
+    {
+        return action;
+    }
+
+    public int getRetryCount()
+    {
+        return retryCount;
+    }
+
+    /**
+     * Returns the action to take for a timeout, given how many retries have already been made.
+     */
+    @NonNull
+    Action resolve(final int retries)
+    {
+        if (action == Action.RETRY && retries >= retryCount)
+        {
+            return Action.FAIL_OPERATION;
+        }
+
+        return action;
+    }
+
+    @NonNull
+    @Override
+    public String toString()
+    {
+        return (action == Action.RETRY) ? (action + "(" + retryCount + ")") : action.toString();
+    }
+}
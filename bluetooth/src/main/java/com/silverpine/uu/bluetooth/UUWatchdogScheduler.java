@@ -0,0 +1,210 @@
+package com.silverpine.uu.bluetooth;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Per connection operation watchdogs.  Each watchdog is a reusable slot that is armed when an
+ * operation starts and cancelled when it completes, without building timer ids or touching the
+ * process wide timer registry.  Armed watchdogs are kept on an intrusive list so that cancelling
+ * one is constant time and cancelAll only visits the watchdogs belonging to this connection.
+ *
+ * All connections share a single timer thread.
+ */
+class UUWatchdogScheduler
+{
+    private static final String THREAD_NAME = "UUBluetoothWatchdog";
+
+    private static ScheduledThreadPoolExecutor sharedExecutor;
+
+    private final Object lock = new Object();
+    private Watchdog head;
+    private int activeCount;
+
+    @NonNull
+    Watchdog create()
+    {
+        return new Watchdog();
+    }
+
+    int getActiveCount()
+    {
+        synchronized (lock)
+        {
+            return activeCount;
+        }
+    }
+
+    /**
+     * Cancels every armed watchdog on this connection.
+     *
+     * @return the number of watchdogs that were cancelled
+     */
+    int cancelAll()
+    {
+        synchronized (lock)
+        {
+            int count = 0;
+
+            while (head != null)
+            {
+                head.disarm();
+                ++count;
+            }
+
+            return count;
+        }
+    }
+
+    private static synchronized @NonNull ScheduledThreadPoolExecutor executor()
+    {
+        if (sharedExecutor == null)
+        {
+            sharedExecutor = new ScheduledThreadPoolExecutor(1, runnable ->
+            {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            sharedExecutor.setRemoveOnCancelPolicy(true);
+        }
+
+        return sharedExecutor;
+    }
+
+    class Watchdog
+    {
+        private Watchdog prev;
+        private Watchdog next;
+        private boolean linked;
+
+        private Runnable onTimeout;
+        private ScheduledFuture<?> future;
+        private long generation;
+
+        /**
+         * Arms the watchdog, replacing any timeout that is already pending on it.  A negative
+         * timeout leaves the watchdog disarmed.
+         */
+        void start(final long timeout, final @NonNull Runnable onTimeout)
+        {
+            synchronized (lock)
+            {
+                disarm();
+
+                if (timeout < 0)
+                {
+                    return;
+                }
+
+                final long armedGeneration = ++generation;
+                this.onTimeout = onTimeout;
+                link();
+                future = executor().schedule(() -> fire(armedGeneration), timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void cancel()
+        {
+            synchronized (lock)
+            {
+                disarm();
+            }
+        }
+
+        boolean isActive()
+        {
+            synchronized (lock)
+            {
+                return linked;
+            }
+        }
+
+        private void fire(final long firedGeneration)
+        {
+            Runnable runnable;
+
+            synchronized (lock)
+            {
+                // A stale firing from a timeout that was replaced or cancelled after it started
+                if (firedGeneration != generation || !linked)
+                {
+                    return;
+                }
+
+                runnable = onTimeout;
+                future = null;
+                onTimeout = null;
+                unlink();
+            }
+
+            if (runnable != null)
+            {
+                runnable.run();
+            }
+        }
+
+        // Must be called with lock held
+        private void disarm()
+        {
+            if (future != null)
+            {
+                future.cancel(false);
+                future = null;
+            }
+
+            onTimeout = null;
+            unlink();
+        }
+
+        private void link()
+        {
+            if (linked)
+            {
+                return;
+            }
+
+            prev = null;
+            next = head;
+            if (head != null)
+            {
+                head.prev = this;
+            }
+
+            head = this;
+            linked = true;
+            ++activeCount;
+        }
+
+        private void unlink()
+        {
+            if (!linked)
+            {
+                return;
+            }
+
+            if (prev != null)
+            {
+                prev.next = next;
+            }
+            else
+            {
+                head = next;
+            }
+
+            if (next != null)
+            {
+                next.prev = prev;
+            }
+
+            prev = null;
+            next = null;
+            linked = false;
+            --activeCount;
+        }
+    }
+}
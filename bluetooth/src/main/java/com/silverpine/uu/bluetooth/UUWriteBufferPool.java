@@ -0,0 +1,80 @@
+package com.silverpine.uu.bluetooth;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Reusable write buffers, one per length up to the largest value a single write can carry.  The
+ * platform sends the whole array as the characteristic value, so buffers are exact length rather
+ * than sliced from a larger one.
+ *
+ * A buffer is in use from acquire until release.  If the buffer of a length is already in use,
+ * or the length is over the limit, acquire allocates a new array and release ignores it.
+ */
+final class UUWriteBufferPool
+{
+    private byte[][] buffers;
+    private boolean[] inUse;
+
+    UUWriteBufferPool(final int maxLength)
+    {
+        resize(maxLength);
+    }
+
+    synchronized int getMaxLength()
+    {
+        return buffers.length - 1;
+    }
+
+    /**
+     * Changes the largest pooled length.  Buffers that still fit are kept.
+     */
+    synchronized void resize(final int maxLength)
+    {
+        int length = Math.max(0, maxLength) + 1;
+        if (buffers != null && buffers.length == length)
+        {
+            return;
+        }
+
+        byte[][] resizedBuffers = new byte[length][];
+        boolean[] resizedInUse = new boolean[length];
+
+        if (buffers != null)
+        {
+            int keep = Math.min(length, buffers.length);
+            System.arraycopy(buffers, 0, resizedBuffers, 0, keep);
+            System.arraycopy(inUse, 0, resizedInUse, 0, keep);
+        }
+
+        buffers = resizedBuffers;
+        inUse = resizedInUse;
+    }
+
+    @NonNull
+    synchronized byte[] acquire(final int length)
+    {
+        if (length >= buffers.length || inUse[length])
+        {
+            return new byte[length];
+        }
+
+        byte[] buffer = buffers[length];
+        if (buffer == null)
+        {
+            buffer = new byte[length];
+            buffers[length] = buffer;
+        }
+
+        inUse[length] = true;
+        return buffer;
+    }
+
+    synchronized void release(@NonNull final byte[] buffer)
+    {
+        int length = buffer.length;
+        if (length < buffers.length && buffers[length] == buffer)
+        {
+            inUse[length] = false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGatt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UUAdaptiveConnectionPriorityTest
+{
+    @Test
+    public void bulkWriteRaisesPriorityImmediately()
+    {
+        UUAdaptiveConnectionPriority adaptive = new UUAdaptiveConnectionPriority(0);
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_HIGH, adaptive.operationStarted(UUAdaptiveConnectionPriority.BULK_TRANSFER_BYTES, 10));
+    }
+
+    @Test
+    public void bulkHintRaisesPriorityBeforeTraffic()
+    {
+        UUAdaptiveConnectionPriority adaptive = new UUAdaptiveConnectionPriority(0);
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_HIGH, adaptive.bulkTransferExpected(64 * 1024, 10));
+    }
+
+    @Test
+    public void highPriorityHeldUntilIdleInterval()
+    {
+        UUAdaptiveConnectionPriority adaptive = new UUAdaptiveConnectionPriority(0);
+        adaptive.operationStarted(4096, 0);
+        adaptive.operationEnded(4096, 100);
+
+        // Demand is below the enter threshold but still above exit, so HIGH is held
+        long now = 100;
+        for (int i = 0; i < 10; i++)
+        {
+            now += 150;
+            assertEquals(BluetoothGatt.CONNECTION_PRIORITY_HIGH, adaptive.recordTraffic(20, now));
+        }
+
+        // No traffic at all, priority drops only after the idle interval
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_HIGH, adaptive.evaluate(now + 500));
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, adaptive.evaluate(now + 2 * UUAdaptiveConnectionPriority.RATE_WINDOW + UUAdaptiveConnectionPriority.HIGH_IDLE_INTERVAL));
+    }
+
+    @Test
+    public void idleLinkDropsToLowPowerAndRecovers()
+    {
+        UUAdaptiveConnectionPriority adaptive = new UUAdaptiveConnectionPriority(0);
+        adaptive.recordTraffic(10, 0);
+
+        long idle = UUAdaptiveConnectionPriority.LOW_POWER_IDLE_INTERVAL;
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, adaptive.evaluate(idle - 1));
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER, adaptive.evaluate(idle));
+        assertEquals(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, adaptive.recordTraffic(10, idle + 100));
+    }
+}
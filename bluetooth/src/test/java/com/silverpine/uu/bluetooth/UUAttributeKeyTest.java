@@ -0,0 +1,38 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class UUAttributeKeyTest
+{
+    private static final UUID CCCD = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+    private static final UUID VENDOR_A = UUID.fromString("00002902-0000-1000-8000-0000000000aa");
+    private static final UUID VENDOR_B = UUID.fromString("00002902-0000-1000-8000-0000000000bb");
+
+    @Test
+    public void descriptorKeysUseFullUuid()
+    {
+        assertNotEquals(new UUAttributeKey.Descriptor(7, CCCD), new UUAttributeKey.Descriptor(7, VENDOR_A));
+        assertNotEquals(new UUAttributeKey.Descriptor(7, VENDOR_A), new UUAttributeKey.Descriptor(7, VENDOR_B));
+    }
+
+    @Test
+    public void descriptorKeysIncludeCharacteristic()
+    {
+        assertNotEquals(new UUAttributeKey.Descriptor(7, CCCD), new UUAttributeKey.Descriptor(8, CCCD));
+    }
+
+    @Test
+    public void equalDescriptorKeysHashAlike()
+    {
+        UUAttributeKey.Descriptor lhs = new UUAttributeKey.Descriptor(0x0001000200000003L, CCCD);
+        UUAttributeKey.Descriptor rhs = new UUAttributeKey.Descriptor(0x0001000200000003L, UUID.fromString(CCCD.toString()));
+
+        assertEquals(lhs, rhs);
+        assertEquals(lhs.hashCode(), rhs.hashCode());
+    }
+}
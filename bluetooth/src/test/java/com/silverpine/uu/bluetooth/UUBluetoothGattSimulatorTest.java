@@ -0,0 +1,268 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import com.silverpine.uu.core.UUError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives UUBluetoothGatt end to end over UUSimulatedGattTransport, on real threads and timers.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UUBluetoothGattSimulatorTest
+{
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID DATA = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+    private static final UUID LEVEL = UUID.fromString("00002a1a-0000-1000-8000-00805f9b34fb");
+
+    private static final long TIMEOUT = 5000;
+    private static final long AWAIT_SECONDS = 10;
+
+    private static final AtomicInteger nextAddress = new AtomicInteger();
+
+    private UUSimulatedPeripheral simulator;
+    private TestPeripheral peripheral;
+
+    @Before
+    public void setUp()
+    {
+        UUBluetooth.init(RuntimeEnvironment.getApplication());
+        UUBluetoothGatt.setTransportFactory(UUSimulatedGattTransport.FACTORY);
+
+        // A fresh address per test, so no GATT state or settings carry over
+        String address = String.format(Locale.US, "5A:00:00:00:%02X:%02X", nextAddress.get() >> 8, nextAddress.getAndIncrement() & 0xFF);
+
+        simulator = new UUSimulatedPeripheral();
+        simulator.addCharacteristic(SERVICE, DATA,
+                BluetoothGattCharacteristic.PROPERTY_READ | BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_NOTIFY,
+                new byte[] { 42 });
+        simulator.addCharacteristic(SERVICE, LEVEL, BluetoothGattCharacteristic.PROPERTY_NOTIFY, null);
+        simulator.attach(address);
+
+        peripheral = new TestPeripheral(address);
+    }
+
+    @After
+    public void tearDown()
+    {
+        peripheral.disconnect(null);
+        simulator.detach();
+        UUBluetoothGatt.setTransportFactory(null);
+    }
+
+    @Test
+    public void connectAndDiscoverServices()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+
+        assertEquals(DATA, characteristic.getUuid());
+        assertTrue(simulator.isConnected());
+    }
+
+    @Test
+    public void readReturnsSimulatorValue()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+        simulator.setValue(SERVICE, DATA, new byte[] { 1, 2, 3 });
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<byte[]> value = new AtomicReference<>();
+        AtomicReference<UUError> error = new AtomicReference<>();
+
+        peripheral.readCharacteristic(characteristic, TIMEOUT, (p, c, e) ->
+        {
+            value.set(c.getValue());
+            error.set(e);
+            done.countDown();
+        });
+
+        await(done);
+        assertNull(error.get());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, value.get());
+    }
+
+    @Test
+    public void writeReachesSimulator()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<UUError> error = new AtomicReference<>();
+
+        peripheral.writeCharacteristic(characteristic, new byte[] { 7, 8 }, TIMEOUT, (p, c, e) ->
+        {
+            error.set(e);
+            done.countDown();
+        });
+
+        await(done);
+        assertNull(error.get());
+        assertArrayEquals(new byte[] { 7, 8 }, simulator.getValue(SERVICE, DATA));
+    }
+
+    @Test
+    public void notificationReachesListener()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch notified = new CountDownLatch(1);
+        AtomicReference<UUError> error = new AtomicReference<>();
+        AtomicReference<byte[]> value = new AtomicReference<>();
+
+        peripheral.setNotifyState(characteristic, true, TIMEOUT,
+                (p, c, e) ->
+                {
+                    value.set(c.getValue());
+                    notified.countDown();
+                },
+                (p, c, e) ->
+                {
+                    error.set(e);
+                    subscribed.countDown();
+                });
+
+        await(subscribed);
+        assertNull(error.get());
+        assertTrue(simulator.isNotifying(SERVICE, DATA));
+
+        assertTrue(simulator.notifyValue(SERVICE, DATA, new byte[] { 9 }));
+        await(notified);
+        assertArrayEquals(new byte[] { 9 }, value.get());
+    }
+
+    @Test
+    public void droppedReadTimesOut()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+        peripheral.setTimeoutPolicy(UUTimeoutPolicy.Operation.READ_CHARACTERISTIC, UUTimeoutPolicy.failOperation());
+        simulator.dropNext(UUSimulatedPeripheral.Operation.READ_CHARACTERISTIC);
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<UUError> error = new AtomicReference<>();
+
+        peripheral.readCharacteristic(characteristic, 250, (p, c, e) ->
+        {
+            error.set(e);
+            done.countDown();
+        });
+
+        await(done);
+        assertNotNull(error.get());
+        assertEquals(UUBluetoothErrorCode.Timeout.getRawValue(), error.get().getCode());
+        assertTrue(simulator.isConnected());
+    }
+
+    @Test
+    public void notifyTimeoutEndsBatch()
+    {
+        BluetoothGattCharacteristic characteristic = connectAndDiscover();
+        BluetoothGattCharacteristic level = characteristic.getService().getCharacteristic(LEVEL);
+        peripheral.setTimeoutPolicy(UUTimeoutPolicy.Operation.WRITE_DESCRIPTOR, UUTimeoutPolicy.failOperation());
+        simulator.dropNext(UUSimulatedPeripheral.Operation.WRITE_DESCRIPTOR);
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Map<BluetoothGattCharacteristic, UUError>> failures = new AtomicReference<>();
+
+        peripheral.setNotifyStates(Arrays.asList(characteristic, level), true, 250, null, (p, f, e) ->
+        {
+            failures.set(f);
+            done.countDown();
+        });
+
+        await(done);
+        assertEquals(2, failures.get().size());
+        assertEquals(UUBluetoothErrorCode.Timeout.getRawValue(), failures.get().get(characteristic).getCode());
+        assertEquals(UUBluetoothErrorCode.Timeout.getRawValue(), failures.get().get(level).getCode());
+        assertFalse(simulator.isNotifying(SERVICE, LEVEL));
+    }
+
+    private @NonNull BluetoothGattCharacteristic connectAndDiscover()
+    {
+        CountDownLatch connected = new CountDownLatch(1);
+        peripheral.connect(TIMEOUT, TIMEOUT, connected::countDown, error -> { });
+        await(connected);
+
+        CountDownLatch discovered = new CountDownLatch(1);
+        AtomicReference<ArrayList<BluetoothGattService>> services = new AtomicReference<>();
+        AtomicReference<UUError> error = new AtomicReference<>();
+
+        peripheral.discoverServices(TIMEOUT, (list, e) ->
+        {
+            services.set(list);
+            error.set(e);
+            discovered.countDown();
+        });
+
+        await(discovered);
+        assertNull(error.get());
+        assertNotNull(services.get());
+
+        BluetoothGattCharacteristic characteristic = null;
+        for (BluetoothGattService service : services.get())
+        {
+            if (SERVICE.equals(service.getUuid()))
+            {
+                characteristic = service.getCharacteristic(DATA);
+            }
+        }
+
+        assertNotNull(characteristic);
+        return characteristic;
+    }
+
+    private static void await(final @NonNull CountDownLatch latch)
+    {
+        try
+        {
+            assertTrue("Timed out waiting for callback", latch.await(AWAIT_SECONDS, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException ex)
+        {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static class TestPeripheral extends UUPeripheral
+    {
+        private final String address;
+
+        TestPeripheral(final @NonNull String address)
+        {
+            this.address = address;
+        }
+
+        @Override
+        public @Nullable String getAddress()
+        {
+            return address;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UUCharacteristicValueCacheTest
+{
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    private static final String OTHER_ADDRESS = "66:77:88:99:AA:BB";
+    private static final UUID SERVICE = UUID.fromString("0000180a-0000-1000-8000-00805f9b34fb");
+    private static final UUID SERIAL = UUID.fromString("00002a25-0000-1000-8000-00805f9b34fb");
+    private static final UUID BATTERY = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    private long now;
+    private UUCharacteristicValueCache cache;
+
+    @Before
+    public void setUp()
+    {
+        now = 1000;
+        cache = new UUCharacteristicValueCache(() -> now);
+    }
+
+    @Test
+    public void uncachedCharacteristicIsNotStored()
+    {
+        cache.put(ADDRESS, SERVICE, BATTERY, new byte[] { 1 });
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(ADDRESS, SERVICE, BATTERY));
+    }
+
+    @Test
+    public void valueExpiresAfterTtl()
+    {
+        cache.setTtl(BATTERY, 500);
+        cache.put(ADDRESS, SERVICE, BATTERY, new byte[] { 80 });
+
+        now += 499;
+        assertArrayEquals(new byte[] { 80 }, cache.get(ADDRESS, SERVICE, BATTERY));
+
+        now += 1;
+        assertNull(cache.get(ADDRESS, SERVICE, BATTERY));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void returnedValueIsACopy()
+    {
+        cache.setTtl(BATTERY, 500);
+        byte[] value = new byte[] { 80 };
+        cache.put(ADDRESS, SERVICE, BATTERY, value);
+        value[0] = 0;
+
+        byte[] cached = cache.get(ADDRESS, SERVICE, BATTERY);
+        assertArrayEquals(new byte[] { 80 }, cached);
+
+        cached[0] = 0;
+        assertArrayEquals(new byte[] { 80 }, cache.get(ADDRESS, SERVICE, BATTERY));
+    }
+
+    @Test
+    public void immutableValuesSurviveConnectionEnd()
+    {
+        cache.setImmutable(SERIAL);
+        cache.setTtl(BATTERY, 60000);
+        cache.put(ADDRESS, SERVICE, SERIAL, new byte[] { 'A' });
+        cache.put(ADDRESS, SERVICE, BATTERY, new byte[] { 80 });
+        cache.put(OTHER_ADDRESS, SERVICE, BATTERY, new byte[] { 90 });
+
+        cache.connectionEnded(ADDRESS);
+
+        now = Long.MAX_VALUE - 1;
+        assertArrayEquals(new byte[] { 'A' }, cache.get(ADDRESS, SERVICE, SERIAL));
+        assertNull(cache.get(ADDRESS, SERVICE, BATTERY));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void invalidateRemovesSingleValue()
+    {
+        cache.setImmutable(SERIAL);
+        cache.put(ADDRESS, SERVICE, SERIAL, new byte[] { 'A' });
+        cache.put(OTHER_ADDRESS, SERVICE, SERIAL, new byte[] { 'B' });
+
+        cache.invalidate(ADDRESS, SERVICE, SERIAL);
+
+        assertNull(cache.get(ADDRESS, SERVICE, SERIAL));
+        assertArrayEquals(new byte[] { 'B' }, cache.get(OTHER_ADDRESS, SERVICE, SERIAL));
+    }
+
+    @Test
+    public void clearingTtlDropsCachedValues()
+    {
+        cache.setTtl(BATTERY, 500);
+        cache.put(ADDRESS, SERVICE, BATTERY, new byte[] { 80 });
+
+        cache.setTtl(BATTERY, 0);
+
+        assertEquals(0, cache.size());
+    }
+}
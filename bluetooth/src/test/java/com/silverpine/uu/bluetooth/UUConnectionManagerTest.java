@@ -0,0 +1,107 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UUConnectionManagerTest
+{
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID DATA = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    private static final String FIRST_ADDRESS = "5B:00:00:00:00:01";
+    private static final String SECOND_ADDRESS = "5B:00:00:00:00:02";
+    private static final long LINK_IDLE_TIME = 500;
+
+    private UUSimulatedPeripheral firstSimulator;
+    private UUSimulatedPeripheral secondSimulator;
+    private TestPeripheral first;
+    private TestPeripheral second;
+
+    @Before
+    public void setUp()
+    {
+        UUBluetooth.init(RuntimeEnvironment.getApplication());
+        UUBluetoothGatt.setTransportFactory(UUSimulatedGattTransport.FACTORY);
+
+        firstSimulator = simulator(FIRST_ADDRESS);
+        secondSimulator = simulator(SECOND_ADDRESS);
+        first = new TestPeripheral(FIRST_ADDRESS);
+        second = new TestPeripheral(SECOND_ADDRESS);
+    }
+
+    @After
+    public void tearDown()
+    {
+        first.disconnect(null);
+        second.disconnect(null);
+        firstSimulator.detach();
+        secondSimulator.detach();
+        UUBluetoothGatt.setTransportFactory(null);
+    }
+
+    @Test
+    public void queuedConnectStartsOnceLinkGoesIdle() throws InterruptedException
+    {
+        UUConnectionManager manager = new UUConnectionManager(1, 1);
+        manager.setLinkIdleTime(LINK_IDLE_TIME);
+
+        CountDownLatch firstConnected = new CountDownLatch(1);
+        CountDownLatch firstEvicted = new CountDownLatch(1);
+        CountDownLatch secondConnected = new CountDownLatch(1);
+
+        manager.connect(first, UUConnectionManager.PRIORITY_NORMAL, firstConnected::countDown, error -> firstEvicted.countDown());
+        assertTrue(firstConnected.await(10, TimeUnit.SECONDS));
+
+        // Nothing else happens on the first link, so only the re-pump can start the second connect
+        manager.connect(second, UUConnectionManager.PRIORITY_NORMAL, secondConnected::countDown, error -> { });
+        assertEquals(1, manager.getPendingCount());
+        assertFalse(secondConnected.await(LINK_IDLE_TIME / 2, TimeUnit.MILLISECONDS));
+
+        assertTrue(firstEvicted.await(10, TimeUnit.SECONDS));
+        assertTrue(secondConnected.await(10, TimeUnit.SECONDS));
+        assertEquals(0, manager.getPendingCount());
+        assertEquals(1, manager.getConnectedCount());
+    }
+
+    private static @NonNull UUSimulatedPeripheral simulator(final @NonNull String address)
+    {
+        UUSimulatedPeripheral simulator = new UUSimulatedPeripheral();
+        simulator.addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_READ, new byte[] { 1 });
+        simulator.attach(address);
+        return simulator;
+    }
+
+    private static class TestPeripheral extends UUPeripheral
+    {
+        private final String address;
+
+        TestPeripheral(final @NonNull String address)
+        {
+            this.address = address;
+        }
+
+        @Override
+        public @Nullable String getAddress()
+        {
+            return address;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.silverpine.uu.core.UUError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UUFleetRunnerTest
+{
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID DATA = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+
+    private final ArrayList<UUSimulatedPeripheral> simulators = new ArrayList<>();
+    private final ArrayList<TestPeripheral> peripherals = new ArrayList<>();
+
+    @Before
+    public void setUp()
+    {
+        UUBluetooth.init(RuntimeEnvironment.getApplication());
+        UUBluetoothGatt.setTransportFactory(UUSimulatedGattTransport.FACTORY);
+
+        for (int i = 0; i < 3; i++)
+        {
+            String address = String.format(Locale.US, "5D:00:00:00:00:%02X", i);
+
+            UUSimulatedPeripheral simulator = new UUSimulatedPeripheral();
+            simulator.addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_READ, new byte[] { 1 });
+            simulator.attach(address);
+            simulators.add(simulator);
+
+            peripherals.add(new TestPeripheral(address));
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (UUSimulatedPeripheral simulator : simulators)
+        {
+            simulator.detach();
+        }
+
+        UUBluetoothGatt.setTransportFactory(null);
+    }
+
+    @Test
+    public void cancelReportsQueuedDevices() throws InterruptedException
+    {
+        UUFleetRunner<TestPeripheral> runner = new UUFleetRunner<>();
+        runner.setMaxConcurrent(1);
+
+        List<TestPeripheral> finished = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<UUFleetStats> finalStats = new AtomicReference<>();
+
+        runner.run(peripherals, UUPeripheralOperation::new, new UUFleetRunner.Listener<TestPeripheral>()
+        {
+            @Override
+            public void onDeviceFinished(@NonNull TestPeripheral peripheral, @Nullable UUError error, int attempts, @NonNull UUFleetStats stats)
+            {
+                assertNotNull(error);
+                finished.add(peripheral);
+            }
+
+            @Override
+            public void onFinished(@NonNull UUFleetStats stats)
+            {
+                finalStats.set(stats);
+                done.countDown();
+            }
+        });
+
+        runner.cancel();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(3, finished.size());
+        assertTrue(finished.containsAll(peripherals));
+        assertEquals(3, finalStats.get().getFailed());
+    }
+
+    private static class TestPeripheral extends UUPeripheral
+    {
+        private final String address;
+
+        TestPeripheral(final @NonNull String address)
+        {
+            this.address = address;
+        }
+
+        @Override
+        public @Nullable String getAddress()
+        {
+            return address;
+        }
+    }
+}
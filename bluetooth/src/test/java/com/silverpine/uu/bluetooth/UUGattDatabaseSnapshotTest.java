@@ -0,0 +1,79 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UUGattDatabaseSnapshotTest
+{
+    private static final UUID BATTERY_SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID BATTERY_LEVEL = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+    private static final UUID CCCD = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+    private static final UUID CUSTOM_SERVICE = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+    private static final UUID CUSTOM_DATA = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+
+    private static UUGattDatabaseSnapshot snapshot(final int dataProperties, final byte[] hash)
+    {
+        UUGattDatabaseSnapshot.Service battery = new UUGattDatabaseSnapshot.Service(BATTERY_SERVICE, 0,
+                Collections.singletonList(new UUGattDatabaseSnapshot.Characteristic(BATTERY_LEVEL, 0x12, Collections.singletonList(CCCD))));
+
+        UUGattDatabaseSnapshot.Service custom = new UUGattDatabaseSnapshot.Service(CUSTOM_SERVICE, 0,
+                Collections.singletonList(new UUGattDatabaseSnapshot.Characteristic(CUSTOM_DATA, dataProperties, Collections.emptyList())));
+
+        return new UUGattDatabaseSnapshot(Arrays.asList(battery, custom), hash);
+    }
+
+    @Test
+    public void roundTripsThroughBytes()
+    {
+        byte[] hash = new byte[16];
+        hash[3] = 7;
+
+        UUGattDatabaseSnapshot original = snapshot(0x08, hash);
+        UUGattDatabaseSnapshot parsed = UUGattDatabaseSnapshot.fromBytes(original.toBytes());
+
+        assertEquals(original, parsed);
+        assertArrayEquals(hash, parsed.getDatabaseHash());
+        assertEquals(0x12, parsed.findCharacteristic(BATTERY_LEVEL).getProperties());
+    }
+
+    @Test
+    public void baseUuidsAreStoredShort()
+    {
+        // version, hash length, service count, then a 3 byte short UUID for the battery service
+        // versus 17 bytes for the custom one
+        byte[] data = snapshot(0x08, null).toBytes();
+        assertEquals(1 + 1 + 2 + (3 + 1 + 2 + (3 + 1 + 1 + 3)) + (17 + 1 + 2 + (17 + 1 + 1)), data.length);
+    }
+
+    @Test
+    public void layoutComparisonIgnoresHash()
+    {
+        UUGattDatabaseSnapshot a = snapshot(0x08, new byte[] { 1 });
+        UUGattDatabaseSnapshot b = snapshot(0x08, new byte[] { 2 });
+        UUGattDatabaseSnapshot c = snapshot(0x0C, new byte[] { 1 });
+
+        assertTrue(a.hasSameLayout(b));
+        assertFalse(a.equals(b));
+        assertFalse(a.hasSameLayout(c));
+    }
+
+    @Test
+    public void truncatedOrUnknownDataIsRejected()
+    {
+        byte[] data = snapshot(0x08, null).toBytes();
+
+        assertNull(UUGattDatabaseSnapshot.fromBytes(Arrays.copyOf(data, data.length - 1)));
+
+        data[0] = 99;
+        assertNull(UUGattDatabaseSnapshot.fromBytes(data));
+    }
+}
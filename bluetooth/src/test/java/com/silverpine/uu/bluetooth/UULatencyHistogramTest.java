@@ -0,0 +1,75 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UULatencyHistogramTest
+{
+    @Test
+    public void bucketBoundsContainValue()
+    {
+        long[] values = { 0, 1, 7, 8, 9, 15, 16, 100, 7500, 1000000, 60000000 };
+
+        for (long value : values)
+        {
+            int index = UULatencyHistogram.bucketIndex(value);
+            assertTrue(value + " below bucket", value >= UULatencyHistogram.bucketLowerBound(index));
+            assertTrue(value + " above bucket", value <= UULatencyHistogram.bucketUpperBound(index));
+        }
+    }
+
+    @Test
+    public void bucketsAreContiguous()
+    {
+        for (int i = 1; i < UULatencyHistogram.BUCKET_COUNT; i++)
+        {
+            assertEquals(UULatencyHistogram.bucketUpperBound(i - 1) + 1, UULatencyHistogram.bucketLowerBound(i));
+        }
+    }
+
+    @Test
+    public void hugeValuesLandInLastBucket()
+    {
+        assertEquals(UULatencyHistogram.BUCKET_COUNT - 1, UULatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesWithinBucketError()
+    {
+        UULatencyHistogram histogram = new UULatencyHistogram();
+        for (long i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 100);
+        }
+
+        UULatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(100, snapshot.getMin());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(50050.0, snapshot.getMean(), 0.001);
+        assertTrue(Math.abs(snapshot.getP50() - 50000) <= 50000 / 8);
+        assertTrue(Math.abs(snapshot.getP99() - 99000) <= 99000 / 8);
+    }
+
+    @Test
+    public void mergeCombinesCounts()
+    {
+        UULatencyHistogram a = new UULatencyHistogram();
+        UULatencyHistogram b = new UULatencyHistogram();
+        a.record(10);
+        b.record(1000);
+        b.record(2000);
+
+        UULatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(3, merged.getCount());
+        assertEquals(10, merged.getMin());
+        assertEquals(2000, merged.getMax());
+
+        UULatencyHistogram.Snapshot empty = new UULatencyHistogram().snapshot();
+        assertEquals(0, empty.getCount());
+        assertEquals(0, empty.getP99());
+        assertEquals(10, empty.merge(a.snapshot()).getMin());
+    }
+}
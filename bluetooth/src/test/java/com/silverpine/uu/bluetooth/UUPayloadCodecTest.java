@@ -0,0 +1,124 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UUPayloadCodecTest
+{
+    private static class Reading
+    {
+        int flag;
+        int mode;
+        int count;
+        double temperature;
+        long timestamp;
+        String name;
+    }
+
+    private static final UUPayloadCodec<Reading> CODEC = new UUPayloadCodec.Builder<Reading>(ByteOrder.LITTLE_ENDIAN, Reading::new)
+            .bits(1, r -> r.flag, (r, v) -> r.flag = v)
+            .bits(7, r -> r.mode, (r, v) -> r.mode = v)
+            .uint16(r -> r.count, (r, v) -> r.count = v)
+            .fixedPoint(2, true, 0.01, r -> r.temperature, (r, v) -> r.temperature = v)
+            .uint32(r -> r.timestamp, (r, v) -> r.timestamp = v)
+            .string(6, StandardCharsets.US_ASCII, r -> r.name, (r, v) -> r.name = v)
+            .build();
+
+    private static final byte[] PAYLOAD =
+    {
+        (byte) 0x0B,                                        // flag 1, mode 5
+        (byte) 0x34, (byte) 0x12,                           // count 0x1234
+        (byte) 0x0E, (byte) 0xF6,                           // temperature -25.46
+        (byte) 0x78, (byte) 0x56, (byte) 0x34, (byte) 0xF2, // timestamp 0xF2345678
+        'P', 'r', 'o', 'b', 'e', 0
+    };
+
+    @Test
+    public void decode()
+    {
+        assertEquals(PAYLOAD.length, CODEC.getSize());
+        assertTrue(CODEC.isFixedSize());
+
+        Reading reading = CODEC.decode(PAYLOAD);
+        assertEquals(1, reading.flag);
+        assertEquals(5, reading.mode);
+        assertEquals(0x1234, reading.count);
+        assertEquals(-25.46, reading.temperature, 0.0001);
+        assertEquals(0xF2345678L, reading.timestamp);
+        assertEquals("Probe", reading.name);
+    }
+
+    @Test
+    public void encodeRoundTrip()
+    {
+        assertArrayEquals(PAYLOAD, CODEC.encode(CODEC.decode(PAYLOAD)));
+    }
+
+    @Test
+    public void shortPayloadIsNotDecoded()
+    {
+        byte[] data = new byte[PAYLOAD.length - 1];
+        assertNull(CODEC.decode(data));
+
+        Reading reading = new Reading();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        assertFalse(CODEC.decode(buffer, reading));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void encodeClampsAndPads()
+    {
+        Reading reading = new Reading();
+        reading.flag = 3;
+        reading.temperature = 1000;
+        reading.name = "Much too long";
+
+        byte[] data = CODEC.encode(reading);
+        Reading decoded = CODEC.decode(data);
+
+        assertEquals(1, decoded.flag);
+        assertEquals(327.67, decoded.temperature, 0.0001);
+        assertEquals("Much t", decoded.name);
+    }
+
+    @Test
+    public void bigEndianBitsAndRemainingString()
+    {
+        UUPayloadCodec<Reading> codec = new UUPayloadCodec.Builder<Reading>(ByteOrder.BIG_ENDIAN, Reading::new)
+                .bits(4, r -> r.flag, (r, v) -> r.flag = v)
+                .bits(8, r -> r.mode, (r, v) -> r.mode = v)
+                .reserved(1)
+                .remainingString(StandardCharsets.UTF_8, r -> r.name, (r, v) -> r.name = v)
+                .build();
+
+        byte[] data = { (byte) 0x0A, (byte) 0xBC, (byte) 0xFF, 'h', 'i' };
+        Reading reading = codec.decode(data);
+
+        assertFalse(codec.isFixedSize());
+        assertEquals(3, codec.getSize());
+        assertEquals(0xC, reading.flag);
+        assertEquals(0xAB, reading.mode);
+        assertEquals("hi", reading.name);
+
+        data[2] = 0;
+        assertArrayEquals(data, codec.encode(reading));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noFieldAfterRemaining()
+    {
+        new UUPayloadCodec.Builder<Reading>(ByteOrder.LITTLE_ENDIAN, Reading::new)
+                .remainingBytes(r -> null, (r, v) -> { })
+                .uint8(r -> r.count, (r, v) -> r.count = v);
+    }
+}
@@ -0,0 +1,116 @@
+package com.silverpine.uu.bluetooth;
+
+import com.silverpine.uu.core.UUError;
+import com.silverpine.uu.core.UUObjectDelegate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UUPeripheralSessionTest
+{
+    private FakePeripheral peripheral;
+    private UUPeripheralSession session;
+    private ArrayList<String> events;
+
+    @Before
+    public void setUp()
+    {
+        peripheral = new FakePeripheral();
+        session = new UUPeripheralSession(peripheral);
+        events = new ArrayList<>();
+    }
+
+    @Test
+    public void waitingOperationStartsWhenHolderReleases()
+    {
+        UUPeripheralSession.Lease first = session.acquire(1000, 1000, null, () -> events.add("A connected"), error -> events.add("A disconnected"));
+        session.acquire(1000, 1000, null, () -> events.add("B connected"), error -> events.add("B disconnected"));
+
+        peripheral.completeConnect();
+        session.release(first, null);
+
+        assertEquals(1, peripheral.connectCount);
+        assertEquals("A connected", events.get(0));
+        assertEquals("B connected", events.get(1));
+    }
+
+    @Test
+    public void staleReleaseAfterLinkDropIsIgnored()
+    {
+        UUPeripheralSession.Lease first = session.acquire(1000, 1000, null, () -> events.add("A connected"), error -> events.add("A disconnected"));
+        session.acquire(1000, 1000, null, () -> events.add("B connected"), error -> events.add("B disconnected"));
+
+        peripheral.completeConnect();
+
+        // The link drops, A hears about it and B starts connecting
+        peripheral.dropLink(error());
+        assertEquals(2, peripheral.connectCount);
+
+        // A ends afterwards, for example when its next read fails
+        session.release(first, error());
+        assertEquals(0, peripheral.disconnectCount);
+
+        peripheral.completeConnect();
+        assertEquals("A connected", events.get(0));
+        assertEquals("A disconnected", events.get(1));
+        assertEquals("B connected", events.get(2));
+        assertTrue(session.isConnected());
+    }
+
+    // Built directly, since UUBluetoothError needs an application context for its descriptions
+    private static @NonNull UUError error()
+    {
+        return new UUError(UUBluetoothError.DOMAIN, UUBluetoothErrorCode.Disconnected.getRawValue(), null);
+    }
+
+    private static class FakePeripheral extends UUPeripheral
+    {
+        int connectCount;
+        int disconnectCount;
+        private Runnable connected;
+        private UUObjectDelegate<UUError> disconnected;
+
+        @Override
+        public @Nullable String getAddress()
+        {
+            return "00:11:22:33:44:55";
+        }
+
+        @Override
+        public void connect(
+                final long connectTimeout,
+                final long disconnectTimeout,
+                final @Nullable UULinkProfile linkProfile,
+                final @NonNull Runnable connected,
+                final @NonNull UUObjectDelegate<UUError> disconnected)
+        {
+            ++connectCount;
+            this.connected = connected;
+            this.disconnected = disconnected;
+        }
+
+        @Override
+        public void disconnect(final @Nullable UUError error)
+        {
+            ++disconnectCount;
+        }
+
+        void completeConnect()
+        {
+            connected.run();
+        }
+
+        void dropLink(final @NonNull UUError error)
+        {
+            disconnected.onCompleted(error);
+        }
+    }
+}
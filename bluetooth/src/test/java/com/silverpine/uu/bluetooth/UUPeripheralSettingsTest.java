@@ -0,0 +1,97 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UUPeripheralSettingsTest
+{
+    private static final String ADDRESS = "00:11:22:33:44:55";
+    private static final String OTHER_ADDRESS = "66:77:88:99:AA:BB";
+
+    @Test
+    public void sameAddressReturnsSameSettings()
+    {
+        assertSame(UUPeripheralSettings.forAddress(ADDRESS), UUPeripheralSettings.forAddress(ADDRESS));
+        assertNotSame(UUPeripheralSettings.forAddress(ADDRESS), UUPeripheralSettings.forAddress(OTHER_ADDRESS));
+    }
+
+    @Test
+    public void unsetTimeoutPolicyDefaultsToDisconnect()
+    {
+        UUPeripheralSettings settings = UUPeripheralSettings.forAddress(OTHER_ADDRESS);
+
+        assertSame(UUTimeoutPolicy.disconnect(), settings.getTimeoutPolicy(UUTimeoutPolicy.Operation.READ_DESCRIPTOR));
+    }
+
+    @Test
+    public void settingsSurviveRegistrySweep()
+    {
+        UUPeripheralSettings settings = UUPeripheralSettings.forAddress(ADDRESS);
+        UUTimeoutPolicy policy = UUTimeoutPolicy.retry(3);
+        UUCharacteristicValueCache cache = new UUCharacteristicValueCache();
+        UUGattRecoveryStrategy strategy = new UUBoundedGattRecoveryStrategy();
+
+        settings.setTimeoutPolicy(UUTimeoutPolicy.Operation.WRITE_CHARACTERISTIC, policy);
+        settings.setValueCache(cache);
+        settings.setGattRecoveryStrategy(strategy);
+        settings.setAdaptiveConnectionPriorityEnabled(true);
+        UUGattLatencyStats latencyStats = settings.getLatencyStats();
+        UUGattRecoveryMetrics.Recorder recorder = settings.getGattRecoveryRecorder();
+
+        UUBluetoothGatt.sweepGattRegistry(Long.MAX_VALUE, true);
+        assertEquals(0, UUBluetoothGatt.getGattRegistrySize());
+
+        UUPeripheralSettings after = UUPeripheralSettings.forAddress(ADDRESS);
+        assertSame(settings, after);
+        assertSame(policy, after.getTimeoutPolicy(UUTimeoutPolicy.Operation.WRITE_CHARACTERISTIC));
+        assertSame(cache, after.getValueCache());
+        assertSame(strategy, after.getGattRecoveryStrategy());
+        assertTrue(after.isAdaptiveConnectionPriorityEnabled());
+        assertSame(latencyStats, after.getLatencyStats());
+        assertSame(recorder, after.getGattRecoveryRecorder());
+
+        after.setAdaptiveConnectionPriorityEnabled(false);
+        assertFalse(UUPeripheralSettings.forAddress(ADDRESS).isAdaptiveConnectionPriorityEnabled());
+    }
+
+    @Test
+    public void unconfiguredSettingsAreSweptWithTheirGatt()
+    {
+        UUBluetoothGatt.sweepGattRegistry(Long.MAX_VALUE, true);
+        int baseline = UUPeripheralSettings.getRegistrySize();
+
+        for (int i = 0; i < 1000; i++)
+        {
+            UUPeripheralSettings.forAddress(String.format(Locale.US, "AA:BB:CC:DD:%02X:%02X", i >> 8, i & 0xFF));
+        }
+
+        UUPeripheralSettings configured = UUPeripheralSettings.forAddress("AA:BB:CC:DD:00:07");
+        configured.setNotificationBufferCapacity(64);
+        assertEquals(baseline + 1000, UUPeripheralSettings.getRegistrySize());
+
+        UUBluetoothGatt.sweepGattRegistry(Long.MAX_VALUE, true);
+
+        assertEquals(baseline + 1, UUPeripheralSettings.getRegistrySize());
+        assertSame(configured, UUPeripheralSettings.forAddress("AA:BB:CC:DD:00:07"));
+    }
+
+    @Test
+    public void statisticsAloneDoNotCountAsConfiguration()
+    {
+        UUPeripheralSettings settings = UUPeripheralSettings.forAddress("AA:BB:CC:DD:EE:FF");
+        settings.getGattRecoveryRecorder();
+        settings.getLatencyStats();
+
+        assertFalse(settings.isConfigured());
+
+        settings.setTimeoutPolicy(UUTimeoutPolicy.Operation.READ_CHARACTERISTIC, UUTimeoutPolicy.failOperation());
+        assertTrue(settings.isConfigured());
+    }
+}
@@ -0,0 +1,103 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+
+import com.silverpine.uu.core.UUError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UUPersistentConnectionTest
+{
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID DATA = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+    private static final String ADDRESS = "5C:00:00:00:00:01";
+
+    // Any failure status other than 133, which goes through GATT error recovery instead
+    private static final int CONNECT_FAILED = 0x3E;
+
+    private UUSimulatedPeripheral simulator;
+    private UUPersistentConnection connection;
+
+    @Before
+    public void setUp()
+    {
+        UUBluetooth.init(RuntimeEnvironment.getApplication());
+        UUBluetoothGatt.setTransportFactory(UUSimulatedGattTransport.FACTORY);
+
+        simulator = new UUSimulatedPeripheral();
+        simulator.addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_READ, new byte[] { 1 });
+        simulator.attach(ADDRESS);
+
+        connection = new UUPersistentConnection(new TestPeripheral(ADDRESS));
+        connection.setBackoff(20, 40);
+    }
+
+    @After
+    public void tearDown()
+    {
+        connection.stop();
+        simulator.detach();
+        UUBluetoothGatt.setTransportFactory(null);
+    }
+
+    @Test
+    public void failedAttemptsBeforeFirstConnectAreNotAnOutage() throws InterruptedException
+    {
+        simulator.failNext(UUSimulatedPeripheral.Operation.CONNECT, CONNECT_FAILED);
+        simulator.failNext(UUSimulatedPeripheral.Operation.CONNECT, CONNECT_FAILED);
+
+        CountDownLatch connected = new CountDownLatch(1);
+        connection.start(new UUConnectionDelegate()
+        {
+            @Override
+            public void onConnected(@NonNull UUPeripheral peripheral)
+            {
+                connected.countDown();
+            }
+
+            @Override
+            public void onDisconnected(@NonNull UUPeripheral peripheral, @Nullable UUError error)
+            {
+            }
+        });
+
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+
+        UUReconnectMetrics metrics = connection.getMetrics();
+        assertEquals(3, metrics.getConnectAttempts());
+        assertEquals(0, metrics.getReconnectCount());
+        assertEquals(0, metrics.getLastReconnectLatency());
+    }
+
+    private static class TestPeripheral extends UUPeripheral
+    {
+        private final String address;
+
+        TestPeripheral(final @NonNull String address)
+        {
+            this.address = address;
+        }
+
+        @Override
+        public @Nullable String getAddress()
+        {
+            return address;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * GATT transport backed by a UUSimulatedPeripheral.  After discovery the simulator's database is
+ * mirrored into BluetoothGattService objects, and responses are mapped back onto them by UUID.
+ * Callbacks are posted to the GATT handler when there is one, like the platform transport.
+ *
+ * Reliable writes are not simulated and fail to start.
+ */
+class UUSimulatedGattTransport implements UUGattTransport, UUSimulatedPeripheral.Listener
+{
+    private final UUSimulatedPeripheral simulator;
+    private final @Nullable Handler handler;
+    private final Callback callback;
+    private final Set<BluetoothGattCharacteristic> notifying = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile List<BluetoothGattService> services = Collections.emptyList();
+
+    /**
+     * Connects to the simulator attached to the peripheral's address, and fails when there is none.
+     */
+    static final Factory FACTORY = (context, peripheral, autoConnect, handler, callback) ->
+    {
+        UUSimulatedPeripheral simulator = UUSimulatedPeripheral.simulatorFor(peripheral.getAddress());
+        if (simulator == null)
+        {
+            return null;
+        }
+
+        UUSimulatedGattTransport transport = new UUSimulatedGattTransport(simulator, handler, callback);
+        transport.connect();
+        return transport;
+    };
+
+    UUSimulatedGattTransport(final @NonNull UUSimulatedPeripheral simulator, final @Nullable Handler handler, final @NonNull Callback callback)
+    {
+        this.simulator = simulator;
+        this.handler = handler;
+        this.callback = callback;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // UUGattTransport
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public boolean connect()
+    {
+        return simulator.connect(this);
+    }
+
+    @Override
+    public void disconnect()
+    {
+        simulator.disconnect();
+    }
+
+    @Override
+    public void close()
+    {
+        simulator.close(this);
+    }
+
+    @Override
+    public boolean discoverServices()
+    {
+        return simulator.discoverServices();
+    }
+
+    @NonNull
+    @Override
+    public List<BluetoothGattService> getServices()
+    {
+        return services;
+    }
+
+    @Override
+    public boolean readCharacteristic(@NonNull BluetoothGattCharacteristic characteristic)
+    {
+        UUID serviceUuid = serviceUuidOf(characteristic);
+        return (serviceUuid != null && simulator.readCharacteristic(serviceUuid, characteristic.getUuid()));
+    }
+
+    @Override
+    public boolean writeCharacteristic(@NonNull BluetoothGattCharacteristic characteristic)
+    {
+        UUID serviceUuid = serviceUuidOf(characteristic);
+        byte[] value = characteristic.getValue();
+        boolean withResponse = (characteristic.getWriteType() != BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+        return (serviceUuid != null && value != null && simulator.writeCharacteristic(serviceUuid, characteristic.getUuid(), value, withResponse));
+    }
+
+    @Override
+    public boolean readDescriptor(@NonNull BluetoothGattDescriptor descriptor)
+    {
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        UUID serviceUuid = (characteristic != null) ? serviceUuidOf(characteristic) : null;
+        return (serviceUuid != null && simulator.readDescriptor(serviceUuid, characteristic.getUuid(), descriptor.getUuid()));
+    }
+
+    @Override
+    public boolean writeDescriptor(@NonNull BluetoothGattDescriptor descriptor)
+    {
+        BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+        UUID serviceUuid = (characteristic != null) ? serviceUuidOf(characteristic) : null;
+        byte[] value = descriptor.getValue();
+        return (serviceUuid != null && value != null && simulator.writeDescriptor(serviceUuid, characteristic.getUuid(), descriptor.getUuid(), value));
+    }
+
+    @Override
+    public boolean setCharacteristicNotification(@NonNull BluetoothGattCharacteristic characteristic, boolean enable)
+    {
+        if (enable)
+        {
+            notifying.add(characteristic);
+        }
+        else
+        {
+            notifying.remove(characteristic);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean readRemoteRssi()
+    {
+        return simulator.readRemoteRssi();
+    }
+
+    @Override
+    public boolean requestMtu(int mtu)
+    {
+        return simulator.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean requestConnectionPriority(int connectionPriority)
+    {
+        return simulator.isConnected();
+    }
+
+    @Override
+    public void setPreferredPhy(int txPhy, int rxPhy, int phyOptions)
+    {
+        post(() -> callback.onPhyUpdate(BluetoothDevice.PHY_LE_1M, BluetoothDevice.PHY_LE_1M, BluetoothGatt.GATT_SUCCESS));
+    }
+
+    @Override
+    public boolean beginReliableWrite()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean executeReliableWrite()
+    {
+        return false;
+    }
+
+    @Override
+    public void abortReliableWrite()
+    {
+    }
+
+    @Override
+    public boolean refresh()
+    {
+        services = Collections.emptyList();
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public BluetoothGatt getBluetoothGatt()
+    {
+        return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // UUSimulatedPeripheral.Listener
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onConnectionStateChange(int status, int newState)
+    {
+        post(() -> callback.onConnectionStateChange(status, newState));
+    }
+
+    @Override
+    public void onServicesDiscovered(int status)
+    {
+        if (status == BluetoothGatt.GATT_SUCCESS)
+        {
+            services = buildServices();
+        }
+
+        post(() -> callback.onServicesDiscovered(status));
+    }
+
+    @Override
+    public void onCharacteristicRead(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @Nullable byte[] value, int status)
+    {
+        BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUuid, characteristicUuid);
+        if (characteristic != null)
+        {
+            post(() ->
+            {
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    characteristic.setValue(value);
+                }
+
+                callback.onCharacteristicRead(characteristic, status);
+            });
+        }
+    }
+
+    @Override
+    public void onCharacteristicWrite(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, int status)
+    {
+        BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUuid, characteristicUuid);
+        if (characteristic != null)
+        {
+            post(() -> callback.onCharacteristicWrite(characteristic, status));
+        }
+    }
+
+    @Override
+    public void onCharacteristicChanged(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull byte[] value)
+    {
+        BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUuid, characteristicUuid);
+        if (characteristic != null && notifying.contains(characteristic))
+        {
+            post(() ->
+            {
+                characteristic.setValue(value);
+                callback.onCharacteristicChanged(characteristic);
+            });
+        }
+    }
+
+    @Override
+    public void onDescriptorRead(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull UUID descriptorUuid, @Nullable byte[] value, int status)
+    {
+        BluetoothGattDescriptor descriptor = findDescriptor(serviceUuid, characteristicUuid, descriptorUuid);
+        if (descriptor != null)
+        {
+            post(() ->
+            {
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    descriptor.setValue(value);
+                }
+
+                callback.onDescriptorRead(descriptor, status);
+            });
+        }
+    }
+
+    @Override
+    public void onDescriptorWrite(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull UUID descriptorUuid, int status)
+    {
+        BluetoothGattDescriptor descriptor = findDescriptor(serviceUuid, characteristicUuid, descriptorUuid);
+        if (descriptor != null)
+        {
+            post(() -> callback.onDescriptorWrite(descriptor, status));
+        }
+    }
+
+    @Override
+    public void onMtuChanged(int mtu, int status)
+    {
+        post(() -> callback.onMtuChanged(mtu, status));
+    }
+
+    @Override
+    public void onReadRemoteRssi(int rssi, int status)
+    {
+        post(() -> callback.onReadRemoteRssi(rssi, status));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void post(final @NonNull Runnable runnable)
+    {
+        if (handler == null || !handler.post(runnable))
+        {
+            runnable.run();
+        }
+    }
+
+    private @NonNull List<BluetoothGattService> buildServices()
+    {
+        ArrayList<BluetoothGattService> list = new ArrayList<>();
+
+        for (UUID serviceUuid : simulator.getServiceUuids())
+        {
+            BluetoothGattService service = new BluetoothGattService(serviceUuid, BluetoothGattService.SERVICE_TYPE_PRIMARY);
+
+            for (UUID characteristicUuid : simulator.getCharacteristicUuids(serviceUuid))
+            {
+                BluetoothGattCharacteristic characteristic = new BluetoothGattCharacteristic(
+                        characteristicUuid,
+                        simulator.getProperties(serviceUuid, characteristicUuid),
+                        BluetoothGattCharacteristic.PERMISSION_READ | BluetoothGattCharacteristic.PERMISSION_WRITE);
+
+                for (UUID descriptorUuid : simulator.getDescriptorUuids(serviceUuid, characteristicUuid))
+                {
+                    characteristic.addDescriptor(new BluetoothGattDescriptor(descriptorUuid, BluetoothGattDescriptor.PERMISSION_READ | BluetoothGattDescriptor.PERMISSION_WRITE));
+                }
+
+                service.addCharacteristic(characteristic);
+            }
+
+            list.add(service);
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    private static @Nullable UUID serviceUuidOf(final @NonNull BluetoothGattCharacteristic characteristic)
+    {
+        BluetoothGattService service = characteristic.getService();
+        return (service != null) ? service.getUuid() : null;
+    }
+
+    private @Nullable BluetoothGattCharacteristic findCharacteristic(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        for (BluetoothGattService service : services)
+        {
+            if (serviceUuid.equals(service.getUuid()))
+            {
+                return service.getCharacteristic(characteristicUuid);
+            }
+        }
+
+        return null;
+    }
+
+    private @Nullable BluetoothGattDescriptor findDescriptor(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @NonNull UUID descriptorUuid)
+    {
+        BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUuid, characteristicUuid);
+        return (characteristic != null) ? characteristic.getDescriptor(descriptorUuid) : null;
+    }
+}
@@ -0,0 +1,1087 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothProfile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A deterministic, in-memory GATT server for tests.  Attach a simulator to a peripheral address
+ * and install UUSimulatedGattTransport.FACTORY on UUBluetoothGatt, and connections to that address
+ * talk to it instead of the Bluetooth stack, so connection handling, timeouts and throughput can
+ * be exercised without a radio.
+ *
+ * Like the Android stack, only one request may be outstanding at a time and a request made while
+ * another is pending returns false.  Every response arrives after the configured latency for its
+ * operation plus the time its payload occupies the link at the configured throughput.
+ * Notifications share the link with responses and are truncated to the negotiated MTU.
+ *
+ * All timing runs on a Scheduler.  Tests use a VirtualScheduler and advance time by hand, which
+ * makes every run identical.
+ */
+@SuppressWarnings("unused")
+class UUSimulatedPeripheral
+{
+    public enum Operation
+    {
+        CONNECT,
+        DISCONNECT,
+        DISCOVER_SERVICES,
+        READ_CHARACTERISTIC,
+        WRITE_CHARACTERISTIC,
+        READ_DESCRIPTOR,
+        WRITE_DESCRIPTOR,
+        REQUEST_MTU,
+        READ_RSSI,
+        NOTIFY,
+    }
+
+    public static class Defaults
+    {
+        public static final long Latency = 15;
+        public static final long ConnectLatency = 100;
+        public static final long DiscoveryLatency = 200;
+        public static final int MaxMtu = 247;
+        public static final int Rssi = -60;
+    }
+
+    public static final int DEFAULT_MTU = 23;
+    public static final int MAX_ATTRIBUTE_LENGTH = 512;
+
+    static final UUID CCCD_UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private static final int ATT_HEADER_SIZE = 3;
+    private static final int MAX_MTU = 517;
+
+    // Queued in place of a status to swallow a request
+    private static final int DROP = Integer.MIN_VALUE;
+
+    /**
+     * Receives the simulator's responses.  Status and state values match BluetoothGatt and
+     * BluetoothProfile.
+     */
+    public interface Listener
+    {
+        void onConnectionStateChange(int status, int newState);
+
+        void onServicesDiscovered(int status);
+
+        void onCharacteristicRead(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @Nullable byte[] value, int status);
+
+        void onCharacteristicWrite(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, int status);
+
+        void onCharacteristicChanged(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull byte[] value);
+
+        void onDescriptorRead(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull UUID descriptorUuid, @Nullable byte[] value, int status);
+
+        void onDescriptorWrite(@NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull UUID descriptorUuid, int status);
+
+        void onMtuChanged(int mtu, int status);
+
+        void onReadRemoteRssi(int rssi, int status);
+    }
+
+    /**
+     * Invoked after a characteristic write is applied, for example to answer a command with a
+     * notification.  Called without the simulator lock held.
+     */
+    public interface WriteHandler
+    {
+        void onWrite(@NonNull UUSimulatedPeripheral peripheral, @NonNull UUID serviceUuid, @NonNull UUID characteristicUuid, @NonNull byte[] value);
+    }
+
+    public interface Scheduler
+    {
+        long now();
+
+        void schedule(long delay, @NonNull Runnable task);
+    }
+
+    private static final ConcurrentHashMap<String, UUSimulatedPeripheral> simulators = new ConcurrentHashMap<>();
+
+    private final Scheduler scheduler;
+    private final LinkedHashMap<UUID, LinkedHashMap<UUID, Attribute>> services = new LinkedHashMap<>();
+    private final EnumMap<Operation, Long> latencies = new EnumMap<>(Operation.class);
+    private final EnumMap<Operation, ArrayDeque<Integer>> injectedStatuses = new EnumMap<>(Operation.class);
+    private final Random random = new Random(0);
+
+    private int maxMtu = Defaults.MaxMtu;
+    private long throughput;
+    private int rssi = Defaults.Rssi;
+    private double failureRate;
+    private int failureStatus = BluetoothGatt.GATT_FAILURE;
+    private @Nullable WriteHandler writeHandler;
+    private @Nullable String attachedAddress;
+
+    private @Nullable Listener listener;
+    private boolean connecting;
+    private boolean connected;
+    private boolean requestPending;
+    private long generation;
+    private int mtu = DEFAULT_MTU;
+    private long linkFreeAt;
+
+    private long operationCount;
+    private long bytesRead;
+    private long bytesWritten;
+    private long notificationCount;
+
+    public UUSimulatedPeripheral()
+    {
+        this(new ExecutorScheduler());
+    }
+
+    public UUSimulatedPeripheral(final @NonNull Scheduler scheduler)
+    {
+        this.scheduler = scheduler;
+        latencies.put(Operation.CONNECT, Defaults.ConnectLatency);
+        latencies.put(Operation.DISCOVER_SERVICES, Defaults.DiscoveryLatency);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Registration
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Routes connections to the given address to this simulator.
+     */
+    public void attach(final @NonNull String address)
+    {
+        detach();
+        attachedAddress = address;
+        simulators.put(address, this);
+    }
+
+    public void detach()
+    {
+        if (attachedAddress != null)
+        {
+            simulators.remove(attachedAddress, this);
+            attachedAddress = null;
+        }
+    }
+
+    @Nullable
+    static UUSimulatedPeripheral simulatorFor(final @Nullable String address)
+    {
+        return (address != null && !simulators.isEmpty()) ? simulators.get(address) : null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // GATT database
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds a characteristic, creating its service if needed.  Characteristics that can notify or
+     * indicate get a client characteristic configuration descriptor.
+     *
+     * @param properties BluetoothGattCharacteristic.PROPERTY_* flags
+     */
+    public synchronized void addCharacteristic(
+            final @NonNull UUID serviceUuid,
+            final @NonNull UUID characteristicUuid,
+            final int properties,
+            final @Nullable byte[] value)
+    {
+        LinkedHashMap<UUID, Attribute> service = services.get(serviceUuid);
+        if (service == null)
+        {
+            service = new LinkedHashMap<>();
+            services.put(serviceUuid, service);
+        }
+
+        Attribute attribute = new Attribute(properties, copy(value));
+        if ((properties & (BluetoothGattCharacteristic.PROPERTY_NOTIFY | BluetoothGattCharacteristic.PROPERTY_INDICATE)) != 0)
+        {
+            attribute.descriptors.put(CCCD_UUID, new byte[] { 0, 0 });
+        }
+
+        service.put(characteristicUuid, attribute);
+    }
+
+    public synchronized void addDescriptor(
+            final @NonNull UUID serviceUuid,
+            final @NonNull UUID characteristicUuid,
+            final @NonNull UUID descriptorUuid,
+            final @Nullable byte[] value)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        if (attribute != null)
+        {
+            attribute.descriptors.put(descriptorUuid, copy(value));
+        }
+    }
+
+    public synchronized @NonNull List<UUID> getServiceUuids()
+    {
+        return new ArrayList<>(services.keySet());
+    }
+
+    public synchronized @NonNull List<UUID> getCharacteristicUuids(final @NonNull UUID serviceUuid)
+    {
+        LinkedHashMap<UUID, Attribute> service = services.get(serviceUuid);
+        return (service != null) ? new ArrayList<>(service.keySet()) : new ArrayList<>();
+    }
+
+    public synchronized int getProperties(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        return (attribute != null) ? attribute.properties : 0;
+    }
+
+    public synchronized @NonNull List<UUID> getDescriptorUuids(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        return (attribute != null) ? new ArrayList<>(attribute.descriptors.keySet()) : new ArrayList<>();
+    }
+
+    public synchronized @Nullable byte[] getValue(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        return (attribute != null) ? copy(attribute.value) : null;
+    }
+
+    public synchronized void setValue(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @Nullable byte[] value)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        if (attribute != null)
+        {
+            attribute.value = copy(value);
+        }
+    }
+
+    public synchronized boolean isNotifying(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        Attribute attribute = find(serviceUuid, characteristicUuid);
+        return (attribute != null && attribute.isNotifying());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Link configuration and fault injection
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public synchronized void setLatency(final @NonNull Operation operation, final long latency)
+    {
+        latencies.put(operation, latency);
+    }
+
+    public synchronized long getLatency(final @NonNull Operation operation)
+    {
+        Long latency = latencies.get(operation);
+        return (latency != null) ? latency : Defaults.Latency;
+    }
+
+    /**
+     * Largest MTU the simulated device accepts.
+     */
+    public synchronized void setMaxMtu(final int maxMtu)
+    {
+        this.maxMtu = Math.max(DEFAULT_MTU, Math.min(MAX_MTU, maxMtu));
+    }
+
+    public synchronized int getMtu()
+    {
+        return mtu;
+    }
+
+    /**
+     * Link throughput in bytes per second, zero for unlimited.
+     */
+    public synchronized void setThroughput(final long bytesPerSecond)
+    {
+        throughput = Math.max(0, bytesPerSecond);
+    }
+
+    public synchronized void setRssi(final int rssi)
+    {
+        this.rssi = rssi;
+    }
+
+    public synchronized void setWriteHandler(final @Nullable WriteHandler writeHandler)
+    {
+        this.writeHandler = writeHandler;
+    }
+
+    /**
+     * Completes the next request of the given type with a status, for example GATT_ERROR (133)
+     * on CONNECT.  Calls queue up in order.
+     */
+    public synchronized void failNext(final @NonNull Operation operation, final int status)
+    {
+        injectedStatuses(operation).add(status);
+    }
+
+    /**
+     * Swallows the next request of the given type.  It is accepted but never answered, leaving
+     * the link busy until disconnect, so the caller's timeout fires.  A dropped NOTIFY is simply
+     * not delivered.
+     */
+    public synchronized void dropNext(final @NonNull Operation operation)
+    {
+        injectedStatuses(operation).add(DROP);
+    }
+
+    /**
+     * Fails a random fraction of requests with the given status.  The random sequence is fixed by
+     * the seed.
+     */
+    public synchronized void setFailureRate(final double rate, final int status, final long seed)
+    {
+        failureRate = Math.max(0, Math.min(1, rate));
+        failureStatus = status;
+        random.setSeed(seed);
+    }
+
+    /**
+     * Drops the link as if the device went out of range.
+     */
+    public void simulateDisconnect(final int status)
+    {
+        Listener target;
+
+        synchronized (this)
+        {
+            if (!connected && !connecting)
+            {
+                return;
+            }
+
+            target = listener;
+            resetLink();
+        }
+
+        deliver(target, 0, l -> l.onConnectionStateChange(status, BluetoothProfile.STATE_DISCONNECTED));
+    }
+
+    public synchronized boolean isConnected()
+    {
+        return connected;
+    }
+
+    public synchronized long getOperationCount()
+    {
+        return operationCount;
+    }
+
+    public synchronized long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    public synchronized long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    public synchronized long getNotificationCount()
+    {
+        return notificationCount;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Client requests
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public boolean connect(final @NonNull Listener listener)
+    {
+        final long connectGeneration;
+        final long delay;
+
+        synchronized (this)
+        {
+            this.listener = listener;
+
+            if (connected)
+            {
+                delay = -1;
+                connectGeneration = generation;
+            }
+            else if (connecting)
+            {
+                return true;
+            }
+            else
+            {
+                ArrayDeque<Integer> injected = injectedStatuses(Operation.CONNECT);
+                if (!injected.isEmpty() && injected.peek() == DROP)
+                {
+                    injected.poll();
+                    connecting = true;
+                    return true;
+                }
+
+                connecting = true;
+                connectGeneration = ++generation;
+                delay = getLatency(Operation.CONNECT);
+            }
+        }
+
+        if (delay < 0)
+        {
+            deliver(listener, 0, l -> l.onConnectionStateChange(BluetoothGatt.GATT_SUCCESS, BluetoothProfile.STATE_CONNECTED));
+            return true;
+        }
+
+        scheduler.schedule(delay, () ->
+        {
+            int status;
+
+            synchronized (this)
+            {
+                if (connectGeneration != generation || !connecting)
+                {
+                    return;
+                }
+
+                connecting = false;
+                status = nextStatus(Operation.CONNECT);
+                connected = (status == BluetoothGatt.GATT_SUCCESS);
+                mtu = DEFAULT_MTU;
+                linkFreeAt = scheduler.now();
+            }
+
+            listener.onConnectionStateChange(status, (status == BluetoothGatt.GATT_SUCCESS) ? BluetoothProfile.STATE_CONNECTED : BluetoothProfile.STATE_DISCONNECTED);
+        });
+
+        return true;
+    }
+
+    public void disconnect()
+    {
+        Listener target;
+        long delay;
+
+        synchronized (this)
+        {
+            if (!connected && !connecting)
+            {
+                return;
+            }
+
+            target = listener;
+            delay = getLatency(Operation.DISCONNECT);
+            resetLink();
+        }
+
+        deliver(target, delay, l -> l.onConnectionStateChange(BluetoothGatt.GATT_SUCCESS, BluetoothProfile.STATE_DISCONNECTED));
+    }
+
+    /**
+     * Detaches a listener without a disconnect callback, like BluetoothGatt.close.
+     */
+    public synchronized void close(final @NonNull Listener listener)
+    {
+        if (this.listener == listener)
+        {
+            resetLink();
+            this.listener = null;
+        }
+    }
+
+    public boolean discoverServices()
+    {
+        return request(Operation.DISCOVER_SERVICES, 0, new Response()
+        {
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onServicesDiscovered(status);
+            }
+        });
+    }
+
+    public boolean readCharacteristic(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        final Attribute attribute;
+        final int length;
+        synchronized (this)
+        {
+            attribute = find(serviceUuid, characteristicUuid);
+            length = (attribute != null && attribute.value != null) ? attribute.value.length : 0;
+        }
+
+        return request(Operation.READ_CHARACTERISTIC, length, new Response()
+        {
+            private byte[] value;
+
+            @Override
+            int apply(int status)
+            {
+                if (attribute == null)
+                {
+                    return BluetoothGatt.GATT_FAILURE;
+                }
+
+                if ((attribute.properties & BluetoothGattCharacteristic.PROPERTY_READ) == 0)
+                {
+                    return BluetoothGatt.GATT_READ_NOT_PERMITTED;
+                }
+
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    value = copy(attribute.value);
+                    bytesRead += (value != null) ? value.length : 0;
+                }
+
+                return status;
+            }
+
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onCharacteristicRead(serviceUuid, characteristicUuid, value, status);
+            }
+        });
+    }
+
+    public boolean writeCharacteristic(
+            final @NonNull UUID serviceUuid,
+            final @NonNull UUID characteristicUuid,
+            final @NonNull byte[] value,
+            final boolean withResponse)
+    {
+        final Attribute attribute;
+        final int maxLength;
+        synchronized (this)
+        {
+            attribute = find(serviceUuid, characteristicUuid);
+            maxLength = withResponse ? MAX_ATTRIBUTE_LENGTH : (mtu - ATT_HEADER_SIZE);
+        }
+
+        final byte[] data = copy(value);
+        return request(Operation.WRITE_CHARACTERISTIC, data.length, new Response()
+        {
+            private WriteHandler handler;
+
+            @Override
+            int apply(int status)
+            {
+                int writeProperty = withResponse ? BluetoothGattCharacteristic.PROPERTY_WRITE : BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE;
+
+                if (attribute == null)
+                {
+                    return BluetoothGatt.GATT_FAILURE;
+                }
+
+                if ((attribute.properties & writeProperty) == 0)
+                {
+                    return BluetoothGatt.GATT_WRITE_NOT_PERMITTED;
+                }
+
+                if (data.length > maxLength)
+                {
+                    return BluetoothGatt.GATT_INVALID_ATTRIBUTE_LENGTH;
+                }
+
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    attribute.value = data;
+                    bytesWritten += data.length;
+                    handler = writeHandler;
+                }
+
+                return status;
+            }
+
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onCharacteristicWrite(serviceUuid, characteristicUuid, status);
+
+                if (handler != null)
+                {
+                    handler.onWrite(UUSimulatedPeripheral.this, serviceUuid, characteristicUuid, data);
+                }
+            }
+        });
+    }
+
+    public boolean readDescriptor(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @NonNull UUID descriptorUuid)
+    {
+        final Attribute attribute;
+        synchronized (this)
+        {
+            attribute = find(serviceUuid, characteristicUuid);
+        }
+
+        return request(Operation.READ_DESCRIPTOR, 2, new Response()
+        {
+            private byte[] value;
+
+            @Override
+            int apply(int status)
+            {
+                if (attribute == null || !attribute.descriptors.containsKey(descriptorUuid))
+                {
+                    return BluetoothGatt.GATT_FAILURE;
+                }
+
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    value = copy(attribute.descriptors.get(descriptorUuid));
+                }
+
+                return status;
+            }
+
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onDescriptorRead(serviceUuid, characteristicUuid, descriptorUuid, value, status);
+            }
+        });
+    }
+
+    /**
+     * Writing the client characteristic configuration descriptor turns notifications on or off.
+     */
+    public boolean writeDescriptor(
+            final @NonNull UUID serviceUuid,
+            final @NonNull UUID characteristicUuid,
+            final @NonNull UUID descriptorUuid,
+            final @NonNull byte[] value)
+    {
+        final Attribute attribute;
+        synchronized (this)
+        {
+            attribute = find(serviceUuid, characteristicUuid);
+        }
+
+        final byte[] data = copy(value);
+        return request(Operation.WRITE_DESCRIPTOR, data.length, new Response()
+        {
+            @Override
+            int apply(int status)
+            {
+                if (attribute == null || !attribute.descriptors.containsKey(descriptorUuid))
+                {
+                    return BluetoothGatt.GATT_FAILURE;
+                }
+
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    attribute.descriptors.put(descriptorUuid, data);
+                }
+
+                return status;
+            }
+
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onDescriptorWrite(serviceUuid, characteristicUuid, descriptorUuid, status);
+            }
+        });
+    }
+
+    public boolean requestMtu(final int requestedMtu)
+    {
+        return request(Operation.REQUEST_MTU, 0, new Response()
+        {
+            @Override
+            int apply(int status)
+            {
+                if (status == BluetoothGatt.GATT_SUCCESS)
+                {
+                    mtu = Math.max(DEFAULT_MTU, Math.min(requestedMtu, maxMtu));
+                }
+
+                return status;
+            }
+
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onMtuChanged(mtu, status);
+            }
+        });
+    }
+
+    public boolean readRemoteRssi()
+    {
+        return request(Operation.READ_RSSI, 0, new Response()
+        {
+            @Override
+            void deliver(@NonNull Listener listener, int status)
+            {
+                listener.onReadRemoteRssi(rssi, status);
+            }
+        });
+    }
+
+    /**
+     * Sends a notification from the device.  The value is stored, truncated to the negotiated
+     * MTU and delivered after the notify latency plus its transfer time.
+     *
+     * @return false if not connected or the client has not enabled notifications
+     */
+    public boolean notifyValue(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid, final @NonNull byte[] value)
+    {
+        final Listener target;
+        final long notifyGeneration;
+        final byte[] payload;
+        final long delay;
+
+        synchronized (this)
+        {
+            Attribute attribute = find(serviceUuid, characteristicUuid);
+            if (!connected || listener == null || attribute == null || !attribute.isNotifying())
+            {
+                return false;
+            }
+
+            attribute.value = copy(value);
+            payload = Arrays.copyOf(value, Math.min(value.length, mtu - ATT_HEADER_SIZE));
+
+            ArrayDeque<Integer> injected = injectedStatuses(Operation.NOTIFY);
+            if (!injected.isEmpty())
+            {
+                injected.poll();
+                return true;
+            }
+
+            target = listener;
+            notifyGeneration = generation;
+            delay = completionDelay(Operation.NOTIFY, payload.length);
+            ++notificationCount;
+        }
+
+        scheduler.schedule(delay, () ->
+        {
+            synchronized (this)
+            {
+                if (notifyGeneration != generation)
+                {
+                    return;
+                }
+            }
+
+            target.onCharacteristicChanged(serviceUuid, characteristicUuid, payload);
+        });
+
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private abstract static class Response
+    {
+        // Called with the simulator lock held; returns the status to report
+        int apply(int status)
+        {
+            return status;
+        }
+
+        abstract void deliver(@NonNull Listener listener, int status);
+    }
+
+    private interface Delivery
+    {
+        void deliver(@NonNull Listener listener);
+    }
+
+    private boolean request(final @NonNull Operation operation, final int payloadLength, final @NonNull Response response)
+    {
+        final Listener target;
+        final long requestGeneration;
+        final long delay;
+
+        synchronized (this)
+        {
+            if (!connected || listener == null || requestPending)
+            {
+                return false;
+            }
+
+            requestPending = true;
+            ++operationCount;
+
+            ArrayDeque<Integer> injected = injectedStatuses(operation);
+            if (!injected.isEmpty() && injected.peek() == DROP)
+            {
+                injected.poll();
+                return true;
+            }
+
+            target = listener;
+            requestGeneration = generation;
+            delay = completionDelay(operation, payloadLength);
+        }
+
+        scheduler.schedule(delay, () ->
+        {
+            int status;
+
+            synchronized (this)
+            {
+                if (requestGeneration != generation)
+                {
+                    return;
+                }
+
+                requestPending = false;
+                status = response.apply(nextStatus(operation));
+            }
+
+            response.deliver(target, status);
+        });
+
+        return true;
+    }
+
+    private void deliver(final @Nullable Listener target, final long delay, final @NonNull Delivery delivery)
+    {
+        if (target != null)
+        {
+            scheduler.schedule(Math.max(0, delay), () -> delivery.deliver(target));
+        }
+    }
+
+    // Must be called while synchronized
+    private long completionDelay(final @NonNull Operation operation, final int payloadLength)
+    {
+        long now = scheduler.now();
+        long start = Math.max(now, linkFreeAt);
+        long transfer = (throughput > 0) ? ((payloadLength * 1000L) / throughput) : 0;
+        linkFreeAt = start + transfer;
+        return (linkFreeAt - now) + getLatency(operation);
+    }
+
+    // Must be called while synchronized
+    private int nextStatus(final @NonNull Operation operation)
+    {
+        ArrayDeque<Integer> injected = injectedStatuses(operation);
+        if (!injected.isEmpty())
+        {
+            int status = injected.poll();
+            return (status != DROP) ? status : BluetoothGatt.GATT_FAILURE;
+        }
+
+        if (failureRate > 0 && operation != Operation.CONNECT && random.nextDouble() < failureRate)
+        {
+            return failureStatus;
+        }
+
+        return BluetoothGatt.GATT_SUCCESS;
+    }
+
+    // Must be called while synchronized
+    private @NonNull ArrayDeque<Integer> injectedStatuses(final @NonNull Operation operation)
+    {
+        ArrayDeque<Integer> queue = injectedStatuses.get(operation);
+        if (queue == null)
+        {
+            queue = new ArrayDeque<>();
+            injectedStatuses.put(operation, queue);
+        }
+
+        return queue;
+    }
+
+    // Must be called while synchronized.  Notification state is not bonded, so it resets with the link.
+    private void resetLink()
+    {
+        ++generation;
+        connected = false;
+        connecting = false;
+        requestPending = false;
+        mtu = DEFAULT_MTU;
+
+        for (LinkedHashMap<UUID, Attribute> service : services.values())
+        {
+            for (Attribute attribute : service.values())
+            {
+                if (attribute.descriptors.containsKey(CCCD_UUID))
+                {
+                    attribute.descriptors.put(CCCD_UUID, new byte[] { 0, 0 });
+                }
+            }
+        }
+    }
+
+    // Must be called while synchronized
+    private @Nullable Attribute find(final @NonNull UUID serviceUuid, final @NonNull UUID characteristicUuid)
+    {
+        LinkedHashMap<UUID, Attribute> service = services.get(serviceUuid);
+        return (service != null) ? service.get(characteristicUuid) : null;
+    }
+
+    private static @Nullable byte[] copy(final @Nullable byte[] value)
+    {
+        return (value != null) ? value.clone() : null;
+    }
+
+    private static class Attribute
+    {
+        final int properties;
+        final LinkedHashMap<UUID, byte[]> descriptors = new LinkedHashMap<>();
+        byte[] value;
+
+        Attribute(final int properties, final @Nullable byte[] value)
+        {
+            this.properties = properties;
+            this.value = value;
+        }
+
+        boolean isNotifying()
+        {
+            byte[] cccd = descriptors.get(CCCD_UUID);
+            return (cccd != null && cccd.length > 0 && (cccd[0] & 0x03) != 0);
+        }
+    }
+
+    /**
+     * Runs tasks only when advanced by hand.  Tasks due at the same time run in the order they
+     * were scheduled.
+     */
+    public static class VirtualScheduler implements Scheduler
+    {
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>(11, (lhs, rhs) ->
+        {
+            int result = Long.compare(lhs.time, rhs.time);
+            return (result != 0) ? result : Long.compare(lhs.sequence, rhs.sequence);
+        });
+
+        private long now;
+        private long nextSequence;
+
+        @Override
+        public synchronized long now()
+        {
+            return now;
+        }
+
+        @Override
+        public synchronized void schedule(final long delay, final @NonNull Runnable task)
+        {
+            tasks.add(new Task(now + Math.max(0, delay), nextSequence++, task));
+        }
+
+        /**
+         * Moves time forward, running every task that comes due, including tasks scheduled by
+         * other tasks along the way.
+         */
+        public void advance(final long millis)
+        {
+            long target;
+            synchronized (this)
+            {
+                target = now + millis;
+            }
+
+            while (true)
+            {
+                Task task;
+
+                synchronized (this)
+                {
+                    task = tasks.peek();
+                    if (task == null || task.time > target)
+                    {
+                        now = target;
+                        return;
+                    }
+
+                    tasks.poll();
+                    now = task.time;
+                }
+
+                task.runnable.run();
+            }
+        }
+
+        /**
+         * Runs tasks until none are left.
+         */
+        public void runUntilIdle()
+        {
+            while (true)
+            {
+                long next;
+                synchronized (this)
+                {
+                    Task task = tasks.peek();
+                    if (task == null)
+                    {
+                        return;
+                    }
+
+                    next = task.time - now;
+                }
+
+                advance(next);
+            }
+        }
+
+        public synchronized int getPendingCount()
+        {
+            return tasks.size();
+        }
+
+        private static class Task
+        {
+            final long time;
+            final long sequence;
+            final Runnable runnable;
+
+            Task(final long time, final long sequence, final @NonNull Runnable runnable)
+            {
+                this.time = time;
+                this.sequence = sequence;
+                this.runnable = runnable;
+            }
+        }
+    }
+
+    /**
+     * Runs tasks in real time on a shared background thread.
+     */
+    private static class ExecutorScheduler implements Scheduler
+    {
+        private static ScheduledThreadPoolExecutor executor;
+
+        @Override
+        public long now()
+        {
+            return System.nanoTime() / 1000000;
+        }
+
+        @Override
+        public void schedule(final long delay, final @NonNull Runnable task)
+        {
+            executor().schedule(task, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+
+        private static synchronized @NonNull ScheduledThreadPoolExecutor executor()
+        {
+            if (executor == null)
+            {
+                executor = new ScheduledThreadPoolExecutor(1, runnable ->
+                {
+                    Thread thread = new Thread(runnable, "UUSimulatedPeripheral");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.silverpine.uu.bluetooth;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothProfile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UUSimulatedPeripheralTest
+{
+    private static final UUID SERVICE = UUID.fromString("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final UUID DATA = UUID.fromString("00002a19-0000-1000-8000-00805f9b34fb");
+    private static final UUID CONTROL = UUID.fromString("00002a20-0000-1000-8000-00805f9b34fb");
+
+    private UUSimulatedPeripheral.VirtualScheduler scheduler;
+    private UUSimulatedPeripheral simulator;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp()
+    {
+        scheduler = new UUSimulatedPeripheral.VirtualScheduler();
+        simulator = new UUSimulatedPeripheral(scheduler);
+        simulator.addCharacteristic(SERVICE, DATA, BluetoothGattCharacteristic.PROPERTY_READ | BluetoothGattCharacteristic.PROPERTY_NOTIFY, new byte[] { 42 });
+        simulator.addCharacteristic(SERVICE, CONTROL, BluetoothGattCharacteristic.PROPERTY_WRITE | BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE, null);
+        listener = new RecordingListener();
+    }
+
+    private void connect()
+    {
+        assertTrue(simulator.connect(listener));
+        scheduler.runUntilIdle();
+        assertTrue(simulator.isConnected());
+        listener.events.clear();
+    }
+
+    @Test
+    public void connectArrivesAfterLatency()
+    {
+        simulator.connect(listener);
+
+        scheduler.advance(UUSimulatedPeripheral.Defaults.ConnectLatency - 1);
+        assertTrue(listener.events.isEmpty());
+
+        scheduler.advance(1);
+        assertEquals("state 0 " + BluetoothProfile.STATE_CONNECTED, listener.events.get(0));
+    }
+
+    @Test
+    public void injectedConnectErrorFailsConnect()
+    {
+        simulator.failNext(UUSimulatedPeripheral.Operation.CONNECT, 133);
+        simulator.connect(listener);
+        scheduler.runUntilIdle();
+
+        assertFalse(simulator.isConnected());
+        assertEquals("state 133 " + BluetoothProfile.STATE_DISCONNECTED, listener.events.get(0));
+    }
+
+    @Test
+    public void onlyOneRequestOutstanding()
+    {
+        connect();
+
+        assertTrue(simulator.readCharacteristic(SERVICE, DATA));
+        assertFalse(simulator.readCharacteristic(SERVICE, DATA));
+
+        scheduler.runUntilIdle();
+        assertEquals("read 2a19 0 [42]", listener.events.get(0));
+        assertTrue(simulator.readCharacteristic(SERVICE, DATA));
+    }
+
+    @Test
+    public void throughputAddsTransferTime()
+    {
+        connect();
+        simulator.setThroughput(1000);
+        simulator.setLatency(UUSimulatedPeripheral.Operation.WRITE_CHARACTERISTIC, 10);
+
+        long start = scheduler.now();
+        simulator.writeCharacteristic(SERVICE, CONTROL, new byte[200], true);
+        scheduler.runUntilIdle();
+
+        // 200 bytes at 1000 bytes/sec is 200 ms on the link, plus 10 ms latency
+        assertEquals(210, scheduler.now() - start);
+        assertEquals("write 2a20 0", listener.events.get(0));
+        assertEquals(200, simulator.getBytesWritten());
+    }
+
+    @Test
+    public void writeWithoutResponseLimitedByMtu()
+    {
+        connect();
+
+        simulator.writeCharacteristic(SERVICE, CONTROL, new byte[100], false);
+        scheduler.runUntilIdle();
+        assertEquals("write 2a20 " + BluetoothGatt.GATT_INVALID_ATTRIBUTE_LENGTH, listener.events.get(0));
+
+        simulator.requestMtu(512);
+        scheduler.runUntilIdle();
+        assertEquals("mtu " + UUSimulatedPeripheral.Defaults.MaxMtu + " 0", listener.events.get(1));
+
+        simulator.writeCharacteristic(SERVICE, CONTROL, new byte[100], false);
+        scheduler.runUntilIdle();
+        assertEquals("write 2a20 0", listener.events.get(2));
+    }
+
+    @Test
+    public void notificationsRequireCccdAndAreTruncated()
+    {
+        connect();
+
+        assertFalse(simulator.notifyValue(SERVICE, DATA, new byte[] { 1 }));
+
+        simulator.writeDescriptor(SERVICE, DATA, UUSimulatedPeripheral.CCCD_UUID, new byte[] { 1, 0 });
+        scheduler.runUntilIdle();
+        assertTrue(simulator.isNotifying(SERVICE, DATA));
+
+        byte[] big = new byte[40];
+        assertTrue(simulator.notifyValue(SERVICE, DATA, big));
+        scheduler.runUntilIdle();
+
+        assertEquals("changed 2a19 " + (UUSimulatedPeripheral.DEFAULT_MTU - 3), listener.events.get(1));
+    }
+
+    @Test
+    public void writeHandlerCanRespondWithNotification()
+    {
+        connect();
+        simulator.writeDescriptor(SERVICE, DATA, UUSimulatedPeripheral.CCCD_UUID, new byte[] { 1, 0 });
+        scheduler.runUntilIdle();
+
+        simulator.setWriteHandler((peripheral, serviceUuid, characteristicUuid, value) -> peripheral.notifyValue(SERVICE, DATA, value));
+        simulator.writeCharacteristic(SERVICE, CONTROL, new byte[] { 7, 8 }, true);
+        scheduler.runUntilIdle();
+
+        assertEquals("write 2a20 0", listener.events.get(1));
+        assertEquals("changed 2a19 2", listener.events.get(2));
+        assertArrayEquals(new byte[] { 7, 8 }, simulator.getValue(SERVICE, DATA));
+    }
+
+    @Test
+    public void droppedRequestNeverCompletesAndDisconnectClearsIt()
+    {
+        connect();
+        simulator.dropNext(UUSimulatedPeripheral.Operation.READ_CHARACTERISTIC);
+
+        assertTrue(simulator.readCharacteristic(SERVICE, DATA));
+        scheduler.advance(60000);
+        assertTrue(listener.events.isEmpty());
+        assertFalse(simulator.readCharacteristic(SERVICE, DATA));
+
+        simulator.simulateDisconnect(8);
+        scheduler.runUntilIdle();
+        assertEquals("state 8 " + BluetoothProfile.STATE_DISCONNECTED, listener.events.get(0));
+        assertFalse(simulator.isConnected());
+    }
+
+    @Test
+    public void disconnectResetsLinkState()
+    {
+        connect();
+        simulator.writeDescriptor(SERVICE, DATA, UUSimulatedPeripheral.CCCD_UUID, new byte[] { 1, 0 });
+        simulator.requestMtu(185);
+        scheduler.runUntilIdle();
+
+        simulator.disconnect();
+        scheduler.runUntilIdle();
+
+        assertFalse(simulator.isNotifying(SERVICE, DATA));
+        assertEquals(UUSimulatedPeripheral.DEFAULT_MTU, simulator.getMtu());
+    }
+
+    @Test
+    public void failureRateIsDeterministic()
+    {
+        ArrayList<String> first = runReads(1234);
+        ArrayList<String> second = runReads(1234);
+        assertEquals(first, second);
+        assertTrue(first.contains("read 2a19 " + BluetoothGatt.GATT_FAILURE + " null"));
+    }
+
+    private ArrayList<String> runReads(final long seed)
+    {
+        setUp();
+        connect();
+        simulator.setFailureRate(0.5, BluetoothGatt.GATT_FAILURE, seed);
+
+        for (int i = 0; i < 20; i++)
+        {
+            simulator.readCharacteristic(SERVICE, DATA);
+            scheduler.runUntilIdle();
+        }
+
+        return new ArrayList<>(listener.events);
+    }
+
+    private static String shortUuid(final UUID uuid)
+    {
+        return uuid.toString().substring(4, 8);
+    }
+
+    private static class RecordingListener implements UUSimulatedPeripheral.Listener
+    {
+        final ArrayList<String> events = new ArrayList<>();
+
+        @Override
+        public void onConnectionStateChange(int status, int newState)
+        {
+            events.add("state " + status + " " + newState);
+        }
+
+        @Override
+        public void onServicesDiscovered(int status)
+        {
+            events.add("discovered " + status);
+        }
+
+        @Override
+        public void onCharacteristicRead(UUID serviceUuid, UUID characteristicUuid, byte[] value, int status)
+        {
+            events.add("read " + shortUuid(characteristicUuid) + " " + status + " " + ((value != null) ? java.util.Arrays.toString(value) : "null"));
+        }
+
+        @Override
+        public void onCharacteristicWrite(UUID serviceUuid, UUID characteristicUuid, int status)
+        {
+            events.add("write " + shortUuid(characteristicUuid) + " " + status);
+        }
+
+        @Override
+        public void onCharacteristicChanged(UUID serviceUuid, UUID characteristicUuid, byte[] value)
+        {
+            events.add("changed " + shortUuid(characteristicUuid) + " " + value.length);
+        }
+
+        @Override
+        public void onDescriptorRead(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid, byte[] value, int status)
+        {
+            events.add("descriptorRead " + status);
+        }
+
+        @Override
+        public void onDescriptorWrite(UUID serviceUuid, UUID characteristicUuid, UUID descriptorUuid, int status)
+        {
+            events.add("descriptorWrite " + status);
+        }
+
+        @Override
+        public void onMtuChanged(int mtu, int status)
+        {
+            events.add("mtu " + mtu + " " + status);
+        }
+
+        @Override
+        public void onReadRemoteRssi(int rssi, int status)
+        {
+            events.add("rssi " + rssi + " " + status);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.silverpine.uu.bluetooth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class UUWriteBufferPoolTest
+{
+    @Test
+    public void releasedBufferIsReused()
+    {
+        UUWriteBufferPool pool = new UUWriteBufferPool(20);
+
+        byte[] first = pool.acquire(4);
+        assertEquals(4, first.length);
+        pool.release(first);
+
+        assertSame(first, pool.acquire(4));
+    }
+
+    @Test
+    public void bufferInUseIsNotShared()
+    {
+        UUWriteBufferPool pool = new UUWriteBufferPool(20);
+
+        byte[] first = pool.acquire(2);
+        byte[] second = pool.acquire(2);
+        assertNotSame(first, second);
+
+        // Releasing the overflow buffer does not free the pooled one
+        pool.release(second);
+        assertNotSame(first, pool.acquire(2));
+
+        pool.release(first);
+        assertSame(first, pool.acquire(2));
+    }
+
+    @Test
+    public void lengthOverLimitIsNotPooled()
+    {
+        UUWriteBufferPool pool = new UUWriteBufferPool(8);
+
+        byte[] first = pool.acquire(9);
+        pool.release(first);
+        assertNotSame(first, pool.acquire(9));
+    }
+
+    @Test
+    public void resizeKeepsBuffersThatFit()
+    {
+        UUWriteBufferPool pool = new UUWriteBufferPool(4);
+
+        byte[] small = pool.acquire(2);
+        pool.release(small);
+
+        pool.resize(244);
+        assertEquals(244, pool.getMaxLength());
+        assertSame(small, pool.acquire(2));
+
+        byte[] large = pool.acquire(100);
+        pool.release(large);
+        assertSame(large, pool.acquire(100));
+        pool.release(large);
+
+        pool.resize(20);
+        assertNotSame(large, pool.acquire(100));
+    }
+}